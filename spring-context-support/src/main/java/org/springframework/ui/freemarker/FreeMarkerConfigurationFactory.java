@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2018 the original author or authors.
+ * Copyright 2002-2021 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -20,9 +20,15 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
 import freemarker.cache.FileTemplateLoader;
 import freemarker.cache.MultiTemplateLoader;
@@ -37,6 +43,8 @@ import org.springframework.core.io.DefaultResourceLoader;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.ResourceLoader;
 import org.springframework.core.io.support.PropertiesLoaderUtils;
+import org.springframework.core.io.support.ResourcePatternResolver;
+import org.springframework.core.io.support.ResourcePatternUtils;
 import org.springframework.lang.Nullable;
 import org.springframework.util.CollectionUtils;
 
@@ -59,6 +67,10 @@ import org.springframework.util.CollectionUtils;
  * <p>The simplest way to use this class is to specify a "templateLoaderPath";
  * FreeMarker does not need any further configuration then.
  *
+ * <p>The optional "preloadTemplatePatterns" property lets templates under the
+ * "templateLoaderPaths" be parsed in parallel while the Configuration is created,
+ * instead of on first use.
+ *
  * <p>Note: Spring's FreeMarker support requires FreeMarker 2.3 or higher.
  *
  * @author Darren Davison
@@ -104,6 +116,12 @@ public class FreeMarkerConfigurationFactory {
 
 	private boolean preferFileSystemAccess = true;
 
+	@Nullable
+	private String[] preloadTemplatePatterns;
+
+	@Nullable
+	private Executor preloadExecutor;
+
 
 	/**
 	 * Set the location of the FreeMarker config file.
@@ -246,6 +264,33 @@ public class FreeMarkerConfigurationFactory {
 		return this.preferFileSystemAccess;
 	}
 
+	/**
+	 * Set Ant-style patterns, relative to each of the "templateLoaderPaths",
+	 * for templates to parse when the Configuration is created, e.g. "**&#47;*.ftl".
+	 * <p>Preloaded templates end up in FreeMarker's template cache for the
+	 * default locale of the Configuration, so that the first rendering of
+	 * each of them does not pay for loading and parsing it. Templates that
+	 * fail to parse are logged and otherwise ignored.
+	 * <p>Default is none: templates are loaded on first use.
+	 * @since 5.3.11
+	 * @see #setTemplateLoaderPaths
+	 * @see #setPreloadExecutor
+	 * @see freemarker.template.Configuration#getTemplate(String, Locale)
+	 */
+	public void setPreloadTemplatePatterns(String... preloadTemplatePatterns) {
+		this.preloadTemplatePatterns = preloadTemplatePatterns;
+	}
+
+	/**
+	 * Set the Executor to parse templates to preload with.
+	 * <p>Default is the common {@link ForkJoinPool}.
+	 * @since 5.3.11
+	 * @see #setPreloadTemplatePatterns
+	 */
+	public void setPreloadExecutor(Executor preloadExecutor) {
+		this.preloadExecutor = preloadExecutor;
+	}
+
 
 	/**
 	 * Prepare the FreeMarker Configuration and return it.
@@ -310,6 +355,10 @@ public class FreeMarkerConfigurationFactory {
 		}
 
 		postProcessConfiguration(config);
+
+		if (this.preloadTemplatePatterns != null && this.templateLoaderPaths != null) {
+			preloadTemplates(config, this.templateLoaderPaths, this.preloadTemplatePatterns);
+		}
 		return config;
 	}
 
@@ -401,6 +450,62 @@ public class FreeMarkerConfigurationFactory {
 		}
 	}
 
+	/**
+	 * Parse all templates matching the given patterns under the given template
+	 * loader paths in parallel, populating the template cache of the Configuration.
+	 * <p>Called by {@code createConfiguration()} if "preloadTemplatePatterns" are set.
+	 * @param config the fully initialized Configuration object
+	 * @param templateLoaderPaths the template loader paths to search
+	 * @param patterns the Ant-style patterns relative to each template loader path
+	 * @throws IOException if the template loader paths could not be searched
+	 * @since 5.3.11
+	 * @see #setPreloadTemplatePatterns
+	 */
+	protected void preloadTemplates(Configuration config, String[] templateLoaderPaths, String[] patterns)
+			throws IOException {
+
+		ResourcePatternResolver resolver = ResourcePatternUtils.getResourcePatternResolver(getResourceLoader());
+		Set<String> templateNames = new LinkedHashSet<>();
+		for (String path : templateLoaderPaths) {
+			String basePath = (path.endsWith("/") ? path : path + "/");
+			Resource baseResource = resolver.getResource(basePath);
+			if (!baseResource.exists()) {
+				continue;
+			}
+			String baseUrl = baseResource.getURL().toExternalForm();
+			for (String pattern : patterns) {
+				for (Resource resource : resolver.getResources(basePath + pattern)) {
+					String url = resource.getURL().toExternalForm();
+					if (url.startsWith(baseUrl) && url.length() > baseUrl.length()) {
+						templateNames.add(url.substring(baseUrl.length()));
+					}
+				}
+			}
+		}
+
+		Locale locale = config.getLocale();
+		Executor executor = (this.preloadExecutor != null ? this.preloadExecutor : ForkJoinPool.commonPool());
+		CompletableFuture<?>[] futures = templateNames.stream()
+				.map(name -> CompletableFuture.runAsync(() -> preloadTemplate(config, name, locale), executor))
+				.toArray(CompletableFuture[]::new);
+		CompletableFuture.allOf(futures).join();
+
+		if (logger.isDebugEnabled()) {
+			logger.debug("Preloaded " + templateNames.size() + " FreeMarker templates");
+		}
+	}
+
+	private void preloadTemplate(Configuration config, String name, Locale locale) {
+		try {
+			config.getTemplate(name, locale);
+		}
+		catch (Exception ex) {
+			if (logger.isWarnEnabled()) {
+				logger.warn("Failed to preload FreeMarker template [" + name + "]", ex);
+			}
+		}
+	}
+
 	/**
 	 * To be overridden by subclasses that want to perform custom
 	 * post-processing of the Configuration object after this factory
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2019 the original author or authors.
+ * Copyright 2002-2021 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,12 +16,17 @@
 
 package org.springframework.ui.freemarker;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import freemarker.template.Configuration;
 import freemarker.template.Template;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import org.springframework.beans.factory.support.DefaultListableBeanFactory;
 import org.springframework.beans.factory.support.RootBeanDefinition;
@@ -87,6 +92,28 @@ public class FreeMarkerConfigurationFactoryBeanTests {
 		assertThat(FreeMarkerTemplateUtils.processTemplateIntoString(ft, new HashMap())).isEqualTo("test");
 	}
 
+	@Test
+	public void freeMarkerConfigurationFactoryBeanWithPreloadTemplates(@TempDir Path tempDir) throws Exception {
+		Files.createDirectories(tempDir.resolve("sub"));
+		Files.write(tempDir.resolve("a.ftl"), "a".getBytes());
+		Files.write(tempDir.resolve("sub/b.ftl"), "b".getBytes());
+		Files.write(tempDir.resolve("broken.ftl"), "<#if>".getBytes());
+		Files.write(tempDir.resolve("c.txt"), "c".getBytes());
+		List<Runnable> tasks = new CopyOnWriteArrayList<>();
+
+		fcfb.setTemplateLoaderPath(tempDir.toUri().toString());
+		fcfb.setPreloadTemplatePatterns("**/*.ftl");
+		fcfb.setPreloadExecutor(task -> {
+			tasks.add(task);
+			task.run();
+		});
+		fcfb.afterPropertiesSet();
+
+		assertThat(tasks).hasSize(3);
+		Template ft = fcfb.getObject().getTemplate("sub/b.ftl");
+		assertThat(FreeMarkerTemplateUtils.processTemplateIntoString(ft, new HashMap<>())).isEqualTo("b");
+	}
+
 	@Test  // SPR-12448
 	public void freeMarkerConfigurationAsBean() {
 		DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
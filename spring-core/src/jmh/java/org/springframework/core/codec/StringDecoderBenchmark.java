@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2020 the original author or authors.
+ * Copyright 2002-2021 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,6 +17,7 @@ package org.springframework.core.codec;
 
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -52,6 +53,24 @@ public class StringDecoderBenchmark {
 		blackhole.consume(state.parseLines().blockLast());
 	}
 
+	/**
+	 * Decodes {@code totalSize} bytes of NDJSON, so the throughput in bytes
+	 * per second is the operation rate multiplied by {@code totalSize}.
+	 */
+	@Benchmark
+	public void parseNdjsonLines(NdjsonLinesState state, Blackhole blackhole) {
+		blackhole.consume(state.parseLines().blockLast());
+	}
+
+	/**
+	 * Scans {@code totalSize} bytes of multipart body content for boundaries,
+	 * the same way {@code MultipartParser} does.
+	 */
+	@Benchmark
+	public void matchMultipartBoundaries(MultipartBoundaryState state, Blackhole blackhole) {
+		blackhole.consume(state.matchBoundaries());
+	}
+
 
 	@State(Scope.Benchmark)
 	@SuppressWarnings({"NotNullFieldNotInitialized", "ConstantConditions"})
@@ -107,4 +126,116 @@ public class StringDecoderBenchmark {
 		}
 	}
 
+
+	@State(Scope.Benchmark)
+	@SuppressWarnings({"NotNullFieldNotInitialized", "ConstantConditions"})
+	public static class NdjsonLinesState {
+
+		private static final Charset CHARSET = StandardCharsets.UTF_8;
+
+		private static final ResolvableType ELEMENT_TYPE = ResolvableType.forClass(String.class);
+
+
+		@Param({"1048576", "134217728"})
+		int totalSize;
+
+		@Param("8192")
+		int chunkSize;
+
+		List<DataBuffer> chunks;
+
+		StringDecoder decoder = StringDecoder.textPlainOnly();
+
+		MimeType mimeType = new MimeType("application", "x-ndjson", CHARSET);
+
+
+		@Setup(Level.Trial)
+		public void setup() {
+			String lineTemplate = "{\"timestamp\":\"2021-09-14T10:15:30.%05dZ\",\"level\":\"INFO\"," +
+					"\"logger\":\"org.example.ingest\",\"message\":\"Processed event %05d\"}\n";
+			StringBuilder content = new StringBuilder();
+			for (int index = 0; content.length() < this.chunkSize * 4; index++) {
+				content.append(String.format(lineTemplate, index, index));
+			}
+			byte[] bytes = content.toString().getBytes(CHARSET);
+			DataBufferFactory bufferFactory = new DefaultDataBufferFactory();
+
+			// Lines span chunk boundaries, as they do with network reads
+			this.chunks = new ArrayList<>(this.totalSize / this.chunkSize);
+			for (int offset = 0; offset < this.totalSize; offset += this.chunkSize) {
+				DataBuffer buffer = bufferFactory.allocateBuffer(this.chunkSize);
+				for (int i = 0; i < this.chunkSize; i++) {
+					buffer.write(bytes[(offset + i) % bytes.length]);
+				}
+				this.chunks.add(buffer);
+			}
+		}
+
+		public Flux<String> parseLines() {
+			Flux<DataBuffer> input = Flux.fromIterable(this.chunks)
+					.map(buffer -> buffer.slice(0, buffer.writePosition()))
+					.doOnNext(DataBufferUtils::retain);
+			return this.decoder.decode(input, ELEMENT_TYPE, this.mimeType, Collections.emptyMap());
+		}
+	}
+
+
+	@State(Scope.Benchmark)
+	@SuppressWarnings({"NotNullFieldNotInitialized", "ConstantConditions"})
+	public static class MultipartBoundaryState {
+
+		private static final String BOUNDARY = "----WebKitFormBoundaryG8fJ50opQOML0oGD";
+
+
+		@Param({"1048576", "134217728"})
+		int totalSize;
+
+		@Param("8192")
+		int chunkSize;
+
+		@Param({"4096", "1048576"})
+		int partSize;
+
+		List<DataBuffer> chunks;
+
+		byte[] delimiter = ("\r\n--" + BOUNDARY).getBytes(StandardCharsets.US_ASCII);
+
+
+		@Setup(Level.Trial)
+		public void setup() {
+			byte[] part = new byte[this.partSize];
+			byte[] headers = ("\r\n--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"file\"; " +
+					"filename=\"file.bin\"\r\nContent-Type: application/octet-stream\r\n\r\n")
+					.getBytes(StandardCharsets.US_ASCII);
+			System.arraycopy(headers, 0, part, 0, Math.min(headers.length, part.length));
+			for (int i = headers.length; i < part.length; i++) {
+				// Body content with frequent line breaks and hyphens, as found in text files
+				part[i] = (byte) (i % 64 == 0 ? '\n' : i % 32 == 0 ? '-' : 'a' + (i % 26));
+			}
+			DataBufferFactory bufferFactory = new DefaultDataBufferFactory();
+			this.chunks = new ArrayList<>(this.totalSize / this.chunkSize);
+			for (int offset = 0; offset < this.totalSize; offset += this.chunkSize) {
+				DataBuffer buffer = bufferFactory.allocateBuffer(this.chunkSize);
+				for (int i = 0; i < this.chunkSize; i++) {
+					buffer.write(part[(offset + i) % part.length]);
+				}
+				this.chunks.add(buffer);
+			}
+		}
+
+		public int matchBoundaries() {
+			DataBufferUtils.Matcher matcher = DataBufferUtils.matcher(this.delimiter);
+			int count = 0;
+			for (DataBuffer chunk : this.chunks) {
+				chunk.readPosition(0);
+				int endIndex;
+				while ((endIndex = matcher.match(chunk)) != -1) {
+					count++;
+					chunk.readPosition(endIndex + 1);
+				}
+			}
+			return count;
+		}
+	}
+
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2020 the original author or authors.
+ * Copyright 2002-2021 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,7 +16,6 @@
 
 package org.springframework.core.codec;
 
-import java.nio.CharBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
@@ -123,9 +122,7 @@ public final class StringDecoder extends AbstractDataBufferDecoder<String> {
 					if (chunks.isEmpty()) {
 						return Mono.empty();
 					}
-					DataBuffer lastBuffer = chunks.get(0).factory().join(chunks);
-					chunks.clear();
-					return Mono.just(lastBuffer);
+					return Mono.just(chunks.joinAndClear());
 				}))
 				.doOnTerminate(chunks::releaseAndClear)
 				.doOnDiscard(PooledDataBuffer.class, PooledDataBuffer::release)
@@ -166,12 +163,11 @@ public final class StringDecoder extends AbstractDataBufferDecoder<String> {
 				}
 				else {
 					chunks.add(slice);
-					DataBuffer joined = buffer.factory().join(chunks);
+					DataBuffer joined = chunks.joinAndClear();
 					if (this.stripDelimiter) {
 						joined.writePosition(joined.writePosition() - matcher.delimiter().length);
 					}
 					result.add(joined);
-					chunks.clear();
 				}
 				buffer.readPosition(endIndex + 1);
 			}
@@ -188,9 +184,8 @@ public final class StringDecoder extends AbstractDataBufferDecoder<String> {
 			@Nullable MimeType mimeType, @Nullable Map<String, Object> hints) {
 
 		Charset charset = getCharset(mimeType);
-		CharBuffer charBuffer = charset.decode(dataBuffer.asByteBuffer());
+		String value = dataBuffer.toString(charset);
 		DataBufferUtils.release(dataBuffer);
-		String value = charBuffer.toString();
 		LogFormatUtils.traceDebug(logger, traceOn -> {
 			String formatted = LogFormatUtils.formatValue(value, !traceOn);
 			return Hints.getLogPrefix(hints) + "Decoded " + formatted;
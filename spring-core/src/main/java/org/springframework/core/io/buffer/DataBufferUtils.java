@@ -21,6 +21,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.channels.AsynchronousFileChannel;
 import java.nio.channels.Channel;
 import java.nio.channels.Channels;
@@ -30,6 +31,8 @@ import java.nio.channels.WritableByteChannel;
 import java.nio.file.OpenOption;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.concurrent.Callable;
@@ -65,6 +68,9 @@ public abstract class DataBufferUtils {
 
 	private static final Consumer<DataBuffer> RELEASE_CONSUMER = DataBufferUtils::release;
 
+	/** Readable byte count below which scanning a word at a time does not pay off. */
+	private static final int WORD_SCAN_THRESHOLD = 32;
+
 
 	//---------------------------------------------------------------------
 	// Reading
@@ -586,12 +592,24 @@ public abstract class DataBufferUtils {
 	/**
 	 * Return a {@link Matcher} for the given delimiter.
 	 * The matcher can be used to find the delimiters in a stream of data buffers.
+	 * <p>Single byte delimiters are scanned for a word at a time, short
+	 * delimiters by scanning for their last byte, and longer delimiters such
+	 * as multipart boundaries with the Boyer-Moore-Horspool algorithm.
 	 * @param delimiter the delimiter bytes to find
 	 * @return the matcher
 	 * @since 5.2
 	 */
 	public static Matcher matcher(byte[] delimiter) {
-		return createMatcher(delimiter);
+		Assert.isTrue(delimiter.length > 0, "Delimiter must not be empty");
+		if (delimiter.length == 1) {
+			return createMatcher(delimiter);
+		}
+		else if (delimiter.length <= LastByteMatcher.MAX_DELIMITER_LENGTH) {
+			return new LastByteMatcher(new byte[][] {delimiter});
+		}
+		else {
+			return new BoyerMooreHorspoolMatcher(delimiter);
+		}
 	}
 
 	/**
@@ -603,7 +621,15 @@ public abstract class DataBufferUtils {
 	 */
 	public static Matcher matcher(byte[]... delimiters) {
 		Assert.isTrue(delimiters.length > 0, "Delimiters must not be empty");
-		return (delimiters.length == 1 ? createMatcher(delimiters[0]) : new CompositeMatcher(delimiters));
+		if (delimiters.length == 1) {
+			return matcher(delimiters[0]);
+		}
+		else if (LastByteMatcher.supports(delimiters)) {
+			return new LastByteMatcher(delimiters);
+		}
+		else {
+			return new CompositeMatcher(delimiters);
+		}
 	}
 
 	private static NestedMatcher createMatcher(byte[] delimiter) {
@@ -618,6 +644,50 @@ public abstract class DataBufferUtils {
 		}
 	}
 
+	/**
+	 * Find the index of the first occurrence of the given byte in the buffer,
+	 * starting at {@code fromIndex} and up to the write position, comparing
+	 * eight bytes at a time where there is enough content. Only buffers that
+	 * expose their content as a {@code ByteBuffer} view without copying are
+	 * scanned that way; others are searched through {@link DataBuffer#indexOf}.
+	 */
+	private static int indexOf(DataBuffer dataBuffer, int fromIndex, byte value) {
+		int length = dataBuffer.writePosition() - fromIndex;
+		if (length < WORD_SCAN_THRESHOLD || !(dataBuffer instanceof DefaultDataBuffer)) {
+			return dataBuffer.indexOf(b -> b == value, fromIndex);
+		}
+		int index = indexOf(dataBuffer.asByteBuffer(fromIndex, length), value);
+		return (index != -1 ? fromIndex + index : -1);
+	}
+
+	/**
+	 * Find the index of the given byte in the remaining content of the byte
+	 * buffer, relative to its position. Each long read is XOR-ed with the byte
+	 * repeated eight times, turning matches into zero bytes that are then
+	 * detected with the "has zero byte" bit trick. In little endian order,
+	 * the lowest flagged byte is always the first match.
+	 */
+	private static int indexOf(ByteBuffer byteBuffer, byte value) {
+		byteBuffer.order(ByteOrder.LITTLE_ENDIAN);
+		int start = byteBuffer.position();
+		int end = byteBuffer.limit();
+		long pattern = (value & 0xFFL) * 0x0101010101010101L;
+		int pos = start;
+		for (; pos <= end - Long.BYTES; pos += Long.BYTES) {
+			long word = byteBuffer.getLong(pos) ^ pattern;
+			long found = (word - 0x0101010101010101L) & ~word & 0x8080808080808080L;
+			if (found != 0) {
+				return pos - start + (Long.numberOfTrailingZeros(found) >>> 3);
+			}
+		}
+		for (; pos < end; pos++) {
+			if (byteBuffer.get(pos) == value) {
+				return pos - start;
+			}
+		}
+		return -1;
+	}
+
 
 	/**
 	 * Contract to find delimiter(s) against one or more data buffers that can
@@ -737,13 +807,7 @@ public abstract class DataBufferUtils {
 
 		@Override
 		public int match(DataBuffer dataBuffer) {
-			for (int pos = dataBuffer.readPosition(); pos < dataBuffer.writePosition(); pos++) {
-				byte b = dataBuffer.getByte(pos);
-				if (match(b)) {
-					return pos;
-				}
-			}
-			return -1;
+			return indexOf(dataBuffer, dataBuffer.readPosition(), this.delimiter[0]);
 		}
 
 		@Override
@@ -869,6 +933,214 @@ public abstract class DataBufferUtils {
 	}
 
 
+	/**
+	 * Base class for matchers that look at the content of a buffer as a whole,
+	 * rather than one byte at a time. The last bytes of buffers without a match
+	 * are kept, so that a delimiter that spans buffers can still be matched.
+	 */
+	private static abstract class AbstractLookBehindMatcher implements Matcher {
+
+		private static final int NO_BYTE = Integer.MIN_VALUE;
+
+		private final byte[] lookBehind;
+
+		private int lookBehindLength;
+
+
+		protected AbstractLookBehindMatcher(int maxDelimiterLength) {
+			this.lookBehind = new byte[maxDelimiterLength - 1];
+		}
+
+		/**
+		 * Return the byte at the given index, where indexes before the read
+		 * position of the buffer refer to the kept bytes of previous buffers.
+		 * @return the byte, or a value outside the byte range if the index
+		 * is before the kept bytes
+		 */
+		protected final int byteAt(DataBuffer dataBuffer, int index) {
+			int readPosition = dataBuffer.readPosition();
+			if (index >= readPosition) {
+				return dataBuffer.getByte(index);
+			}
+			int lookBehindIndex = this.lookBehindLength - (readPosition - index);
+			return (lookBehindIndex >= 0 ? this.lookBehind[lookBehindIndex] : NO_BYTE);
+		}
+
+		/**
+		 * Return the number of bytes kept from previous buffers.
+		 */
+		protected final int getLookBehindLength() {
+			return this.lookBehindLength;
+		}
+
+		/**
+		 * Keep the last bytes of the given buffer that was searched without a match.
+		 */
+		protected final void keepLookBehind(DataBuffer dataBuffer) {
+			int readableByteCount = dataBuffer.readableByteCount();
+			int length = Math.min(this.lookBehind.length, this.lookBehindLength + readableByteCount);
+			int fromBuffer = Math.min(length, readableByteCount);
+			int kept = length - fromBuffer;
+			if (kept > 0) {
+				System.arraycopy(this.lookBehind, this.lookBehindLength - kept, this.lookBehind, 0, kept);
+			}
+			int index = dataBuffer.writePosition() - fromBuffer;
+			for (int i = kept; i < length; i++) {
+				this.lookBehind[i] = dataBuffer.getByte(index++);
+			}
+			this.lookBehindLength = length;
+		}
+
+		@Override
+		public void reset() {
+			this.lookBehindLength = 0;
+		}
+	}
+
+
+	/**
+	 * Matcher for one or more short delimiters that all end with the same byte,
+	 * such as the {@code "\r\n"} and {@code "\n"} line delimiters. The buffer is
+	 * scanned for that last byte a word at a time, and only then are preceding
+	 * bytes compared, longest delimiter first.
+	 */
+	private static class LastByteMatcher extends AbstractLookBehindMatcher {
+
+		static final int MAX_DELIMITER_LENGTH = 8;
+
+		private final byte[][] delimiters;
+
+		private final byte lastByte;
+
+		@Nullable
+		private byte[] matchingDelimiter;
+
+
+		LastByteMatcher(byte[][] delimiters) {
+			super(maxLength(delimiters));
+			this.delimiters = delimiters.clone();
+			Arrays.sort(this.delimiters, Comparator.comparingInt((byte[] delimiter) -> delimiter.length).reversed());
+			this.lastByte = delimiters[0][delimiters[0].length - 1];
+		}
+
+		static boolean supports(byte[][] delimiters) {
+			for (byte[] delimiter : delimiters) {
+				Assert.isTrue(delimiter.length > 0, "Delimiter must not be empty");
+				if (delimiter.length > MAX_DELIMITER_LENGTH ||
+						delimiter[delimiter.length - 1] != delimiters[0][delimiters[0].length - 1]) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private static int maxLength(byte[][] delimiters) {
+			int result = 0;
+			for (byte[] delimiter : delimiters) {
+				result = Math.max(result, delimiter.length);
+			}
+			return result;
+		}
+
+		@Override
+		public int match(DataBuffer dataBuffer) {
+			int pos = dataBuffer.readPosition();
+			while (pos < dataBuffer.writePosition()) {
+				int endIndex = indexOf(dataBuffer, pos, this.lastByte);
+				if (endIndex == -1) {
+					break;
+				}
+				for (byte[] delimiter : this.delimiters) {
+					if (endsWith(dataBuffer, endIndex, delimiter)) {
+						this.matchingDelimiter = delimiter;
+						reset();
+						return endIndex;
+					}
+				}
+				pos = endIndex + 1;
+			}
+			keepLookBehind(dataBuffer);
+			return -1;
+		}
+
+		private boolean endsWith(DataBuffer dataBuffer, int endIndex, byte[] delimiter) {
+			for (int i = delimiter.length - 2, index = endIndex - 1; i >= 0; i--, index--) {
+				if (byteAt(dataBuffer, index) != delimiter[i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		@Override
+		public byte[] delimiter() {
+			Assert.state(this.matchingDelimiter != null, "Illegal state!");
+			return this.matchingDelimiter;
+		}
+	}
+
+
+	/**
+	 * Implementation of {@link Matcher} that uses the Boyer-Moore-Horspool
+	 * algorithm, which compares the delimiter from its last byte and skips
+	 * ahead based on a table computed from the delimiter. Suited for long
+	 * delimiters, like multipart boundaries, where most positions are skipped.
+	 * @see <a href="https://en.wikipedia.org/wiki/Boyer%E2%80%93Moore%E2%80%93Horspool_algorithm">Boyer-Moore-Horspool algorithm</a>
+	 */
+	private static class BoyerMooreHorspoolMatcher extends AbstractLookBehindMatcher {
+
+		private final byte[] delimiter;
+
+		private final int[] skipTable;
+
+
+		BoyerMooreHorspoolMatcher(byte[] delimiter) {
+			super(delimiter.length);
+			this.delimiter = delimiter;
+			this.skipTable = skipTable(delimiter);
+		}
+
+		private static int[] skipTable(byte[] delimiter) {
+			int[] result = new int[256];
+			Arrays.fill(result, delimiter.length);
+			for (int i = 0; i < delimiter.length - 1; i++) {
+				result[delimiter[i] & 0xFF] = delimiter.length - 1 - i;
+			}
+			return result;
+		}
+
+		@Override
+		public int match(DataBuffer dataBuffer) {
+			int last = this.delimiter.length - 1;
+			int endIndex = dataBuffer.readPosition() - getLookBehindLength() + last;
+			while (endIndex < dataBuffer.writePosition()) {
+				int b = dataBuffer.getByte(endIndex);
+				if (b == this.delimiter[last] && matchesBefore(dataBuffer, endIndex)) {
+					reset();
+					return endIndex;
+				}
+				endIndex += this.skipTable[b & 0xFF];
+			}
+			keepLookBehind(dataBuffer);
+			return -1;
+		}
+
+		private boolean matchesBefore(DataBuffer dataBuffer, int endIndex) {
+			for (int i = this.delimiter.length - 2, index = endIndex - 1; i >= 0; i--, index--) {
+				if (byteAt(dataBuffer, index) != this.delimiter[i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		@Override
+		public byte[] delimiter() {
+			return this.delimiter;
+		}
+	}
+
+
 	private static class ReadableByteChannelGenerator implements Consumer<SynchronousSink<DataBuffer>> {
 
 		private final ReadableByteChannel channel;
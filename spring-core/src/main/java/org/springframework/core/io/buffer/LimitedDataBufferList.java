@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2020 the original author or authors.
+ * Copyright 2002-2021 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -22,6 +22,8 @@ import java.util.function.Predicate;
 
 import reactor.core.publisher.Flux;
 
+import org.springframework.util.Assert;
+
 /**
  * Custom {@link List} to collect data buffers with and enforce a
  * limit on the total number of bytes buffered. For use with "collect" or
@@ -135,6 +137,21 @@ public class LimitedDataBufferList extends ArrayList<DataBuffer> {
 		super.clear();
 	}
 
+	/**
+	 * Join the data buffers into a single buffer through their
+	 * {@link DataBufferFactory#join factory} and then {@link #clear()}.
+	 * <p>The returned buffer takes over ownership of the data buffers.
+	 * @return the joined buffer
+	 * @throws IllegalStateException if there are no data buffers
+	 * @since 5.3.11
+	 */
+	public DataBuffer joinAndClear() {
+		Assert.state(!isEmpty(), "No DataBuffers to join");
+		DataBuffer result = (size() == 1 ? get(0) : get(0).factory().join(this));
+		clear();
+		return result;
+	}
+
 	/**
 	 * Shortcut to {@link DataBufferUtils#release release} all data buffers and
 	 * then {@link #clear()}.
@@ -0,0 +1,559 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.core.task;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.CustomizableThreadCreator;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.util.concurrent.ListenableFutureTask;
+
+/**
+ * {@link TaskExecutor} implementation that runs each task on a virtual thread
+ * if the JVM supports them (JDK 21+, detected reflectively), or otherwise on
+ * a platform thread from an internal pool that grows on demand and releases
+ * idle threads after {@link #setKeepAliveSeconds keepAliveSeconds}.
+ *
+ * <p>In both modes, the number of concurrently running tasks is bounded by the
+ * {@link #setConcurrencyLimit concurrencyLimit}. Tasks submitted beyond that
+ * limit are kept in a queue bounded by the {@link #setQueueCapacity queueCapacity}
+ * and picked up by threads as running tasks complete; once the queue is full,
+ * tasks are rejected with a {@link TaskRejectedException}. Submitting threads
+ * therefore never block.
+ *
+ * <p>A {@link TaskDecorator} is applied on the submitting thread, which makes
+ * it the place to capture and propagate context such as security or tracing
+ * state to the thread that eventually executes the task. Basic statistics are
+ * exposed, including the time that tasks spend in the queue.
+ *
+ * <p>This executor can be used wherever a plain {@link AsyncTaskExecutor} is
+ * expected, for example for asynchronous request processing in Spring MVC, for
+ * {@code @Async} methods, or for asynchronous event multicasting, as a bounded
+ * alternative to {@link SimpleAsyncTaskExecutor}. Call {@link #shutdown()}
+ * (or {@link #close()}) when the executor is no longer needed.
+ *
+ * @author Juergen Hoeller
+ * @since 5.3.11
+ * @see SimpleAsyncTaskExecutor
+ * @see #setConcurrencyLimit
+ * @see #setTaskDecorator
+ */
+@SuppressWarnings("serial")
+public class BoundedAsyncTaskExecutor extends CustomizableThreadCreator
+		implements AsyncListenableTaskExecutor, AutoCloseable {
+
+	/**
+	 * The default maximum number of concurrently running tasks.
+	 */
+	public static final int DEFAULT_CONCURRENCY_LIMIT = 256;
+
+	/**
+	 * Permit any number of concurrently running tasks.
+	 */
+	public static final int UNBOUNDED_CONCURRENCY = -1;
+
+
+	private int concurrencyLimit = DEFAULT_CONCURRENCY_LIMIT;
+
+	private int queueCapacity = Integer.MAX_VALUE;
+
+	private int keepAliveSeconds = 60;
+
+	private boolean virtualThreads = true;
+
+	@Nullable
+	private TaskDecorator taskDecorator;
+
+	private final ConcurrentLinkedDeque<QueuedTask> queue = new ConcurrentLinkedDeque<>();
+
+	private final AtomicInteger queueSize = new AtomicInteger();
+
+	private final AtomicInteger activeCount = new AtomicInteger();
+
+	private final AtomicLong completedTaskCount = new AtomicLong();
+
+	private final AtomicLong rejectedTaskCount = new AtomicLong();
+
+	private final AtomicLong totalQueueTime = new AtomicLong();
+
+	private final LongAccumulator maxQueueTime = new LongAccumulator(Math::max, 0);
+
+	@Nullable
+	private volatile ThreadFactory virtualThreadFactory;
+
+	@Nullable
+	private volatile ThreadPoolExecutor platformThreadPool;
+
+	private final Object initMonitor = new Object();
+
+	private volatile boolean active = true;
+
+
+	/**
+	 * Create a new BoundedAsyncTaskExecutor with default thread name prefix.
+	 */
+	public BoundedAsyncTaskExecutor() {
+		super();
+	}
+
+	/**
+	 * Create a new BoundedAsyncTaskExecutor with the given thread name prefix.
+	 * @param threadNamePrefix the prefix to use for the names of newly created threads
+	 */
+	public BoundedAsyncTaskExecutor(String threadNamePrefix) {
+		super(threadNamePrefix);
+	}
+
+
+	/**
+	 * Set the maximum number of tasks that may run concurrently, or
+	 * {@link #UNBOUNDED_CONCURRENCY} for no limit.
+	 * <p>Default is {@link #DEFAULT_CONCURRENCY_LIMIT}. This is designed as a
+	 * configuration time setting, to be applied before tasks are submitted.
+	 */
+	public void setConcurrencyLimit(int concurrencyLimit) {
+		Assert.isTrue(concurrencyLimit > 0 || concurrencyLimit == UNBOUNDED_CONCURRENCY,
+				"Concurrency limit must be greater than 0, or -1 for unbounded concurrency");
+		this.concurrencyLimit = concurrencyLimit;
+	}
+
+	/**
+	 * Return the maximum number of tasks that may run concurrently.
+	 */
+	public int getConcurrencyLimit() {
+		return this.concurrencyLimit;
+	}
+
+	/**
+	 * Set the maximum number of tasks to hold while the
+	 * {@link #setConcurrencyLimit concurrency limit} is reached.
+	 * Further tasks are rejected with a {@link TaskRejectedException}.
+	 * <p>Default is {@code Integer.MAX_VALUE}. A capacity of 0 rejects
+	 * any task that cannot be started right away.
+	 */
+	public void setQueueCapacity(int queueCapacity) {
+		Assert.isTrue(queueCapacity >= 0, "Queue capacity must not be negative");
+		this.queueCapacity = queueCapacity;
+	}
+
+	/**
+	 * Return the maximum number of tasks to hold in the queue.
+	 */
+	public int getQueueCapacity() {
+		return this.queueCapacity;
+	}
+
+	/**
+	 * Set the time in seconds that idle platform threads are kept alive.
+	 * Not relevant when running on virtual threads.
+	 * <p>Default is 60.
+	 */
+	public void setKeepAliveSeconds(int keepAliveSeconds) {
+		Assert.isTrue(keepAliveSeconds >= 0, "Keep-alive seconds must not be negative");
+		this.keepAliveSeconds = keepAliveSeconds;
+	}
+
+	/**
+	 * Specify whether to run tasks on virtual threads if the JVM supports them.
+	 * <p>Default is {@code true}. Switch this off in order to always use platform
+	 * threads, for example when tasks rely on thread-local caches or pin their
+	 * carrier thread through long-running {@code synchronized} blocks.
+	 * <p>Note that the {@link #setThreadPriority priority}, {@link #setDaemon daemon}
+	 * and {@link #setThreadGroup thread group} settings only apply to platform threads.
+	 * @see #isVirtualThreads()
+	 */
+	public void setVirtualThreads(boolean virtualThreads) {
+		this.virtualThreads = virtualThreads;
+	}
+
+	/**
+	 * Return whether tasks run on virtual threads, i.e. whether virtual threads
+	 * have been requested and are supported by the current JVM.
+	 */
+	public boolean isVirtualThreads() {
+		return (this.virtualThreads && VirtualThreadFactoryDelegate.isSupported());
+	}
+
+	/**
+	 * Specify a custom {@link TaskDecorator} to be applied to any {@link Runnable}
+	 * about to be executed.
+	 * <p>The decorator is invoked on the thread that submits the task, so it can
+	 * capture context from that thread and restore it around the task's execution.
+	 * <p>Note that such a decorator is not necessarily being applied to the
+	 * user-supplied {@code Runnable}/{@code Callable} but rather to the actual
+	 * execution callback (which may be a wrapper around the user-supplied task).
+	 * @see SimpleAsyncTaskExecutor#setTaskDecorator
+	 */
+	public void setTaskDecorator(@Nullable TaskDecorator taskDecorator) {
+		this.taskDecorator = taskDecorator;
+	}
+
+
+	/**
+	 * Return the number of tasks that are currently running.
+	 */
+	public int getActiveCount() {
+		return this.activeCount.get();
+	}
+
+	/**
+	 * Return the number of tasks waiting in the queue.
+	 */
+	public int getQueueSize() {
+		return this.queueSize.get();
+	}
+
+	/**
+	 * Return the number of tasks that have completed, normally or exceptionally.
+	 */
+	public long getCompletedTaskCount() {
+		return this.completedTaskCount.get();
+	}
+
+	/**
+	 * Return the number of tasks that have been rejected due to a full queue.
+	 */
+	public long getRejectedTaskCount() {
+		return this.rejectedTaskCount.get();
+	}
+
+	/**
+	 * Return the average time between submission and start of a task.
+	 */
+	public Duration getAverageQueueTime() {
+		long started = this.completedTaskCount.get() + this.activeCount.get();
+		return (started > 0 ? Duration.ofNanos(this.totalQueueTime.get() / started) : Duration.ZERO);
+	}
+
+	/**
+	 * Return the longest time between submission and start of a task.
+	 */
+	public Duration getMaxQueueTime() {
+		return Duration.ofNanos(this.maxQueueTime.get());
+	}
+
+
+	@Override
+	public void execute(Runnable task) {
+		execute(task, TIMEOUT_INDEFINITE);
+	}
+
+	/**
+	 * Executes the given task, subject to the concurrency limit.
+	 * <p>Urgent tasks (with 'immediate' timeout) are started directly,
+	 * bypassing the concurrency limit and the queue.
+	 * @see #TIMEOUT_IMMEDIATE
+	 */
+	@Override
+	public void execute(Runnable task, long startTimeout) {
+		Assert.notNull(task, "Runnable must not be null");
+		if (!this.active) {
+			this.rejectedTaskCount.incrementAndGet();
+			throw new TaskRejectedException("Executor [" + this + "] has been shut down");
+		}
+		Runnable taskToUse = (this.taskDecorator != null ? this.taskDecorator.decorate(task) : task);
+		QueuedTask queuedTask = new QueuedTask(taskToUse);
+
+		if (startTimeout == TIMEOUT_IMMEDIATE) {
+			this.activeCount.incrementAndGet();
+			startWorker(queuedTask, false);
+			return;
+		}
+		if (tryAcquire()) {
+			startWorker(queuedTask, false);
+			return;
+		}
+		if (this.queueSize.incrementAndGet() > this.queueCapacity) {
+			this.queueSize.decrementAndGet();
+			this.rejectedTaskCount.incrementAndGet();
+			throw new TaskRejectedException("Executor [" + this + "] did not accept task: " + task +
+					" (concurrency limit of " + this.concurrencyLimit + " reached and queue full)");
+		}
+		this.queue.offer(queuedTask);
+		startQueuedTasks();
+	}
+
+	@Override
+	public Future<?> submit(Runnable task) {
+		FutureTask<Object> future = new FutureTask<>(task, null);
+		execute(future, TIMEOUT_INDEFINITE);
+		return future;
+	}
+
+	@Override
+	public <T> Future<T> submit(Callable<T> task) {
+		FutureTask<T> future = new FutureTask<>(task);
+		execute(future, TIMEOUT_INDEFINITE);
+		return future;
+	}
+
+	@Override
+	public ListenableFuture<?> submitListenable(Runnable task) {
+		ListenableFutureTask<Object> future = new ListenableFutureTask<>(task, null);
+		execute(future, TIMEOUT_INDEFINITE);
+		return future;
+	}
+
+	@Override
+	public <T> ListenableFuture<T> submitListenable(Callable<T> task) {
+		ListenableFutureTask<T> future = new ListenableFutureTask<>(task);
+		execute(future, TIMEOUT_INDEFINITE);
+		return future;
+	}
+
+	/**
+	 * Stop accepting new tasks. Tasks that are running or waiting in the queue
+	 * are still executed, after which idle platform threads are released.
+	 */
+	public void shutdown() {
+		this.active = false;
+		ThreadPoolExecutor threadPool = this.platformThreadPool;
+		if (threadPool != null) {
+			threadPool.shutdown();
+		}
+	}
+
+	/**
+	 * Delegates to {@link #shutdown()}.
+	 */
+	@Override
+	public void close() {
+		shutdown();
+	}
+
+	/**
+	 * Return whether this executor still accepts tasks.
+	 */
+	public boolean isActive() {
+		return this.active;
+	}
+
+
+	private boolean tryAcquire() {
+		if (this.concurrencyLimit == UNBOUNDED_CONCURRENCY) {
+			this.activeCount.incrementAndGet();
+			return true;
+		}
+		while (true) {
+			int count = this.activeCount.get();
+			if (count >= this.concurrencyLimit) {
+				return false;
+			}
+			if (this.activeCount.compareAndSet(count, count + 1)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Start a worker for each queued task, as long as the concurrency limit
+	 * permits. Called after a task was queued, and after a worker released
+	 * its permit, so that no queued task is left behind. If a worker cannot
+	 * be started, its task is put back at the head of the queue, to be picked
+	 * up by the next worker.
+	 */
+	private void startQueuedTasks() {
+		while (!this.queue.isEmpty() && tryAcquire()) {
+			QueuedTask queuedTask = pollQueue();
+			if (queuedTask == null) {
+				this.activeCount.decrementAndGet();
+				return;
+			}
+			try {
+				startWorker(queuedTask, true);
+			}
+			catch (TaskRejectedException ex) {
+				this.queue.offerFirst(queuedTask);
+				this.queueSize.incrementAndGet();
+				return;
+			}
+		}
+	}
+
+	@Nullable
+	private QueuedTask pollQueue() {
+		QueuedTask queuedTask = this.queue.poll();
+		if (queuedTask != null) {
+			this.queueSize.decrementAndGet();
+		}
+		return queuedTask;
+	}
+
+	private void startWorker(QueuedTask firstTask, boolean fromQueue) {
+		Worker worker = new Worker(firstTask);
+		if (!this.active && fromQueue) {
+			// Shut down: run remaining queued tasks on the releasing thread
+			worker.run();
+			return;
+		}
+		try {
+			ThreadFactory threadFactory = getVirtualThreadFactory();
+			if (threadFactory != null) {
+				threadFactory.newThread(worker).start();
+			}
+			else {
+				getPlatformThreadPool().execute(worker);
+			}
+		}
+		catch (RejectedExecutionException ex) {
+			this.activeCount.decrementAndGet();
+			if (!fromQueue) {
+				// Queued tasks are put back into the queue rather than rejected
+				this.rejectedTaskCount.incrementAndGet();
+			}
+			throw new TaskRejectedException("Executor [" + this + "] failed to start thread for task", ex);
+		}
+	}
+
+	@Nullable
+	private ThreadFactory getVirtualThreadFactory() {
+		if (!isVirtualThreads()) {
+			return null;
+		}
+		ThreadFactory threadFactory = this.virtualThreadFactory;
+		if (threadFactory == null) {
+			synchronized (this.initMonitor) {
+				threadFactory = this.virtualThreadFactory;
+				if (threadFactory == null) {
+					threadFactory = VirtualThreadFactoryDelegate.createThreadFactory(getThreadNamePrefix());
+					this.virtualThreadFactory = threadFactory;
+				}
+			}
+		}
+		return threadFactory;
+	}
+
+	private ThreadPoolExecutor getPlatformThreadPool() {
+		ThreadPoolExecutor threadPool = this.platformThreadPool;
+		if (threadPool == null) {
+			synchronized (this.initMonitor) {
+				threadPool = this.platformThreadPool;
+				if (threadPool == null) {
+					// Concurrency is bounded by the permits of this executor, the pool only reuses threads
+					threadPool = new ThreadPoolExecutor(0, Integer.MAX_VALUE, this.keepAliveSeconds,
+							TimeUnit.SECONDS, new SynchronousQueue<>(), this::createThread);
+					this.platformThreadPool = threadPool;
+				}
+			}
+		}
+		return threadPool;
+	}
+
+
+	/**
+	 * A decorated task along with its submission time.
+	 */
+	private final class QueuedTask {
+
+		private final Runnable task;
+
+		private final long submitTime = System.nanoTime();
+
+		QueuedTask(Runnable task) {
+			this.task = task;
+		}
+
+		void run() {
+			long queueTime = System.nanoTime() - this.submitTime;
+			totalQueueTime.addAndGet(queueTime);
+			maxQueueTime.accumulate(queueTime);
+			try {
+				this.task.run();
+			}
+			catch (Throwable ex) {
+				Thread thread = Thread.currentThread();
+				thread.getUncaughtExceptionHandler().uncaughtException(thread, ex);
+			}
+			finally {
+				completedTaskCount.incrementAndGet();
+			}
+		}
+	}
+
+
+	/**
+	 * Runs a first task and then keeps taking tasks from the queue on the same
+	 * thread, holding on to its permit until the queue is empty.
+	 */
+	private final class Worker implements Runnable {
+
+		@Nullable
+		private QueuedTask task;
+
+		Worker(QueuedTask firstTask) {
+			this.task = firstTask;
+		}
+
+		@Override
+		public void run() {
+			try {
+				while (this.task != null) {
+					this.task.run();
+					this.task = pollQueue();
+				}
+			}
+			finally {
+				activeCount.decrementAndGet();
+				startQueuedTasks();
+			}
+		}
+	}
+
+
+	/**
+	 * Reflective access to {@code Thread.ofVirtual()}, in order to remain
+	 * compatible with JDK 8 at compile time.
+	 */
+	private static final class VirtualThreadFactoryDelegate {
+
+		private static final boolean supported = (createThreadFactory("probe-") != null);
+
+		static boolean isSupported() {
+			return supported;
+		}
+
+		@Nullable
+		static ThreadFactory createThreadFactory(String threadNamePrefix) {
+			try {
+				Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+				Class<?> builderType = ClassUtils.forName("java.lang.Thread$Builder", Thread.class.getClassLoader());
+				builder = builderType.getMethod("name", String.class, long.class).invoke(builder, threadNamePrefix, 0L);
+				return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+			}
+			catch (Exception ex) {
+				// Not on JDK 21+, or virtual threads disabled as a preview feature
+				return null;
+			}
+		}
+	}
+
+}
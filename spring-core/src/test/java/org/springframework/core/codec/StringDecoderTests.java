@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2020 the original author or authors.
+ * Copyright 2002-2021 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -30,6 +30,7 @@ import reactor.test.StepVerifier;
 import org.springframework.core.ResolvableType;
 import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.core.io.buffer.DataBufferLimitException;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
 import org.springframework.core.testfixture.codec.AbstractDecoderTests;
 import org.springframework.util.MimeType;
 import org.springframework.util.MimeTypeUtils;
@@ -151,6 +152,23 @@ class StringDecoderTests extends AbstractDecoderTests<StringDecoder> {
 				.verify());
 	}
 
+	@Test
+	void decodeAcrossDefaultDataBuffers() {
+		byte[] bytes = "ab\u00fc\u00fc\ncdef\r\ng".getBytes(UTF_8);
+		List<DataBuffer> buffers = new ArrayList<>();
+		for (int i = 0; i < bytes.length; i += 3) {
+			byte[] chunk = Arrays.copyOfRange(bytes, i, Math.min(i + 3, bytes.length));
+			buffers.add(DefaultDataBufferFactory.sharedInstance.wrap(chunk));
+		}
+
+		testDecode(Flux.fromIterable(buffers), String.class, step -> step
+				.expectNext("ab\u00fc\u00fc")
+				.expectNext("cdef")
+				.expectNext("g")
+				.expectComplete()
+				.verify());
+	}
+
 	@Test
 	void maxInMemoryLimit() {
 		Flux<DataBuffer> input = Flux.just(
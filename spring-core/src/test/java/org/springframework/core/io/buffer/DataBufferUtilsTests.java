@@ -940,6 +940,93 @@ class DataBufferUtilsTests extends AbstractDataBufferAllocatingTests {
 		release(foo);
 	}
 
+	@ParameterizedDataBufferAllocatingTest
+	void matcherSingleByteInLongBuffer(String displayName, DataBufferFactory bufferFactory) {
+		super.bufferFactory = bufferFactory;
+
+		DataBuffer foo = stringBuffer("ÿþ abcdefghijklmnopqrstuvwxyz0123456789;abcdefgh;");
+
+		DataBufferUtils.Matcher matcher = DataBufferUtils.matcher(";".getBytes(StandardCharsets.UTF_8));
+		int endIndex = matcher.match(foo);
+		assertThat(endIndex).isEqualTo(41);
+		foo.readPosition(endIndex + 1);
+		endIndex = matcher.match(foo);
+		assertThat(endIndex).isEqualTo(50);
+		foo.readPosition(endIndex + 1);
+		assertThat(matcher.match(foo)).isEqualTo(-1);
+
+		release(foo);
+	}
+
+	@ParameterizedDataBufferAllocatingTest
+	void matcherLineDelimitersAcrossBuffers(String displayName, DataBufferFactory bufferFactory) {
+		super.bufferFactory = bufferFactory;
+
+		DataBuffer foo = stringBuffer("foo\r");
+		DataBuffer bar = stringBuffer("\nbar\n");
+
+		DataBufferUtils.Matcher matcher = DataBufferUtils.matcher(
+				"\n".getBytes(StandardCharsets.UTF_8), "\r\n".getBytes(StandardCharsets.UTF_8));
+		assertThat(matcher.match(foo)).isEqualTo(-1);
+		int endIndex = matcher.match(bar);
+		assertThat(endIndex).isEqualTo(0);
+		assertThat(matcher.delimiter()).isEqualTo("\r\n".getBytes(StandardCharsets.UTF_8));
+		bar.readPosition(endIndex + 1);
+		endIndex = matcher.match(bar);
+		assertThat(endIndex).isEqualTo(4);
+		assertThat(matcher.delimiter()).isEqualTo("\n".getBytes(StandardCharsets.UTF_8));
+
+		release(foo, bar);
+	}
+
+	@ParameterizedDataBufferAllocatingTest
+	void matcherDelimiterSelection(String displayName, DataBufferFactory bufferFactory) {
+		super.bufferFactory = bufferFactory;
+
+		// The earliest match wins, and does not overlap the previous match
+		DataBuffer foo = stringBuffer("a\n\nb\n");
+
+		byte[] newline = "\n".getBytes(StandardCharsets.UTF_8);
+		DataBufferUtils.Matcher matcher = DataBufferUtils.matcher(newline, "\n\n".getBytes(StandardCharsets.UTF_8));
+		int endIndex = matcher.match(foo);
+		assertThat(endIndex).isEqualTo(1);
+		assertThat(matcher.delimiter()).isEqualTo(newline);
+		foo.readPosition(endIndex + 1);
+		endIndex = matcher.match(foo);
+		assertThat(endIndex).isEqualTo(2);
+		assertThat(matcher.delimiter()).isEqualTo(newline);
+		foo.readPosition(endIndex + 1);
+		endIndex = matcher.match(foo);
+		assertThat(endIndex).isEqualTo(4);
+		assertThat(matcher.delimiter()).isEqualTo(newline);
+
+		release(foo);
+	}
+
+	@ParameterizedDataBufferAllocatingTest
+	void matcherBoundaryAcrossBuffers(String displayName, DataBufferFactory bufferFactory) {
+		super.bufferFactory = bufferFactory;
+
+		DataBuffer foo = stringBuffer("content\r\n--bou");
+		DataBuffer bar = stringBuffer("ndary-");
+		DataBuffer baz = stringBuffer("1234\r\n");
+
+		byte[] delimiter = "\r\n--boundary-1234".getBytes(StandardCharsets.UTF_8);
+		DataBufferUtils.Matcher matcher = DataBufferUtils.matcher(delimiter);
+		assertThat(matcher.match(foo)).isEqualTo(-1);
+		assertThat(matcher.match(bar)).isEqualTo(-1);
+		assertThat(matcher.match(baz)).isEqualTo(3);
+		assertThat(matcher.delimiter()).isEqualTo(delimiter);
+
+		// No match after reset, despite the same content
+		matcher.match(foo);
+		matcher.match(bar);
+		matcher.reset();
+		assertThat(matcher.match(baz)).isEqualTo(-1);
+
+		release(foo, bar, baz);
+	}
+
 
 	private static class ZeroDemandSubscriber extends BaseSubscriber<DataBuffer> {
 
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2020 the original author or authors.
+ * Copyright 2002-2021 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,6 +17,8 @@ package org.springframework.core.io.buffer;
 
 import java.nio.charset.StandardCharsets;
 
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.UnpooledByteBufAllocator;
 import org.junit.jupiter.api.Test;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -50,6 +52,34 @@ public class LimitedDataBufferListTests {
 		list.add(toDataBuffer("12345"));
 	}
 
+	@Test
+	void joinAndClear() {
+		LimitedDataBufferList list = new LimitedDataBufferList(5);
+		list.add(toDataBuffer("12"));
+		list.add(toDataBuffer("345"));
+
+		DataBuffer joined = list.joinAndClear();
+		assertThat(joined).isInstanceOf(DefaultDataBuffer.class);
+		assertThat(joined.toString(StandardCharsets.UTF_8)).isEqualTo("12345");
+		assertThat(list).isEmpty();
+
+		list.add(toDataBuffer("12345"));
+		assertThat(list.joinAndClear().toString(StandardCharsets.UTF_8)).isEqualTo("12345");
+	}
+
+	@Test
+	void joinAndClearWithNettyBuffers() {
+		NettyDataBufferFactory bufferFactory = new NettyDataBufferFactory(UnpooledByteBufAllocator.DEFAULT);
+		LimitedDataBufferList list = new LimitedDataBufferList(-1);
+		list.add(bufferFactory.wrap("12".getBytes(StandardCharsets.UTF_8)));
+		list.add(bufferFactory.wrap("345".getBytes(StandardCharsets.UTF_8)));
+
+		DataBuffer joined = list.joinAndClear();
+		assertThat(((NettyDataBuffer) joined).getNativeBuffer()).isInstanceOf(CompositeByteBuf.class);
+		assertThat(joined.toString(StandardCharsets.UTF_8)).isEqualTo("12345");
+		DataBufferUtils.release(joined);
+	}
+
 
 	private static DataBuffer toDataBuffer(String value) {
 		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
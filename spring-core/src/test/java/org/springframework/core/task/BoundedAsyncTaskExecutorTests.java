@@ -0,0 +1,145 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.core.task;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+/**
+ * Unit tests for {@link BoundedAsyncTaskExecutor}.
+ *
+ * @author Juergen Hoeller
+ */
+class BoundedAsyncTaskExecutorTests {
+
+	private final BoundedAsyncTaskExecutor executor = new BoundedAsyncTaskExecutor("bounded-");
+
+
+	@AfterEach
+	void shutdown() {
+		this.executor.shutdown();
+	}
+
+
+	@Test
+	void executesTask() throws Exception {
+		Future<String> future = this.executor.submit(() -> Thread.currentThread().getName());
+		assertThat(future.get(5, TimeUnit.SECONDS)).startsWith("bounded-");
+	}
+
+	@Test
+	void platformThreadsWhenVirtualThreadsDisabled() throws Exception {
+		this.executor.setVirtualThreads(false);
+		assertThat(this.executor.isVirtualThreads()).isFalse();
+		Future<Boolean> future = this.executor.submit(() -> Thread.currentThread().isDaemon());
+		assertThat(future.get(5, TimeUnit.SECONDS)).isFalse();
+	}
+
+	@Test
+	void queuesTasksBeyondConcurrencyLimit() throws Exception {
+		this.executor.setConcurrencyLimit(1);
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch done = new CountDownLatch(2);
+
+		this.executor.execute(() -> {
+			started.countDown();
+			await(release);
+			done.countDown();
+		});
+		assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+		this.executor.execute(done::countDown);
+
+		assertThat(this.executor.getActiveCount()).isEqualTo(1);
+		assertThat(this.executor.getQueueSize()).isEqualTo(1);
+
+		release.countDown();
+		assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+		assertThat(this.executor.getQueueSize()).isEqualTo(0);
+		assertThat(this.executor.getMaxQueueTime()).isPositive();
+	}
+
+	@Test
+	void rejectsTaskWhenQueueIsFull() throws Exception {
+		this.executor.setConcurrencyLimit(1);
+		this.executor.setQueueCapacity(0);
+		CountDownLatch release = new CountDownLatch(1);
+
+		this.executor.execute(() -> await(release));
+		assertThatExceptionOfType(TaskRejectedException.class).isThrownBy(() ->
+				this.executor.execute(() -> {}));
+		assertThat(this.executor.getRejectedTaskCount()).isEqualTo(1);
+		release.countDown();
+	}
+
+	@Test
+	void taskDecoratorAppliedOnSubmittingThread() throws Exception {
+		ThreadLocal<String> context = new ThreadLocal<>();
+		this.executor.setTaskDecorator(task -> {
+			String value = context.get();
+			return () -> {
+				context.set(value);
+				try {
+					task.run();
+				}
+				finally {
+					context.remove();
+				}
+			};
+		});
+		context.set("foo");
+		try {
+			Future<String> future = this.executor.submit(context::get);
+			assertThat(future.get(5, TimeUnit.SECONDS)).isEqualTo("foo");
+		}
+		finally {
+			context.remove();
+		}
+	}
+
+	@Test
+	void rejectsTaskAfterShutdown() {
+		this.executor.shutdown();
+		assertThat(this.executor.isActive()).isFalse();
+		assertThatExceptionOfType(TaskRejectedException.class).isThrownBy(() ->
+				this.executor.execute(() -> {}));
+	}
+
+	@Test
+	void invalidConcurrencyLimit() {
+		assertThatIllegalArgumentException().isThrownBy(() -> this.executor.setConcurrencyLimit(0));
+	}
+
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
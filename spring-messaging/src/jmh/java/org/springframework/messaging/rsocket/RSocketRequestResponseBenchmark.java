@@ -0,0 +1,121 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.messaging.rsocket;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+
+import io.rsocket.Closeable;
+import io.rsocket.core.RSocketServer;
+import io.rsocket.frame.decoder.PayloadDecoder;
+import io.rsocket.transport.local.LocalClientTransport;
+import io.rsocket.transport.local.LocalServerTransport;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import org.springframework.messaging.handler.CompositeMessageCondition;
+import org.springframework.messaging.handler.DestinationPatternsMessageCondition;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.rsocket.annotation.support.RSocketFrameTypeMessageCondition;
+import org.springframework.messaging.rsocket.annotation.support.RSocketMessageHandler;
+
+/**
+ * Benchmarks for request-response interactions with an
+ * {@link RSocketMessageHandler} over a local transport, with a number of
+ * pattern routes registered, to a route with a direct lookup match or to a
+ * pattern route.
+ *
+ * @author Rossen Stoyanchev
+ */
+@BenchmarkMode(Mode.Throughput)
+public class RSocketRequestResponseBenchmark {
+
+	@Benchmark
+	public String requestResponse(ServerState state) {
+		return state.requester.route(state.route).data("Hello").retrieveMono(String.class).block();
+	}
+
+
+	@State(Scope.Benchmark)
+	public static class ServerState {
+
+		@Param({"10", "100"})
+		public int routeCount;
+
+		@Param({"direct", "pattern"})
+		public String routeType;
+
+		public RSocketRequester requester;
+
+		public String route;
+
+		private Closeable server;
+
+		@Setup(Level.Trial)
+		public void setup() throws Exception {
+			RSocketStrategies strategies = RSocketStrategies.create();
+			EchoController controller = new EchoController();
+
+			RSocketMessageHandler messageHandler = new RSocketMessageHandler();
+			messageHandler.setRSocketStrategies(strategies);
+			messageHandler.setHandlers(Collections.singletonList(controller));
+			messageHandler.afterPropertiesSet();
+
+			Method method = EchoController.class.getMethod("echo", String.class);
+			for (int i = 0; i < this.routeCount; i++) {
+				String[] patterns = {"route" + i + ".{id}"};
+				messageHandler.registerHandlerMethod(controller, method, new CompositeMessageCondition(
+						RSocketFrameTypeMessageCondition.EMPTY_CONDITION,
+						new DestinationPatternsMessageCondition(patterns, strategies.routeMatcher())));
+			}
+
+			this.server = RSocketServer.create(messageHandler.responder())
+					.payloadDecoder(PayloadDecoder.ZERO_COPY)
+					.bind(LocalServerTransport.create("benchmark"))
+					.block();
+
+			this.requester = RSocketRequester.builder()
+					.rsocketStrategies(strategies)
+					.transport(LocalClientTransport.create("benchmark"));
+
+			this.route = (this.routeType.equals("direct") ? "echo" : "route" + (this.routeCount - 1) + ".42");
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() {
+			this.requester.rsocketClient().dispose();
+			this.server.dispose();
+		}
+	}
+
+
+	static class EchoController {
+
+		@MessageMapping("echo")
+		public String echo(String payload) {
+			return payload;
+		}
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2020 the original author or authors.
+ * Copyright 2002-2021 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -52,7 +52,10 @@ public class DefaultSubscriptionRegistryBenchmark {
 		@Param({"none", "patternSubscriptions", "selectorHeaders"})
 		String specialization;
 
-		public DefaultSubscriptionRegistry registry;
+		@Param({"default", "trie"})
+		String registryType;
+
+		public AbstractSubscriptionRegistry registry;
 
 		public String[] destinationIds;
 
@@ -67,9 +70,18 @@ public class DefaultSubscriptionRegistryBenchmark {
 			this.findMessage = MessageBuilder.createMessage("",  SimpMessageHeaderAccessor.create().getMessageHeaders());
 			this.uniqueIdGenerator = new AtomicInteger();
 
-			this.registry = new DefaultSubscriptionRegistry();
-			this.registry.setCacheLimit(this.cacheSizeLimit);
-			this.registry.setSelectorHeaderName("selectorHeaders".equals(this.specialization) ? "someSelector" : null);
+			String selectorHeaderName = ("selectorHeaders".equals(this.specialization) ? "someSelector" : null);
+			if ("trie".equals(this.registryType)) {
+				TrieSubscriptionRegistry registry = new TrieSubscriptionRegistry();
+				registry.setSelectorHeaderName(selectorHeaderName);
+				this.registry = registry;
+			}
+			else {
+				DefaultSubscriptionRegistry registry = new DefaultSubscriptionRegistry();
+				registry.setCacheLimit(this.cacheSizeLimit);
+				registry.setSelectorHeaderName(selectorHeaderName);
+				this.registry = registry;
+			}
 
 			this.destinationIds = IntStream.range(0, this.destinations)
 					.mapToObj(i -> "/some/destination/" + i)
@@ -161,6 +173,42 @@ public class DefaultSubscriptionRegistryBenchmark {
 		}
 	}
 
+	@State(Scope.Thread)
+	public static class ChurnRequests {
+		@Param({"sameDestination", "newDestination", "patternDestination"})
+		String churn;
+
+		public String session;
+
+		public String[] findDestinations;
+
+		public int counter;
+
+		@Setup(Level.Trial)
+		public void doSetup(ServerState serverState) {
+			int uniqueNumber = serverState.uniqueIdGenerator.incrementAndGet();
+			this.session = serverState.sessionIds[uniqueNumber % serverState.sessionIds.length];
+			// Resolve destinations both with and without subscribers
+			this.findDestinations = IntStream.range(0, 2 * serverState.destinations)
+					.mapToObj(i -> (i % 2 == 0 ? serverState.destinationIds[i / 2] : "/other/destination/" + i))
+					.toArray(String[]::new);
+		}
+
+		public String nextDestination(ServerState serverState) {
+			int index = this.counter % serverState.destinationIds.length;
+			switch (this.churn) {
+				case "sameDestination":
+					return serverState.destinationIds[index];
+				case "newDestination":
+					return "/some/destination/" + this.session + "/" + this.counter;
+				case "patternDestination":
+					return "/some/*/" + index;
+				default:
+					throw new IllegalStateException();
+			}
+		}
+	}
+
 	@Benchmark
 	public void registerUnregister(ServerState serverState, Requests request, Blackhole blackhole) {
 		serverState.registry.registerSubscription(request.subscribe);
@@ -169,6 +217,22 @@ public class DefaultSubscriptionRegistryBenchmark {
 		blackhole.consume(serverState.registry.findSubscriptionsInternal(request.findDestination, serverState.findMessage));
 	}
 
+	/**
+	 * Subscribe and unsubscribe while resolving other destinations, which for
+	 * the default registry invalidates and recomputes cached destinations.
+	 */
+	@Benchmark
+	public void churn(ServerState serverState, ChurnRequests request, Blackhole blackhole) {
+		int count = request.counter++;
+		String subscriptionId = "churn_" + count;
+		String destination = request.nextDestination(serverState);
+		serverState.registry.registerSubscription(subscribeMessage(request.session, subscriptionId, destination));
+		for (String findDestination : request.findDestinations) {
+			blackhole.consume(serverState.registry.findSubscriptionsInternal(findDestination, serverState.findMessage));
+		}
+		serverState.registry.unregisterSubscription(unsubscribeMessage(request.session, subscriptionId));
+	}
+
 	@Benchmark
 	public MultiValueMap<String, String> find(ServerState serverState, FindRequest request) {
 		return serverState.registry.findSubscriptionsInternal(request.destination, serverState.findMessage);
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.messaging.simp.stomp;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks for decoding inbound STOMP frames, such as SEND frames from
+ * clients or MESSAGE frames from a broker, with {@link StompDecoder}.
+ *
+ * @author Rossen Stoyanchev
+ */
+@BenchmarkMode(Mode.Throughput)
+public class StompDecoderBenchmark {
+
+	/**
+	 * Decode a buffer with a single frame.
+	 */
+	@Benchmark
+	public void decode(DecoderState state, Blackhole blackhole) {
+		blackhole.consume(state.decoder.decode(ByteBuffer.wrap(state.frame)));
+	}
+
+
+	@State(Scope.Benchmark)
+	public static class DecoderState {
+
+		@Param({"SEND", "MESSAGE"})
+		public String command;
+
+		@Param({"true", "false"})
+		public boolean contentLength;
+
+		@Param({"128"})
+		public int payloadSize;
+
+		public StompDecoder decoder = new StompDecoder();
+
+		public byte[] frame;
+
+		@Setup(Level.Trial)
+		public void setup() {
+			StringBuilder sb = new StringBuilder(this.command).append('\n');
+			sb.append("destination:/topic/prices.stock.AAPL\n");
+			sb.append("content-type:application/json;charset=UTF-8\n");
+			if ("MESSAGE".equals(this.command)) {
+				sb.append("subscription:sub-0\n");
+				sb.append("message-id:nmv1sfzn-42\n");
+			}
+			else {
+				sb.append("receipt:r-42\n");
+			}
+			if (this.contentLength) {
+				sb.append("content-length:").append(this.payloadSize).append('\n');
+			}
+			sb.append('\n');
+			char[] payload = new char[this.payloadSize];
+			Arrays.fill(payload, 'x');
+			sb.append(payload).append('\0');
+			this.frame = sb.toString().getBytes(StandardCharsets.UTF_8);
+		}
+	}
+
+}
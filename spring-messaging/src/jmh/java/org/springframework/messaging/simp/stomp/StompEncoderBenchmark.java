@@ -0,0 +1,127 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.messaging.simp.stomp;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
+
+/**
+ * Benchmarks for encoding a message broadcast to the subscribers of a
+ * destination into STOMP frames, the way the simple broker and
+ * {@code StompSubProtocolHandler} do, with and without a frame template.
+ *
+ * @author Rossen Stoyanchev
+ */
+@BenchmarkMode(Mode.Throughput)
+public class StompEncoderBenchmark {
+
+	private static final List<String> VARIABLE_HEADERS = Arrays.asList(
+			StompHeaderAccessor.STOMP_SUBSCRIPTION_HEADER, StompHeaderAccessor.STOMP_MESSAGE_ID_HEADER);
+
+
+	/**
+	 * Encode a frame for each subscriber in full.
+	 */
+	@Benchmark
+	public void encode(BroadcastState state, Blackhole blackhole) {
+		for (int i = 0; i < state.subscribers; i++) {
+			StompHeaderAccessor accessor = state.subscriberHeaders(i);
+			blackhole.consume(state.encoder.encode(accessor.getMessageHeaders(), state.payload));
+		}
+	}
+
+	/**
+	 * Encode a frame template for the first subscriber, and add only the
+	 * per-subscriber headers to it for each subscriber.
+	 */
+	@Benchmark
+	public void encodeWithTemplate(BroadcastState state, Blackhole blackhole) {
+		StompEncoder.FrameTemplate template = null;
+		for (int i = 0; i < state.subscribers; i++) {
+			StompHeaderAccessor accessor = state.subscriberHeaders(i);
+			if (template == null) {
+				template = state.encoder.createTemplate(accessor.getMessageHeaders(), state.payload, VARIABLE_HEADERS);
+			}
+			blackhole.consume(template.encode(accessor.getMessageHeaders(), state.payload));
+		}
+	}
+
+
+	@State(Scope.Benchmark)
+	public static class BroadcastState {
+
+		@Param({"1000"})
+		public int subscribers;
+
+		@Param({"128", "4096"})
+		public int payloadSize;
+
+		@Param({"2", "10"})
+		public int headerCount;
+
+		public final StompEncoder encoder = new StompEncoder();
+
+		public byte[] payload;
+
+		public Message<byte[]> message;
+
+		@Setup(Level.Trial)
+		public void setup() {
+			this.payload = new byte[this.payloadSize];
+			Arrays.fill(this.payload, (byte) 'a');
+			StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SEND);
+			accessor.setDestination("/topic/price.stock.NASDAQ.IBM");
+			accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+			for (int i = 2; i < this.headerCount; i++) {
+				accessor.setNativeHeader("header" + i, "value" + i);
+			}
+			this.message = MessageBuilder.createMessage(this.payload, accessor.getMessageHeaders());
+		}
+
+		/**
+		 * Create the headers of the frame for the given subscriber, the way
+		 * the simple broker and {@code StompSubProtocolHandler} do.
+		 */
+		public StompHeaderAccessor subscriberHeaders(int subscriber) {
+			SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+			accessor.setSessionId("session" + subscriber);
+			accessor.setSubscriptionId("sub-0");
+			accessor.copyHeadersIfAbsent(this.message.getHeaders());
+			Message<byte[]> message = MessageBuilder.createMessage(this.payload, accessor.getMessageHeaders());
+			StompHeaderAccessor stompAccessor = StompHeaderAccessor.wrap(message);
+			stompAccessor.updateStompCommandAsServerMessage();
+			return stompAccessor;
+		}
+	}
+
+}
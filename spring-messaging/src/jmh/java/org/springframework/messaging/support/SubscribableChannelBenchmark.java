@@ -0,0 +1,141 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.messaging.support;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.commons.logging.LogFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.broker.OrderedMessageChannelDecorator;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Benchmarks for sending messages for a number of sessions through a channel:
+ * an {@link ExecutorSubscribableChannel} without ordering, the same with an
+ * {@link OrderedMessageChannelDecorator} per session, and a
+ * {@link PartitionedSubscribableChannel} that orders messages per session.
+ *
+ * @author Rossen Stoyanchev
+ */
+@BenchmarkMode(Mode.Throughput)
+public class SubscribableChannelBenchmark {
+
+	private static final int MESSAGE_COUNT = 10_000;
+
+
+	/**
+	 * Send messages round-robin across sessions, and wait until all are handled.
+	 */
+	@Benchmark
+	@OperationsPerInvocation(MESSAGE_COUNT)
+	public void send(ChannelState state) {
+		long expected = state.handled.sum() + MESSAGE_COUNT;
+		for (int i = 0; i < MESSAGE_COUNT; i++) {
+			int session = i % state.sessions;
+			state.sessionChannels[session].send(state.createMessage(session, i));
+		}
+		while (state.handled.sum() < expected) {
+			Thread.yield();
+		}
+	}
+
+
+	@State(Scope.Benchmark)
+	public static class ChannelState {
+
+		@Param({"executor", "ordered", "partitioned"})
+		public String channelType;
+
+		@Param({"4"})
+		public int threads;
+
+		@Param({"100"})
+		public int sessions;
+
+		public final LongAdder handled = new LongAdder();
+
+		public MessageChannel[] sessionChannels;
+
+		private String[] sessionIds;
+
+		private ThreadPoolTaskExecutor executor;
+
+		private PartitionedSubscribableChannel partitionedChannel;
+
+		@Setup(Level.Trial)
+		public void setup() {
+			ExecutorSubscribableChannel channel;
+			if ("partitioned".equals(this.channelType)) {
+				this.partitionedChannel = new PartitionedSubscribableChannel(this.threads, 1024);
+				channel = this.partitionedChannel;
+			}
+			else {
+				this.executor = new ThreadPoolTaskExecutor();
+				this.executor.setCorePoolSize(this.threads);
+				this.executor.afterPropertiesSet();
+				channel = new ExecutorSubscribableChannel(this.executor);
+			}
+			channel.subscribe(message -> this.handled.increment());
+
+			this.sessionIds = new String[this.sessions];
+			this.sessionChannels = new MessageChannel[this.sessions];
+			for (int i = 0; i < this.sessions; i++) {
+				this.sessionIds[i] = "session" + i;
+				if ("ordered".equals(this.channelType)) {
+					this.sessionChannels[i] = new OrderedMessageChannelDecorator(
+							channel, LogFactory.getLog(SubscribableChannelBenchmark.class));
+				}
+				else {
+					this.sessionChannels[i] = channel;
+				}
+			}
+			OrderedMessageChannelDecorator.configureInterceptor(channel, "ordered".equals(this.channelType));
+		}
+
+		public Message<?> createMessage(int session, int payload) {
+			SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+			accessor.setSessionId(this.sessionIds[session]);
+			accessor.setLeaveMutable(true);
+			return MessageBuilder.createMessage(payload, accessor.getMessageHeaders());
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() {
+			if (this.executor != null) {
+				this.executor.shutdown();
+			}
+			if (this.partitionedChannel != null) {
+				this.partitionedChannel.destroy();
+			}
+		}
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2019 the original author or authors.
+ * Copyright 2002-2021 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -84,6 +84,8 @@ import org.springframework.validation.Validator;
 public class MessageMappingMessageHandler extends AbstractMethodMessageHandler<CompositeMessageCondition>
 		implements EmbeddedValueResolverAware {
 
+	private static final String PATH_PATTERN_ROUTE_MATCHER = "org.springframework.web.util.pattern.PathPatternRouteMatcher";
+
 	private final List<Decoder<?>> decoders = new ArrayList<>();
 
 	@Nullable
@@ -325,6 +327,74 @@ public class MessageMappingMessageHandler extends AbstractMethodMessageHandler<C
 		return result;
 	}
 
+	/**
+	 * Return the literal part of each destination pattern up to its first
+	 * wildcard or variable, if the {@link #setRouteMatcher RouteMatcher} is
+	 * known to only match destinations that start with it: a
+	 * {@link SimpleRouteMatcher} with an {@link AntPathMatcher}, or a
+	 * {@code PathPatternRouteMatcher}. A separator right before the wildcard
+	 * is not part of the prefix, since {@code "books.**"} also matches
+	 * {@code "books"}.
+	 * @since 5.3.11
+	 */
+	@Override
+	@Nullable
+	protected Set<String> getDestinationLookupPrefixes(CompositeMessageCondition mapping) {
+		RouteMatcher routeMatcher = obtainRouteMatcher();
+		if (routeMatcher instanceof SimpleRouteMatcher ?
+				((SimpleRouteMatcher) routeMatcher).getPathMatcher().getClass() != AntPathMatcher.class :
+				!routeMatcher.getClass().getName().equals(PATH_PATTERN_ROUTE_MATCHER)) {
+			return null;
+		}
+		Set<String> result = new LinkedHashSet<>();
+		for (String pattern : mapping.getCondition(DestinationPatternsMessageCondition.class).getPatterns()) {
+			String prefix = getLiteralPrefix(pattern);
+			if (prefix == null) {
+				return null;
+			}
+			result.add(prefix);
+		}
+		return result;
+	}
+
+	@Nullable
+	private static String getLiteralPrefix(String pattern) {
+		int index = 0;
+		while (index < pattern.length() && "*?{".indexOf(pattern.charAt(index)) == -1) {
+			index++;
+		}
+		// Separators are not known here: treat any other character as one
+		while (index > 0 && !Character.isLetterOrDigit(pattern.charAt(index - 1))) {
+			index--;
+		}
+		String prefix = pattern.substring(0, index);
+		return (index > 0 && !isNormalizedByMatcher(prefix) ? prefix : null);
+	}
+
+	/**
+	 * A destination with empty segments, e.g. {@code "a..b"}, or whitespace
+	 * may be matched by an {@link AntPathMatcher} to patterns that it does
+	 * not start with, since empty tokens are ignored, and tokens may also be
+	 * {@link AntPathMatcher#setTrimTokens trimmed}. Such destinations are
+	 * checked against all mappings.
+	 * @since 5.3.11
+	 */
+	@Override
+	protected boolean isDestinationLookupPrefixApplicable(String destination) {
+		return !isNormalizedByMatcher(destination);
+	}
+
+	private static boolean isNormalizedByMatcher(String value) {
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (Character.isWhitespace(c) ||
+					(i > 0 && c == value.charAt(i - 1) && !Character.isLetterOrDigit(c))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	@Override
 	protected RouteMatcher.Route getDestination(Message<?> message) {
 		return (RouteMatcher.Route) message.getHeaders()
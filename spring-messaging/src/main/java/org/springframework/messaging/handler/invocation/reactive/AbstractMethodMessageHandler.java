@@ -109,6 +109,11 @@ public abstract class AbstractMethodMessageHandler<T>
 
 	private final Map<String, List<T>> destinationLookup = new ConcurrentHashMap<>(48);
 
+	@Nullable
+	private volatile DestinationPrefixIndex<T> destinationPrefixIndex;
+
+	private final Object destinationPrefixIndexMonitor = new Object();
+
 
 	/**
 	 * Configure a predicate for selecting which Spring beans to check for the
@@ -396,6 +401,10 @@ public abstract class AbstractMethodMessageHandler<T>
 			List<T> values = this.destinationLookup.computeIfAbsent(pattern, p -> new CopyOnWriteArrayList<>());
 			values.add(mapping);
 		}
+
+		synchronized (this.destinationPrefixIndexMonitor) {
+			this.destinationPrefixIndex = null;
+		}
 	}
 
 	/**
@@ -440,6 +449,37 @@ public abstract class AbstractMethodMessageHandler<T>
 	 */
 	protected abstract Set<String> getDirectLookupMappings(T mapping);
 
+	/**
+	 * Return literal prefixes of the destinations of the given mapping, such
+	 * that the mapping can only match a destination that starts with one of
+	 * them, ignoring case. This is used to index mappings with destination
+	 * patterns, so that a destination without a direct lookup match is only
+	 * checked against mappings that can possibly match it.
+	 * <p>By default this method returns {@code null}, in which case the
+	 * mapping is checked for every destination.
+	 * @param mapping the mapping to get the prefixes for
+	 * @return the prefixes, or {@code null} or empty if the mapping may match
+	 * any destination
+	 * @since 5.3.11
+	 */
+	@Nullable
+	protected Set<String> getDestinationLookupPrefixes(T mapping) {
+		return null;
+	}
+
+	/**
+	 * Whether the given destination may be looked up by the
+	 * {@link #getDestinationLookupPrefixes(Object) prefixes} of mappings, or
+	 * else needs to be checked against all mappings, e.g. if the matcher
+	 * normalizes the destination before it is matched.
+	 * <p>By default this method returns {@code true}.
+	 * @param destination the destination to look up
+	 * @since 5.3.11
+	 */
+	protected boolean isDestinationLookupPrefixApplicable(String destination) {
+		return true;
+	}
+
 
 	@Override
 	public Mono<Void> handleMessage(Message<?> message) throws MessagingException {
@@ -472,9 +512,10 @@ public abstract class AbstractMethodMessageHandler<T>
 			addMatchesToCollection(mappingsByUrl, message, matches);
 		}
 		if (matches.isEmpty()) {
-			// No direct hits, go through all mappings
-			Set<T> allMappings = this.handlerMethods.keySet();
-			addMatchesToCollection(allMappings, message, matches);
+			// No direct hits, go through all mappings that may match
+			Collection<T> mappings = (destination != null && isDestinationLookupPrefixApplicable(destination.value()) ?
+					getDestinationPrefixIndex().getMappings(destination.value()) : this.handlerMethods.keySet());
+			addMatchesToCollection(mappings, message, matches);
 		}
 		if (matches.isEmpty()) {
 			handleNoMatch(destination, message);
@@ -499,6 +540,23 @@ public abstract class AbstractMethodMessageHandler<T>
 		return bestMatch;
 	}
 
+	private DestinationPrefixIndex<T> getDestinationPrefixIndex() {
+		DestinationPrefixIndex<T> index = this.destinationPrefixIndex;
+		if (index == null) {
+			synchronized (this.destinationPrefixIndexMonitor) {
+				index = this.destinationPrefixIndex;
+				if (index == null) {
+					index = new DestinationPrefixIndex<>();
+					for (T mapping : this.handlerMethods.keySet()) {
+						index.add(mapping, getDestinationLookupPrefixes(mapping));
+					}
+					this.destinationPrefixIndex = index;
+				}
+			}
+		}
+		return index;
+	}
+
 	/**
 	 * Extract the destination from the given message.
 	 * @see #getDirectLookupMappings(Object)
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.messaging.handler.invocation.reactive;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.springframework.lang.Nullable;
+import org.springframework.util.CollectionUtils;
+
+/**
+ * Index of handler mappings by the literal prefixes of their destinations,
+ * held in a character trie, to select the mappings that can possibly match
+ * a given destination. Prefixes are matched ignoring case.
+ *
+ * <p>Not thread-safe: an index is populated once, and then only read.
+ *
+ * @author Rossen Stoyanchev
+ * @since 5.3.11
+ * @param <T> the type of mappings
+ * @see AbstractMethodMessageHandler#getDestinationLookupPrefixes(Object)
+ */
+final class DestinationPrefixIndex<T> {
+
+	private final Node<T> root = new Node<>();
+
+	private final List<T> unindexedMappings = new ArrayList<>();
+
+
+	/**
+	 * Add a mapping with the given destination prefixes.
+	 * @param mapping the mapping to add
+	 * @param prefixes the prefixes, or {@code null} or empty for a mapping
+	 * that may match any destination
+	 */
+	void add(T mapping, @Nullable Set<String> prefixes) {
+		if (CollectionUtils.isEmpty(prefixes)) {
+			this.unindexedMappings.add(mapping);
+			return;
+		}
+		for (String prefix : prefixes) {
+			Node<T> node = this.root;
+			for (int i = 0; i < prefix.length(); i++) {
+				node = node.getOrAddChild(foldCase(prefix.charAt(i)));
+			}
+			node.mappings.add(mapping);
+		}
+	}
+
+	/**
+	 * Return the mappings with a prefix that the given destination starts
+	 * with, along with all mappings without prefixes.
+	 */
+	Collection<T> getMappings(String destination) {
+		Set<T> result = new LinkedHashSet<>(this.unindexedMappings);
+		Node<T> node = this.root;
+		result.addAll(node.mappings);
+		for (int i = 0; i < destination.length(); i++) {
+			node = node.getChild(foldCase(destination.charAt(i)));
+			if (node == null) {
+				break;
+			}
+			result.addAll(node.mappings);
+		}
+		return result;
+	}
+
+	private static char foldCase(char c) {
+		// Same as String#regionMatches with ignoreCase
+		return Character.toLowerCase(Character.toUpperCase(c));
+	}
+
+
+	private static final class Node<T> {
+
+		private char[] keys = new char[0];
+
+		@SuppressWarnings("unchecked")
+		private Node<T>[] children = (Node<T>[]) new Node<?>[0];
+
+		private final List<T> mappings = new ArrayList<>(1);
+
+		@Nullable
+		Node<T> getChild(char key) {
+			for (int i = 0; i < this.keys.length; i++) {
+				if (this.keys[i] == key) {
+					return this.children[i];
+				}
+			}
+			return null;
+		}
+
+		Node<T> getOrAddChild(char key) {
+			Node<T> child = getChild(key);
+			if (child == null) {
+				child = new Node<>();
+				int length = this.keys.length;
+				this.keys = Arrays.copyOf(this.keys, length + 1);
+				this.keys[length] = key;
+				this.children = Arrays.copyOf(this.children, length + 1);
+				this.children[length] = child;
+			}
+			return child;
+		}
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2020 the original author or authors.
+ * Copyright 2002-2021 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,6 +16,8 @@
 
 package org.springframework.messaging.rsocket.annotation.support;
 
+import java.nio.ByteBuffer;
+import java.util.Collections;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
@@ -24,6 +26,7 @@ import io.rsocket.ConnectionSetupPayload;
 import io.rsocket.Payload;
 import io.rsocket.RSocket;
 import io.rsocket.frame.FrameType;
+import io.rsocket.util.DefaultPayload;
 import org.reactivestreams.Publisher;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -44,6 +47,7 @@ import org.springframework.messaging.rsocket.RSocketStrategies;
 import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.messaging.support.MessageHeaderAccessor;
 import org.springframework.util.Assert;
+import org.springframework.util.ConcurrentLruCache;
 import org.springframework.util.MimeType;
 import org.springframework.util.RouteMatcher;
 
@@ -59,6 +63,15 @@ import org.springframework.util.RouteMatcher;
  */
 class MessagingRSocket implements RSocket {
 
+	/** Maximum number of distinct metadata values to cache per connection. */
+	private static final int METADATA_CACHE_LIMIT = 64;
+
+	private static final ByteBuffer EMPTY_DATA = ByteBuffer.allocate(0);
+
+	/** Maximum size of metadata to cache. */
+	private static final int METADATA_CACHE_MAX_BYTES = 512;
+
+
 	private final MimeType dataMimeType;
 
 	private final MimeType metadataMimeType;
@@ -73,6 +86,10 @@ class MessagingRSocket implements RSocket {
 
 	private final RSocketStrategies strategies;
 
+	/** Extracted metadata by metadata content, least recently used entries evicted first. */
+	private final ConcurrentLruCache<ByteBuffer, ExtractedMetadata> metadataCache =
+			new ConcurrentLruCache<>(METADATA_CACHE_LIMIT, this::extractCacheableMetadata);
+
 
 	MessagingRSocket(MimeType dataMimeType, MimeType metadataMimeType, MetadataExtractor metadataExtractor,
 			RSocketRequester requester, ReactiveMessageHandler messageHandler, RouteMatcher routeMatcher,
@@ -190,18 +207,9 @@ class MessagingRSocket implements RSocket {
 		MessageHeaderAccessor headers = new MessageHeaderAccessor();
 		headers.setLeaveMutable(true);
 
-		Map<String, Object> metadataValues = this.metadataExtractor.extract(payload, this.metadataMimeType);
-
-		metadataValues.putIfAbsent(MetadataExtractor.ROUTE_KEY, "");
-		for (Map.Entry<String, Object> entry : metadataValues.entrySet()) {
-			if (entry.getKey().equals(MetadataExtractor.ROUTE_KEY)) {
-				RouteMatcher.Route route = this.routeMatcher.parseRoute((String) entry.getValue());
-				headers.setHeader(DestinationPatternsMessageCondition.LOOKUP_DESTINATION_HEADER, route);
-			}
-			else {
-				headers.setHeader(entry.getKey(), entry.getValue());
-			}
-		}
+		ExtractedMetadata metadata = extractMetadata(payload);
+		headers.setHeader(DestinationPatternsMessageCondition.LOOKUP_DESTINATION_HEADER, metadata.route);
+		metadata.values.forEach(headers::setHeader);
 
 		headers.setContentType(this.dataMimeType);
 		headers.setHeader(RSocketFrameTypeMessageCondition.FRAME_TYPE_HEADER, frameType);
@@ -215,4 +223,58 @@ class MessagingRSocket implements RSocket {
 		return headers.getMessageHeaders();
 	}
 
+	/**
+	 * Extract the metadata of the given payload, and parse the route. Requests
+	 * on a connection typically repeat the same metadata, so the result is
+	 * cached by metadata content if all extracted values are Strings.
+	 */
+	private ExtractedMetadata extractMetadata(Payload payload) {
+		ByteBuffer content = payload.getMetadata();
+		if (content.remaining() <= METADATA_CACHE_MAX_BYTES) {
+			ByteBuffer key = ByteBuffer.allocate(content.remaining());
+			key.put(content.duplicate());
+			key.flip();
+			ExtractedMetadata metadata = this.metadataCache.get(key);
+			if (metadata.cacheable) {
+				return metadata;
+			}
+		}
+		return doExtractMetadata(payload);
+	}
+
+	private ExtractedMetadata extractCacheableMetadata(ByteBuffer content) {
+		ExtractedMetadata metadata = doExtractMetadata(DefaultPayload.create(EMPTY_DATA, content.duplicate()));
+		if (metadata.values.values().stream().allMatch(value -> value instanceof String)) {
+			return metadata;
+		}
+		// Remember not to share decoded values, and extract them per request
+		return new ExtractedMetadata(metadata.route, Collections.emptyMap(), false);
+	}
+
+	private ExtractedMetadata doExtractMetadata(Payload payload) {
+		Map<String, Object> values = this.metadataExtractor.extract(payload, this.metadataMimeType);
+		Object routeValue = values.remove(MetadataExtractor.ROUTE_KEY);
+		RouteMatcher.Route route = this.routeMatcher.parseRoute(routeValue != null ? (String) routeValue : "");
+		return new ExtractedMetadata(route, values, true);
+	}
+
+
+	/**
+	 * Metadata values extracted from a payload, with the route parsed.
+	 */
+	private static final class ExtractedMetadata {
+
+		final RouteMatcher.Route route;
+
+		final Map<String, Object> values;
+
+		final boolean cacheable;
+
+		ExtractedMetadata(RouteMatcher.Route route, Map<String, Object> values, boolean cacheable) {
+			this.route = route;
+			this.values = values;
+			this.cacheable = cacheable;
+		}
+	}
+
 }
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.messaging.simp.broker;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import org.springframework.lang.Nullable;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.util.Assert;
+
+/**
+ * Content shared by the messages that a broker sends to each subscriber of a
+ * destination, for a single message published to that destination.
+ *
+ * <p>The broker adds it as a header to each message sent to a subscriber.
+ * Protocol handlers can then use it to encode the parts of the message that
+ * are the same for all subscribers only once, for example into a frame
+ * template to which only per-subscriber headers are added.
+ *
+ * @author Rossen Stoyanchev
+ * @since 5.3.11
+ * @see SimpleBrokerMessageHandler
+ */
+public final class BroadcastContent {
+
+	private static final String BROADCAST_CONTENT_HEADER = "simpBroadcastContent";
+
+
+	private final Message<?> message;
+
+	private final Map<Object, Object> encodedContent = new ConcurrentHashMap<>(2);
+
+
+	/**
+	 * Create an instance for the given message.
+	 * @param message the message published to a destination
+	 */
+	public BroadcastContent(Message<?> message) {
+		Assert.notNull(message, "Message must not be null");
+		this.message = message;
+	}
+
+
+	/**
+	 * Return the message published to the destination.
+	 */
+	public Message<?> getMessage() {
+		return this.message;
+	}
+
+	/**
+	 * Return the encoded content for the given key, e.g. the encoder used by a
+	 * protocol handler, creating it with the given supplier for the first
+	 * subscriber.
+	 * @param key the key for the encoded content
+	 * @param supplier supplier for the encoded content, invoked at most once
+	 * for each key
+	 * @return the encoded content
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T getEncodedContent(Object key, Supplier<T> supplier) {
+		return (T) this.encodedContent.computeIfAbsent(key, k -> supplier.get());
+	}
+
+	/**
+	 * Add this content as a header of a message to send to a subscriber.
+	 * @param accessor the accessor for the headers of the message
+	 */
+	public void addHeader(SimpMessageHeaderAccessor accessor) {
+		accessor.setHeader(BROADCAST_CONTENT_HEADER, this);
+	}
+
+	@Override
+	public String toString() {
+		return "BroadcastContent[id=" + this.message.getHeaders().getId() + "]";
+	}
+
+
+	/**
+	 * Return the broadcast content of a message sent to a subscriber, if any.
+	 * @param message the message sent to a subscriber
+	 */
+	@Nullable
+	public static BroadcastContent getBroadcastContent(Message<?> message) {
+		return (BroadcastContent) message.getHeaders().get(BROADCAST_CONTENT_HEADER);
+	}
+
+}
@@ -0,0 +1,544 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.messaging.simp.broker;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.springframework.expression.Expression;
+import org.springframework.expression.ExpressionParser;
+import org.springframework.expression.spel.SpelEvaluationException;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.lang.Nullable;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.util.Assert;
+import org.springframework.util.CollectionUtils;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.util.StringUtils;
+
+/**
+ * Implementation of {@link SubscriptionRegistry} that indexes subscriptions
+ * in a trie of destination segments, as an alternative to
+ * {@link DefaultSubscriptionRegistry} for a large number of subscriptions
+ * with frequent changes.
+ *
+ * <p>Subscription destinations are split into segments by the configured
+ * {@link #setPathSeparator path separator}. Literal segments are looked up
+ * by key, while segments with wildcards or URI template variables are
+ * matched one segment at a time, with "**" matching zero or more segments.
+ * Resolving a destination therefore only depends on the number of its
+ * segments and on the wildcard patterns along its path, rather than on the
+ * total number of subscriptions. Matching follows the rules of
+ * {@link org.springframework.util.AntPathMatcher AntPathMatcher} with the
+ * same path separator, other than for unusual combinations of trailing
+ * separators.
+ *
+ * <p>Each trie node holds an immutable snapshot of its own subscriptions,
+ * replaced when a subscription is added or removed. There is no cache of
+ * resolved destinations to invalidate, and a destination matched by a
+ * single node is resolved without copying.
+ *
+ * <p>Like {@link DefaultSubscriptionRegistry}, this class supports a
+ * {@link #setSelectorHeaderName selector} header on subscription messages.
+ *
+ * @author Rossen Stoyanchev
+ * @since 5.3.11
+ * @see SimpleBrokerMessageHandler#setSubscriptionRegistry
+ */
+public class TrieSubscriptionRegistry extends AbstractSubscriptionRegistry {
+
+	private static final MultiValueMap<String, String> EMPTY_MAP =
+			CollectionUtils.unmodifiableMultiValueMap(new LinkedMultiValueMap<>());
+
+	private static final Pattern GLOB_PATTERN = Pattern.compile("\\?|\\*|\\{((?:\\{[^/]+?\\}|[^/{}]|\\\\[{}])+?)\\}");
+
+
+	private String pathSeparator = "/";
+
+	@Nullable
+	private String selectorHeaderName = "selector";
+
+	private volatile boolean selectorHeaderInUse;
+
+	private final ExpressionParser expressionParser = new SpelExpressionParser();
+
+	// Root nodes for destinations with and without a leading separator
+	private final Node absoluteRoot = new Node(null, "", null);
+
+	private final Node relativeRoot = new Node(null, "", null);
+
+	// sessionId -> (subscriptionId -> Subscription), modified under the lock
+	private final ConcurrentMap<String, Map<String, Subscription>> sessions = new ConcurrentHashMap<>();
+
+
+	/**
+	 * Set the separator between destination segments.
+	 * <p>Default is "/". Set it to "." for destinations such as
+	 * "/topic/price.stock.*", consistent with an
+	 * {@link org.springframework.util.AntPathMatcher AntPathMatcher}
+	 * created with the same separator.
+	 * @param pathSeparator the separator to use
+	 */
+	public void setPathSeparator(String pathSeparator) {
+		Assert.hasLength(pathSeparator, "'pathSeparator' must not be empty");
+		synchronized (this.sessions) {
+			Assert.state(this.sessions.isEmpty(), "Cannot change the path separator once subscriptions are registered");
+			this.pathSeparator = pathSeparator;
+		}
+	}
+
+	/**
+	 * Return the configured separator between destination segments.
+	 */
+	public String getPathSeparator() {
+		return this.pathSeparator;
+	}
+
+	/**
+	 * Configure the name of a header that a subscription message can have for
+	 * the purpose of filtering messages matched to the subscription. The header
+	 * value is expected to be a Spring EL boolean expression to be applied to
+	 * the headers of messages matched to the subscription.
+	 * <p>By default this is set to "selector". You can set it to a different
+	 * name, or to {@code null} to turn off support for a selector header.
+	 * @param selectorHeaderName the name to use for a selector header
+	 * @see DefaultSubscriptionRegistry#setSelectorHeaderName
+	 */
+	public void setSelectorHeaderName(@Nullable String selectorHeaderName) {
+		this.selectorHeaderName = (StringUtils.hasText(selectorHeaderName) ? selectorHeaderName : null);
+	}
+
+	/**
+	 * Return the name for the selector header name.
+	 */
+	@Nullable
+	public String getSelectorHeaderName() {
+		return this.selectorHeaderName;
+	}
+
+
+	@Override
+	protected void addSubscriptionInternal(
+			String sessionId, String subscriptionId, String destination, Message<?> message) {
+
+		Expression selector = getSelectorExpression(message.getHeaders());
+		synchronized (this.sessions) {
+			Map<String, Subscription> subscriptions =
+					this.sessions.computeIfAbsent(sessionId, _sessionId -> new ConcurrentHashMap<>(4));
+			if (subscriptions.containsKey(subscriptionId)) {
+				return;
+			}
+			Node node = getRoot(destination);
+			for (String segment : tokenize(destination)) {
+				node = node.getOrAddChild(segment);
+			}
+			node.addSubscription(sessionId, subscriptionId);
+			subscriptions.put(subscriptionId, new Subscription(node, selector));
+		}
+	}
+
+	@Nullable
+	private Expression getSelectorExpression(MessageHeaders headers) {
+		String selectorHeaderName = getSelectorHeaderName();
+		if (selectorHeaderName == null) {
+			return null;
+		}
+		String selector = SimpMessageHeaderAccessor.getFirstNativeHeader(selectorHeaderName, headers);
+		if (selector == null) {
+			return null;
+		}
+		Expression expression = null;
+		try {
+			expression = this.expressionParser.parseExpression(selector);
+			this.selectorHeaderInUse = true;
+			if (logger.isTraceEnabled()) {
+				logger.trace("Subscription selector: [" + selector + "]");
+			}
+		}
+		catch (Throwable ex) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Failed to parse selector: " + selector, ex);
+			}
+		}
+		return expression;
+	}
+
+	@Override
+	protected void removeSubscriptionInternal(String sessionId, String subscriptionId, Message<?> message) {
+		synchronized (this.sessions) {
+			Map<String, Subscription> subscriptions = this.sessions.get(sessionId);
+			if (subscriptions != null) {
+				Subscription subscription = subscriptions.remove(subscriptionId);
+				if (subscription != null) {
+					subscription.getNode().removeSubscription(sessionId, subscriptionId);
+				}
+				if (subscriptions.isEmpty()) {
+					this.sessions.remove(sessionId);
+				}
+			}
+		}
+	}
+
+	@Override
+	public void unregisterAllSubscriptions(String sessionId) {
+		synchronized (this.sessions) {
+			Map<String, Subscription> subscriptions = this.sessions.remove(sessionId);
+			if (subscriptions != null) {
+				subscriptions.forEach((subscriptionId, subscription) ->
+						subscription.getNode().removeSubscription(sessionId, subscriptionId));
+			}
+		}
+	}
+
+	@Override
+	protected MultiValueMap<String, String> findSubscriptionsInternal(String destination, Message<?> message) {
+		List<Node> nodes = new ArrayList<>(2);
+		collectMatchingNodes(getRoot(destination), tokenize(destination), 0, false, nodes);
+		if (nodes.isEmpty()) {
+			return EMPTY_MAP;
+		}
+		MultiValueMap<String, String> allMatches;
+		if (nodes.size() == 1) {
+			allMatches = nodes.get(0).getSubscriptions();
+		}
+		else {
+			allMatches = new LinkedMultiValueMap<>();
+			for (Node node : nodes) {
+				node.getSubscriptions().forEach(allMatches::addAll);
+			}
+		}
+		if (!this.selectorHeaderInUse) {
+			return allMatches;
+		}
+		MultiValueMap<String, String> result = new LinkedMultiValueMap<>(allMatches.size());
+		allMatches.forEach((sessionId, subscriptionIds) -> {
+			Map<String, Subscription> subscriptions = this.sessions.get(sessionId);
+			if (subscriptions != null) {
+				for (String subscriptionId : subscriptionIds) {
+					Subscription subscription = subscriptions.get(subscriptionId);
+					if (subscription != null && evaluateExpression(subscription.getSelector(), message)) {
+						result.add(sessionId, subscriptionId);
+					}
+				}
+			}
+		});
+		return result;
+	}
+
+	private void collectMatchingNodes(
+			Node node, String[] segments, int index, boolean afterMultiSegment, List<Node> result) {
+
+		if (index == segments.length) {
+			addMatchingNode(node, result);
+			if (afterMultiSegment) {
+				// Like AntPathMatcher, ignore a trailing separator in the pattern after "**"
+				Node trailingChild = node.getLiteralChild("");
+				if (trailingChild != null) {
+					addMatchingNode(trailingChild, result);
+				}
+			}
+			Node multiSegmentChild = node.getMultiSegmentChild();
+			if (multiSegmentChild != null) {
+				collectMatchingNodes(multiSegmentChild, segments, index, true, result);
+			}
+			return;
+		}
+		String segment = segments[index];
+		if (afterMultiSegment && segment.isEmpty()) {
+			// Like AntPathMatcher, ignore a trailing separator in the destination after "**"
+			collectMatchingNodes(node, segments, index + 1, true, result);
+		}
+		Node child = node.getLiteralChild(segment);
+		if (child != null) {
+			collectMatchingNodes(child, segments, index + 1, afterMultiSegment, result);
+		}
+		for (Node patternChild : node.getPatternChildren()) {
+			if (patternChild.matches(segment)) {
+				collectMatchingNodes(patternChild, segments, index + 1, afterMultiSegment, result);
+			}
+		}
+		Node multiSegmentChild = node.getMultiSegmentChild();
+		if (multiSegmentChild != null) {
+			for (int i = index; i <= segments.length; i++) {
+				collectMatchingNodes(multiSegmentChild, segments, i, true, result);
+			}
+		}
+	}
+
+	private static void addMatchingNode(Node node, List<Node> result) {
+		if (node.hasSubscriptions() && !result.contains(node)) {
+			result.add(node);
+		}
+	}
+
+	private boolean evaluateExpression(@Nullable Expression expression, Message<?> message) {
+		if (expression == null) {
+			return true;
+		}
+		try {
+			Boolean result = expression.getValue(DefaultSubscriptionRegistry.messageEvalContext, message, Boolean.class);
+			if (Boolean.TRUE.equals(result)) {
+				return true;
+			}
+		}
+		catch (SpelEvaluationException ex) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Failed to evaluate selector: " + ex.getMessage());
+			}
+		}
+		catch (Throwable ex) {
+			logger.debug("Failed to evaluate selector", ex);
+		}
+		return false;
+	}
+
+	private Node getRoot(String destination) {
+		return (destination.startsWith(this.pathSeparator) ? this.absoluteRoot : this.relativeRoot);
+	}
+
+	/**
+	 * Split the given destination into segments, ignoring empty segments as
+	 * {@code AntPathMatcher} does, but with an empty last segment when the
+	 * destination ends with the separator, since that must match as well.
+	 */
+	private String[] tokenize(String destination) {
+		String separator = this.pathSeparator;
+		List<String> segments = new ArrayList<>(8);
+		int start = 0;
+		int end;
+		while ((end = destination.indexOf(separator, start)) != -1) {
+			if (end > start) {
+				segments.add(destination.substring(start, end));
+			}
+			start = end + separator.length();
+		}
+		if (start < destination.length()) {
+			segments.add(destination.substring(start));
+		}
+		else if (start > 0) {
+			segments.add("");
+		}
+		return StringUtils.toStringArray(segments);
+	}
+
+	private static boolean isPattern(String segment) {
+		if (segment.indexOf('*') != -1 || segment.indexOf('?') != -1) {
+			return true;
+		}
+		int openIndex = segment.indexOf('{');
+		return (openIndex != -1 && segment.indexOf('}', openIndex) != -1);
+	}
+
+	/**
+	 * Compile a segment with wildcards or URI template variables to a regex,
+	 * as {@code AntPathMatcher} does for a single segment.
+	 */
+	private static Pattern compileSegmentPattern(String segment) {
+		StringBuilder regex = new StringBuilder();
+		Matcher matcher = GLOB_PATTERN.matcher(segment);
+		int end = 0;
+		while (matcher.find()) {
+			regex.append(quote(segment, end, matcher.start()));
+			String match = matcher.group();
+			if ("?".equals(match)) {
+				regex.append('.');
+			}
+			else if ("*".equals(match)) {
+				regex.append(".*");
+			}
+			else {
+				int colonIndex = match.indexOf(':');
+				regex.append(colonIndex == -1 ? "((?s).*)" : "(" + match.substring(colonIndex + 1, match.length() - 1) + ")");
+			}
+			end = matcher.end();
+		}
+		regex.append(quote(segment, end, segment.length()));
+		return Pattern.compile(regex.toString());
+	}
+
+	private static String quote(String s, int start, int end) {
+		return (start == end ? "" : Pattern.quote(s.substring(start, end)));
+	}
+
+
+	/**
+	 * A node in the trie, for one segment of subscription destinations.
+	 * Child nodes are added and removed under the registry lock, while
+	 * matching reads them without locking.
+	 */
+	private static final class Node {
+
+		@Nullable
+		private final Node parent;
+
+		private final String segment;
+
+		// Null for literal segments and for "*", which matches any segment
+		@Nullable
+		private final Pattern pattern;
+
+		private final Map<String, Node> literalChildren = new ConcurrentHashMap<>(4);
+
+		private final Map<String, Node> patternChildren = new ConcurrentHashMap<>(4);
+
+		@Nullable
+		private volatile Node multiSegmentChild;
+
+		// sessionId -> subscriptionId's, replaced on every change
+		private volatile LinkedMultiValueMap<String, String> subscriptions = new LinkedMultiValueMap<>(1);
+
+		Node(@Nullable Node parent, String segment, @Nullable Pattern pattern) {
+			this.parent = parent;
+			this.segment = segment;
+			this.pattern = pattern;
+		}
+
+		@Nullable
+		public Node getLiteralChild(String segment) {
+			return this.literalChildren.get(segment);
+		}
+
+		public Iterable<Node> getPatternChildren() {
+			return (this.patternChildren.isEmpty() ? Collections.emptyList() : this.patternChildren.values());
+		}
+
+		@Nullable
+		public Node getMultiSegmentChild() {
+			return this.multiSegmentChild;
+		}
+
+		public boolean matches(String segment) {
+			if (this.pattern == null) {
+				return true;
+			}
+			// Of the segment patterns, only "*" matches a trailing separator
+			return (!segment.isEmpty() && this.pattern.matcher(segment).matches());
+		}
+
+		public boolean hasSubscriptions() {
+			return !this.subscriptions.isEmpty();
+		}
+
+		public LinkedMultiValueMap<String, String> getSubscriptions() {
+			return this.subscriptions;
+		}
+
+		public Node getOrAddChild(String segment) {
+			if ("**".equals(segment)) {
+				Node child = this.multiSegmentChild;
+				if (child == null) {
+					child = new Node(this, segment, null);
+					this.multiSegmentChild = child;
+				}
+				return child;
+			}
+			else if (isPattern(segment)) {
+				return this.patternChildren.computeIfAbsent(segment, _segment ->
+						new Node(this, segment, ("*".equals(segment) ? null : compileSegmentPattern(segment))));
+			}
+			else {
+				return this.literalChildren.computeIfAbsent(segment, _segment -> new Node(this, segment, null));
+			}
+		}
+
+		public void addSubscription(String sessionId, String subscriptionId) {
+			LinkedMultiValueMap<String, String> subscriptions = this.subscriptions.clone();
+			subscriptions.compute(sessionId, (_sessionId, subscriptionIds) -> {
+				if (subscriptionIds == null) {
+					return Collections.singletonList(subscriptionId);
+				}
+				List<String> result = new ArrayList<>(subscriptionIds.size() + 1);
+				result.addAll(subscriptionIds);
+				result.add(subscriptionId);
+				return result;
+			});
+			this.subscriptions = subscriptions;
+		}
+
+		public void removeSubscription(String sessionId, String subscriptionId) {
+			LinkedMultiValueMap<String, String> subscriptions = this.subscriptions.clone();
+			subscriptions.computeIfPresent(sessionId, (_sessionId, subscriptionIds) -> {
+				List<String> result = new ArrayList<>(subscriptionIds);
+				result.remove(subscriptionId);
+				return (result.isEmpty() ? null : result);
+			});
+			this.subscriptions = subscriptions;
+			removeIfUnused();
+		}
+
+		private void removeIfUnused() {
+			Node node = this;
+			while (node.parent != null && node.isUnused()) {
+				node.parent.removeChild(node);
+				node = node.parent;
+			}
+		}
+
+		private boolean isUnused() {
+			return (this.subscriptions.isEmpty() && this.literalChildren.isEmpty() &&
+					this.patternChildren.isEmpty() && this.multiSegmentChild == null);
+		}
+
+		private void removeChild(Node child) {
+			if (child == this.multiSegmentChild) {
+				this.multiSegmentChild = null;
+			}
+			else if (child.pattern != null || "*".equals(child.segment)) {
+				this.patternChildren.remove(child.segment);
+			}
+			else {
+				this.literalChildren.remove(child.segment);
+			}
+		}
+	}
+
+
+	/**
+	 * A subscription of a session, with the trie node it is held in.
+	 */
+	private static final class Subscription {
+
+		private final Node node;
+
+		@Nullable
+		private final Expression selector;
+
+		Subscription(Node node, @Nullable Expression selector) {
+			this.node = node;
+			this.selector = selector;
+		}
+
+		public Node getNode() {
+			return this.node;
+		}
+
+		@Nullable
+		public Expression getSelector() {
+			return this.selector;
+		}
+	}
+
+}
@@ -59,6 +59,8 @@ public class StompBrokerRelayRegistration extends AbstractBrokerRegistration {
 	@Nullable
 	private TaskScheduler taskScheduler;
 
+	private int multiplexedConnectionCount;
+
 	private boolean autoStartup = true;
 
 	@Nullable
@@ -211,6 +213,18 @@ public class StompBrokerRelayRegistration extends AbstractBrokerRegistration {
 		return this;
 	}
 
+	/**
+	 * Configure a number of TCP connections to the broker to be shared by all
+	 * client sessions, instead of one TCP connection per client session.
+	 * <p>By default this is set to 0, i.e. not shared.
+	 * @since 5.3.11
+	 * @see StompBrokerRelayMessageHandler#setMultiplexedConnectionCount(int)
+	 */
+	public StompBrokerRelayRegistration setMultiplexedConnectionCount(int connectionCount) {
+		this.multiplexedConnectionCount = connectionCount;
+		return this;
+	}
+
 	/**
 	 * Configure whether the {@link StompBrokerRelayMessageHandler} should start
 	 * automatically when the Spring ApplicationContext is refreshed.
@@ -290,6 +304,7 @@ public class StompBrokerRelayRegistration extends AbstractBrokerRegistration {
 		if (this.taskScheduler != null) {
 			handler.setTaskScheduler(this.taskScheduler);
 		}
+		handler.setMultiplexedConnectionCount(this.multiplexedConnectionCount);
 
 		handler.setAutoStartup(this.autoStartup);
 
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2020 the original author or authors.
+ * Copyright 2002-2021 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,13 +17,20 @@
 package org.springframework.messaging.simp.stomp;
 
 import java.security.Principal;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.springframework.lang.Nullable;
 import org.springframework.messaging.Message;
@@ -75,6 +82,9 @@ import org.springframework.util.concurrent.ListenableFutureTask;
  * <li>{@link #setSystemHeartbeatReceiveInterval}</li>
  * </ul>
  *
+ * <p>Alternatively, client sessions can share a fixed number of TCP connections
+ * to the broker, see {@link #setMultiplexedConnectionCount(int)}.
+ *
  * @author Rossen Stoyanchev
  * @author Andy Wilkinson
  * @since 4.0
@@ -103,6 +113,14 @@ public class StompBrokerRelayMessageHandler extends AbstractBrokerMessageHandler
 
 	private static final Message<byte[]> HEARTBEAT_MESSAGE;
 
+	/** Maximum number of bytes of frames to coalesce into a single write. */
+	private static final int MAX_WRITE_BATCH_SIZE = 64 * 1024;
+
+	private static final MessageHeaders ENCODED_FRAMES_HEADERS =
+			new MessageHeaders(Collections.singletonMap(StompEncoder.ENCODED_FRAMES_HEADER, true));
+
+	private static final String TRANSACTION_HEADER = "transaction";
+
 	static {
 		EMPTY_TASK.run();
 		HEART_BEAT_ACCESSOR = StompHeaderAccessor.createForHeartbeat();
@@ -145,6 +163,14 @@ public class StompBrokerRelayMessageHandler extends AbstractBrokerMessageHandler
 	@Nullable
 	private TaskScheduler taskScheduler;
 
+	private int multiplexedConnectionCount;
+
+	private volatile SharedConnectionHandler[] sharedConnectionHandlers = new SharedConnectionHandler[0];
+
+	private final AtomicInteger sharedConnectionIndex = new AtomicInteger();
+
+	private final StompEncoder stompEncoder = new StompEncoder();
+
 
 	/**
 	 * Create a StompBrokerRelayMessageHandler instance with the given message channels
@@ -385,6 +411,48 @@ public class StompBrokerRelayMessageHandler extends AbstractBrokerMessageHandler
 		return this.headerInitializer;
 	}
 
+	/**
+	 * Configure a number of TCP connections to the broker to be shared by all
+	 * client sessions, rather than opening a separate TCP connection for each
+	 * client session, in order to reduce the number of connections a broker
+	 * has to accept as the number of WebSocket clients grows.
+	 * <p>In this mode:
+	 * <ul>
+	 * <li>Each client session is assigned one of the shared connections, which
+	 * are opened on startup with the {@link #setClientLogin client login} and
+	 * {@link #setClientPasscode passcode}, and heartbeats as configured for the
+	 * "system" connection. The client receives a CONNECTED frame from the relay
+	 * once its shared connection is connected, without heartbeats.
+	 * <li>Subscription ids, receipts, and transactions are made unique within
+	 * the shared connection on the way to the broker, and MESSAGE and RECEIPT
+	 * frames are mapped back to the client session they are for.
+	 * <li>Frames forwarded while a write to the same connection is in progress
+	 * are coalesced into a single write. This requires the TCP client to encode
+	 * messages with a {@link StompEncoder}, as the default client does.
+	 * <li>An ERROR frame from the broker, or the loss of a shared connection,
+	 * results in an ERROR frame to all client sessions of that connection.
+	 * </ul>
+	 * <p>Since the broker sees all clients of a shared connection as a single
+	 * STOMP session, subscriptions should use the "auto" or "client-individual"
+	 * ack mode rather than the cumulative "client" ack mode.
+	 * <p>By default this is set to 0, in which case every client session has
+	 * its own TCP connection.
+	 * @param connectionCount the number of shared connections, or 0
+	 * @since 5.3.11
+	 */
+	public void setMultiplexedConnectionCount(int connectionCount) {
+		Assert.isTrue(connectionCount >= 0, "'connectionCount' must not be negative");
+		this.multiplexedConnectionCount = connectionCount;
+	}
+
+	/**
+	 * Return the configured number of shared connections.
+	 * @since 5.3.11
+	 */
+	public int getMultiplexedConnectionCount() {
+		return this.multiplexedConnectionCount;
+	}
+
 	/**
 	 * Return a String describing internal state and counters.
 	 * Effectively {@code toString()} on {@link #getStats() getStats()}.
@@ -406,7 +474,11 @@ public class StompBrokerRelayMessageHandler extends AbstractBrokerMessageHandler
 	 * Return the current count of TCP connection to the broker.
 	 */
 	public int getConnectionCount() {
-		return this.connectionHandlers.size();
+		SharedConnectionHandler[] sharedHandlers = this.sharedConnectionHandlers;
+		if (sharedHandlers.length == 0) {
+			return this.connectionHandlers.size();
+		}
+		return (this.connectionHandlers.containsKey(SYSTEM_SESSION_ID) ? 1 : 0) + sharedHandlers.length;
 	}
 
 	/**
@@ -456,6 +528,15 @@ public class StompBrokerRelayMessageHandler extends AbstractBrokerMessageHandler
 		this.stats.incrementConnectCount();
 		this.tcpClient.connect(handler, new FixedIntervalReconnectStrategy(5000));
 
+		SharedConnectionHandler[] sharedHandlers = new SharedConnectionHandler[this.multiplexedConnectionCount];
+		for (int i = 0; i < sharedHandlers.length; i++) {
+			sharedHandlers[i] = new SharedConnectionHandler("_shared-" + i + "_");
+		}
+		this.sharedConnectionHandlers = sharedHandlers;
+		for (SharedConnectionHandler sharedHandler : sharedHandlers) {
+			this.tcpClient.connect(sharedHandler, new FixedIntervalReconnectStrategy(5000));
+		}
+
 		if (this.taskScheduler != null) {
 			this.taskScheduler.scheduleWithFixedDelay(new ClientSendMessageCountTask(), 5000);
 		}
@@ -561,11 +642,22 @@ public class StompBrokerRelayMessageHandler extends AbstractBrokerMessageHandler
 			if (getVirtualHost() != null) {
 				stompAccessor.setHost(getVirtualHost());
 			}
-			RelayConnectionHandler handler = new RelayConnectionHandler(sessionId, stompAccessor);
-			this.connectionHandlers.put(sessionId, handler);
-			this.stats.incrementConnectCount();
-			Assert.state(this.tcpClient != null, "No TCP client available");
-			this.tcpClient.connect(handler);
+			SharedConnectionHandler[] sharedHandlers = this.sharedConnectionHandlers;
+			if (sharedHandlers.length > 0) {
+				int index = Math.floorMod(this.sharedConnectionIndex.getAndIncrement(), sharedHandlers.length);
+				MultiplexedSessionHandler handler =
+						new MultiplexedSessionHandler(sessionId, stompAccessor, sharedHandlers[index]);
+				this.connectionHandlers.put(sessionId, handler);
+				this.stats.incrementConnectCount();
+				sharedHandlers[index].addSession(handler);
+			}
+			else {
+				RelayConnectionHandler handler = new RelayConnectionHandler(sessionId, stompAccessor);
+				this.connectionHandlers.put(sessionId, handler);
+				this.stats.incrementConnectCount();
+				Assert.state(this.tcpClient != null, "No TCP client available");
+				this.tcpClient.connect(handler);
+			}
 		}
 		else if (StompCommand.DISCONNECT.equals(command)) {
 			RelayConnectionHandler handler = this.connectionHandlers.get(sessionId);
@@ -600,6 +692,20 @@ public class StompBrokerRelayMessageHandler extends AbstractBrokerMessageHandler
 		}
 	}
 
+	private StompHeaderAccessor createSharedConnectHeaders(String id) {
+		StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.CONNECT);
+		accessor.setAcceptVersion("1.1,1.2");
+		accessor.setLogin(this.clientLogin);
+		accessor.setPasscode(this.clientPasscode);
+		accessor.setHeartbeat(this.systemHeartbeatSendInterval, this.systemHeartbeatReceiveInterval);
+		String virtualHost = getVirtualHost();
+		if (virtualHost != null) {
+			accessor.setHost(virtualHost);
+		}
+		accessor.setSessionId(id);
+		return accessor;
+	}
+
 	@Override
 	public String toString() {
 		return "StompBrokerRelay[" + getTcpClientInfo() + "]";
@@ -671,6 +777,10 @@ public class StompBrokerRelayMessageHandler extends AbstractBrokerMessageHandler
 			return this.tcpConnection;
 		}
 
+		protected boolean isStompConnected() {
+			return this.isStompConnected;
+		}
+
 		@Override
 		public void afterConnected(TcpConnection<byte[]> connection) {
 			if (logger.isDebugEnabled()) {
@@ -714,7 +824,7 @@ public class StompBrokerRelayMessageHandler extends AbstractBrokerMessageHandler
 			}
 		}
 
-		private void sendStompErrorFrameToClient(String errorText) {
+		protected void sendStompErrorFrameToClient(String errorText) {
 			if (this.isRemoteClientSession) {
 				StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.ERROR);
 				if (getHeaderInitializer() != null) {
@@ -782,6 +892,34 @@ public class StompBrokerRelayMessageHandler extends AbstractBrokerMessageHandler
 			}
 		}
 
+		/**
+		 * Send and expect heartbeats on the TCP connection itself, for connections
+		 * owned by the relay rather than by a client.
+		 */
+		protected void initConnectionHeartbeats(StompHeaderAccessor connectedHeaders) {
+			TcpConnection<byte[]> con = getTcpConnection();
+			Assert.state(con != null, "No TcpConnection available");
+
+			long clientSendInterval = getConnectHeaders().getHeartbeat()[0];
+			long clientReceiveInterval = getConnectHeaders().getHeartbeat()[1];
+			long serverSendInterval = connectedHeaders.getHeartbeat()[0];
+			long serverReceiveInterval = connectedHeaders.getHeartbeat()[1];
+
+			if (clientSendInterval > 0 && serverReceiveInterval > 0) {
+				long interval = Math.max(clientSendInterval, serverReceiveInterval);
+				con.onWriteInactivity(() ->
+						con.send(HEARTBEAT_MESSAGE).addCallback(
+								result -> {},
+								ex -> handleTcpConnectionFailure(
+										"Failed to forward heartbeat: " + ex.getMessage(), ex)), interval);
+			}
+			if (clientReceiveInterval > 0 && serverSendInterval > 0) {
+				final long interval = Math.max(clientReceiveInterval, serverSendInterval) * HEARTBEAT_MULTIPLIER;
+				con.onReadInactivity(
+						() -> handleTcpConnectionFailure("No messages received in " + interval + " ms.", null), interval);
+			}
+		}
+
 		/**
 		 * Whether to forward a heartbeat message in lieu of a message with a non-broker
 		 * destination. This is done if client-side heartbeats are expected and if there
@@ -985,27 +1123,7 @@ public class StompBrokerRelayMessageHandler extends AbstractBrokerMessageHandler
 		}
 
 		protected void initHeartbeats(StompHeaderAccessor connectedHeaders) {
-			TcpConnection<byte[]> con = getTcpConnection();
-			Assert.state(con != null, "No TcpConnection available");
-
-			long clientSendInterval = getConnectHeaders().getHeartbeat()[0];
-			long clientReceiveInterval = getConnectHeaders().getHeartbeat()[1];
-			long serverSendInterval = connectedHeaders.getHeartbeat()[0];
-			long serverReceiveInterval = connectedHeaders.getHeartbeat()[1];
-
-			if (clientSendInterval > 0 && serverReceiveInterval > 0) {
-				long interval = Math.max(clientSendInterval, serverReceiveInterval);
-				con.onWriteInactivity(() ->
-						con.send(HEARTBEAT_MESSAGE).addCallback(
-								result -> {},
-								ex -> handleTcpConnectionFailure(
-										"Failed to forward heartbeat: " + ex.getMessage(), ex)), interval);
-			}
-			if (clientReceiveInterval > 0 && serverSendInterval > 0) {
-				final long interval = Math.max(clientReceiveInterval, serverSendInterval) * HEARTBEAT_MULTIPLIER;
-				con.onReadInactivity(
-						() -> handleTcpConnectionFailure("No messages received in " + interval + " ms.", null), interval);
-			}
+			initConnectionHeartbeats(connectedHeaders);
 		}
 
 		private void sendSystemSubscriptions() {
@@ -1094,6 +1212,458 @@ public class StompBrokerRelayMessageHandler extends AbstractBrokerMessageHandler
 	}
 
 
+	/**
+	 * Handler for a TCP connection to the broker that is shared by multiple
+	 * client sessions, see {@link #setMultiplexedConnectionCount(int)}.
+	 */
+	private class SharedConnectionHandler extends RelayConnectionHandler {
+
+		private final Map<String, MultiplexedSessionHandler> sessions = new ConcurrentHashMap<>();
+
+		// Subscription id on this connection to the client session and subscription
+		private final Map<String, SubscriptionTarget> subscriptions = new ConcurrentHashMap<>();
+
+		// Receipt on this connection to the client session and receipt
+		private final Map<String, ReceiptTarget> receipts = new ConcurrentHashMap<>();
+
+		private final AtomicLong idCounter = new AtomicLong();
+
+		private final Queue<Message<byte[]>> writeQueue = new ConcurrentLinkedQueue<>();
+
+		private final AtomicBoolean writeInProgress = new AtomicBoolean();
+
+		@Nullable
+		private volatile String version;
+
+		public SharedConnectionHandler(String id) {
+			super(id, createSharedConnectHeaders(id), false);
+		}
+
+		public void addSession(MultiplexedSessionHandler session) {
+			this.sessions.put(session.getSessionId(), session);
+			if (isStompConnected()) {
+				session.afterSharedConnectionConnected(this.version);
+			}
+		}
+
+		public void removeSession(MultiplexedSessionHandler session) {
+			this.sessions.remove(session.getSessionId());
+		}
+
+		public String nextId(String prefix) {
+			return prefix + this.idCounter.incrementAndGet();
+		}
+
+		public void addSubscription(String id, MultiplexedSessionHandler session, String clientSubscriptionId) {
+			this.subscriptions.put(id, new SubscriptionTarget(session, clientSubscriptionId));
+		}
+
+		public void removeSubscription(String id) {
+			this.subscriptions.remove(id);
+		}
+
+		public void addReceipt(String receipt, MultiplexedSessionHandler session,
+				@Nullable String clientReceipt, boolean disconnect) {
+
+			this.receipts.put(receipt, new ReceiptTarget(session, clientReceipt, disconnect));
+		}
+
+		@Override
+		protected void afterStompConnected(StompHeaderAccessor connectedHeaders) {
+			if (logger.isInfoEnabled()) {
+				logger.info("Shared connection " + getSessionId() + " connected.");
+			}
+			this.version = connectedHeaders.getVersion();
+			super.afterStompConnected(connectedHeaders);
+			for (MultiplexedSessionHandler session : this.sessions.values()) {
+				session.afterSharedConnectionConnected(this.version);
+			}
+		}
+
+		@Override
+		protected void initHeartbeats(StompHeaderAccessor connectedHeaders) {
+			initConnectionHeartbeats(connectedHeaders);
+		}
+
+		@Override
+		protected void handleInboundMessage(Message<?> message) {
+			StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+			if (accessor == null) {
+				return;
+			}
+			StompCommand command = accessor.getCommand();
+			if (StompCommand.MESSAGE.equals(command)) {
+				String subscriptionId = accessor.getSubscriptionId();
+				SubscriptionTarget target = (subscriptionId != null ? this.subscriptions.get(subscriptionId) : null);
+				if (target == null) {
+					if (logger.isDebugEnabled()) {
+						logger.debug("No client session for subscription " + subscriptionId +
+								" on shared connection " + getSessionId());
+					}
+					return;
+				}
+				accessor.setSubscriptionId(target.subscriptionId);
+				target.session.handleBrokerMessage(message, accessor);
+			}
+			else if (StompCommand.RECEIPT.equals(command)) {
+				String receiptId = accessor.getReceiptId();
+				ReceiptTarget target = (receiptId != null ? this.receipts.remove(receiptId) : null);
+				if (target != null) {
+					target.session.afterReceipt(target.receipt, target.disconnect);
+				}
+			}
+			else if (StompCommand.ERROR.equals(command)) {
+				handleTcpConnectionFailure("Broker ERROR: " + accessor.getMessage(), null);
+			}
+		}
+
+		/**
+		 * Write the given frame, or queue it to be coalesced with other frames
+		 * into the next write if a write is in progress.
+		 */
+		public void send(Message<byte[]> message) {
+			this.writeQueue.add(message);
+			flush();
+		}
+
+		private void flush() {
+			while (!this.writeQueue.isEmpty() && this.writeInProgress.compareAndSet(false, true)) {
+				TcpConnection<byte[]> conn = getTcpConnection();
+				Message<byte[]> message = (conn != null ? pollWrite() : null);
+				if (conn == null || message == null) {
+					if (conn == null) {
+						this.writeQueue.clear();
+					}
+					this.writeInProgress.set(false);
+					continue;
+				}
+				conn.send(message).addCallback(
+						result -> {
+							this.writeInProgress.set(false);
+							flush();
+						},
+						ex -> {
+							this.writeInProgress.set(false);
+							handleTcpConnectionFailure("Failed to forward frames: " + ex.getMessage(), ex);
+						});
+				return;
+			}
+		}
+
+		@Nullable
+		private Message<byte[]> pollWrite() {
+			Message<byte[]> message = this.writeQueue.poll();
+			if (message == null || this.writeQueue.isEmpty()) {
+				return message;
+			}
+			List<byte[]> frames = new ArrayList<>();
+			int size = 0;
+			while (message != null) {
+				byte[] frame = stompEncoder.encode(message);
+				frames.add(frame);
+				size += frame.length;
+				if (size >= MAX_WRITE_BATCH_SIZE) {
+					break;
+				}
+				message = this.writeQueue.poll();
+			}
+			byte[] payload = new byte[size];
+			int position = 0;
+			for (byte[] frame : frames) {
+				System.arraycopy(frame, 0, payload, position, frame.length);
+				position += frame.length;
+			}
+			return MessageBuilder.createMessage(payload, ENCODED_FRAMES_HEADERS);
+		}
+
+		@Override
+		protected void handleTcpConnectionFailure(String error, @Nullable Throwable ex) {
+			super.handleTcpConnectionFailure(error, ex);
+			closeSessions(error);
+		}
+
+		@Override
+		public void afterConnectionClosed() {
+			super.afterConnectionClosed();
+			closeSessions("Connection to broker closed.");
+		}
+
+		private void closeSessions(String errorText) {
+			for (MultiplexedSessionHandler session : this.sessions.values()) {
+				try {
+					session.sendStompErrorFrameToClient(errorText);
+				}
+				finally {
+					session.clearConnection();
+				}
+			}
+		}
+
+		@Override
+		public void clearConnection() {
+			super.clearConnection();
+			this.writeQueue.clear();
+			this.subscriptions.clear();
+			this.receipts.clear();
+		}
+
+		@Override
+		protected boolean shouldSendHeartbeatForIgnoredMessage() {
+			return false;
+		}
+
+		@Override
+		public String toString() {
+			return "SharedConnectionHandler[id=" + getSessionId() + ", sessions=" + this.sessions.size() + "]";
+		}
+	}
+
+
+	/**
+	 * Handler for a client session whose frames are forwarded on a
+	 * {@link SharedConnectionHandler shared connection}.
+	 */
+	private class MultiplexedSessionHandler extends RelayConnectionHandler {
+
+		private final SharedConnectionHandler connection;
+
+		// Client subscription id to subscription id on the shared connection
+		private final Map<String, String> subscriptions = new ConcurrentHashMap<>(4);
+
+		private final AtomicBoolean connected = new AtomicBoolean();
+
+		public MultiplexedSessionHandler(
+				String sessionId, StompHeaderAccessor connectHeaders, SharedConnectionHandler connection) {
+
+			super(sessionId, connectHeaders);
+			this.connection = connection;
+		}
+
+		/**
+		 * Send a CONNECTED frame to the client, once per session.
+		 */
+		public void afterSharedConnectionConnected(@Nullable String version) {
+			if (!this.connected.compareAndSet(false, true)) {
+				return;
+			}
+			StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.CONNECTED);
+			if (getHeaderInitializer() != null) {
+				getHeaderInitializer().initHeaders(accessor);
+			}
+			accessor.setVersion(version);
+			accessor.setHeartbeat(0, 0);
+			accessor.setSessionId(getSessionId());
+			Principal user = getConnectHeaders().getUser();
+			if (user != null) {
+				accessor.setUser(user);
+			}
+			accessor.setLeaveMutable(true);
+			stats.incrementConnectedCount();
+			handleInboundMessage(MessageBuilder.createMessage(EMPTY_PAYLOAD, accessor.getMessageHeaders()));
+		}
+
+		public void handleBrokerMessage(Message<?> message, StompHeaderAccessor accessor) {
+			accessor.setSessionId(getSessionId());
+			Principal user = getConnectHeaders().getUser();
+			if (user != null) {
+				accessor.setUser(user);
+			}
+			handleInboundMessage(message);
+		}
+
+		public void afterReceipt(@Nullable String receipt, boolean disconnect) {
+			if (receipt != null) {
+				StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.RECEIPT);
+				if (getHeaderInitializer() != null) {
+					getHeaderInitializer().initHeaders(accessor);
+				}
+				accessor.setReceiptId(receipt);
+				accessor.setSessionId(getSessionId());
+				Principal user = getConnectHeaders().getUser();
+				if (user != null) {
+					accessor.setUser(user);
+				}
+				accessor.setLeaveMutable(true);
+				handleInboundMessage(MessageBuilder.createMessage(EMPTY_PAYLOAD, accessor.getMessageHeaders()));
+			}
+			if (disconnect) {
+				clearConnection();
+			}
+		}
+
+		/**
+		 * Forward the given client message on the shared connection, with
+		 * subscription ids, receipts, and transactions made unique within the
+		 * connection. Heartbeats are not forwarded, since the shared connection
+		 * has heartbeats of its own.
+		 */
+		@Override
+		public ListenableFuture<Void> forward(Message<?> message, StompHeaderAccessor accessor) {
+			StompCommand command = accessor.getCommand();
+			if (command == null) {
+				return EMPTY_TASK;
+			}
+			if (StompCommand.DISCONNECT.equals(command)) {
+				// Also when not connected, to remove the session from the shared connection
+				String receipt = accessor.getReceipt();
+				if (!unsubscribeAll(receipt)) {
+					afterReceipt(receipt, true);
+				}
+				return EMPTY_TASK;
+			}
+			if (!this.connection.isStompConnected()) {
+				if (logger.isDebugEnabled()) {
+					logger.debug("Shared connection not connected, ignoring " +
+							accessor.getShortLogMessage(message.getPayload()));
+				}
+				return EMPTY_TASK;
+			}
+			if (logger.isDebugEnabled()) {
+				logger.debug("Forwarding " + accessor.getShortLogMessage(message.getPayload()) +
+						" on shared connection " + this.connection.getSessionId());
+			}
+
+			MessageHeaders headers = (accessor.isMutable() ? accessor.getMessageHeaders() : message.getHeaders());
+			StompHeaderAccessor relayAccessor = StompHeaderAccessor.wrap(
+					MessageBuilder.createMessage(message.getPayload(), headers));
+
+			if (StompCommand.SUBSCRIBE.equals(command)) {
+				String subscriptionId = relayAccessor.getSubscriptionId();
+				if (subscriptionId != null) {
+					String id = this.connection.nextId("sub-");
+					String previousId = this.subscriptions.put(subscriptionId, id);
+					if (previousId != null) {
+						// Client reused a subscription id: end the one it replaces
+						sendUnsubscribe(previousId, null);
+					}
+					this.connection.addSubscription(id, this, subscriptionId);
+					relayAccessor.setSubscriptionId(id);
+				}
+			}
+			else if (StompCommand.UNSUBSCRIBE.equals(command)) {
+				String subscriptionId = relayAccessor.getSubscriptionId();
+				String id = (subscriptionId != null ? this.subscriptions.remove(subscriptionId) : null);
+				if (id == null) {
+					// Nothing to forward, but the client may still expect a receipt
+					afterReceipt(relayAccessor.getReceipt(), false);
+					return EMPTY_TASK;
+				}
+				this.connection.removeSubscription(id);
+				relayAccessor.setSubscriptionId(id);
+			}
+			else if (StompCommand.ACK.equals(command) || StompCommand.NACK.equals(command)) {
+				// STOMP 1.1 identifies the subscription of the acknowledged message
+				String subscriptionId = relayAccessor.getFirstNativeHeader(StompHeaderAccessor.STOMP_SUBSCRIPTION_HEADER);
+				String id = (subscriptionId != null ? this.subscriptions.get(subscriptionId) : null);
+				if (id != null) {
+					relayAccessor.setNativeHeader(StompHeaderAccessor.STOMP_SUBSCRIPTION_HEADER, id);
+				}
+			}
+
+			String transaction = relayAccessor.getFirstNativeHeader(TRANSACTION_HEADER);
+			if (transaction != null) {
+				relayAccessor.setNativeHeader(TRANSACTION_HEADER, getSessionId() + "-" + transaction);
+			}
+
+			String receipt = relayAccessor.getReceipt();
+			if (receipt != null) {
+				String id = this.connection.nextId("receipt-");
+				this.connection.addReceipt(id, this, receipt, false);
+				relayAccessor.setReceipt(id);
+			}
+
+			this.connection.send(MessageBuilder.createMessage(
+					(byte[]) message.getPayload(), relayAccessor.getMessageHeaders()));
+			return EMPTY_TASK;
+		}
+
+		/**
+		 * Remove the subscriptions of the session from the shared connection.
+		 * @param receipt the client receipt for a DISCONNECT, if any
+		 * @return {@code true} if the given receipt is to be sent, and the
+		 * session cleared, once the broker confirms the last UNSUBSCRIBE
+		 */
+		private boolean unsubscribeAll(@Nullable String receipt) {
+			List<String> ids = new ArrayList<>(this.subscriptions.values());
+			this.subscriptions.clear();
+			if (ids.isEmpty() || !this.connection.isStompConnected()) {
+				return false;
+			}
+			for (int i = 0; i < ids.size(); i++) {
+				String receiptId = null;
+				if (receipt != null && i == ids.size() - 1) {
+					receiptId = this.connection.nextId("receipt-");
+					this.connection.addReceipt(receiptId, this, receipt, true);
+				}
+				sendUnsubscribe(ids.get(i), receiptId);
+			}
+			return (receipt != null);
+		}
+
+		private void sendUnsubscribe(String id, @Nullable String receiptId) {
+			this.connection.removeSubscription(id);
+			StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.UNSUBSCRIBE);
+			accessor.setSubscriptionId(id);
+			if (receiptId != null) {
+				accessor.setReceipt(receiptId);
+			}
+			this.connection.send(MessageBuilder.createMessage(EMPTY_PAYLOAD, accessor.getMessageHeaders()));
+		}
+
+		@Override
+		public void clearConnection() {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Cleaning up state for session " + getSessionId() +
+						" on shared connection " + this.connection.getSessionId());
+			}
+			connectionHandlers.remove(getSessionId());
+			this.connection.removeSession(this);
+			unsubscribeAll(null);
+		}
+
+		@Override
+		protected boolean shouldSendHeartbeatForIgnoredMessage() {
+			return false;
+		}
+
+		@Override
+		public String toString() {
+			return "MultiplexedSessionHandler[sessionId=" + getSessionId() +
+					", connection=" + this.connection.getSessionId() + "]";
+		}
+	}
+
+
+	private static class SubscriptionTarget {
+
+		final MultiplexedSessionHandler session;
+
+		final String subscriptionId;
+
+		SubscriptionTarget(MultiplexedSessionHandler session, String subscriptionId) {
+			this.session = session;
+			this.subscriptionId = subscriptionId;
+		}
+	}
+
+
+	private static class ReceiptTarget {
+
+		final MultiplexedSessionHandler session;
+
+		@Nullable
+		final String receipt;
+
+		final boolean disconnect;
+
+		ReceiptTarget(MultiplexedSessionHandler session, @Nullable String receipt, boolean disconnect) {
+			this.session = session;
+			this.receipt = receipt;
+			this.disconnect = disconnect;
+		}
+	}
+
+
 	private class ClientSendMessageCountTask implements Runnable {
 
 		@Override
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2020 the original author or authors.
+ * Copyright 2002-2021 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,12 +16,14 @@
 
 package org.springframework.messaging.simp.stomp;
 
-import java.io.ByteArrayOutputStream;
 import java.nio.Buffer;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.apache.commons.logging.Log;
 
@@ -33,7 +35,6 @@ import org.springframework.messaging.support.MessageHeaderInitializer;
 import org.springframework.messaging.support.NativeMessageHeaderAccessor;
 import org.springframework.util.InvalidMimeTypeException;
 import org.springframework.util.MultiValueMap;
-import org.springframework.util.StreamUtils;
 
 /**
  * Decodes one or more STOMP frames contained in a {@link ByteBuffer}.
@@ -54,9 +55,31 @@ public class StompDecoder {
 
 	private static final Log logger = SimpLogging.forLogName(StompDecoder.class);
 
+	private static final StompCommand[] COMMANDS = StompCommand.values();
+
+	private static final byte[][] COMMAND_BYTES = new byte[COMMANDS.length][];
+
+	/** Headers whose values tend to repeat across frames, and are worth caching. */
+	private static final Set<String> CACHED_VALUE_HEADERS = new HashSet<>(Arrays.asList(
+			StompHeaderAccessor.STOMP_DESTINATION_HEADER, StompHeaderAccessor.STOMP_CONTENT_TYPE_HEADER,
+			StompHeaderAccessor.STOMP_CONTENT_LENGTH_HEADER, StompHeaderAccessor.STOMP_SUBSCRIPTION_HEADER,
+			StompHeaderAccessor.STOMP_ACCEPT_VERSION_HEADER, StompHeaderAccessor.STOMP_HEARTBEAT_HEADER,
+			StompHeaderAccessor.STOMP_HOST_HEADER, StompHeaderAccessor.STOMP_VERSION_HEADER));
+
+	static {
+		for (int i = 0; i < COMMANDS.length; i++) {
+			COMMAND_BYTES[i] = COMMANDS[i].name().getBytes(StandardCharsets.US_ASCII);
+		}
+	}
+
+
 	@Nullable
 	private MessageHeaderInitializer headerInitializer;
 
+	private final HeaderCache headerNames = new HeaderCache(64);
+
+	private final HeaderCache headerValues = new HeaderCache(1024);
+
 
 	/**
 	 * Configure a {@link MessageHeaderInitializer} to apply to the headers of
@@ -140,24 +163,20 @@ public class StompDecoder {
 		Buffer buffer = byteBuffer;
 		buffer.mark();
 
-		String command = readCommand(byteBuffer);
-		if (command.length() > 0) {
+		if (byteBuffer.hasRemaining()) {
+			StompCommand stompCommand = readCommand(byteBuffer);
 			StompHeaderAccessor headerAccessor = null;
 			byte[] payload = null;
-			if (byteBuffer.remaining() > 0) {
-				StompCommand stompCommand = StompCommand.valueOf(command);
+			if (stompCommand != null && byteBuffer.remaining() > 0) {
 				headerAccessor = StompHeaderAccessor.create(stompCommand);
 				initHeaders(headerAccessor);
 				readHeaders(byteBuffer, headerAccessor);
 				payload = readPayload(byteBuffer, headerAccessor);
 			}
 			if (payload != null) {
-				if (payload.length > 0) {
-					StompCommand stompCommand = headerAccessor.getCommand();
-					if (stompCommand != null && !stompCommand.isBodyAllowed()) {
-						throw new StompConversionException(stompCommand +
-								" shouldn't have a payload: length=" + payload.length + ", headers=" + headers);
-					}
+				if (payload.length > 0 && !stompCommand.isBodyAllowed()) {
+					throw new StompConversionException(stompCommand +
+							" shouldn't have a payload: length=" + payload.length + ", headers=" + headers);
 				}
 				headerAccessor.updateSimpMessageHeadersFromStompHeaders();
 				headerAccessor.setLeaveMutable(true);
@@ -212,58 +231,138 @@ public class StompDecoder {
 		}
 	}
 
-	private String readCommand(ByteBuffer byteBuffer) {
-		ByteArrayOutputStream command = new ByteArrayOutputStream(256);
-		while (byteBuffer.remaining() > 0 && !tryConsumeEndOfLine(byteBuffer)) {
-			command.write(byteBuffer.get());
+	/**
+	 * Read the command line, matching it against the known commands without
+	 * creating a String.
+	 * @return the command, or {@code null} if the line is incomplete
+	 */
+	@Nullable
+	private StompCommand readCommand(ByteBuffer byteBuffer) {
+		int start = byteBuffer.position();
+		int endOfLine = findEndOfLine(byteBuffer, start);
+		if (endOfLine == -1) {
+			((Buffer) byteBuffer).position(byteBuffer.limit());
+			return null;
 		}
-		return StreamUtils.copyToString(command, StandardCharsets.UTF_8);
+		int end = lineEnd(byteBuffer, start, endOfLine);
+		((Buffer) byteBuffer).position(endOfLine + 1);
+		for (int i = 0; i < COMMANDS.length; i++) {
+			if (matches(byteBuffer, start, end, COMMAND_BYTES[i])) {
+				return COMMANDS[i];
+			}
+		}
+		return StompCommand.valueOf(toString(byteBuffer, start, end));
 	}
 
 	private void readHeaders(ByteBuffer byteBuffer, StompHeaderAccessor headerAccessor) {
 		while (true) {
-			ByteArrayOutputStream headerStream = new ByteArrayOutputStream(256);
-			boolean headerComplete = false;
-			while (byteBuffer.hasRemaining()) {
-				if (tryConsumeEndOfLine(byteBuffer)) {
-					headerComplete = true;
-					break;
+			int start = byteBuffer.position();
+			int endOfLine = findEndOfLine(byteBuffer, start);
+			if (endOfLine == -1) {
+				// Incomplete header
+				((Buffer) byteBuffer).position(byteBuffer.limit());
+				break;
+			}
+			int end = lineEnd(byteBuffer, start, endOfLine);
+			((Buffer) byteBuffer).position(endOfLine + 1);
+			if (end == start) {
+				break;
+			}
+			int colonIndex = indexOf(byteBuffer, start, end, (byte) ':');
+			if (colonIndex <= start) {
+				if (byteBuffer.remaining() > 0) {
+					throw new StompConversionException("Illegal header: '" + toString(byteBuffer, start, end) +
+							"'. A header must be of the form <name>:[<value>].");
 				}
-				headerStream.write(byteBuffer.get());
 			}
-			if (headerStream.size() > 0 && headerComplete) {
-				String header = StreamUtils.copyToString(headerStream, StandardCharsets.UTF_8);
-				int colonIndex = header.indexOf(':');
-				if (colonIndex <= 0) {
+			else {
+				String headerName = this.headerNames.get(byteBuffer, start, colonIndex);
+				String headerValue = (CACHED_VALUE_HEADERS.contains(headerName) ?
+						this.headerValues.get(byteBuffer, colonIndex + 1, end) :
+						decodeHeader(byteBuffer, colonIndex + 1, end));
+				try {
+					headerAccessor.addNativeHeader(headerName, headerValue);
+				}
+				catch (InvalidMimeTypeException ex) {
 					if (byteBuffer.remaining() > 0) {
-						throw new StompConversionException("Illegal header: '" + header +
-								"'. A header must be of the form <name>:[<value>].");
+						throw ex;
 					}
 				}
-				else {
-					String headerName = unescape(header.substring(0, colonIndex));
-					String headerValue = unescape(header.substring(colonIndex + 1));
-					try {
-						headerAccessor.addNativeHeader(headerName, headerValue);
-					}
-					catch (InvalidMimeTypeException ex) {
-						if (byteBuffer.remaining() > 0) {
-							throw ex;
-						}
-					}
+			}
+		}
+	}
+
+	/**
+	 * Find the index of the next LF from the given index, checking that any
+	 * CR on the way is followed by LF.
+	 * @return the index of the LF, or -1 if not found
+	 */
+	private static int findEndOfLine(ByteBuffer byteBuffer, int index) {
+		int limit = byteBuffer.limit();
+		for (int i = index; i < limit; i++) {
+			byte b = byteBuffer.get(i);
+			if (b == '\n') {
+				return i;
+			}
+			else if (b == '\r') {
+				if (i + 1 < limit && byteBuffer.get(i + 1) == '\n') {
+					return i + 1;
 				}
+				throw new StompConversionException("'\\r' must be followed by '\\n'");
 			}
-			else {
-				break;
+		}
+		return -1;
+	}
+
+	private static int lineEnd(ByteBuffer byteBuffer, int start, int endOfLine) {
+		return (endOfLine > start && byteBuffer.get(endOfLine - 1) == '\r' ? endOfLine - 1 : endOfLine);
+	}
+
+	private static int indexOf(ByteBuffer byteBuffer, int start, int end, byte value) {
+		for (int i = start; i < end; i++) {
+			if (byteBuffer.get(i) == value) {
+				return i;
 			}
 		}
+		return -1;
+	}
+
+	private static boolean matches(ByteBuffer byteBuffer, int start, int end, byte[] bytes) {
+		if (end - start != bytes.length) {
+			return false;
+		}
+		for (int i = 0; i < bytes.length; i++) {
+			if (byteBuffer.get(start + i) != bytes[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static String toString(ByteBuffer byteBuffer, int start, int end) {
+		if (byteBuffer.hasArray()) {
+			return new String(byteBuffer.array(), byteBuffer.arrayOffset() + start, end - start, StandardCharsets.UTF_8);
+		}
+		byte[] bytes = new byte[end - start];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = byteBuffer.get(start + i);
+		}
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Decode a header name or value, unescaping it only if it contains a backslash.
+	 */
+	private static String decodeHeader(ByteBuffer byteBuffer, int start, int end) {
+		String value = toString(byteBuffer, start, end);
+		return (indexOf(byteBuffer, start, end, (byte) '\\') != -1 ? unescape(value) : value);
 	}
 
 	/**
 	 * See STOMP Spec 1.2:
 	 * <a href="https://stomp.github.io/stomp-specification-1.2.html#Value_Encoding">"Value Encoding"</a>.
 	 */
-	private String unescape(String inString) {
+	private static String unescape(String inString) {
 		StringBuilder sb = new StringBuilder(inString.length());
 		int pos = 0;  // position in the old string
 		int index = inString.indexOf('\\');
@@ -325,18 +424,17 @@ public class StompDecoder {
 			}
 		}
 		else {
-			ByteArrayOutputStream payload = new ByteArrayOutputStream(256);
-			while (byteBuffer.remaining() > 0) {
-				byte b = byteBuffer.get();
-				if (b == 0) {
-					return payload.toByteArray();
-				}
-				else {
-					payload.write(b);
-				}
+			int start = byteBuffer.position();
+			int end = indexOf(byteBuffer, start, byteBuffer.limit(), (byte) 0);
+			if (end == -1) {
+				((Buffer) byteBuffer).position(byteBuffer.limit());
+				return null;
 			}
+			byte[] payload = new byte[end - start];
+			byteBuffer.get(payload);
+			byteBuffer.get();
+			return payload;
 		}
-		return null;
 	}
 
 	/**
@@ -363,4 +461,65 @@ public class StompDecoder {
 		return false;
 	}
 
+
+	/**
+	 * A bounded cache of decoded header names or values, keyed by their bytes.
+	 * Each slot holds the most recent entry with that hash, and is replaced on
+	 * a miss, so unique values do not accumulate. Entries are immutable, so
+	 * concurrent use without locking is safe.
+	 */
+	private static final class HeaderCache {
+
+		private static final int MAX_LENGTH = 128;
+
+		private final Entry[] entries;
+
+		HeaderCache(int size) {
+			this.entries = new Entry[size];
+		}
+
+		String get(ByteBuffer byteBuffer, int start, int end) {
+			int length = end - start;
+			if (length > MAX_LENGTH) {
+				return decodeHeader(byteBuffer, start, end);
+			}
+			int hash = 0;
+			for (int i = start; i < end; i++) {
+				byte b = byteBuffer.get(i);
+				if (b == '\\') {
+					return decodeHeader(byteBuffer, start, end);
+				}
+				hash = 31 * hash + b;
+			}
+			int index = (hash ^ (hash >>> 16)) & (this.entries.length - 1);
+			Entry entry = this.entries[index];
+			if (entry != null && entry.hash == hash && matches(byteBuffer, start, end, entry.bytes)) {
+				return entry.value;
+			}
+			byte[] bytes = new byte[length];
+			for (int i = 0; i < length; i++) {
+				bytes[i] = byteBuffer.get(start + i);
+			}
+			String value = new String(bytes, StandardCharsets.UTF_8);
+			this.entries[index] = new Entry(hash, bytes, value);
+			return value;
+		}
+
+
+		private static final class Entry {
+
+			final int hash;
+
+			final byte[] bytes;
+
+			final String value;
+
+			Entry(int hash, byte[] bytes, String value) {
+				this.hash = hash;
+				this.bytes = bytes;
+				this.value = value;
+			}
+		}
+	}
+
 }
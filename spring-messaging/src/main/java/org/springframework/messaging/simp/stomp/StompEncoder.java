@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2020 the original author or authors.
+ * Copyright 2002-2021 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -18,6 +18,7 @@ package org.springframework.messaging.simp.stomp;
 
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -34,6 +35,8 @@ import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
 import org.springframework.messaging.simp.SimpMessageType;
 import org.springframework.messaging.support.NativeMessageHeaderAccessor;
 import org.springframework.util.Assert;
+import org.springframework.util.ObjectUtils;
+import org.springframework.util.StringUtils;
 
 /**
  * An encoder for STOMP frames.
@@ -53,6 +56,12 @@ public class StompEncoder  {
 
 	private static final int HEADER_KEY_CACHE_LIMIT = 32;
 
+	/**
+	 * Header that marks a message whose payload consists of one or more frames
+	 * that have been encoded already, and is therefore written as is.
+	 */
+	static final String ENCODED_FRAMES_HEADER = "stompEncodedFrames";
+
 
 	private final Map<String, byte[]> headerKeyAccessCache = new ConcurrentHashMap<>(HEADER_KEY_CACHE_LIMIT);
 
@@ -91,6 +100,10 @@ public class StompEncoder  {
 		Assert.notNull(headers, "'headers' is required");
 		Assert.notNull(payload, "'payload' is required");
 
+		if (headers.containsKey(ENCODED_FRAMES_HEADER)) {
+			return payload;
+		}
+
 		if (SimpMessageType.HEARTBEAT.equals(SimpMessageHeaderAccessor.getMessageType(headers))) {
 			logger.trace("Encoding heartbeat");
 			return StompDecoder.HEARTBEAT_PAYLOAD;
@@ -104,19 +117,67 @@ public class StompEncoder  {
 		Result result = new DefaultResult();
 		result.add(command.toString().getBytes(StandardCharsets.UTF_8));
 		result.add(LINE_FEED_BYTE);
-		writeHeaders(command, headers, payload, result);
+		writeHeaders(command, headers, payload, Collections.emptySet(), result);
 		result.add(LINE_FEED_BYTE);
 		result.add(payload);
 		result.add((byte) 0);
 		return result.toByteArray();
 	}
 
-	private void writeHeaders(
-			StompCommand command, Map<String, Object> headers, byte[] payload, Result result) {
+	/**
+	 * Create a template for frames that have the same command, payload, and
+	 * headers, except for the values of the given headers. This allows
+	 * encoding a frame for each subscriber of a destination without encoding
+	 * the shared headers and payload again, only the per-subscriber headers
+	 * such as "subscription" and "message-id".
+	 * @param headers the headers of a first frame
+	 * @param payload the payload shared by all frames
+	 * @param variableHeaderNames the names of the headers that differ between frames
+	 * @return the frame template
+	 * @since 5.3.11
+	 */
+	public FrameTemplate createTemplate(
+			Map<String, Object> headers, byte[] payload, Collection<String> variableHeaderNames) {
+
+		Assert.notNull(headers, "'headers' is required");
+		Assert.notNull(payload, "'payload' is required");
+		Assert.isTrue(!SimpMessageType.HEARTBEAT.equals(SimpMessageHeaderAccessor.getMessageType(headers)),
+				"Heartbeats are not encoded with a template");
 
-		@SuppressWarnings("unchecked")
-		Map<String,List<String>> nativeHeaders =
-				(Map<String, List<String>>) headers.get(NativeMessageHeaderAccessor.NATIVE_HEADERS);
+		StompCommand command = StompHeaderAccessor.getCommand(headers);
+		if (command == null) {
+			throw new IllegalStateException("Missing STOMP command: " + headers);
+		}
+
+		Result head = new DefaultResult();
+		head.add(command.toString().getBytes(StandardCharsets.UTF_8));
+		head.add(LINE_FEED_BYTE);
+		writeHeaders(command, headers, payload, variableHeaderNames, head);
+
+		Map<String, List<String>> sharedHeaders = new LinkedHashMap<>();
+		Map<String, List<String>> nativeHeaders = getNativeHeaders(headers);
+		if (nativeHeaders != null) {
+			nativeHeaders.forEach((name, values) -> {
+				if (!variableHeaderNames.contains(name)) {
+					sharedHeaders.put(name, new ArrayList<>(values));
+				}
+			});
+		}
+
+		boolean shouldEscape = shouldEscape(command);
+		String[] variableNames = StringUtils.toStringArray(variableHeaderNames);
+		byte[][] encodedVariableNames = new byte[variableNames.length][];
+		for (int i = 0; i < variableNames.length; i++) {
+			encodedVariableNames[i] = encodeHeaderKey(variableNames[i], shouldEscape);
+		}
+		return new FrameTemplate(command, sharedHeaders, payload, variableNames, encodedVariableNames,
+				head.toByteArray(), shouldEscape);
+	}
+
+	private void writeHeaders(StompCommand command, Map<String, Object> headers, byte[] payload,
+			Collection<String> excludedHeaderNames, Result result) {
+
+		Map<String,List<String>> nativeHeaders = getNativeHeaders(headers);
 
 		if (logger.isTraceEnabled()) {
 			logger.trace("Encoding STOMP " + command + ", headers=" + nativeHeaders);
@@ -126,13 +187,15 @@ public class StompEncoder  {
 			return;
 		}
 
-		boolean shouldEscape = (command != StompCommand.CONNECT && command != StompCommand.STOMP
-				&& command != StompCommand.CONNECTED);
+		boolean shouldEscape = shouldEscape(command);
 
 		for (Entry<String, List<String>> entry : nativeHeaders.entrySet()) {
 			if (command.requiresContentLength() && "content-length".equals(entry.getKey())) {
 				continue;
 			}
+			if (excludedHeaderNames.contains(entry.getKey())) {
+				continue;
+			}
 
 			List<String> values = entry.getValue();
 			if ((StompCommand.CONNECT.equals(command) || StompCommand.STOMP.equals(command)) &&
@@ -157,6 +220,17 @@ public class StompEncoder  {
 		}
 	}
 
+	@SuppressWarnings("unchecked")
+	@Nullable
+	private static Map<String, List<String>> getNativeHeaders(Map<String, Object> headers) {
+		return (Map<String, List<String>>) headers.get(NativeMessageHeaderAccessor.NATIVE_HEADERS);
+	}
+
+	private static boolean shouldEscape(StompCommand command) {
+		return (command != StompCommand.CONNECT && command != StompCommand.STOMP &&
+				command != StompCommand.CONNECTED);
+	}
+
 	private byte[] encodeHeaderKey(String input, boolean escape) {
 		String inputToUse = (escape ? escape(input) : input);
 		if (this.headerKeyAccessCache.containsKey(inputToUse)) {
@@ -173,7 +247,7 @@ public class StompEncoder  {
 		}
 	}
 
-	private byte[] encodeHeaderValue(String input, boolean escape) {
+	private static byte[] encodeHeaderValue(String input, boolean escape) {
 		String inputToUse = (escape ? escape(input) : input);
 		return inputToUse.getBytes(StandardCharsets.UTF_8);
 	}
@@ -182,7 +256,7 @@ public class StompEncoder  {
 	 * See STOMP Spec 1.2:
 	 * <a href="https://stomp.github.io/stomp-specification-1.2.html#Value_Encoding">"Value Encoding"</a>.
 	 */
-	private String escape(String inString) {
+	private static String escape(String inString) {
 		StringBuilder sb = null;
 		for (int i = 0; i < inString.length(); i++) {
 			char c = inString.charAt(i);
@@ -209,7 +283,7 @@ public class StompEncoder  {
 		return (sb != null ? sb.toString() : inString);
 	}
 
-	private StringBuilder getStringBuilder(@Nullable StringBuilder sb, String inString, int i) {
+	private static StringBuilder getStringBuilder(@Nullable StringBuilder sb, String inString, int i) {
 		if (sb == null) {
 			sb = new StringBuilder(inString.length());
 			sb.append(inString, 0, i);
@@ -218,6 +292,117 @@ public class StompEncoder  {
 	}
 
 
+	/**
+	 * Pre-encoded frame with the command, shared headers, and payload, to which
+	 * the values of the variable headers of each frame are added.
+	 * @since 5.3.11
+	 * @see #createTemplate(Map, byte[], Collection)
+	 */
+	public static final class FrameTemplate {
+
+		private final StompCommand command;
+
+		private final Map<String, List<String>> sharedHeaders;
+
+		private final byte[] payload;
+
+		private final String[] variableHeaderNames;
+
+		private final byte[][] encodedVariableHeaderNames;
+
+		// Command and shared headers, followed by the variable headers of each frame
+		private final byte[] head;
+
+		private final boolean escape;
+
+		private FrameTemplate(StompCommand command, Map<String, List<String>> sharedHeaders, byte[] payload,
+				String[] variableHeaderNames, byte[][] encodedVariableHeaderNames, byte[] head, boolean escape) {
+
+			this.command = command;
+			this.sharedHeaders = sharedHeaders;
+			this.payload = payload;
+			this.variableHeaderNames = variableHeaderNames;
+			this.encodedVariableHeaderNames = encodedVariableHeaderNames;
+			this.head = head;
+			this.escape = escape;
+		}
+
+		/**
+		 * Encode a frame with the given headers and payload from this template.
+		 * @param headers the headers of the frame
+		 * @param payload the payload of the frame
+		 * @return the encoded frame, or {@code null} if the command, payload,
+		 * or headers other than the variable headers differ from those of the
+		 * template, in which case the frame needs to be encoded in full
+		 */
+		@Nullable
+		public byte[] encode(Map<String, Object> headers, byte[] payload) {
+			if (payload != this.payload || this.command != StompHeaderAccessor.getCommand(headers)) {
+				return null;
+			}
+			Map<String, List<String>> nativeHeaders = getNativeHeaders(headers);
+			if (nativeHeaders == null) {
+				nativeHeaders = Collections.emptyMap();
+			}
+			if (!hasSharedHeaders(nativeHeaders)) {
+				return null;
+			}
+
+			List<byte[]> values = new ArrayList<>(this.variableHeaderNames.length);
+			int length = this.head.length + 1 + payload.length + 1;
+			for (int i = 0; i < this.variableHeaderNames.length; i++) {
+				List<String> headerValues = nativeHeaders.get(this.variableHeaderNames[i]);
+				if (headerValues != null) {
+					for (String headerValue : headerValues) {
+						byte[] value = encodeHeaderValue(headerValue, this.escape);
+						values.add(value);
+						length += this.encodedVariableHeaderNames[i].length + 1 + value.length + 1;
+					}
+				}
+			}
+
+			byte[] result = new byte[length];
+			System.arraycopy(this.head, 0, result, 0, this.head.length);
+			int position = this.head.length;
+			int valueIndex = 0;
+			for (int i = 0; i < this.variableHeaderNames.length; i++) {
+				List<String> headerValues = nativeHeaders.get(this.variableHeaderNames[i]);
+				if (headerValues != null) {
+					for (int j = 0; j < headerValues.size(); j++) {
+						byte[] name = this.encodedVariableHeaderNames[i];
+						System.arraycopy(name, 0, result, position, name.length);
+						position += name.length;
+						result[position++] = COLON_BYTE;
+						byte[] value = values.get(valueIndex++);
+						System.arraycopy(value, 0, result, position, value.length);
+						position += value.length;
+						result[position++] = LINE_FEED_BYTE;
+					}
+				}
+			}
+			result[position++] = LINE_FEED_BYTE;
+			System.arraycopy(payload, 0, result, position, payload.length);
+			// The last byte is the terminating NULL octet
+			return result;
+		}
+
+		private boolean hasSharedHeaders(Map<String, List<String>> nativeHeaders) {
+			int count = 0;
+			for (Entry<String, List<String>> entry : nativeHeaders.entrySet()) {
+				String name = entry.getKey();
+				if (ObjectUtils.containsElement(this.variableHeaderNames, name)) {
+					continue;
+				}
+				if (!entry.getValue().equals(this.sharedHeaders.get(name))) {
+					return false;
+				}
+				count++;
+			}
+			return (count == this.sharedHeaders.size());
+		}
+	}
+
+
 	/**
 	 * Accumulates byte content and returns an aggregated byte[] at the end.
 	 */
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2020 the original author or authors.
+ * Copyright 2002-2021 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,9 +19,13 @@ package org.springframework.messaging.simp.user;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
@@ -35,6 +39,7 @@ import org.springframework.messaging.Message;
 import org.springframework.messaging.converter.MessageConverter;
 import org.springframework.util.Assert;
 import org.springframework.util.CollectionUtils;
+import org.springframework.util.ConcurrentLruCache;
 import org.springframework.util.ObjectUtils;
 
 /**
@@ -44,6 +49,12 @@ import org.springframework.util.ObjectUtils;
  * handled by {@link UserRegistryMessageHandler} which in turn notifies this
  * registry when updates are received.
  *
+ * <p>Remote registries are received either as complete snapshots, or, when
+ * {@link UserRegistryMessageHandler#setIncrementalBroadcast incremental
+ * broadcasts} are enabled, as versioned updates with the sessions added,
+ * changed, and removed since the previous broadcast, with a full snapshot
+ * sent periodically and whenever another server detects a gap in versions.
+ *
  * @author Rossen Stoyanchev
  * @since 4.2
  */
@@ -54,13 +65,28 @@ public class MultiServerUserRegistry implements SimpUserRegistry, SmartApplicati
 
 	private final SimpUserRegistry localRegistry;
 
-	private final Map<String, UserRegistrySnapshot> remoteRegistries = new ConcurrentHashMap<>();
+	private final Map<String, RemoteRegistry> remoteRegistries = new ConcurrentHashMap<>();
 
 	private final boolean delegateApplicationEvents;
 
 	/* Cross-server session lookup (e.g. same user connected to multiple servers) */
 	private final SessionLookup sessionLookup = new SessionLookup();
 
+	/* Ids of remote registries whose incremental updates could not be applied */
+	private final Set<String> outOfSyncRegistries = ConcurrentHashMap.newKeySet();
+
+	/* Shared instances of subscription ids and destinations of remote sessions */
+	private final ConcurrentLruCache<String, String> remoteStrings = new ConcurrentLruCache<>(1024, value -> value);
+
+	/* Local sessions as of the last incremental broadcast */
+	private Map<String, TransferSessionUpdate> broadcastSessions = Collections.emptyMap();
+
+	private long broadcastVersion;
+
+	private int broadcastsSinceSnapshot;
+
+	private volatile boolean snapshotRequested;
+
 
 	/**
 	 * Create an instance wrapping the local user registry.
@@ -119,8 +145,8 @@ public class MultiServerUserRegistry implements SimpUserRegistry, SmartApplicati
 	@Nullable
 	public SimpUser getUser(String userName) {
 		// Prefer remote registries due to cross-server SessionLookup
-		for (UserRegistrySnapshot registry : this.remoteRegistries.values()) {
-			SimpUser user = registry.getUserMap().get(userName);
+		for (RemoteRegistry registry : this.remoteRegistries.values()) {
+			SimpUser user = registry.findUser(userName);
 			if (user != null) {
 				return user;
 			}
@@ -132,8 +158,8 @@ public class MultiServerUserRegistry implements SimpUserRegistry, SmartApplicati
 	public Set<SimpUser> getUsers() {
 		// Prefer remote registries due to cross-server SessionLookup
 		Set<SimpUser> result = new HashSet<>();
-		for (UserRegistrySnapshot registry : this.remoteRegistries.values()) {
-			result.addAll(registry.getUserMap().values());
+		for (RemoteRegistry registry : this.remoteRegistries.values()) {
+			result.addAll(registry.users());
 		}
 		result.addAll(this.localRegistry.getUsers());
 		return result;
@@ -142,8 +168,8 @@ public class MultiServerUserRegistry implements SimpUserRegistry, SmartApplicati
 	@Override
 	public int getUserCount() {
 		int userCount = 0;
-		for (UserRegistrySnapshot registry : this.remoteRegistries.values()) {
-			userCount += registry.getUserMap().size();
+		for (RemoteRegistry registry : this.remoteRegistries.values()) {
+			userCount += registry.userCount();
 		}
 		userCount += this.localRegistry.getUserCount();
 		return userCount;
@@ -152,7 +178,7 @@ public class MultiServerUserRegistry implements SimpUserRegistry, SmartApplicati
 	@Override
 	public Set<SimpSubscription> findSubscriptions(SimpSubscriptionMatcher matcher) {
 		Set<SimpSubscription> result = new HashSet<>();
-		for (UserRegistrySnapshot registry : this.remoteRegistries.values()) {
+		for (RemoteRegistry registry : this.remoteRegistries.values()) {
 			result.addAll(registry.findSubscriptions(matcher));
 		}
 		result.addAll(this.localRegistry.findSubscriptions(matcher));
@@ -174,9 +200,70 @@ public class MultiServerUserRegistry implements SimpUserRegistry, SmartApplicati
 		}
 	}
 
+	/**
+	 * Return the local sessions added, changed, or removed since the previous
+	 * call, or all local sessions if a snapshot is due or has been requested.
+	 * @param snapshotInterval every how many calls to send a full snapshot
+	 */
+	synchronized Object getLocalRegistryUpdate(int snapshotInterval) {
+		Map<String, TransferSessionUpdate> sessions = new HashMap<>();
+		for (SimpUser user : this.localRegistry.getUsers()) {
+			for (SimpSession session : user.getSessions()) {
+				sessions.put(session.getId(), new TransferSessionUpdate(user.getName(), session));
+			}
+		}
+		UserRegistryUpdate update = new UserRegistryUpdate(this.id, this.broadcastVersion, this.broadcastVersion + 1);
+		if (this.broadcastVersion == 0 || this.snapshotRequested || this.broadcastsSinceSnapshot + 1 >= snapshotInterval) {
+			this.snapshotRequested = false;
+			this.broadcastsSinceSnapshot = 0;
+			update.setSnapshot(true);
+			update.setSessions(new ArrayList<>(sessions.values()));
+		}
+		else {
+			this.broadcastsSinceSnapshot++;
+			List<TransferSessionUpdate> changed = new ArrayList<>();
+			for (TransferSessionUpdate session : sessions.values()) {
+				if (!session.equals(this.broadcastSessions.get(session.getId()))) {
+					changed.add(session);
+				}
+			}
+			List<String> removed = new ArrayList<>();
+			for (String sessionId : this.broadcastSessions.keySet()) {
+				if (!sessions.containsKey(sessionId)) {
+					removed.add(sessionId);
+				}
+			}
+			update.setSessions(changed);
+			update.setRemovedSessions(removed);
+		}
+		update.setSnapshotRequests(new ArrayList<>(this.outOfSyncRegistries));
+		this.broadcastSessions = sessions;
+		this.broadcastVersion++;
+		return update;
+	}
+
+	void addRemoteRegistryUpdate(Message<?> message, MessageConverter converter, long expirationPeriod) {
+		UserRegistryUpdate update = (UserRegistryUpdate) converter.fromMessage(message, UserRegistryUpdate.class);
+		if (update == null || update.getId().equals(this.id)) {
+			return;
+		}
+		if (update.getSnapshotRequests().contains(this.id)) {
+			this.snapshotRequested = true;
+		}
+		RemoteRegistry registry = this.remoteRegistries.compute(update.getId(), (id, existing) ->
+				(existing instanceof IncrementalRegistry ? existing : new IncrementalRegistry()));
+		if (((IncrementalRegistry) registry).apply(update, expirationPeriod)) {
+			this.outOfSyncRegistries.remove(update.getId());
+		}
+		else {
+			this.outOfSyncRegistries.add(update.getId());
+		}
+	}
+
 	void purgeExpiredRegistries() {
 		long now = System.currentTimeMillis();
 		this.remoteRegistries.entrySet().removeIf(entry -> entry.getValue().isExpired(now));
+		this.outOfSyncRegistries.retainAll(this.remoteRegistries.keySet());
 	}
 
 
@@ -186,11 +273,32 @@ public class MultiServerUserRegistry implements SimpUserRegistry, SmartApplicati
 	}
 
 
+	/**
+	 * Contract for the users of a remote server, as received through snapshot
+	 * or incremental broadcasts.
+	 */
+	private interface RemoteRegistry {
+
+		@Nullable
+		SimpUser findUser(String userName);
+
+		Collection<? extends SimpUser> users();
+
+		int userCount();
+
+		Set<SimpSubscription> findSubscriptions(SimpSubscriptionMatcher matcher);
+
+		void addSessions(String userName, Map<String, SimpSession> map);
+
+		boolean isExpired(long now);
+	}
+
+
 	/**
 	 * Holds a copy of a SimpUserRegistry for the purpose of broadcasting to and
 	 * receiving broadcasts from other application servers.
 	 */
-	private static class UserRegistrySnapshot {
+	private static class UserRegistrySnapshot implements RemoteRegistry {
 
 		private String id = "";
 
@@ -235,6 +343,31 @@ public class MultiServerUserRegistry implements SimpUserRegistry, SmartApplicati
 			return this.users;
 		}
 
+		@Override
+		@Nullable
+		public SimpUser findUser(String userName) {
+			return this.users.get(userName);
+		}
+
+		@Override
+		public Collection<? extends SimpUser> users() {
+			return this.users.values();
+		}
+
+		@Override
+		public int userCount() {
+			return this.users.size();
+		}
+
+		@Override
+		public void addSessions(String userName, Map<String, SimpSession> map) {
+			TransferSimpUser user = this.users.get(userName);
+			if (user != null) {
+				user.addSessions(map);
+			}
+		}
+
+		@Override
 		public boolean isExpired(long now) {
 			return (now > this.expirationTime);
 		}
@@ -246,6 +379,7 @@ public class MultiServerUserRegistry implements SimpUserRegistry, SmartApplicati
 			}
 		}
 
+		@Override
 		public Set<SimpSubscription> findSubscriptions(SimpSubscriptionMatcher matcher) {
 			Set<SimpSubscription> result = new HashSet<>();
 			for (TransferSimpUser user : this.users.values()) {
@@ -555,6 +689,500 @@ public class MultiServerUserRegistry implements SimpUserRegistry, SmartApplicati
 	}
 
 
+	/**
+	 * Versioned incremental update, or full snapshot, of the sessions of a
+	 * SimpUserRegistry, for the purpose of broadcasting to and receiving
+	 * broadcasts from other application servers.
+	 */
+	private static class UserRegistryUpdate {
+
+		private String id = "";
+
+		private long baseVersion;
+
+		private long version;
+
+		private boolean snapshot;
+
+		private List<TransferSessionUpdate> sessions = Collections.emptyList();
+
+		private List<String> removedSessions = Collections.emptyList();
+
+		// Ids of registries the sender needs a snapshot from
+		private List<String> snapshotRequests = Collections.emptyList();
+
+		/**
+		 * Default constructor for JSON deserialization.
+		 */
+		@SuppressWarnings("unused")
+		public UserRegistryUpdate() {
+		}
+
+		public UserRegistryUpdate(String id, long baseVersion, long version) {
+			this.id = id;
+			this.baseVersion = baseVersion;
+			this.version = version;
+		}
+
+		@SuppressWarnings("unused")
+		public void setId(String id) {
+			this.id = id;
+		}
+
+		public String getId() {
+			return this.id;
+		}
+
+		@SuppressWarnings("unused")
+		public void setBaseVersion(long baseVersion) {
+			this.baseVersion = baseVersion;
+		}
+
+		public long getBaseVersion() {
+			return this.baseVersion;
+		}
+
+		@SuppressWarnings("unused")
+		public void setVersion(long version) {
+			this.version = version;
+		}
+
+		public long getVersion() {
+			return this.version;
+		}
+
+		public void setSnapshot(boolean snapshot) {
+			this.snapshot = snapshot;
+		}
+
+		public boolean isSnapshot() {
+			return this.snapshot;
+		}
+
+		public void setSessions(List<TransferSessionUpdate> sessions) {
+			this.sessions = sessions;
+		}
+
+		public List<TransferSessionUpdate> getSessions() {
+			return this.sessions;
+		}
+
+		public void setRemovedSessions(List<String> removedSessions) {
+			this.removedSessions = removedSessions;
+		}
+
+		public List<String> getRemovedSessions() {
+			return this.removedSessions;
+		}
+
+		public void setSnapshotRequests(List<String> snapshotRequests) {
+			this.snapshotRequests = snapshotRequests;
+		}
+
+		public List<String> getSnapshotRequests() {
+			return this.snapshotRequests;
+		}
+
+		@Override
+		public String toString() {
+			return "id=" + this.id + ", version=" + this.version + (this.snapshot ? ", snapshot" : "") +
+					", sessions=" + this.sessions + ", removedSessions=" + this.removedSessions;
+		}
+	}
+
+
+	/**
+	 * A session, with its user name and subscriptions by id, as part of a
+	 * {@link UserRegistryUpdate}.
+	 */
+	private static class TransferSessionUpdate {
+
+		private String id = "";
+
+		private String user = "";
+
+		private Map<String, String> subscriptions = Collections.emptyMap();
+
+		/**
+		 * Default constructor for JSON deserialization.
+		 */
+		@SuppressWarnings("unused")
+		public TransferSessionUpdate() {
+		}
+
+		/**
+		 * Constructor to create DTO from the local user session.
+		 */
+		public TransferSessionUpdate(String user, SimpSession session) {
+			this.id = session.getId();
+			this.user = user;
+			Set<SimpSubscription> subscriptions = session.getSubscriptions();
+			this.subscriptions = CollectionUtils.newHashMap(subscriptions.size());
+			for (SimpSubscription subscription : subscriptions) {
+				this.subscriptions.put(subscription.getId(), subscription.getDestination());
+			}
+		}
+
+		@SuppressWarnings("unused")
+		public void setId(String id) {
+			this.id = id;
+		}
+
+		public String getId() {
+			return this.id;
+		}
+
+		@SuppressWarnings("unused")
+		public void setUser(String user) {
+			this.user = user;
+		}
+
+		public String getUser() {
+			return this.user;
+		}
+
+		@SuppressWarnings("unused")
+		public void setSubscriptions(Map<String, String> subscriptions) {
+			this.subscriptions = subscriptions;
+		}
+
+		public Map<String, String> getSubscriptions() {
+			return this.subscriptions;
+		}
+
+		@Override
+		public boolean equals(@Nullable Object other) {
+			if (this == other) {
+				return true;
+			}
+			if (!(other instanceof TransferSessionUpdate)) {
+				return false;
+			}
+			TransferSessionUpdate otherSession = (TransferSessionUpdate) other;
+			return (this.id.equals(otherSession.id) && this.user.equals(otherSession.user) &&
+					this.subscriptions.equals(otherSession.subscriptions));
+		}
+
+		@Override
+		public int hashCode() {
+			return this.id.hashCode();
+		}
+
+		@Override
+		public String toString() {
+			return "id=" + this.id + ", user=" + this.user + ", subscriptions=" + this.subscriptions;
+		}
+	}
+
+
+	/**
+	 * Users of a remote server maintained from incremental broadcasts. The
+	 * sessions are held in a compact form, and replaced as a whole when a
+	 * snapshot is received.
+	 */
+	private final class IncrementalRegistry implements RemoteRegistry {
+
+		private volatile RemoteSessions sessions = new RemoteSessions();
+
+		private long version = -1;
+
+		private boolean inSync;
+
+		private volatile long expirationTime;
+
+		/**
+		 * Apply the given update.
+		 * @return {@code false} if the update does not follow the last applied
+		 * version, in which case nothing is applied until the next snapshot
+		 */
+		public synchronized boolean apply(UserRegistryUpdate update, long expirationPeriod) {
+			this.expirationTime = System.currentTimeMillis() + expirationPeriod;
+			if (update.isSnapshot()) {
+				RemoteSessions sessions = new RemoteSessions();
+				for (TransferSessionUpdate session : update.getSessions()) {
+					sessions.put(session);
+				}
+				this.sessions = sessions;
+			}
+			else if (this.inSync && update.getBaseVersion() == this.version) {
+				for (String sessionId : update.getRemovedSessions()) {
+					this.sessions.remove(sessionId);
+				}
+				for (TransferSessionUpdate session : update.getSessions()) {
+					this.sessions.put(session);
+				}
+			}
+			else {
+				this.inSync = false;
+				return false;
+			}
+			this.version = update.getVersion();
+			this.inSync = true;
+			return true;
+		}
+
+		@Override
+		@Nullable
+		public SimpUser findUser(String userName) {
+			return this.sessions.users.get(userName);
+		}
+
+		@Override
+		public Collection<? extends SimpUser> users() {
+			return this.sessions.users.values();
+		}
+
+		@Override
+		public int userCount() {
+			return this.sessions.users.size();
+		}
+
+		@Override
+		public Set<SimpSubscription> findSubscriptions(SimpSubscriptionMatcher matcher) {
+			Set<SimpSubscription> result = new HashSet<>();
+			for (RemoteSession session : this.sessions.sessions.values()) {
+				for (RemoteSubscription subscription : session.subscriptions) {
+					if (matcher.match(subscription)) {
+						result.add(subscription);
+					}
+				}
+			}
+			return result;
+		}
+
+		@Override
+		public void addSessions(String userName, Map<String, SimpSession> map) {
+			RemoteSimpUser user = this.sessions.users.get(userName);
+			if (user != null) {
+				for (RemoteSession session : user.sessions) {
+					map.put(session.id, session);
+				}
+			}
+		}
+
+		@Override
+		public boolean isExpired(long now) {
+			return (now > this.expirationTime);
+		}
+
+		@Override
+		public String toString() {
+			return "version=" + this.version + ", users=" + this.sessions.users.values();
+		}
+	}
+
+
+	/**
+	 * Sessions of a remote server indexed by id and by user. Modified only
+	 * while holding the lock of the owning {@link IncrementalRegistry}.
+	 */
+	private final class RemoteSessions {
+
+		final Map<String, RemoteSession> sessions = new ConcurrentHashMap<>();
+
+		final Map<String, RemoteSimpUser> users = new ConcurrentHashMap<>();
+
+		void put(TransferSessionUpdate update) {
+			remove(update.getId());
+			RemoteSimpUser user = this.users.computeIfAbsent(update.getUser(), RemoteSimpUser::new);
+			RemoteSession session = new RemoteSession(update.getId(), user, update.getSubscriptions());
+			RemoteSession[] userSessions = Arrays.copyOf(user.sessions, user.sessions.length + 1);
+			userSessions[userSessions.length - 1] = session;
+			user.sessions = userSessions;
+			this.sessions.put(session.id, session);
+		}
+
+		void remove(String sessionId) {
+			RemoteSession session = this.sessions.remove(sessionId);
+			if (session == null) {
+				return;
+			}
+			RemoteSimpUser user = session.user;
+			if (user.sessions.length == 1) {
+				this.users.remove(user.name);
+				return;
+			}
+			RemoteSession[] userSessions = new RemoteSession[user.sessions.length - 1];
+			int index = 0;
+			for (RemoteSession userSession : user.sessions) {
+				if (userSession != session) {
+					userSessions[index++] = userSession;
+				}
+			}
+			user.sessions = userSessions;
+		}
+	}
+
+
+	/**
+	 * SimpUser of a remote server received through incremental broadcasts.
+	 */
+	private final class RemoteSimpUser implements SimpUser {
+
+		private final String name;
+
+		// User sessions from one remote server only
+		volatile RemoteSession[] sessions = new RemoteSession[0];
+
+		RemoteSimpUser(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public String getName() {
+			return this.name;
+		}
+
+		@Nullable
+		@Override
+		public Principal getPrincipal() {
+			return null;
+		}
+
+		@Override
+		public boolean hasSessions() {
+			return !sessionLookup.findSessions(this.name).isEmpty();
+		}
+
+		@Override
+		@Nullable
+		public SimpSession getSession(String sessionId) {
+			return sessionLookup.findSessions(this.name).get(sessionId);
+		}
+
+		@Override
+		public Set<SimpSession> getSessions() {
+			return new HashSet<>(sessionLookup.findSessions(this.name).values());
+		}
+
+		@Override
+		public boolean equals(@Nullable Object other) {
+			return (this == other || (other instanceof SimpUser && this.name.equals(((SimpUser) other).getName())));
+		}
+
+		@Override
+		public int hashCode() {
+			return this.name.hashCode();
+		}
+
+		@Override
+		public String toString() {
+			return "name=" + this.name + ", sessions=" + Arrays.toString(this.sessions);
+		}
+	}
+
+
+	/**
+	 * SimpSession of a remote server received through incremental broadcasts.
+	 */
+	private final class RemoteSession implements SimpSession {
+
+		final String id;
+
+		final RemoteSimpUser user;
+
+		final RemoteSubscription[] subscriptions;
+
+		RemoteSession(String id, RemoteSimpUser user, Map<String, String> subscriptions) {
+			this.id = id;
+			this.user = user;
+			this.subscriptions = new RemoteSubscription[subscriptions.size()];
+			int index = 0;
+			for (Map.Entry<String, String> entry : subscriptions.entrySet()) {
+				this.subscriptions[index++] = new RemoteSubscription(
+						remoteStrings.get(entry.getKey()), this, remoteStrings.get(entry.getValue()));
+			}
+		}
+
+		@Override
+		public String getId() {
+			return this.id;
+		}
+
+		@Override
+		public SimpUser getUser() {
+			return this.user;
+		}
+
+		@Override
+		public Set<SimpSubscription> getSubscriptions() {
+			return new HashSet<>(Arrays.asList(this.subscriptions));
+		}
+
+		@Override
+		public boolean equals(@Nullable Object other) {
+			return (this == other || (other instanceof SimpSession && this.id.equals(((SimpSession) other).getId())));
+		}
+
+		@Override
+		public int hashCode() {
+			return this.id.hashCode();
+		}
+
+		@Override
+		public String toString() {
+			return "id=" + this.id + ", subscriptions=" + Arrays.toString(this.subscriptions);
+		}
+	}
+
+
+	/**
+	 * SimpSubscription of a remote server received through incremental broadcasts.
+	 */
+	private static final class RemoteSubscription implements SimpSubscription {
+
+		private final String id;
+
+		private final SimpSession session;
+
+		private final String destination;
+
+		RemoteSubscription(String id, SimpSession session, String destination) {
+			this.id = id;
+			this.session = session;
+			this.destination = destination;
+		}
+
+		@Override
+		public String getId() {
+			return this.id;
+		}
+
+		@Override
+		public SimpSession getSession() {
+			return this.session;
+		}
+
+		@Override
+		public String getDestination() {
+			return this.destination;
+		}
+
+		@Override
+		public boolean equals(@Nullable Object other) {
+			if (this == other) {
+				return true;
+			}
+			if (!(other instanceof SimpSubscription)) {
+				return false;
+			}
+			SimpSubscription otherSubscription = (SimpSubscription) other;
+			return (this.id.equals(otherSubscription.getId()) &&
+					ObjectUtils.nullSafeEquals(this.session, otherSubscription.getSession()));
+		}
+
+		@Override
+		public int hashCode() {
+			return this.id.hashCode() * 31 + this.session.hashCode();
+		}
+
+		@Override
+		public String toString() {
+			return "destination=" + this.destination;
+		}
+	}
+
+
 	/**
 	 * Helper class to find user sessions across all servers.
 	 */
@@ -568,11 +1196,8 @@ public class MultiServerUserRegistry implements SimpUserRegistry, SmartApplicati
 					map.put(session.getId(), session);
 				}
 			}
-			for (UserRegistrySnapshot registry : remoteRegistries.values()) {
-				TransferSimpUser transferUser = registry.getUserMap().get(userName);
-				if (transferUser != null) {
-					transferUser.addSessions(map);
-				}
+			for (RemoteRegistry registry : remoteRegistries.values()) {
+				registry.addSessions(userName, map);
 			}
 			return map;
 		}
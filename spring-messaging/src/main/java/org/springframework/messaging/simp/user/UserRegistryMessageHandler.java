@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2021 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -59,6 +59,10 @@ public class UserRegistryMessageHandler implements MessageHandler, ApplicationLi
 
 	private long registryExpirationPeriod = TimeUnit.SECONDS.toMillis(20);
 
+	private boolean incrementalBroadcast;
+
+	private int snapshotInterval = 10;
+
 
 	/**
 	 * Constructor.
@@ -107,6 +111,51 @@ public class UserRegistryMessageHandler implements MessageHandler, ApplicationLi
 		return this.registryExpirationPeriod;
 	}
 
+	/**
+	 * Whether to broadcast only the local sessions added, changed, or removed
+	 * since the previous broadcast, rather than the complete local registry.
+	 * Updates are versioned, and a server that misses an update asks for a
+	 * full snapshot through its own next broadcast. This reduces broadcast
+	 * size for registries with many long-lived sessions.
+	 * <p>All servers sharing the broadcast destination must use the same
+	 * setting.
+	 * <p>By default this is set to {@code false}.
+	 * @since 5.3.11
+	 * @see #setSnapshotInterval(int)
+	 */
+	public void setIncrementalBroadcast(boolean incrementalBroadcast) {
+		this.incrementalBroadcast = incrementalBroadcast;
+	}
+
+	/**
+	 * Whether incremental broadcasts are enabled.
+	 * @since 5.3.11
+	 */
+	public boolean isIncrementalBroadcast() {
+		return this.incrementalBroadcast;
+	}
+
+	/**
+	 * When {@link #setIncrementalBroadcast incremental broadcasts} are enabled,
+	 * configure every how many broadcasts to send a full snapshot of the local
+	 * registry regardless of whether one has been requested.
+	 * <p>By default this is set to 10.
+	 * @param snapshotInterval the number of broadcasts per snapshot
+	 * @since 5.3.11
+	 */
+	public void setSnapshotInterval(int snapshotInterval) {
+		Assert.isTrue(snapshotInterval > 0, "'snapshotInterval' must be greater than 0");
+		this.snapshotInterval = snapshotInterval;
+	}
+
+	/**
+	 * Return the configured snapshot interval.
+	 * @since 5.3.11
+	 */
+	public int getSnapshotInterval() {
+		return this.snapshotInterval;
+	}
+
 
 	@Override
 	public void onApplicationEvent(BrokerAvailabilityEvent event) {
@@ -126,7 +175,12 @@ public class UserRegistryMessageHandler implements MessageHandler, ApplicationLi
 	@Override
 	public void handleMessage(Message<?> message) throws MessagingException {
 		MessageConverter converter = this.brokerTemplate.getMessageConverter();
-		this.userRegistry.addRemoteRegistryDto(message, converter, getRegistryExpirationPeriod());
+		if (this.incrementalBroadcast) {
+			this.userRegistry.addRemoteRegistryUpdate(message, converter, getRegistryExpirationPeriod());
+		}
+		else {
+			this.userRegistry.addRemoteRegistryDto(message, converter, getRegistryExpirationPeriod());
+		}
 	}
 
 
@@ -138,7 +192,8 @@ public class UserRegistryMessageHandler implements MessageHandler, ApplicationLi
 				SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
 				accessor.setHeader(SimpMessageHeaderAccessor.IGNORE_ERROR, true);
 				accessor.setLeaveMutable(true);
-				Object payload = userRegistry.getLocalRegistryDto();
+				Object payload = (incrementalBroadcast ?
+						userRegistry.getLocalRegistryUpdate(snapshotInterval) : userRegistry.getLocalRegistryDto());
 				brokerTemplate.convertAndSend(getBroadcastDestination(), payload, accessor.getMessageHeaders());
 			}
 			finally {
@@ -0,0 +1,466 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.messaging.support;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.lang.Nullable;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.util.Assert;
+import org.springframework.util.CustomizableThreadCreator;
+
+/**
+ * An {@link ExecutorSubscribableChannel} that sends messages to its subscribers
+ * from a fixed number of lanes, each with a dedicated thread and a bounded
+ * buffer. Messages are assigned to a lane by the hash of a partition key
+ * header, by default the session id, so messages with the same key are
+ * handled in the order they were sent, without further locking.
+ *
+ * <p>Messages without a partition key are assigned to lanes in turn. Each
+ * message takes up one place in the buffer of its lane, regardless of the
+ * number of subscribers. When the buffer is full, senders wait up to the
+ * send timeout for space.
+ *
+ * <p>Lane threads are daemon threads by default. They are started on the
+ * first send, park while their lane is empty, and stop after handling
+ * buffered messages on {@link #destroy()}.
+ *
+ * @author Rossen Stoyanchev
+ * @since 5.3.11
+ */
+public class PartitionedSubscribableChannel extends ExecutorSubscribableChannel implements DisposableBean {
+
+	/**
+	 * The default partition key header, the same as
+	 * {@link org.springframework.messaging.simp.SimpMessageHeaderAccessor#SESSION_ID_HEADER}.
+	 */
+	public static final String DEFAULT_PARTITION_KEY_HEADER = "simpSessionId";
+
+
+	private final Lane[] lanes;
+
+	private final int laneCapacity;
+
+	private String partitionKeyHeaderName = DEFAULT_PARTITION_KEY_HEADER;
+
+	private boolean daemon = true;
+
+	private final AtomicInteger nextLaneIndex = new AtomicInteger();
+
+	private volatile boolean started;
+
+	private volatile boolean shutdown;
+
+	private final Object lifecycleMonitor = new Object();
+
+
+	/**
+	 * Create a new {@code PartitionedSubscribableChannel}.
+	 * @param laneCount the number of lanes, and threads
+	 * @param laneCapacity the number of messages each lane can buffer,
+	 * rounded up to a power of two
+	 */
+	public PartitionedSubscribableChannel(int laneCount, int laneCapacity) {
+		Assert.isTrue(laneCount > 0, "Lane count must be greater than 0");
+		Assert.isTrue(laneCapacity > 0 && laneCapacity <= (1 << 30), "Lane capacity must be between 1 and 2^30");
+		int capacity = 1;
+		while (capacity < laneCapacity) {
+			capacity <<= 1;
+		}
+		this.laneCapacity = capacity;
+		this.lanes = new Lane[laneCount];
+		for (int i = 0; i < laneCount; i++) {
+			this.lanes[i] = new Lane(capacity);
+		}
+	}
+
+
+	/**
+	 * Set the name of the header to assign messages to lanes by.
+	 * <p>By default this is {@link #DEFAULT_PARTITION_KEY_HEADER}.
+	 * @param partitionKeyHeaderName the name of the header
+	 */
+	public void setPartitionKeyHeaderName(String partitionKeyHeaderName) {
+		Assert.hasText(partitionKeyHeaderName, "Partition key header name must not be empty");
+		this.partitionKeyHeaderName = partitionKeyHeaderName;
+	}
+
+	/**
+	 * Return the name of the header to assign messages to lanes by.
+	 */
+	public String getPartitionKeyHeaderName() {
+		return this.partitionKeyHeaderName;
+	}
+
+	/**
+	 * Set whether lane threads are daemon threads, which do not prevent the
+	 * JVM from exiting.
+	 * <p>By default this is {@code true}.
+	 * @param daemon whether lane threads are daemon threads
+	 * @see Thread#setDaemon(boolean)
+	 */
+	public void setDaemon(boolean daemon) {
+		this.daemon = daemon;
+	}
+
+	/**
+	 * Return whether lane threads are daemon threads.
+	 */
+	public boolean isDaemon() {
+		return this.daemon;
+	}
+
+	/**
+	 * Return the number of lanes.
+	 */
+	public int getLaneCount() {
+		return this.lanes.length;
+	}
+
+	/**
+	 * Return the number of messages each lane can buffer.
+	 */
+	public int getLaneCapacity() {
+		return this.laneCapacity;
+	}
+
+	/**
+	 * Return the number of messages currently buffered in each lane.
+	 */
+	public int[] getLaneDepths() {
+		int[] depths = new int[this.lanes.length];
+		for (int i = 0; i < this.lanes.length; i++) {
+			depths[i] = this.lanes[i].getDepth();
+		}
+		return depths;
+	}
+
+
+	@Override
+	public boolean sendInternal(Message<?> message, long timeout) {
+		Assert.state(!this.shutdown, "Channel has been shut down");
+		if (!this.started) {
+			startLanes();
+		}
+		MessageHandler[] handlers = getSubscribers().toArray(new MessageHandler[0]);
+		if (handlers.length == 0) {
+			return true;
+		}
+		// A single task for all subscribers: the message is either buffered or not
+		Lane lane = getLane(message);
+		if (!lane.offer(new FanOutTask(message, handlers), timeout)) {
+			return false;
+		}
+		if (lane.isTerminated()) {
+			// Raced with destroy(): the lane thread may have stopped before the message was buffered
+			lane.drain();
+		}
+		return true;
+	}
+
+	private void startLanes() {
+		synchronized (this.lifecycleMonitor) {
+			Assert.state(!this.shutdown, "Channel has been shut down");
+			if (this.started) {
+				return;
+			}
+			CustomizableThreadCreator threadCreator = new CustomizableThreadCreator(getBeanName() + "-");
+			threadCreator.setDaemon(this.daemon);
+			for (Lane lane : this.lanes) {
+				lane.start(threadCreator.createThread(lane));
+			}
+			this.started = true;
+		}
+	}
+
+	private Lane getLane(Message<?> message) {
+		Object key = message.getHeaders().get(this.partitionKeyHeaderName);
+		int hash;
+		if (key != null) {
+			hash = key.hashCode();
+			hash ^= (hash >>> 16);
+		}
+		else {
+			hash = this.nextLaneIndex.getAndIncrement();
+		}
+		return this.lanes[Math.floorMod(hash, this.lanes.length)];
+	}
+
+	/**
+	 * Stop accepting messages, and stop lane threads once they have handled
+	 * the messages already buffered. Messages from concurrent sends that are
+	 * buffered after their lane thread stopped are handled by the sender.
+	 */
+	@Override
+	public void destroy() {
+		synchronized (this.lifecycleMonitor) {
+			this.shutdown = true;
+			for (Lane lane : this.lanes) {
+				lane.wakeUp();
+				lane.wakeUpSenders();
+			}
+		}
+	}
+
+
+	/**
+	 * A bounded multi-producer, single-consumer ring buffer of tasks, along
+	 * with the thread that runs them.
+	 */
+	private final class Lane implements Runnable {
+
+		private final AtomicReferenceArray<Runnable> tasks;
+
+		private final AtomicLongArray sequences;
+
+		private final int mask;
+
+		private final AtomicLong enqueuePosition = new AtomicLong();
+
+		private volatile long dequeuePosition;
+
+		private final AtomicBoolean waiting = new AtomicBoolean();
+
+		private final Queue<Thread> waitingSenders = new ConcurrentLinkedQueue<>();
+
+		@Nullable
+		private volatile Thread thread;
+
+		/** Whether the lane thread has stopped taking tasks, after shutdown. */
+		private volatile boolean terminated;
+
+		Lane(int capacity) {
+			this.tasks = new AtomicReferenceArray<>(capacity);
+			this.sequences = new AtomicLongArray(capacity);
+			for (int i = 0; i < capacity; i++) {
+				this.sequences.set(i, i);
+			}
+			this.mask = capacity - 1;
+		}
+
+		void start(Thread thread) {
+			this.thread = thread;
+			thread.start();
+		}
+
+		int getDepth() {
+			long depth = this.enqueuePosition.get() - this.dequeuePosition;
+			return (int) Math.max(0, Math.min(depth, this.mask + 1));
+		}
+
+		boolean offer(Runnable task, long timeout) {
+			if (!tryOffer(task) && !awaitOffer(task, timeout)) {
+				return false;
+			}
+			// Volatile read after the volatile write in tryOffer, see run()
+			if (this.waiting.get() && this.waiting.compareAndSet(true, false)) {
+				wakeUp();
+			}
+			return true;
+		}
+
+		/**
+		 * Park until the task could be added, woken up by the lane thread
+		 * each time it takes a task from a full buffer.
+		 */
+		private boolean awaitOffer(Runnable task, long timeout) {
+			if (timeout == 0) {
+				return false;
+			}
+			long deadline = (timeout > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout) : 0);
+			Thread current = Thread.currentThread();
+			this.waitingSenders.add(current);
+			boolean offered = false;
+			try {
+				// Registered before checking again, so that space made afterwards wakes this thread up
+				while (!(offered = tryOffer(task))) {
+					Assert.state(!shutdown, "Channel has been shut down");
+					if (timeout > 0) {
+						long remaining = deadline - System.nanoTime();
+						if (remaining <= 0) {
+							return false;
+						}
+						LockSupport.parkNanos(this, remaining);
+					}
+					else {
+						LockSupport.park(this);
+					}
+					if (Thread.interrupted()) {
+						current.interrupt();
+						return false;
+					}
+				}
+				return true;
+			}
+			finally {
+				this.waitingSenders.remove(current);
+				if (!offered) {
+					// Pass on a wake-up this thread may have consumed
+					wakeUpSender();
+				}
+			}
+		}
+
+		private void wakeUpSender() {
+			Thread sender = this.waitingSenders.peek();
+			if (sender != null) {
+				LockSupport.unpark(sender);
+			}
+		}
+
+		void wakeUpSenders() {
+			for (Thread sender : this.waitingSenders) {
+				LockSupport.unpark(sender);
+			}
+		}
+
+		private boolean tryOffer(Runnable task) {
+			long position = this.enqueuePosition.get();
+			while (true) {
+				int index = (int) position & this.mask;
+				long difference = this.sequences.get(index) - position;
+				if (difference == 0) {
+					if (this.enqueuePosition.compareAndSet(position, position + 1)) {
+						this.tasks.lazySet(index, task);
+						this.sequences.set(index, position + 1);
+						return true;
+					}
+					position = this.enqueuePosition.get();
+				}
+				else if (difference < 0) {
+					return false;
+				}
+				else {
+					position = this.enqueuePosition.get();
+				}
+			}
+		}
+
+		@Nullable
+		private Runnable poll() {
+			long position = this.dequeuePosition;
+			int index = (int) position & this.mask;
+			if (this.sequences.get(index) != position + 1) {
+				return null;
+			}
+			Runnable task = this.tasks.get(index);
+			this.tasks.lazySet(index, null);
+			// Volatile write before checking for waiting senders, see awaitOffer()
+			this.sequences.set(index, position + this.mask + 1);
+			this.dequeuePosition = position + 1;
+			wakeUpSender();
+			return task;
+		}
+
+		boolean isTerminated() {
+			return this.terminated;
+		}
+
+		/**
+		 * Run the tasks left in the buffer. Called once the lane thread has
+		 * terminated, by it and by senders that buffered a task concurrently.
+		 */
+		synchronized void drain() {
+			Runnable task;
+			while ((task = poll()) != null) {
+				runTask(task);
+			}
+		}
+
+		void wakeUp() {
+			Thread thread = this.thread;
+			if (thread != null) {
+				LockSupport.unpark(thread);
+			}
+		}
+
+		@Override
+		public void run() {
+			while (true) {
+				Runnable task = poll();
+				if (task == null) {
+					if (shutdown) {
+						// Volatile write before checking for tasks, see sendInternal()
+						this.terminated = true;
+						drain();
+						return;
+					}
+					// Set the flag before checking again, so that a sender
+					// either sees it, or the task it added is found here
+					this.waiting.set(true);
+					task = poll();
+					if (task == null && !shutdown) {
+						LockSupport.park(this);
+					}
+					this.waiting.set(false);
+					if (task == null) {
+						continue;
+					}
+				}
+				runTask(task);
+			}
+		}
+
+		private void runTask(Runnable task) {
+			try {
+				task.run();
+			}
+			catch (Throwable ex) {
+				logger.error("Failed to handle message in " + getBeanName(), ex);
+			}
+		}
+	}
+
+
+	/**
+	 * Sends a message to each of the subscribers at the time it was sent.
+	 */
+	private final class FanOutTask implements Runnable {
+
+		private final Message<?> message;
+
+		private final MessageHandler[] handlers;
+
+		FanOutTask(Message<?> message, MessageHandler[] handlers) {
+			this.message = message;
+			this.handlers = handlers;
+		}
+
+		@Override
+		public void run() {
+			for (MessageHandler handler : this.handlers) {
+				try {
+					new SendTask(this.message, handler).run();
+				}
+				catch (Throwable ex) {
+					logger.error("Failed to handle message in " + getBeanName(), ex);
+				}
+			}
+		}
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2020 the original author or authors.
+ * Copyright 2002-2021 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -18,7 +18,9 @@ package org.springframework.messaging.handler.annotation.reactive;
 import java.time.Duration;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.junit.jupiter.api.Test;
 import reactor.core.publisher.Flux;
@@ -37,6 +39,7 @@ import org.springframework.core.env.PropertySource;
 import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.core.io.buffer.DefaultDataBufferFactory;
 import org.springframework.messaging.Message;
+import org.springframework.messaging.handler.CompositeMessageCondition;
 import org.springframework.messaging.handler.DestinationPatternsMessageCondition;
 import org.springframework.messaging.handler.annotation.DestinationVariable;
 import org.springframework.messaging.handler.annotation.MessageExceptionHandler;
@@ -97,6 +100,31 @@ public class MessageMappingMessageHandlerTests {
 		verifyOutputContent(Collections.singletonList("test::abcdef::response"));
 	}
 
+	@Test
+	public void destinationLookupPrefixes() {
+		MessageMappingMessageHandler messsageHandler = initMesssageHandler();
+		Set<String> prefixes = new LinkedHashSet<>();
+		for (CompositeMessageCondition mapping : messsageHandler.getHandlerMethods().keySet()) {
+			prefixes.addAll(messsageHandler.getDestinationLookupPrefixes(mapping));
+		}
+		assertThat(prefixes).containsExactlyInAnyOrder("string", "monoString", "fluxString", "path123",
+				"destination", "books", "author.name", "exception", "errorSignal");
+	}
+
+	@Test
+	public void handleWithEmptySegmentInDestination() {
+		MessageMappingMessageHandler messsageHandler = initMesssageHandler();
+		messsageHandler.handleMessage(message("author..names", "abcdef")).block(Duration.ofSeconds(5));
+		verifyOutputContent(Collections.singletonList("abcdef::author"));
+	}
+
+	@Test
+	public void handleWithDoubleWildcardMatchingPrefixOnly() {
+		MessageMappingMessageHandler messsageHandler = initMesssageHandler();
+		messsageHandler.handleMessage(message("books", "abcdef")).block(Duration.ofSeconds(5));
+		verifyOutputContent(Collections.singletonList("abcdef::books"));
+	}
+
 	@Test
 	public void handleException() {
 		MessageMappingMessageHandler messsageHandler = initMesssageHandler();
@@ -196,6 +224,16 @@ public class MessageMappingMessageHandlerTests {
 			return variable + "::" + payload + "::response";
 		}
 
+		@MessageMapping("books.**")
+		String handleWithDoubleWildcard(String payload) {
+			return payload + "::books";
+		}
+
+		@MessageMapping("author.name*")
+		String handleWithWildcard(String payload) {
+			return payload + "::author";
+		}
+
 		@MessageMapping("exception")
 		String handleAndThrow() {
 			throw new IllegalArgumentException("rejected");
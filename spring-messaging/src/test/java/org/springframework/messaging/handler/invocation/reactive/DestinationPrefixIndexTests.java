@@ -0,0 +1,63 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.messaging.handler.invocation.reactive;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for {@link DestinationPrefixIndex}.
+ *
+ * @author Rossen Stoyanchev
+ */
+class DestinationPrefixIndexTests {
+
+	@Test
+	void getMappings() {
+		DestinationPrefixIndex<String> index = new DestinationPrefixIndex<>();
+		index.add("exact", new LinkedHashSet<>(Arrays.asList("foo.bar")));
+		index.add("pattern", new LinkedHashSet<>(Arrays.asList("foo.")));
+		index.add("other", new LinkedHashSet<>(Arrays.asList("baz.")));
+		index.add("any", null);
+
+		assertThat(index.getMappings("foo.bar")).containsExactly("any", "pattern", "exact");
+		assertThat(index.getMappings("foo.qux")).containsExactly("any", "pattern");
+		assertThat(index.getMappings("baz.qux")).containsExactly("any", "other");
+		assertThat(index.getMappings("qux")).containsExactly("any");
+	}
+
+	@Test
+	void getMappingsIgnoresCase() {
+		DestinationPrefixIndex<String> index = new DestinationPrefixIndex<>();
+		index.add("pattern", new LinkedHashSet<>(Arrays.asList("Foo.")));
+
+		assertThat(index.getMappings("fOO.bar")).containsExactly("pattern");
+	}
+
+	@Test
+	void getMappingsWithSeveralMatchingPrefixes() {
+		DestinationPrefixIndex<String> index = new DestinationPrefixIndex<>();
+		index.add("pattern", new LinkedHashSet<>(Arrays.asList("foo.", "foo.bar.")));
+
+		assertThat(index.getMappings("foo.bar.baz")).containsExactly("pattern");
+	}
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.messaging.rsocket.annotation.support;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.rsocket.util.DefaultPayload;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import org.springframework.core.codec.StringDecoder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.handler.DestinationPatternsMessageCondition;
+import org.springframework.messaging.rsocket.DefaultMetadataExtractor;
+import org.springframework.messaging.rsocket.MetadataExtractor;
+import org.springframework.messaging.rsocket.RSocketRequester;
+import org.springframework.messaging.rsocket.RSocketStrategies;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.util.RouteMatcher;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Unit tests for {@link MessagingRSocket}.
+ *
+ * @author Rossen Stoyanchev
+ */
+class MessagingRSocketTests {
+
+	private final AtomicInteger extractCount = new AtomicInteger();
+
+	private final List<Message<?>> messages = new ArrayList<>();
+
+
+	@Test
+	void metadataExtractedOncePerContent() {
+		DefaultMetadataExtractor extractor = new DefaultMetadataExtractor(StringDecoder.allMimeTypes());
+		extractor.metadataToExtract(MimeTypeUtils.TEXT_PLAIN, String.class, MetadataExtractor.ROUTE_KEY);
+		MessagingRSocket rsocket = createRSocket(extractor);
+
+		rsocket.fireAndForget(DefaultPayload.create("data", "foo.bar")).block();
+		rsocket.fireAndForget(DefaultPayload.create("data", "foo.bar")).block();
+		rsocket.fireAndForget(DefaultPayload.create("data", "foo.baz")).block();
+
+		assertThat(this.extractCount.get()).isEqualTo(2);
+		assertThat(this.messages).extracting(this::route).containsExactly("foo.bar", "foo.bar", "foo.baz");
+	}
+
+	@Test
+	void metadataCachedBeyondCacheLimit() {
+		DefaultMetadataExtractor extractor = new DefaultMetadataExtractor(StringDecoder.allMimeTypes());
+		extractor.metadataToExtract(MimeTypeUtils.TEXT_PLAIN, String.class, MetadataExtractor.ROUTE_KEY);
+		MessagingRSocket rsocket = createRSocket(extractor);
+
+		for (int i = 0; i < 100; i++) {
+			rsocket.fireAndForget(DefaultPayload.create("data", "foo." + i)).block();
+		}
+		rsocket.fireAndForget(DefaultPayload.create("data", "foo.99")).block();
+
+		assertThat(this.extractCount.get()).isEqualTo(100);
+	}
+
+	@Test
+	void metadataWithNonStringValuesNotCached() {
+		DefaultMetadataExtractor extractor = new DefaultMetadataExtractor(StringDecoder.allMimeTypes());
+		extractor.metadataToExtract(MimeTypeUtils.TEXT_PLAIN, String.class, (value, map) -> {
+			map.put(MetadataExtractor.ROUTE_KEY, value);
+			map.put("values", Collections.singletonList(value));
+		});
+		MessagingRSocket rsocket = createRSocket(extractor);
+
+		rsocket.fireAndForget(DefaultPayload.create("data", "foo.bar")).block();
+		int count = this.extractCount.get();
+		rsocket.fireAndForget(DefaultPayload.create("data", "foo.bar")).block();
+
+		assertThat(this.extractCount.get()).isEqualTo(count + 1);
+		assertThat(this.messages).extracting(this::route).containsExactly("foo.bar", "foo.bar");
+		assertThat(this.messages.get(0).getHeaders().get("values")).isNotSameAs(this.messages.get(1).getHeaders().get("values"));
+	}
+
+
+	private MessagingRSocket createRSocket(MetadataExtractor extractor) {
+		MetadataExtractor countingExtractor = (payload, mimeType) -> {
+			this.extractCount.incrementAndGet();
+			return extractor.extract(payload, mimeType);
+		};
+		RSocketStrategies strategies = RSocketStrategies.create();
+		return new MessagingRSocket(MimeTypeUtils.TEXT_PLAIN, MimeTypeUtils.TEXT_PLAIN, countingExtractor,
+				mock(RSocketRequester.class), message -> Mono.fromRunnable(() -> this.messages.add(message)),
+				strategies.routeMatcher(), strategies);
+	}
+
+	private String route(Message<?> message) {
+		Object route = message.getHeaders().get(DestinationPatternsMessageCondition.LOOKUP_DESTINATION_HEADER);
+		return ((RouteMatcher.Route) route).value();
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2019 the original author or authors.
+ * Copyright 2002-2021 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -112,6 +112,27 @@ public class SimpleBrokerMessageHandlerTests {
 		assertThat(messageCaptured("sess2", "sub3", "/bar")).isTrue();
 	}
 
+	@Test
+	public void subscribePublishWithBroadcastContent() {
+		startSession("sess1");
+		startSession("sess2");
+
+		this.messageHandler.handleMessage(createSubscriptionMessage("sess1", "sub1", "/foo"));
+		this.messageHandler.handleMessage(createSubscriptionMessage("sess2", "sub1", "/foo"));
+
+		Message<String> message = createMessage("/foo", "message1");
+		this.messageHandler.handleMessage(message);
+
+		verify(this.clientOutChannel, times(2)).send(this.messageCaptor.capture());
+		// The captor also holds the CONNECT_ACK messages
+		List<Message<?>> messages = this.messageCaptor.getAllValues();
+		messages = messages.subList(messages.size() - 2, messages.size());
+		BroadcastContent content = BroadcastContent.getBroadcastContent(messages.get(0));
+		assertThat(content).isNotNull();
+		assertThat(content.getMessage()).isSameAs(message);
+		assertThat(BroadcastContent.getBroadcastContent(messages.get(1))).isSameAs(content);
+	}
+
 	@Test
 	public void subscribeDisconnectPublish() {
 		String sess1 = "sess1";
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2020 the original author or authors.
+ * Copyright 2002-2021 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,10 +16,13 @@
 
 package org.springframework.messaging.simp.stomp;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.stream.Collectors;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -41,6 +44,7 @@ import org.springframework.messaging.tcp.TcpOperations;
 import org.springframework.scheduling.TaskScheduler;
 import org.springframework.util.concurrent.ListenableFuture;
 import org.springframework.util.concurrent.ListenableFutureTask;
+import org.springframework.util.concurrent.SettableListenableFuture;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.eq;
@@ -261,6 +265,237 @@ class StompBrokerRelayMessageHandlerTests {
 		assertThat(captor.getValue()).isSameAs(message);
 	}
 
+	@Test
+	void multiplexedSessionsShareConnections() {
+		StubStompBroker broker = startWithStubBroker(2);
+
+		this.brokerRelay.handleMessage(connectMessage("sess1", "joe"));
+		this.brokerRelay.handleMessage(connectMessage("sess2", "jane"));
+		this.brokerRelay.handleMessage(connectMessage("sess3", "jack"));
+
+		// "system" connection and two shared connections
+		assertThat(broker.connections).hasSize(3);
+		assertThat(this.brokerRelay.getConnectionCount()).isEqualTo(3);
+		assertThat(broker.connections.get(1).receivedFrames).extracting(StompHeaderAccessor::getLogin)
+				.containsExactly("clientlogin");
+
+		List<StompHeaderAccessor> messages = outboundHeaders();
+		assertThat(messages).extracting(StompHeaderAccessor::getCommand).containsOnly(StompCommand.CONNECTED);
+		assertThat(messages).extracting(StompHeaderAccessor::getSessionId).containsExactly("sess1", "sess2", "sess3");
+		assertThat(messages.get(0).getUser().getName()).isEqualTo("joe");
+		assertThat(messages.get(0).getVersion()).isEqualTo("1.2");
+	}
+
+	@Test
+	void multiplexedSubscriptionsAndMessages() {
+		StubStompBroker broker = startWithStubBroker(1);
+		this.brokerRelay.handleMessage(connectMessage("sess1", "joe"));
+		this.brokerRelay.handleMessage(connectMessage("sess2", "jane"));
+
+		// Same client subscription id in both sessions
+		this.brokerRelay.handleMessage(subscribeMessage("sess1", "joe", "0", "/topic/foo"));
+		this.brokerRelay.handleMessage(subscribeMessage("sess2", "jane", "0", "/topic/foo"));
+		this.outboundChannel.getMessages().clear();
+
+		Message<byte[]> sendMessage = message(StompCommand.SEND, "sess1", "joe", "/topic/foo");
+		this.brokerRelay.handleMessage(MessageBuilder.createMessage("payload".getBytes(StandardCharsets.UTF_8),
+				sendMessage.getHeaders()));
+
+		List<String> brokerSubscriptionIds = broker.connections.get(1).receivedFrames.stream()
+				.filter(accessor -> accessor.getCommand() == StompCommand.SUBSCRIBE)
+				.map(StompHeaderAccessor::getSubscriptionId)
+				.collect(Collectors.toList());
+		assertThat(brokerSubscriptionIds).hasSize(2).doesNotHaveDuplicates();
+
+		List<StompHeaderAccessor> messages = outboundHeaders();
+		assertThat(messages).extracting(StompHeaderAccessor::getCommand).containsOnly(StompCommand.MESSAGE);
+		assertThat(messages).extracting(StompHeaderAccessor::getSessionId).containsExactlyInAnyOrder("sess1", "sess2");
+		assertThat(messages).extracting(StompHeaderAccessor::getSubscriptionId).containsOnly("0");
+		assertThat(new String(this.outboundChannel.getMessages().get(0).getPayload(), StandardCharsets.UTF_8))
+				.isEqualTo("payload");
+
+		// Unsubscribe one session
+		Message<byte[]> unsubscribeMessage = message(StompCommand.UNSUBSCRIBE, "sess2", "jane", null);
+		StompHeaderAccessor.getAccessor(unsubscribeMessage, StompHeaderAccessor.class).setSubscriptionId("0");
+		this.brokerRelay.handleMessage(unsubscribeMessage);
+		this.outboundChannel.getMessages().clear();
+
+		this.brokerRelay.handleMessage(message(StompCommand.SEND, "sess1", "joe", "/topic/foo"));
+
+		assertThat(outboundHeaders()).extracting(StompHeaderAccessor::getSessionId).containsExactly("sess1");
+	}
+
+	@Test
+	void multiplexedDisconnectWithReceipt() {
+		StubStompBroker broker = startWithStubBroker(1);
+		this.brokerRelay.handleMessage(connectMessage("sess1", "joe"));
+		this.brokerRelay.handleMessage(subscribeMessage("sess1", "joe", "0", "/topic/foo"));
+		this.brokerRelay.handleMessage(subscribeMessage("sess1", "joe", "1", "/topic/bar"));
+		assertThat(this.brokerRelay.getStats().getTotalHandlers()).isEqualTo(2);
+		this.outboundChannel.getMessages().clear();
+
+		Message<byte[]> disconnectMessage = message(StompCommand.DISCONNECT, "sess1", "joe", null);
+		StompHeaderAccessor.getAccessor(disconnectMessage, StompHeaderAccessor.class).setReceipt("r1");
+		this.brokerRelay.handleMessage(disconnectMessage);
+
+		List<StompHeaderAccessor> brokerFrames = broker.connections.get(1).receivedFrames;
+		assertThat(brokerFrames.subList(brokerFrames.size() - 2, brokerFrames.size()))
+				.extracting(StompHeaderAccessor::getCommand)
+				.containsOnly(StompCommand.UNSUBSCRIBE);
+
+		List<StompHeaderAccessor> messages = outboundHeaders();
+		assertThat(messages).hasSize(1);
+		assertThat(messages.get(0).getCommand()).isEqualTo(StompCommand.RECEIPT);
+		assertThat(messages.get(0).getReceiptId()).isEqualTo("r1");
+		assertThat(messages.get(0).getSessionId()).isEqualTo("sess1");
+		assertThat(this.brokerRelay.getStats().getTotalHandlers()).isEqualTo(1);
+	}
+
+	@Test
+	void multiplexedDisconnectBeforeConnected() {
+		StubStompBroker broker = new StubStompBroker();
+		broker.replyConnected = false;
+		this.brokerRelay.setTcpClient(broker);
+		this.brokerRelay.setMultiplexedConnectionCount(1);
+		this.brokerRelay.start();
+		this.brokerRelay.handleMessage(connectMessage("sess1", "joe"));
+		assertThat(this.brokerRelay.getStats().getTotalHandlers()).isEqualTo(2);
+
+		Message<byte[]> disconnectMessage = message(StompCommand.DISCONNECT, "sess1", "joe", null);
+		StompHeaderAccessor.getAccessor(disconnectMessage, StompHeaderAccessor.class).setReceipt("r1");
+		this.brokerRelay.handleMessage(disconnectMessage);
+
+		List<StompHeaderAccessor> messages = outboundHeaders();
+		assertThat(messages).hasSize(1);
+		assertThat(messages.get(0).getCommand()).isEqualTo(StompCommand.RECEIPT);
+		assertThat(messages.get(0).getReceiptId()).isEqualTo("r1");
+		assertThat(this.brokerRelay.getStats().getTotalHandlers()).isEqualTo(1);
+
+		// The session is no longer connected once the shared connection is
+		broker.connections.get(1).reply(connectedFrame(), new byte[0]);
+		assertThat(outboundHeaders()).hasSize(1);
+	}
+
+	@Test
+	void multiplexedAckSubscriptionRewritten() {
+		StubStompBroker broker = startWithStubBroker(1);
+		this.brokerRelay.handleMessage(connectMessage("sess1", "joe"));
+		this.brokerRelay.handleMessage(subscribeMessage("sess1", "joe", "0", "/topic/foo"));
+
+		Message<byte[]> ackMessage = message(StompCommand.ACK, "sess1", "joe", null);
+		StompHeaderAccessor ackAccessor = StompHeaderAccessor.getAccessor(ackMessage, StompHeaderAccessor.class);
+		ackAccessor.setNativeHeader(StompHeaderAccessor.STOMP_SUBSCRIPTION_HEADER, "0");
+		ackAccessor.setNativeHeader(StompHeaderAccessor.STOMP_MESSAGE_ID_HEADER, "m1");
+		this.brokerRelay.handleMessage(ackMessage);
+
+		List<StompHeaderAccessor> brokerFrames = broker.connections.get(1).receivedFrames;
+		String brokerSubscriptionId = brokerFrames.stream()
+				.filter(accessor -> accessor.getCommand() == StompCommand.SUBSCRIBE)
+				.map(StompHeaderAccessor::getSubscriptionId)
+				.findFirst().get();
+		StompHeaderAccessor ack = brokerFrames.get(brokerFrames.size() - 1);
+		assertThat(ack.getCommand()).isEqualTo(StompCommand.ACK);
+		assertThat(ack.getFirstNativeHeader(StompHeaderAccessor.STOMP_SUBSCRIPTION_HEADER))
+				.isEqualTo(brokerSubscriptionId)
+				.isNotEqualTo("0");
+	}
+
+	@Test
+	void multiplexedSubscriptionIdReused() {
+		StubStompBroker broker = startWithStubBroker(1);
+		this.brokerRelay.handleMessage(connectMessage("sess1", "joe"));
+		this.brokerRelay.handleMessage(subscribeMessage("sess1", "joe", "0", "/topic/foo"));
+		this.brokerRelay.handleMessage(subscribeMessage("sess1", "joe", "0", "/topic/bar"));
+
+		StubBrokerConnection connection = broker.connections.get(1);
+		assertThat(connection.subscriptions).extracting(StompHeaderAccessor::getDestination)
+				.containsExactly("/topic/bar");
+		this.outboundChannel.getMessages().clear();
+
+		this.brokerRelay.handleMessage(message(StompCommand.SEND, "sess1", "joe", "/topic/foo"));
+		assertThat(outboundHeaders()).isEmpty();
+
+		this.brokerRelay.handleMessage(message(StompCommand.SEND, "sess1", "joe", "/topic/bar"));
+		assertThat(outboundHeaders()).extracting(StompHeaderAccessor::getSubscriptionId).containsExactly("0");
+	}
+
+	@Test
+	void multiplexedUnsubscribeUnknownIdWithReceipt() {
+		StubStompBroker broker = startWithStubBroker(1);
+		this.brokerRelay.handleMessage(connectMessage("sess1", "joe"));
+		this.outboundChannel.getMessages().clear();
+		int frameCount = broker.connections.get(1).receivedFrames.size();
+
+		Message<byte[]> unsubscribeMessage = message(StompCommand.UNSUBSCRIBE, "sess1", "joe", null);
+		StompHeaderAccessor accessor = StompHeaderAccessor.getAccessor(unsubscribeMessage, StompHeaderAccessor.class);
+		accessor.setSubscriptionId("0");
+		accessor.setReceipt("r1");
+		this.brokerRelay.handleMessage(unsubscribeMessage);
+
+		assertThat(broker.connections.get(1).receivedFrames).hasSize(frameCount);
+		List<StompHeaderAccessor> messages = outboundHeaders();
+		assertThat(messages).hasSize(1);
+		assertThat(messages.get(0).getCommand()).isEqualTo(StompCommand.RECEIPT);
+		assertThat(messages.get(0).getReceiptId()).isEqualTo("r1");
+		assertThat(messages.get(0).getSessionId()).isEqualTo("sess1");
+	}
+
+	@Test
+	void multiplexedWritesAreCoalesced() {
+		StubStompBroker broker = startWithStubBroker(1);
+		this.brokerRelay.handleMessage(connectMessage("sess1", "joe"));
+		StubBrokerConnection connection = broker.connections.get(1);
+		connection.completeWrites = false;
+
+		this.brokerRelay.handleMessage(message(StompCommand.SEND, "sess1", "joe", "/topic/a"));
+		this.brokerRelay.handleMessage(message(StompCommand.SEND, "sess1", "joe", "/topic/b"));
+		this.brokerRelay.handleMessage(message(StompCommand.SEND, "sess1", "joe", "/topic/c"));
+
+		assertThat(connection.pendingWrites).hasSize(1);
+		connection.completePendingWrites();
+
+		// The two frames queued during the first write go out in a single write
+		assertThat(connection.writeCount).isEqualTo(3);
+		assertThat(connection.receivedFrames).extracting(StompHeaderAccessor::getDestination)
+				.endsWith("/topic/a", "/topic/b", "/topic/c");
+	}
+
+	@Test
+	void multiplexedConnectionLost() {
+		StubStompBroker broker = startWithStubBroker(1);
+		this.brokerRelay.handleMessage(connectMessage("sess1", "joe"));
+		this.brokerRelay.handleMessage(connectMessage("sess2", "jane"));
+		this.outboundChannel.getMessages().clear();
+
+		broker.connections.get(1).handler.afterConnectionClosed();
+
+		List<StompHeaderAccessor> messages = outboundHeaders();
+		assertThat(messages).extracting(StompHeaderAccessor::getCommand).containsOnly(StompCommand.ERROR);
+		assertThat(messages).extracting(StompHeaderAccessor::getSessionId).containsExactlyInAnyOrder("sess1", "sess2");
+		assertThat(this.brokerRelay.getStats().getTotalHandlers()).isEqualTo(1);
+	}
+
+	private StubStompBroker startWithStubBroker(int connectionCount) {
+		StubStompBroker broker = new StubStompBroker();
+		this.brokerRelay.setTcpClient(broker);
+		this.brokerRelay.setClientLogin("clientlogin");
+		this.brokerRelay.setMultiplexedConnectionCount(connectionCount);
+		this.brokerRelay.start();
+		return broker;
+	}
+
+	private List<StompHeaderAccessor> outboundHeaders() {
+		return this.outboundChannel.getMessages().stream()
+				.map(message -> StompHeaderAccessor.getAccessor(message, StompHeaderAccessor.class))
+				.collect(Collectors.toList());
+	}
+
+	private Message<byte[]> subscribeMessage(String sessionId, String user, String subscriptionId, String destination) {
+		Message<byte[]> message = message(StompCommand.SUBSCRIBE, sessionId, user, destination);
+		StompHeaderAccessor.getAccessor(message, StompHeaderAccessor.class).setSubscriptionId(subscriptionId);
+		return message;
+	}
+
 	private Message<byte[]> connectMessage(String sessionId, String user) {
 		StompHeaderAccessor headers = StompHeaderAccessor.create(StompCommand.CONNECT);
 		headers.setSessionId(sessionId);
@@ -285,6 +520,13 @@ class StompBrokerRelayMessageHandlerTests {
 	}
 
 
+	private static StompHeaderAccessor connectedFrame() {
+		StompHeaderAccessor connected = StompHeaderAccessor.create(StompCommand.CONNECTED);
+		connected.setVersion("1.2");
+		connected.setHeartbeat(0, 0);
+		return connected;
+	}
+
 	private static ListenableFutureTask<Void> getVoidFuture() {
 		ListenableFutureTask<Void> futureTask = new ListenableFutureTask<>(new Callable<Void>() {
 			@Override
@@ -370,4 +612,138 @@ class StompBrokerRelayMessageHandlerTests {
 		}
 	}
 
+
+	/**
+	 * In-JVM STOMP broker that exchanges encoded frames with the relay, and
+	 * supports SUBSCRIBE, UNSUBSCRIBE, SEND, and receipts.
+	 */
+	private static class StubStompBroker implements TcpOperations<byte[]> {
+
+		private final List<StubBrokerConnection> connections = new ArrayList<>();
+
+		private boolean replyConnected = true;
+
+		@Override
+		public ListenableFuture<Void> connect(TcpConnectionHandler<byte[]> handler) {
+			StubBrokerConnection connection = new StubBrokerConnection(this, handler);
+			this.connections.add(connection);
+			handler.afterConnected(connection);
+			return getVoidFuture();
+		}
+
+		@Override
+		public ListenableFuture<Void> connect(TcpConnectionHandler<byte[]> handler, ReconnectStrategy strategy) {
+			return connect(handler);
+		}
+
+		@Override
+		public ListenableFuture<Void> shutdown() {
+			return getVoidFuture();
+		}
+
+		void publish(StompHeaderAccessor sendHeaders, byte[] payload) {
+			for (StubBrokerConnection connection : this.connections) {
+				for (StompHeaderAccessor subscription : connection.subscriptions) {
+					if (subscription.getDestination().equals(sendHeaders.getDestination())) {
+						StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.MESSAGE);
+						accessor.setSubscriptionId(subscription.getSubscriptionId());
+						accessor.setDestination(sendHeaders.getDestination());
+						accessor.setMessageId(String.valueOf(connection.writeCount));
+						connection.reply(accessor, payload);
+					}
+				}
+			}
+		}
+	}
+
+
+	private static class StubBrokerConnection implements TcpConnection<byte[]> {
+
+		private final StubStompBroker broker;
+
+		private final TcpConnectionHandler<byte[]> handler;
+
+		private final StompEncoder encoder = new StompEncoder();
+
+		private final StompDecoder decoder = new StompDecoder();
+
+		private final List<StompHeaderAccessor> receivedFrames = new ArrayList<>();
+
+		private final List<StompHeaderAccessor> subscriptions = new ArrayList<>();
+
+		private final List<SettableListenableFuture<Void>> pendingWrites = new ArrayList<>();
+
+		private int writeCount;
+
+		private boolean completeWrites = true;
+
+		StubBrokerConnection(StubStompBroker broker, TcpConnectionHandler<byte[]> handler) {
+			this.broker = broker;
+			this.handler = handler;
+		}
+
+		@Override
+		public ListenableFuture<Void> send(Message<byte[]> message) {
+			this.writeCount++;
+			ByteBuffer buffer = ByteBuffer.wrap(this.encoder.encode(message));
+			for (Message<byte[]> frame : this.decoder.decode(buffer)) {
+				StompHeaderAccessor accessor = StompHeaderAccessor.getAccessor(frame, StompHeaderAccessor.class);
+				this.receivedFrames.add(accessor);
+				handleFrame(accessor, frame.getPayload());
+			}
+			if (this.completeWrites) {
+				return getVoidFuture();
+			}
+			SettableListenableFuture<Void> future = new SettableListenableFuture<>();
+			this.pendingWrites.add(future);
+			return future;
+		}
+
+		private void handleFrame(StompHeaderAccessor accessor, byte[] payload) {
+			StompCommand command = accessor.getCommand();
+			if (command == StompCommand.CONNECT) {
+				if (this.broker.replyConnected) {
+					reply(connectedFrame(), new byte[0]);
+				}
+			}
+			else if (command == StompCommand.SUBSCRIBE) {
+				this.subscriptions.add(accessor);
+			}
+			else if (command == StompCommand.UNSUBSCRIBE) {
+				this.subscriptions.removeIf(s -> s.getSubscriptionId().equals(accessor.getSubscriptionId()));
+			}
+			else if (command == StompCommand.SEND) {
+				this.broker.publish(accessor, payload);
+			}
+			if (accessor.getReceipt() != null) {
+				StompHeaderAccessor receipt = StompHeaderAccessor.create(StompCommand.RECEIPT);
+				receipt.setReceiptId(accessor.getReceipt());
+				reply(receipt, new byte[0]);
+			}
+		}
+
+		void reply(StompHeaderAccessor accessor, byte[] payload) {
+			accessor.setLeaveMutable(true);
+			this.handler.handleMessage(MessageBuilder.createMessage(payload, accessor.getMessageHeaders()));
+		}
+
+		void completePendingWrites() {
+			while (!this.pendingWrites.isEmpty()) {
+				this.pendingWrites.remove(0).set(null);
+			}
+		}
+
+		@Override
+		public void onReadInactivity(Runnable runnable, long duration) {
+		}
+
+		@Override
+		public void onWriteInactivity(Runnable runnable, long duration) {
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2020 the original author or authors.
+ * Copyright 2002-2021 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -27,6 +27,7 @@ import org.springframework.util.InvalidMimeTypeException;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
 
 /**
  * Test fixture for {@link StompDecoder}.
@@ -159,6 +160,50 @@ public class StompDecoderTests {
 		assertThat(headers.getFirstNativeHeader("a:\r\n\\b")).isEqualTo("alpha:bravo\r\n\\");
 	}
 
+	@Test
+	public void decodeFrameWithEscapedDestination() {
+		for (int i = 0; i < 2; i++) {
+			Message<byte[]> frame = decode("SEND\ndestination:/a\\cb\n\nbody\0");
+			assertThat(StompHeaderAccessor.wrap(frame).getDestination()).isEqualTo("/a:b");
+		}
+	}
+
+	@Test
+	public void decodeFramesWithRepeatedHeaderValues() {
+		String frame = "MESSAGE\ndestination:/topic/foo\nsubscription:sub-0\nmessage-id:%d\n\nbody\0";
+		StompHeaderAccessor headers1 = StompHeaderAccessor.wrap(decode(String.format(frame, 1)));
+		StompHeaderAccessor headers2 = StompHeaderAccessor.wrap(decode(String.format(frame, 2)));
+
+		assertThat(headers1.getDestination()).isEqualTo("/topic/foo");
+		assertThat(headers1.getSubscriptionId()).isEqualTo("sub-0");
+		assertThat(headers1.getMessageId()).isEqualTo("1");
+		assertThat(headers2.getMessageId()).isEqualTo("2");
+
+		// Decoded only once
+		assertThat(headers2.getDestination()).isSameAs(headers1.getDestination());
+		assertThat(headers2.getSubscriptionId()).isSameAs(headers1.getSubscriptionId());
+	}
+
+	@Test
+	public void decodeFrameFromDirectBuffer() {
+		byte[] bytes = "SEND\ndestination:/topic/foo\nfoo:b\\\\ar\n\nThe body\0".getBytes();
+		ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+		buffer.put(bytes).flip();
+
+		Message<byte[]> frame = decode(buffer);
+		StompHeaderAccessor headers = StompHeaderAccessor.wrap(frame);
+
+		assertThat(headers.getCommand()).isEqualTo(StompCommand.SEND);
+		assertThat(headers.getDestination()).isEqualTo("/topic/foo");
+		assertThat(headers.getFirstNativeHeader("foo")).isEqualTo("b\\ar");
+		assertThat(new String(frame.getPayload())).isEqualTo("The body");
+	}
+
+	@Test
+	public void decodeFrameWithUnknownCommand() {
+		assertThatIllegalArgumentException().isThrownBy(() -> decode("FOO\n\n\0"));
+	}
+
 	@Test
 	public void decodeFrameBodyNotAllowed() {
 		assertThatExceptionOfType(StompConversionException.class).isThrownBy(() ->
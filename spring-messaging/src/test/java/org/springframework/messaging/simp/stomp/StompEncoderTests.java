@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2019 the original author or authors.
+ * Copyright 2002-2021 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,6 +16,8 @@
 
 package org.springframework.messaging.simp.stomp;
 
+import java.util.Arrays;
+
 import org.junit.jupiter.api.Test;
 
 import org.springframework.messaging.Message;
@@ -73,6 +75,36 @@ public class StompEncoderTests {
 		assertThat(new String(encoder.encode(frame))).isEqualTo("SEND\na:alpha\ncontent-length:12\n\nMessage body\0");
 	}
 
+	@Test
+	public void encodeFrameWithTemplate() {
+		byte[] payload = "Message body".getBytes();
+		StompHeaderAccessor headers = messageHeaders("sub:1", "message-1");
+		StompEncoder.FrameTemplate template = encoder.createTemplate(
+				headers.getMessageHeaders(), payload, Arrays.asList("subscription", "message-id"));
+
+		assertThat(new String(template.encode(headers.getMessageHeaders(), payload))).isEqualTo(
+				"MESSAGE\ndestination:/topic/price\ncontent-length:12\nsubscription:sub\\c1\nmessage-id:message-1\n\nMessage body\0");
+
+		headers = messageHeaders("sub-2", "message-2");
+		assertThat(new String(template.encode(headers.getMessageHeaders(), payload))).isEqualTo(
+				"MESSAGE\ndestination:/topic/price\ncontent-length:12\nsubscription:sub-2\nmessage-id:message-2\n\nMessage body\0");
+	}
+
+	@Test
+	public void encodeFrameWithTemplateAndOtherHeaders() {
+		byte[] payload = "Message body".getBytes();
+		StompHeaderAccessor headers = messageHeaders("sub-1", "message-1");
+		StompEncoder.FrameTemplate template = encoder.createTemplate(
+				headers.getMessageHeaders(), payload, Arrays.asList("subscription", "message-id"));
+
+		headers = messageHeaders("sub-2", "message-2");
+		headers.addNativeHeader("a", "alpha");
+		assertThat(template.encode(headers.getMessageHeaders(), payload)).isNull();
+
+		headers = messageHeaders("sub-2", "message-2");
+		assertThat(template.encode(headers.getMessageHeaders(), "Message body".getBytes())).isNull();
+	}
+
 	@Test
 	public void encodeFrameWithContentLengthPresent() {
 		StompHeaderAccessor headers = StompHeaderAccessor.create(StompCommand.SEND);
@@ -83,4 +115,12 @@ public class StompEncoderTests {
 		assertThat(new String(encoder.encode(frame))).isEqualTo("SEND\ncontent-length:12\n\nMessage body\0");
 	}
 
+	private static StompHeaderAccessor messageHeaders(String subscriptionId, String messageId) {
+		StompHeaderAccessor headers = StompHeaderAccessor.create(StompCommand.MESSAGE);
+		headers.setDestination("/topic/price");
+		headers.setSubscriptionId(subscriptionId);
+		headers.setMessageId(messageId);
+		return headers;
+	}
+
 }
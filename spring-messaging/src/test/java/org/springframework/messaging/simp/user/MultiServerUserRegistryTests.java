@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2019 the original author or authors.
+ * Copyright 2002-2021 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -178,4 +178,121 @@ class MultiServerUserRegistryTests {
 		assertThat(this.registry.getUserCount()).isEqualTo(0);
 	}
 
+	@Test
+	void incrementalUpdatesFromRemoteRegistry() {
+		Set<SimpUser> remoteUsers = new HashSet<>();
+		SimpUserRegistry remoteLocalRegistry = mock(SimpUserRegistry.class);
+		given(remoteLocalRegistry.getUsers()).willReturn(remoteUsers);
+		MultiServerUserRegistry remoteRegistry = new MultiServerUserRegistry(remoteLocalRegistry);
+
+		TestSimpUser joe = new TestSimpUser("joe");
+		TestSimpSession joeSession = new TestSimpSession("sess1");
+		joeSession.addSubscriptions(new TestSimpSubscription("sub1", "/match"));
+		joe.addSessions(joeSession);
+		remoteUsers.add(joe);
+		sendUpdate(remoteRegistry, 10);
+
+		assertThat(this.registry.getUserCount()).isEqualTo(1);
+		SimpUser user = this.registry.getUser("joe");
+		assertThat(user).isNotNull();
+		SimpSession session = user.getSession("sess1");
+		assertThat(session).isNotNull();
+		assertThat(session.getUser()).isSameAs(user);
+		SimpSubscription subscription = session.getSubscriptions().iterator().next();
+		assertThat(subscription.getId()).isEqualTo("sub1");
+		assertThat(subscription.getSession()).isSameAs(session);
+		assertThat(subscription.getDestination()).isEqualTo("/match");
+
+		// Add a user, and a subscription to an existing session
+		TestSimpUser jane = new TestSimpUser("jane");
+		TestSimpSession janeSession = new TestSimpSession("sess2");
+		janeSession.addSubscriptions(new TestSimpSubscription("sub1", "/match"));
+		jane.addSessions(janeSession);
+		remoteUsers.add(jane);
+		joeSession.addSubscriptions(new TestSimpSubscription("sub2", "/not-a-match"));
+		sendUpdate(remoteRegistry, 10);
+
+		assertThat(this.registry.getUserCount()).isEqualTo(2);
+		assertThat(this.registry.getUser("joe").getSession("sess1").getSubscriptions()).hasSize(2);
+		Set<SimpSubscription> matches = this.registry.findSubscriptions(s -> s.getDestination().equals("/match"));
+		assertThat(matches).extracting(s -> s.getSession().getId()).containsExactlyInAnyOrder("sess1", "sess2");
+
+		// Remove a user
+		remoteUsers.remove(joe);
+		sendUpdate(remoteRegistry, 10);
+
+		assertThat(this.registry.getUserCount()).isEqualTo(1);
+		assertThat(this.registry.getUser("joe")).isNull();
+		assertThat(this.registry.getUser("jane")).isNotNull();
+	}
+
+	@Test
+	void incrementalUpdateSentOnlyForChangedSessions() {
+		TestSimpUser joe = new TestSimpUser("joe");
+		joe.addSessions(new TestSimpSession("sess1"));
+		Set<SimpUser> users = new HashSet<>(Collections.singleton(joe));
+		given(this.localRegistry.getUsers()).willReturn(users);
+
+		Message<?> snapshot = this.converter.toMessage(this.registry.getLocalRegistryUpdate(10), null);
+		Message<?> update = this.converter.toMessage(this.registry.getLocalRegistryUpdate(10), null);
+
+		assertThat(new String((byte[]) snapshot.getPayload())).contains("\"snapshot\":true", "sess1");
+		assertThat(new String((byte[]) update.getPayload())).contains("\"snapshot\":false").doesNotContain("sess1");
+	}
+
+	@Test
+	void outOfSyncRemoteRegistryRequestsSnapshot() {
+		Set<SimpUser> remoteUsers = new HashSet<>();
+		SimpUserRegistry remoteLocalRegistry = mock(SimpUserRegistry.class);
+		given(remoteLocalRegistry.getUsers()).willReturn(remoteUsers);
+		MultiServerUserRegistry remoteRegistry = new MultiServerUserRegistry(remoteLocalRegistry);
+
+		sendUpdate(remoteRegistry, 10);
+
+		// Update lost in transit
+		TestSimpUser joe = new TestSimpUser("joe");
+		joe.addSessions(new TestSimpSession("sess1"));
+		remoteUsers.add(joe);
+		remoteRegistry.getLocalRegistryUpdate(10);
+
+		TestSimpUser jane = new TestSimpUser("jane");
+		jane.addSessions(new TestSimpSession("sess2"));
+		remoteUsers.add(jane);
+		sendUpdate(remoteRegistry, 10);
+
+		// Gap in versions: the update is not applied
+		assertThat(this.registry.getUserCount()).isEqualTo(0);
+
+		// The next local broadcast asks for a snapshot
+		Message<?> message = this.converter.toMessage(this.registry.getLocalRegistryUpdate(10), null);
+		remoteRegistry.addRemoteRegistryUpdate(message, this.converter, 20000);
+		sendUpdate(remoteRegistry, 10);
+
+		assertThat(this.registry.getUserCount()).isEqualTo(2);
+		assertThat(this.registry.getUser("joe")).isNotNull();
+		assertThat(this.registry.getUser("jane")).isNotNull();
+	}
+
+	@Test
+	void purgeExpiredIncrementalRegistries() {
+		TestSimpUser testUser = new TestSimpUser("joe");
+		testUser.addSessions(new TestSimpSession("remote-sess"));
+		SimpUserRegistry testRegistry = mock(SimpUserRegistry.class);
+		given(testRegistry.getUsers()).willReturn(Collections.singleton(testUser));
+		Object update = new MultiServerUserRegistry(testRegistry).getLocalRegistryUpdate(10);
+		Message<?> message = this.converter.toMessage(update, null);
+
+		this.registry.addRemoteRegistryUpdate(message, this.converter, -1);
+
+		assertThat(this.registry.getUserCount()).isEqualTo(1);
+		this.registry.purgeExpiredRegistries();
+		assertThat(this.registry.getUserCount()).isEqualTo(0);
+	}
+
+
+	private void sendUpdate(MultiServerUserRegistry remoteRegistry, int snapshotInterval) {
+		Message<?> message = this.converter.toMessage(remoteRegistry.getLocalRegistryUpdate(snapshotInterval), null);
+		this.registry.addRemoteRegistryUpdate(message, this.converter, 20000);
+	}
+
 }
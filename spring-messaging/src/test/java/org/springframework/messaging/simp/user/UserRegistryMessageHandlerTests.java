@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2019 the original author or authors.
+ * Copyright 2002-2021 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,6 +19,7 @@ package org.springframework.messaging.simp.user;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Set;
 import java.util.concurrent.ScheduledFuture;
 
 import org.junit.jupiter.api.BeforeEach;
@@ -36,6 +37,7 @@ import org.springframework.messaging.converter.MessageConverter;
 import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.messaging.simp.broker.BrokerAvailabilityEvent;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
 import org.springframework.scheduling.TaskScheduler;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -176,6 +178,47 @@ public class UserRegistryMessageHandlerTests {
 	}
 
 
+	@Test
+	public void incrementalBroadcastAcrossServers() throws Exception {
+		ExecutorSubscribableChannel brokerChannel = new ExecutorSubscribableChannel();
+		Server server1 = new Server(brokerChannel);
+		Server server2 = new Server(brokerChannel);
+		Server server3 = new Server(brokerChannel);
+
+		TestSimpUser joe = new TestSimpUser("joe");
+		TestSimpSession joeSession = new TestSimpSession("sess1");
+		joeSession.addSubscriptions(new TestSimpSubscription("sub1", "/topic/a"));
+		joe.addSessions(joeSession);
+		server1.localUsers.add(joe);
+
+		TestSimpUser jane = new TestSimpUser("jane");
+		jane.addSessions(new TestSimpSession("sess2"));
+		server2.localUsers.add(jane);
+
+		server1.broadcast();
+		server2.broadcast();
+		server3.broadcast();
+
+		assertThat(server3.registry.getUserCount()).isEqualTo(2);
+		assertThat(server3.registry.findSubscriptions(s -> s.getDestination().equals("/topic/a"))).hasSize(1);
+
+		// Same user connected to a second server
+		TestSimpUser joe2 = new TestSimpUser("joe");
+		joe2.addSessions(new TestSimpSession("sess3"));
+		server2.localUsers.add(joe2);
+		server1.localUsers.remove(joe);
+
+		server1.broadcast();
+		server2.broadcast();
+
+		assertThat(server3.registry.getUser("joe").getSessions())
+				.extracting(SimpSession::getId).containsExactly("sess3");
+		assertThat(server3.registry.findSubscriptions(s -> true)).isEmpty();
+		assertThat(server1.registry.getUser("jane")).isNotNull();
+		assertThat(server1.registry.getUser("joe").getSession("sess3")).isNotNull();
+	}
+
+
 	private Runnable getUserRegistryTask() {
 		BrokerAvailabilityEvent event = new BrokerAvailabilityEvent(true, this);
 		this.handler.onApplicationEvent(event);
@@ -186,4 +229,37 @@ public class UserRegistryMessageHandlerTests {
 		return captor.getValue();
 	}
 
+
+	private class Server {
+
+		private final Set<SimpUser> localUsers = new HashSet<>();
+
+		private final MultiServerUserRegistry registry;
+
+		private final Runnable broadcastTask;
+
+		Server(ExecutorSubscribableChannel brokerChannel) {
+			SimpUserRegistry localRegistry = mock(SimpUserRegistry.class);
+			given(localRegistry.getUsers()).willReturn(this.localUsers);
+			this.registry = new MultiServerUserRegistry(localRegistry);
+
+			SimpMessagingTemplate brokerTemplate = new SimpMessagingTemplate(brokerChannel);
+			brokerTemplate.setMessageConverter(converter);
+			TaskScheduler scheduler = mock(TaskScheduler.class);
+			UserRegistryMessageHandler handler = new UserRegistryMessageHandler(
+					this.registry, brokerTemplate, "/topic/simp-user-registry", scheduler);
+			handler.setIncrementalBroadcast(true);
+			brokerChannel.subscribe(handler);
+
+			handler.onApplicationEvent(new BrokerAvailabilityEvent(true, this));
+			ArgumentCaptor<Runnable> captor = ArgumentCaptor.forClass(Runnable.class);
+			verify(scheduler).scheduleWithFixedDelay(captor.capture(), eq(10000L));
+			this.broadcastTask = captor.getValue();
+		}
+
+		void broadcast() {
+			this.broadcastTask.run();
+		}
+	}
+
 }
@@ -0,0 +1,340 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.messaging.support;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.MessageDeliveryException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+/**
+ * Unit tests for {@link PartitionedSubscribableChannel}.
+ *
+ * @author Rossen Stoyanchev
+ */
+public class PartitionedSubscribableChannelTests {
+
+	private final PartitionedSubscribableChannel channel = new PartitionedSubscribableChannel(4, 16);
+
+
+	@AfterEach
+	public void destroy() {
+		this.channel.destroy();
+	}
+
+
+	@Test
+	public void invalidArguments() {
+		assertThatIllegalArgumentException().isThrownBy(() -> new PartitionedSubscribableChannel(0, 16));
+		assertThatIllegalArgumentException().isThrownBy(() -> new PartitionedSubscribableChannel(4, 0));
+	}
+
+	@Test
+	public void laneCapacityRoundedUp() {
+		assertThat(new PartitionedSubscribableChannel(1, 1000).getLaneCapacity()).isEqualTo(1024);
+		assertThat(this.channel.getLaneCount()).isEqualTo(4);
+		assertThat(this.channel.getLaneDepths()).containsExactly(0, 0, 0, 0);
+	}
+
+	@Test
+	public void orderPreservedPerPartitionKey() throws Exception {
+		int sessionCount = 20;
+		int messageCount = 500;
+		CountDownLatch latch = new CountDownLatch(sessionCount * messageCount);
+		Map<String, List<Integer>> received = new ConcurrentHashMap<>();
+		Map<String, Set<String>> threads = new ConcurrentHashMap<>();
+		this.channel.subscribe(message -> {
+			String sessionId = (String) message.getHeaders().get("simpSessionId");
+			received.computeIfAbsent(sessionId, id -> Collections.synchronizedList(new ArrayList<>()))
+					.add((Integer) message.getPayload());
+			threads.computeIfAbsent(sessionId, id -> ConcurrentHashMap.newKeySet())
+					.add(Thread.currentThread().getName());
+			latch.countDown();
+		});
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			for (int i = 0; i < sessionCount; i++) {
+				String sessionId = "session" + i;
+				executor.execute(() -> {
+					for (int j = 0; j < messageCount; j++) {
+						this.channel.send(MessageBuilder.withPayload(j).setHeader("simpSessionId", sessionId).build());
+					}
+				});
+			}
+			assertThat(latch.await(10, TimeUnit.SECONDS)).isTrue();
+		}
+		finally {
+			executor.shutdownNow();
+		}
+
+		assertThat(received).hasSize(sessionCount);
+		received.values().forEach(payloads -> assertThat(payloads).hasSize(messageCount).isSorted());
+		threads.values().forEach(names -> assertThat(names).hasSize(1));
+	}
+
+	@Test
+	public void customPartitionKey() throws Exception {
+		CountDownLatch latch = new CountDownLatch(20);
+		Set<String> threads = ConcurrentHashMap.newKeySet();
+		this.channel.setPartitionKeyHeaderName("key");
+		this.channel.subscribe(message -> {
+			threads.add(Thread.currentThread().getName());
+			latch.countDown();
+		});
+
+		for (int i = 0; i < 20; i++) {
+			this.channel.send(MessageBuilder.withPayload(i).setHeader("key", "same").build());
+		}
+
+		assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+		assertThat(threads).hasSize(1);
+	}
+
+	@Test
+	public void messagesWithoutPartitionKeySpreadAcrossLanes() throws Exception {
+		CountDownLatch latch = new CountDownLatch(8);
+		Set<String> threads = ConcurrentHashMap.newKeySet();
+		this.channel.subscribe(message -> {
+			threads.add(Thread.currentThread().getName());
+			latch.countDown();
+		});
+
+		for (int i = 0; i < 8; i++) {
+			this.channel.send(MessageBuilder.withPayload(i).build());
+		}
+
+		assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+		assertThat(threads).hasSize(4);
+	}
+
+	@Test
+	public void sendToEachSubscriber() throws Exception {
+		CountDownLatch latch = new CountDownLatch(2);
+		MessageHandler handler = message -> latch.countDown();
+		this.channel.subscribe(handler);
+		this.channel.subscribe(message -> latch.countDown());
+
+		this.channel.send(MessageBuilder.withPayload("foo").build());
+
+		assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+	}
+
+	@Test
+	public void sendTimeoutWhenLaneFull() throws Exception {
+		PartitionedSubscribableChannel channel = new PartitionedSubscribableChannel(1, 2);
+		CountDownLatch handling = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicInteger handled = new AtomicInteger();
+		channel.subscribe(message -> {
+			handling.countDown();
+			try {
+				release.await();
+			}
+			catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+			}
+			handled.incrementAndGet();
+		});
+		try {
+			Message<String> message = MessageBuilder.withPayload("foo").build();
+			assertThat(channel.send(message)).isTrue();
+			assertThat(handling.await(5, TimeUnit.SECONDS)).isTrue();
+
+			assertThat(channel.send(message, 0)).isTrue();
+			assertThat(channel.send(message, 0)).isTrue();
+			assertThat(channel.getLaneDepths()).containsExactly(2);
+
+			assertThat(channel.send(message, 0)).isFalse();
+			assertThat(channel.send(message, 50)).isFalse();
+
+			release.countDown();
+			assertThat(channel.send(message, 5000)).isTrue();
+		}
+		finally {
+			release.countDown();
+			channel.destroy();
+		}
+	}
+
+	@Test
+	public void messageToSeveralSubscribersBufferedOnce() throws Exception {
+		PartitionedSubscribableChannel channel = new PartitionedSubscribableChannel(1, 2);
+		CountDownLatch handling = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicInteger handled = new AtomicInteger();
+		Set<Boolean> daemon = ConcurrentHashMap.newKeySet();
+		channel.subscribe(message -> {
+			daemon.add(Thread.currentThread().isDaemon());
+			handling.countDown();
+			try {
+				release.await();
+			}
+			catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+			}
+			handled.incrementAndGet();
+		});
+		channel.subscribe(message -> handled.incrementAndGet());
+		try {
+			Message<String> message = MessageBuilder.withPayload("foo").build();
+			assertThat(channel.send(message)).isTrue();
+			assertThat(handling.await(5, TimeUnit.SECONDS)).isTrue();
+
+			assertThat(channel.send(message, 0)).isTrue();
+			assertThat(channel.send(message, 0)).isTrue();
+			assertThat(channel.getLaneDepths()).containsExactly(2);
+			assertThat(channel.send(message, 0)).isFalse();
+
+			release.countDown();
+			assertThat(channel.send(message, 5000)).isTrue();
+		}
+		finally {
+			release.countDown();
+			channel.destroy();
+		}
+		assertThat(daemon).containsExactly(true);
+	}
+
+	@Test
+	public void executorInterceptors() throws Exception {
+		CountDownLatch latch = new CountDownLatch(1);
+		List<String> calls = Collections.synchronizedList(new ArrayList<>());
+		this.channel.addInterceptor(new ExecutorChannelInterceptor() {
+			@Override
+			public Message<?> beforeHandle(Message<?> message, MessageChannel channel, MessageHandler handler) {
+				calls.add("beforeHandle");
+				return message;
+			}
+			@Override
+			public void afterMessageHandled(Message<?> message, MessageChannel channel, MessageHandler handler, Exception ex) {
+				calls.add("afterMessageHandled");
+				latch.countDown();
+			}
+		});
+		this.channel.subscribe(message -> calls.add("handleMessage"));
+
+		this.channel.send(MessageBuilder.withPayload("foo").build());
+
+		assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+		assertThat(calls).containsExactly("beforeHandle", "handleMessage", "afterMessageHandled");
+	}
+
+	@Test
+	public void handlerFailureDoesNotStopLane() throws Exception {
+		PartitionedSubscribableChannel channel = new PartitionedSubscribableChannel(1, 16);
+		CountDownLatch latch = new CountDownLatch(1);
+		channel.subscribe(message -> {
+			if ("fail".equals(message.getPayload())) {
+				throw new IllegalStateException("Expected");
+			}
+			latch.countDown();
+		});
+		try {
+			channel.send(MessageBuilder.withPayload("fail").build());
+			channel.send(MessageBuilder.withPayload("foo").build());
+			assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+		}
+		finally {
+			channel.destroy();
+		}
+	}
+
+	@Test
+	public void destroyHandlesBufferedMessages() throws Exception {
+		Set<Object> payloads = new HashSet<>();
+		CountDownLatch latch = new CountDownLatch(10);
+		this.channel.subscribe(message -> {
+			synchronized (payloads) {
+				payloads.add(message.getPayload());
+			}
+			latch.countDown();
+		});
+
+		for (int i = 0; i < 10; i++) {
+			this.channel.send(MessageBuilder.withPayload(i).build());
+		}
+		this.channel.destroy();
+
+		assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+		assertThat(payloads).hasSize(10);
+		assertThatExceptionOfType(MessageDeliveryException.class).isThrownBy(() ->
+				this.channel.send(MessageBuilder.withPayload("foo").build()));
+	}
+
+	@Test
+	public void sendConcurrentWithDestroyIsHandled() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			for (int round = 0; round < 20; round++) {
+				PartitionedSubscribableChannel channel = new PartitionedSubscribableChannel(2, 1024);
+				AtomicInteger handled = new AtomicInteger();
+				channel.subscribe(message -> handled.incrementAndGet());
+				AtomicInteger sent = new AtomicInteger();
+				CountDownLatch done = new CountDownLatch(4);
+				for (int i = 0; i < 4; i++) {
+					executor.execute(() -> {
+						try {
+							while (channel.send(MessageBuilder.withPayload("foo").build())) {
+								sent.incrementAndGet();
+							}
+						}
+						catch (MessageDeliveryException ex) {
+							// Shut down
+						}
+						finally {
+							done.countDown();
+						}
+					});
+				}
+				Thread.sleep(1);
+				channel.destroy();
+
+				assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+				long deadline = System.currentTimeMillis() + 5000;
+				while (handled.get() < sent.get() && System.currentTimeMillis() < deadline) {
+					Thread.sleep(10);
+				}
+				assertThat(handled.get()).isEqualTo(sent.get());
+			}
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+}
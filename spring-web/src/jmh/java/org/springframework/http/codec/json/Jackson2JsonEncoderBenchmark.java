@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2020 the original author or authors.
+ * Copyright 2002-2021 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,6 +19,7 @@ package org.springframework.http.codec.json;
 import java.util.Collections;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.netty.buffer.PooledByteBufAllocator;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.BenchmarkMode;
 import org.openjdk.jmh.annotations.Mode;
@@ -32,7 +33,9 @@ import reactor.core.publisher.Flux;
 import org.springframework.core.ResolvableType;
 import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
 import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
 import org.springframework.http.MediaType;
 import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
 
@@ -48,7 +51,8 @@ public class Jackson2JsonEncoderBenchmark {
 
 	/**
 	 * Benchmark data holding {@link Project} to be serialized by the JSON Encoder.
-	 * A {@code projectCount} parameter can be used to grow the size of the object graph to serialize.
+	 * A {@code projectCount} parameter can be used to grow the size of the object graph to serialize,
+	 * and a {@code bufferFactory} parameter to encode into heap buffers or pooled Netty buffers.
 	 */
 	@State(Scope.Benchmark)
 	public static class EncodeSingleData {
@@ -56,6 +60,9 @@ public class Jackson2JsonEncoderBenchmark {
 		@Param({"0", "50", "500"})
 		int projectCount;
 
+		@Param({"default", "pooled"})
+		String bufferFactoryType;
+
 		Jackson2JsonEncoder jsonEncoder;
 
 		DataBufferFactory bufferFactory;
@@ -68,7 +75,8 @@ public class Jackson2JsonEncoderBenchmark {
 		public void setup() {
 			final Jackson2ObjectMapperBuilder mapperBuilder = new Jackson2ObjectMapperBuilder();
 			ObjectMapper objectMapper = mapperBuilder.build();
-			this.bufferFactory = new DefaultDataBufferFactory();
+			this.bufferFactory = ("pooled".equals(this.bufferFactoryType) ?
+					new NettyDataBufferFactory(PooledByteBufAllocator.DEFAULT) : new DefaultDataBufferFactory());
 			this.jsonEncoder = new Jackson2JsonEncoder(objectMapper);
 			this.resolvableType = ResolvableType.forClass(Project.class);
 			this.project = new Project("spring", this.projectCount);
@@ -77,8 +85,11 @@ public class Jackson2JsonEncoderBenchmark {
 	}
 
 	@Benchmark
-	public DataBuffer encodeValue(EncodeSingleData data) {
-		return data.jsonEncoder.encodeValue(data.project, data.bufferFactory, data.resolvableType, MediaType.APPLICATION_JSON, Collections.emptyMap());
+	public int encodeValue(EncodeSingleData data) {
+		DataBuffer buffer = data.jsonEncoder.encodeValue(data.project, data.bufferFactory, data.resolvableType, MediaType.APPLICATION_JSON, Collections.emptyMap());
+		int count = buffer.readableByteCount();
+		DataBufferUtils.release(buffer);
+		return count;
 	}
 
 	/**
@@ -97,7 +108,10 @@ public class Jackson2JsonEncoderBenchmark {
 	public void encode(Blackhole bh, EncodeData data) {
 		Flux<Project> projects = Flux.generate(sink -> sink.next(data.project)).take(data.streamSize).cast(Project.class);
 		data.jsonEncoder.encode(projects, data.bufferFactory, data.resolvableType, MediaType.APPLICATION_JSON, Collections.emptyMap())
-				.doOnNext(bh::consume)
+				.doOnNext(buffer -> {
+					bh.consume(buffer.readableByteCount());
+					DataBufferUtils.release(buffer);
+				})
 				.then().block();
 	}
 
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.http.converter.json;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.json.Project;
+
+/**
+ * Benchmarks for writing and reading JSON with
+ * {@link MappingJackson2HttpMessageConverter}.
+ *
+ * @see AbstractJackson2HttpMessageConverter
+ *
+ * @author Rossen Stoyanchev
+ */
+@BenchmarkMode(Mode.Throughput)
+public class MappingJackson2HttpMessageConverterBenchmark {
+
+	/**
+	 * Benchmark data holding {@link Project} to be written by the converter.
+	 * A {@code projectCount} parameter can be used to grow the size of the object graph to serialize,
+	 * and a {@code contentLengthThreshold} parameter to buffer output for a {@code Content-Length} header.
+	 */
+	@State(Scope.Thread)
+	public static class WriteData {
+
+		@Param({"0", "50", "500"})
+		int projectCount;
+
+		@Param({"0", "8192"})
+		int contentLengthThreshold;
+
+		MappingJackson2HttpMessageConverter converter;
+
+		Project project;
+
+		BenchmarkOutputMessage outputMessage;
+
+		@Setup
+		public void setup() {
+			this.converter = new MappingJackson2HttpMessageConverter(new Jackson2ObjectMapperBuilder().build());
+			this.converter.setContentLengthThreshold(this.contentLengthThreshold);
+			this.project = new Project("spring", this.projectCount);
+			this.outputMessage = new BenchmarkOutputMessage();
+		}
+
+		@Setup(Level.Invocation)
+		public void reset() {
+			this.outputMessage.reset();
+		}
+	}
+
+	@Benchmark
+	public int write(WriteData data) throws IOException {
+		data.converter.write(data.project, MediaType.APPLICATION_JSON, data.outputMessage);
+		return data.outputMessage.body.size();
+	}
+
+	/**
+	 * Benchmark data holding the JSON representation of a {@link Project} to be read by the converter.
+	 */
+	@State(Scope.Benchmark)
+	public static class ReadData {
+
+		@Param({"0", "50", "500"})
+		int projectCount;
+
+		MappingJackson2HttpMessageConverter converter;
+
+		byte[] content;
+
+		@Setup
+		public void setup() throws IOException {
+			this.converter = new MappingJackson2HttpMessageConverter(new Jackson2ObjectMapperBuilder().build());
+			this.content = this.converter.getObjectMapper().writeValueAsBytes(new Project("spring", this.projectCount));
+		}
+	}
+
+	@Benchmark
+	public Object read(ReadData data) throws IOException {
+		HttpHeaders headers = new HttpHeaders();
+		headers.setContentType(MediaType.APPLICATION_JSON);
+		return data.converter.read(Project.class, new BenchmarkInputMessage(headers, data.content));
+	}
+
+
+	static class BenchmarkOutputMessage implements HttpOutputMessage {
+
+		private HttpHeaders headers = new HttpHeaders();
+
+		private final ByteArrayOutputStream body = new ByteArrayOutputStream(64 * 1024);
+
+		@Override
+		public HttpHeaders getHeaders() {
+			return this.headers;
+		}
+
+		@Override
+		public OutputStream getBody() {
+			return this.body;
+		}
+
+		void reset() {
+			this.headers = new HttpHeaders();
+			this.body.reset();
+		}
+	}
+
+
+	static class BenchmarkInputMessage implements HttpInputMessage {
+
+		private final HttpHeaders headers;
+
+		private final byte[] content;
+
+		BenchmarkInputMessage(HttpHeaders headers, byte[] content) {
+			this.headers = headers;
+			this.content = content;
+		}
+
+		@Override
+		public HttpHeaders getHeaders() {
+			return this.headers;
+		}
+
+		@Override
+		public InputStream getBody() {
+			return new ByteArrayInputStream(this.content);
+		}
+	}
+
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.http.client;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.lang.Nullable;
+
+/**
+ * {@link ClientHttpRequest} implementation based on the Java 11
+ * {@link HttpClient}, which buffers the request body.
+ *
+ * <p>Created via the {@link JdkClientHttpRequestFactory}.
+ *
+ * @author Arjen Poutsma
+ * @since 5.3.11
+ * @see JdkStreamingClientHttpRequest
+ */
+final class JdkClientHttpRequest extends AbstractBufferingClientHttpRequest {
+
+	private final HttpClient httpClient;
+
+	private final URI uri;
+
+	private final HttpMethod method;
+
+	@Nullable
+	private final Duration timeout;
+
+
+	JdkClientHttpRequest(HttpClient httpClient, URI uri, HttpMethod method, @Nullable Duration timeout) {
+		this.httpClient = httpClient;
+		this.uri = uri;
+		this.method = method;
+		this.timeout = timeout;
+	}
+
+
+	@Override
+	public HttpMethod getMethod() {
+		return this.method;
+	}
+
+	@Override
+	public String getMethodValue() {
+		return this.method.name();
+	}
+
+	@Override
+	public URI getURI() {
+		return this.uri;
+	}
+
+
+	@Override
+	protected ClientHttpResponse executeInternal(HttpHeaders headers, byte[] bufferedOutput) throws IOException {
+		HttpRequest.BodyPublisher bodyPublisher = (bufferedOutput.length > 0 ?
+				HttpRequest.BodyPublishers.ofByteArray(bufferedOutput) : HttpRequest.BodyPublishers.noBody());
+		HttpRequest request = JdkClientHttpRequestFactory.buildRequest(
+				this.uri, this.method, headers, bodyPublisher, this.timeout);
+		try {
+			HttpResponse<InputStream> response = this.httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+			return new JdkClientHttpResponse(response);
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			InterruptedIOException exception = new InterruptedIOException("Request interrupted");
+			exception.initCause(ex);
+			throw exception;
+		}
+	}
+
+}
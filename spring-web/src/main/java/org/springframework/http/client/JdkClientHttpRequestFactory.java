@@ -0,0 +1,226 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.http.client;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Executor;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+
+/**
+ * {@link ClientHttpRequestFactory} implementation that uses the
+ * {@link HttpClient java.net.http.HttpClient} of Java 11+ to create requests.
+ *
+ * <p>The default {@code HttpClient} negotiates HTTP/2, and multiplexes
+ * concurrent requests to the same server over a single connection, falling
+ * back to a pool of HTTP/1.1 connections otherwise. Response bodies are
+ * streamed, and so are request bodies unless
+ * {@link #setBufferRequestBody(boolean) buffered}.
+ *
+ * <p>The connect timeout, executor, and HTTP version of the default client
+ * can be configured on this factory, before the first request is created.
+ * A client {@linkplain #JdkClientHttpRequestFactory(HttpClient) passed to
+ * this factory} is configured through its {@link HttpClient.Builder} instead.
+ * The HTTP/1.1 connection pool of {@code HttpClient} has no per-client
+ * settings: it is configured through the
+ * {@code jdk.httpclient.connectionPoolSize} and
+ * {@code jdk.httpclient.keepalive.timeout} system properties.
+ *
+ * <p>This class is only loaded when used, so that {@code spring-web} keeps
+ * running on Java 8 otherwise.
+ *
+ * @author Arjen Poutsma
+ * @since 5.3.11
+ */
+public class JdkClientHttpRequestFactory implements ClientHttpRequestFactory {
+
+	/** Headers set by {@code HttpClient} itself, which it does not accept. */
+	private static final Set<String> RESTRICTED_HEADERS;
+
+	static {
+		Set<String> headers = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+		Collections.addAll(headers, HttpHeaders.CONNECTION, HttpHeaders.CONTENT_LENGTH,
+				HttpHeaders.EXPECT, HttpHeaders.HOST, HttpHeaders.UPGRADE);
+		RESTRICTED_HEADERS = Collections.unmodifiableSet(headers);
+	}
+
+
+	@Nullable
+	private HttpClient httpClient;
+
+	@Nullable
+	private Duration connectTimeout;
+
+	@Nullable
+	private Executor executor;
+
+	@Nullable
+	private HttpClient.Version version;
+
+	@Nullable
+	private Duration readTimeout;
+
+	private boolean bufferRequestBody = true;
+
+
+	/**
+	 * Create a factory with a default {@link HttpClient}, which prefers HTTP/2,
+	 * and is created when the first request is.
+	 */
+	public JdkClientHttpRequestFactory() {
+	}
+
+	/**
+	 * Create a factory with the given {@link HttpClient}.
+	 * @param httpClient the client to use
+	 */
+	public JdkClientHttpRequestFactory(HttpClient httpClient) {
+		Assert.notNull(httpClient, "HttpClient must not be null");
+		this.httpClient = httpClient;
+	}
+
+
+	/**
+	 * Set the connect timeout of the default {@link HttpClient}, in
+	 * milliseconds. A value of 0 specifies an infinite timeout.
+	 * <p>Default is 0.
+	 * @throws IllegalStateException if the client was given or already created
+	 */
+	public void setConnectTimeout(int connectTimeout) {
+		Assert.isTrue(connectTimeout >= 0, "Connect timeout must not be negative");
+		assertClientNotCreated();
+		this.connectTimeout = (connectTimeout > 0 ? Duration.ofMillis(connectTimeout) : null);
+	}
+
+	/**
+	 * Set the executor of the default {@link HttpClient}, which runs
+	 * asynchronous tasks of the client, such as handing over responses.
+	 * <p>By default, the client uses a cached thread pool of its own.
+	 * @throws IllegalStateException if the client was given or already created
+	 */
+	public void setExecutor(Executor executor) {
+		Assert.notNull(executor, "Executor must not be null");
+		assertClientNotCreated();
+		this.executor = executor;
+	}
+
+	/**
+	 * Set the HTTP version the default {@link HttpClient} requests, e.g.
+	 * {@link HttpClient.Version#HTTP_1_1} to use a pool of HTTP/1.1
+	 * connections rather than negotiate HTTP/2.
+	 * <p>Default is {@link HttpClient.Version#HTTP_2}.
+	 * @throws IllegalStateException if the client was given or already created
+	 */
+	public void setVersion(HttpClient.Version version) {
+		Assert.notNull(version, "Version must not be null");
+		assertClientNotCreated();
+		this.version = version;
+	}
+
+	private void assertClientNotCreated() {
+		Assert.state(this.httpClient == null,
+				"HttpClient already created: configure it through its HttpClient.Builder instead");
+	}
+
+	/**
+	 * Return the {@link HttpClient} used by this factory, creating the
+	 * default client if necessary.
+	 */
+	public synchronized HttpClient getHttpClient() {
+		if (this.httpClient == null) {
+			HttpClient.Builder builder = HttpClient.newBuilder();
+			if (this.connectTimeout != null) {
+				builder.connectTimeout(this.connectTimeout);
+			}
+			if (this.executor != null) {
+				builder.executor(this.executor);
+			}
+			if (this.version != null) {
+				builder.version(this.version);
+			}
+			this.httpClient = builder.build();
+		}
+		return this.httpClient;
+	}
+
+	/**
+	 * Set the timeout for receiving the response status and headers of a
+	 * request, in milliseconds. A value of 0 specifies an infinite timeout.
+	 * <p>Default is 0.
+	 */
+	public void setReadTimeout(int readTimeout) {
+		Assert.isTrue(readTimeout >= 0, "Read timeout must not be negative");
+		this.readTimeout = (readTimeout > 0 ? Duration.ofMillis(readTimeout) : null);
+	}
+
+	/**
+	 * Indicate whether this request factory should buffer the
+	 * {@linkplain ClientHttpRequest#getBody() request body} internally.
+	 * <p>Default is {@code true}. When sending large amounts of data via POST
+	 * or PUT, it is recommended to change this property to {@code false}, so
+	 * as not to run out of memory. The request body is then sent as it is
+	 * written, with a {@code Content-Length} header if set, or chunked
+	 * otherwise.
+	 */
+	public void setBufferRequestBody(boolean bufferRequestBody) {
+		this.bufferRequestBody = bufferRequestBody;
+	}
+
+
+	@Override
+	public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) throws IOException {
+		HttpClient httpClient = getHttpClient();
+		if (this.bufferRequestBody) {
+			return new JdkClientHttpRequest(httpClient, uri, httpMethod, this.readTimeout);
+		}
+		else {
+			return new JdkStreamingClientHttpRequest(httpClient, uri, httpMethod, this.readTimeout);
+		}
+	}
+
+
+	static HttpRequest buildRequest(URI uri, HttpMethod method, HttpHeaders headers,
+			HttpRequest.BodyPublisher bodyPublisher, @Nullable Duration timeout) {
+
+		HttpRequest.Builder builder = HttpRequest.newBuilder(uri).method(method.name(), bodyPublisher);
+		headers.forEach((headerName, headerValues) -> {
+			if (!RESTRICTED_HEADERS.contains(headerName)) {
+				for (String headerValue : headerValues) {
+					builder.header(headerName, headerValue);
+				}
+			}
+		});
+		if ("100-continue".equalsIgnoreCase(headers.getFirst(HttpHeaders.EXPECT))) {
+			builder.expectContinue(true);
+		}
+		if (timeout != null) {
+			builder.timeout(timeout);
+		}
+		return builder.build();
+	}
+
+}
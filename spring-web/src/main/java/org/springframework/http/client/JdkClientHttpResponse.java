@@ -0,0 +1,94 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.http.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.lang.Nullable;
+import org.springframework.util.StreamUtils;
+
+/**
+ * {@link ClientHttpResponse} implementation based on the Java 11
+ * {@link HttpClient}, which streams the response body.
+ *
+ * <p>Closing an HTTP/1.1 response reads the rest of its body, so that the
+ * connection can be reused, while closing an HTTP/2 response only resets its
+ * stream, which leaves the connection usable for other requests.
+ *
+ * @author Arjen Poutsma
+ * @since 5.3.11
+ */
+final class JdkClientHttpResponse extends AbstractClientHttpResponse {
+
+	private final HttpResponse<InputStream> response;
+
+	@Nullable
+	private HttpHeaders headers;
+
+
+	JdkClientHttpResponse(HttpResponse<InputStream> response) {
+		this.response = response;
+	}
+
+
+	@Override
+	public int getRawStatusCode() {
+		return this.response.statusCode();
+	}
+
+	@Override
+	public String getStatusText() {
+		// HttpClient does not expose the reason phrase
+		HttpStatus status = HttpStatus.resolve(this.response.statusCode());
+		return (status != null ? status.getReasonPhrase() : "");
+	}
+
+	@Override
+	public HttpHeaders getHeaders() {
+		if (this.headers == null) {
+			HttpHeaders headers = new HttpHeaders();
+			this.response.headers().map().forEach(headers::put);
+			this.headers = headers;
+		}
+		return this.headers;
+	}
+
+	@Override
+	public InputStream getBody() {
+		return this.response.body();
+	}
+
+	@Override
+	public void close() {
+		InputStream body = this.response.body();
+		try {
+			if (this.response.version() == HttpClient.Version.HTTP_1_1) {
+				StreamUtils.drain(body);
+			}
+			body.close();
+		}
+		catch (IOException ex) {
+			// ignore
+		}
+	}
+
+}
@@ -0,0 +1,374 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.http.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.lang.Nullable;
+import org.springframework.util.StreamUtils;
+
+/**
+ * {@link ClientHttpRequest} implementation based on the Java 11
+ * {@link HttpClient}, which sends the request body as it is written.
+ *
+ * <p>The request is sent as soon as the body is first obtained, with the body
+ * handed over to {@code HttpClient} in chunks, through a bounded queue that
+ * blocks the writer while the body is not consumed.
+ *
+ * <p>Created via the {@link JdkClientHttpRequestFactory}.
+ *
+ * @author Arjen Poutsma
+ * @since 5.3.11
+ * @see JdkClientHttpRequest
+ */
+final class JdkStreamingClientHttpRequest extends AbstractClientHttpRequest {
+
+	private static final int CHUNK_SIZE = 8 * 1024;
+
+	private static final int MAX_QUEUED_CHUNKS = 4;
+
+
+	private final HttpClient httpClient;
+
+	private final URI uri;
+
+	private final HttpMethod method;
+
+	@Nullable
+	private final Duration timeout;
+
+	@Nullable
+	private BodyPipe body;
+
+	@Nullable
+	private CompletableFuture<HttpResponse<InputStream>> responseFuture;
+
+
+	JdkStreamingClientHttpRequest(HttpClient httpClient, URI uri, HttpMethod method, @Nullable Duration timeout) {
+		this.httpClient = httpClient;
+		this.uri = uri;
+		this.method = method;
+		this.timeout = timeout;
+	}
+
+
+	@Override
+	public HttpMethod getMethod() {
+		return this.method;
+	}
+
+	@Override
+	public String getMethodValue() {
+		return this.method.name();
+	}
+
+	@Override
+	public URI getURI() {
+		return this.uri;
+	}
+
+
+	@Override
+	protected OutputStream getBodyInternal(HttpHeaders headers) {
+		if (this.body == null) {
+			BodyPipe body = new BodyPipe();
+			long contentLength = headers.getContentLength();
+			HttpRequest.BodyPublisher bodyPublisher = HttpRequest.BodyPublishers.ofInputStream(() -> body);
+			if (contentLength >= 0) {
+				bodyPublisher = HttpRequest.BodyPublishers.fromPublisher(bodyPublisher, contentLength);
+			}
+			this.body = body;
+			this.responseFuture = send(headers, bodyPublisher);
+			if (this.timeout != null) {
+				// HttpClient only reports a timeout once it has read the entire body
+				this.responseFuture.orTimeout(this.timeout.toMillis(), TimeUnit.MILLISECONDS);
+			}
+			// Stop blocking writers once the exchange is over, e.g. when the server responded early
+			this.responseFuture.whenComplete((response, ex) -> body.closeReader(ex));
+		}
+		return StreamUtils.nonClosing(this.body.output());
+	}
+
+	@Override
+	protected ClientHttpResponse executeInternal(HttpHeaders headers) throws IOException {
+		CompletableFuture<HttpResponse<InputStream>> responseFuture = this.responseFuture;
+		if (this.body != null && responseFuture != null) {
+			try {
+				this.body.output().close();
+			}
+			catch (IOException ex) {
+				// The exchange is over: report its outcome instead
+				if (!responseFuture.isDone()) {
+					throw ex;
+				}
+			}
+		}
+		else {
+			responseFuture = send(headers, HttpRequest.BodyPublishers.noBody());
+		}
+		return awaitResponse(responseFuture);
+	}
+
+	private CompletableFuture<HttpResponse<InputStream>> send(HttpHeaders headers,
+			HttpRequest.BodyPublisher bodyPublisher) {
+
+		HttpRequest request = JdkClientHttpRequestFactory.buildRequest(
+				this.uri, this.method, headers, bodyPublisher, this.timeout);
+		return this.httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream());
+	}
+
+	private static ClientHttpResponse awaitResponse(CompletableFuture<HttpResponse<InputStream>> responseFuture)
+			throws IOException {
+
+		try {
+			return new JdkClientHttpResponse(responseFuture.get());
+		}
+		catch (InterruptedException ex) {
+			responseFuture.cancel(true);
+			Thread.currentThread().interrupt();
+			InterruptedIOException exception = new InterruptedIOException("Request interrupted");
+			exception.initCause(ex);
+			throw exception;
+		}
+		catch (ExecutionException ex) {
+			Throwable cause = ex.getCause();
+			if (cause instanceof UncheckedIOException) {
+				cause = cause.getCause();
+			}
+			if (cause instanceof TimeoutException) {
+				throw new HttpTimeoutException("Request timed out");
+			}
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new IOException("Request failed: " + ex.getMessage(), cause);
+		}
+	}
+
+
+	/**
+	 * Hands over the request body from the writing thread to the thread of
+	 * {@code HttpClient} that reads it, in chunks. A blocked writer or reader
+	 * is woken up as soon as the exchange is over.
+	 */
+	private static final class BodyPipe extends InputStream {
+
+		private static final byte[] END_OF_BODY = new byte[0];
+
+		private final Deque<byte[]> chunks = new ArrayDeque<>(MAX_QUEUED_CHUNKS);
+
+		private final Lock lock = new ReentrantLock();
+
+		private final Condition notEmpty = this.lock.newCondition();
+
+		private final Condition notFull = this.lock.newCondition();
+
+		private final PipeOutputStream output = new PipeOutputStream();
+
+		private boolean readerClosed;
+
+		@Nullable
+		private Throwable failure;
+
+		@Nullable
+		private byte[] chunk;
+
+		private int position;
+
+		OutputStream output() {
+			return this.output;
+		}
+
+		void closeReader(@Nullable Throwable failure) {
+			if (failure instanceof CompletionException && failure.getCause() != null) {
+				failure = failure.getCause();
+			}
+			this.lock.lock();
+			try {
+				this.failure = failure;
+				this.readerClosed = true;
+				this.chunks.clear();
+				this.notFull.signalAll();
+				this.notEmpty.signalAll();
+			}
+			finally {
+				this.lock.unlock();
+			}
+		}
+
+		@Override
+		public int read() throws IOException {
+			byte[] chunk = nextChunk();
+			return (chunk != null ? chunk[this.position++] & 0xFF : -1);
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (len == 0) {
+				return 0;
+			}
+			byte[] chunk = nextChunk();
+			if (chunk == null) {
+				return -1;
+			}
+			int count = Math.min(len, chunk.length - this.position);
+			System.arraycopy(chunk, this.position, b, off, count);
+			this.position += count;
+			return count;
+		}
+
+		@Nullable
+		private byte[] nextChunk() throws IOException {
+			while (this.chunk == null || this.position == this.chunk.length) {
+				if (this.chunk == END_OF_BODY) {
+					return null;
+				}
+				this.chunk = take();
+				this.position = 0;
+			}
+			return this.chunk;
+		}
+
+		private byte[] take() throws IOException {
+			this.lock.lock();
+			try {
+				while (this.chunks.isEmpty() && !this.readerClosed) {
+					this.notEmpty.await();
+				}
+				if (this.readerClosed) {
+					throw new IOException("Exchange is over before the request body was written", this.failure);
+				}
+				byte[] chunk = this.chunks.poll();
+				this.notFull.signal();
+				return chunk;
+			}
+			catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while reading request body");
+			}
+			finally {
+				this.lock.unlock();
+			}
+		}
+
+		private void put(byte[] chunk) throws IOException {
+			this.lock.lock();
+			try {
+				while (this.chunks.size() == MAX_QUEUED_CHUNKS && !this.readerClosed) {
+					this.notFull.await();
+				}
+				if (this.readerClosed) {
+					throw new IOException("Request body no longer consumed", this.failure);
+				}
+				this.chunks.add(chunk);
+				this.notEmpty.signal();
+			}
+			catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while writing request body");
+			}
+			finally {
+				this.lock.unlock();
+			}
+		}
+
+
+		private final class PipeOutputStream extends OutputStream {
+
+			private byte[] buffer = new byte[CHUNK_SIZE];
+
+			private int count;
+
+			private boolean closed;
+
+			@Override
+			public void write(int b) throws IOException {
+				if (this.count == this.buffer.length) {
+					flushBuffer();
+				}
+				this.buffer[this.count++] = (byte) b;
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				while (len > 0) {
+					if (this.count == this.buffer.length) {
+						flushBuffer();
+					}
+					int chunkCount = Math.min(len, this.buffer.length - this.count);
+					System.arraycopy(b, off, this.buffer, this.count, chunkCount);
+					this.count += chunkCount;
+					off += chunkCount;
+					len -= chunkCount;
+				}
+			}
+
+			@Override
+			public void flush() throws IOException {
+				if (this.count > 0) {
+					flushBuffer();
+				}
+			}
+
+			@Override
+			public void close() throws IOException {
+				if (!this.closed) {
+					flush();
+					this.closed = true;
+					put(END_OF_BODY);
+				}
+			}
+
+			private void flushBuffer() throws IOException {
+				if (this.closed) {
+					throw new IOException("Stream closed");
+				}
+				byte[] chunk = (this.count == this.buffer.length ? this.buffer : Arrays.copyOf(this.buffer, this.count));
+				put(chunk);
+				this.buffer = new byte[CHUNK_SIZE];
+				this.count = 0;
+			}
+		}
+	}
+
+}
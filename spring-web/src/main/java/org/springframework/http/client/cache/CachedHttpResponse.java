@@ -0,0 +1,125 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.http.client.cache;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.http.HttpHeaders;
+
+/**
+ * A response held by an {@link HttpResponseCache}, along with the values of
+ * the request headers it varies by, and the times at which it was requested
+ * and received.
+ *
+ * <p>Instances are immutable and {@link Serializable}, so that they can be
+ * held by any {@link HttpResponseCacheStore}.
+ *
+ * @author Arjen Poutsma
+ * @since 5.3.11
+ */
+public final class CachedHttpResponse implements Serializable {
+
+	private static final long serialVersionUID = 4935473829570216405L;
+
+
+	private final int statusCode;
+
+	private final HttpHeaders headers;
+
+	private final byte[] body;
+
+	private final HttpHeaders varyHeaders;
+
+	private final long requestTime;
+
+	private final long responseTime;
+
+
+	CachedHttpResponse(int statusCode, HttpHeaders headers, byte[] body, HttpHeaders varyHeaders,
+			long requestTime, long responseTime) {
+
+		this.statusCode = statusCode;
+		this.headers = HttpHeaders.readOnlyHttpHeaders(headers);
+		this.body = body;
+		this.varyHeaders = HttpHeaders.readOnlyHttpHeaders(varyHeaders);
+		this.requestTime = requestTime;
+		this.responseTime = responseTime;
+	}
+
+
+	/**
+	 * Return the HTTP status code of the response.
+	 */
+	public int getRawStatusCode() {
+		return this.statusCode;
+	}
+
+	/**
+	 * Return the headers of the response, as last received or revalidated.
+	 */
+	public HttpHeaders getHeaders() {
+		return this.headers;
+	}
+
+	/**
+	 * Return the body of the response. The returned array must not be modified.
+	 */
+	public byte[] getBody() {
+		return this.body;
+	}
+
+	/**
+	 * Return the values of the request headers named by the {@code Vary}
+	 * header of the response, in the request the response was received for.
+	 */
+	public HttpHeaders getVaryHeaders() {
+		return this.varyHeaders;
+	}
+
+	/**
+	 * Return the time, in milliseconds since the epoch, at which the request
+	 * for this response was sent.
+	 */
+	public long getRequestTime() {
+		return this.requestTime;
+	}
+
+	/**
+	 * Return the time, in milliseconds since the epoch, at which this
+	 * response was received or last revalidated.
+	 */
+	public long getResponseTime() {
+		return this.responseTime;
+	}
+
+	/**
+	 * Return an estimate of the memory held by this response, in bytes.
+	 */
+	public long getSize() {
+		long size = 64 + this.body.length;
+		for (Map.Entry<String, List<String>> entry : this.headers.entrySet()) {
+			size += 32 + 2L * entry.getKey().length();
+			for (String value : entry.getValue()) {
+				size += 32 + 2L * value.length();
+			}
+		}
+		return size;
+	}
+
+}
@@ -0,0 +1,434 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.http.client.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.support.HttpRequestWrapper;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+import org.springframework.util.FastByteArrayOutputStream;
+import org.springframework.util.StreamUtils;
+
+/**
+ * {@link ClientHttpRequestInterceptor} that serves responses from an
+ * {@link HttpResponseCache}, revalidates them as necessary, and stores
+ * the responses received.
+ *
+ * <p>A response is stored once its body has been read to the end, or when
+ * it is closed, in which case the rest of the body, up to the
+ * {@linkplain HttpResponseCache#setMaxBodySize maximum body size}, is read.
+ *
+ * <p>Stale responses are only served while being revalidated, as per the
+ * {@code stale-while-revalidate} directive, if a
+ * {@linkplain #setRevalidationExecutor revalidation executor} and a
+ * {@linkplain #setRevalidationRequestFactory revalidation request factory}
+ * are configured.
+ *
+ * @author Arjen Poutsma
+ * @since 5.3.11
+ */
+public class CachingClientHttpRequestInterceptor implements ClientHttpRequestInterceptor {
+
+	private static final Log logger = LogFactory.getLog(CachingClientHttpRequestInterceptor.class);
+
+
+	private final HttpResponseCache cache;
+
+	@Nullable
+	private Executor revalidationExecutor;
+
+	@Nullable
+	private ClientHttpRequestFactory revalidationRequestFactory;
+
+
+	/**
+	 * Create a new interceptor with an {@link HttpResponseCache} of
+	 * default configuration.
+	 */
+	public CachingClientHttpRequestInterceptor() {
+		this(new HttpResponseCache());
+	}
+
+	/**
+	 * Create a new interceptor with the given cache.
+	 * @param cache the cache to use
+	 */
+	public CachingClientHttpRequestInterceptor(HttpResponseCache cache) {
+		Assert.notNull(cache, "HttpResponseCache must not be null");
+		this.cache = cache;
+	}
+
+
+	/**
+	 * Return the cache used by this interceptor.
+	 */
+	public HttpResponseCache getCache() {
+		return this.cache;
+	}
+
+	/**
+	 * Configure an executor to revalidate stale responses in the background
+	 * with, while serving them, as permitted by their
+	 * {@code stale-while-revalidate} directive, along with a
+	 * {@link #setRevalidationRequestFactory revalidation request factory}.
+	 * <p>By default this is not set, and stale responses are always
+	 * revalidated before being served.
+	 * @param revalidationExecutor the executor to use
+	 */
+	public void setRevalidationExecutor(@Nullable Executor revalidationExecutor) {
+		this.revalidationExecutor = revalidationExecutor;
+	}
+
+	/**
+	 * Return the configured revalidation executor, if any.
+	 */
+	@Nullable
+	public Executor getRevalidationExecutor() {
+		return this.revalidationExecutor;
+	}
+
+	/**
+	 * Configure the request factory to revalidate stale responses with in the
+	 * background, typically the one of the {@code RestTemplate} this
+	 * interceptor is registered with. As the request execution of the client
+	 * cannot outlive the request that is served a stale response, background
+	 * revalidation requests are created through this factory directly, and
+	 * are not passed through interceptors registered after this one.
+	 * <p>By default this is not set, and stale responses are always
+	 * revalidated before being served.
+	 * @param revalidationRequestFactory the request factory to use
+	 * @see #setRevalidationExecutor(Executor)
+	 */
+	public void setRevalidationRequestFactory(@Nullable ClientHttpRequestFactory revalidationRequestFactory) {
+		this.revalidationRequestFactory = revalidationRequestFactory;
+	}
+
+	/**
+	 * Return the configured revalidation request factory, if any.
+	 */
+	@Nullable
+	public ClientHttpRequestFactory getRevalidationRequestFactory() {
+		return this.revalidationRequestFactory;
+	}
+
+
+	@Override
+	public ClientHttpResponse intercept(
+			HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+
+		Executor executor = this.revalidationExecutor;
+		ClientHttpRequestFactory requestFactory = this.revalidationRequestFactory;
+		HttpResponseCache.Lookup lookup = this.cache.lookup(request.getMethod(), request.getURI(),
+				request.getHeaders(), executor != null && requestFactory != null);
+
+		switch (lookup.getStatus()) {
+			case HIT:
+				return new CachedClientHttpResponse(lookup);
+			case HIT_AND_REVALIDATE:
+				ClientHttpResponse response = new CachedClientHttpResponse(lookup);
+				Assert.state(executor != null && requestFactory != null, "No background revalidation");
+				HttpMethod method = request.getMethod();
+				Assert.state(method != null, "No HTTP method");
+				URI uri = request.getURI();
+				HttpHeaders requestHeaders = new HttpHeaders();
+				requestHeaders.putAll(lookup.getRequestHeaders());
+				try {
+					executor.execute(() -> revalidate(method, uri, requestHeaders, body, requestFactory, lookup));
+				}
+				catch (RejectedExecutionException ex) {
+					lookup.complete();
+				}
+				return response;
+			default:
+				return exchange(request, body, execution, lookup);
+		}
+	}
+
+	private ClientHttpResponse exchange(HttpRequest request, byte[] body,
+			ClientHttpRequestExecution execution, HttpResponseCache.Lookup lookup) throws IOException {
+
+		HttpHeaders requestHeaders = lookup.getRequestHeaders();
+		if (requestHeaders != request.getHeaders()) {
+			request = new HttpRequestWrapper(request) {
+				@Override
+				public HttpHeaders getHeaders() {
+					return requestHeaders;
+				}
+			};
+		}
+		return handleResponse(execution.execute(request, body), lookup);
+	}
+
+	private ClientHttpResponse handleResponse(ClientHttpResponse response, HttpResponseCache.Lookup lookup)
+			throws IOException {
+
+		if (lookup.responseReceived(response.getRawStatusCode(), response.getHeaders()) != null) {
+			response.close();
+			return new CachedClientHttpResponse(lookup);
+		}
+		return (lookup.isStorable() ?
+				new StoringClientHttpResponse(response, lookup, this.cache.getMaxBodySize()) : response);
+	}
+
+	private void revalidate(HttpMethod method, URI uri, HttpHeaders requestHeaders, byte[] body,
+			ClientHttpRequestFactory requestFactory, HttpResponseCache.Lookup lookup) {
+
+		try {
+			ClientHttpRequest request = requestFactory.createRequest(uri, method);
+			request.getHeaders().putAll(requestHeaders);
+			if (body.length > 0) {
+				StreamUtils.copy(body, request.getBody());
+			}
+			ClientHttpResponse response = handleResponse(request.execute(), lookup);
+			try {
+				// Read the body to store the response
+				StreamUtils.drain(response.getBody());
+			}
+			finally {
+				response.close();
+			}
+		}
+		catch (IOException ex) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Failed to revalidate cached response for " + uri, ex);
+			}
+		}
+		finally {
+			lookup.complete();
+		}
+	}
+
+
+	/**
+	 * {@link ClientHttpResponse} for a cached response.
+	 */
+	private static final class CachedClientHttpResponse implements ClientHttpResponse {
+
+		private final CachedHttpResponse response;
+
+		private final HttpHeaders headers;
+
+		CachedClientHttpResponse(HttpResponseCache.Lookup lookup) {
+			CachedHttpResponse response = lookup.getCachedResponse();
+			Assert.state(response != null, "No cached response");
+			this.response = response;
+			this.headers = lookup.getResponseHeaders();
+		}
+
+		@Override
+		public HttpStatus getStatusCode() {
+			return HttpStatus.valueOf(this.response.getRawStatusCode());
+		}
+
+		@Override
+		public int getRawStatusCode() {
+			return this.response.getRawStatusCode();
+		}
+
+		@Override
+		public String getStatusText() {
+			HttpStatus status = HttpStatus.resolve(this.response.getRawStatusCode());
+			return (status != null ? status.getReasonPhrase() : "");
+		}
+
+		@Override
+		public HttpHeaders getHeaders() {
+			return this.headers;
+		}
+
+		@Override
+		public InputStream getBody() {
+			return new ByteArrayInputStream(this.response.getBody());
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+
+	/**
+	 * {@link ClientHttpResponse} that copies the body as it is read, and
+	 * stores the response once the body has been read completely.
+	 */
+	private static final class StoringClientHttpResponse implements ClientHttpResponse {
+
+		private final ClientHttpResponse response;
+
+		private final HttpResponseCache.Lookup lookup;
+
+		private final int maxBodySize;
+
+		@Nullable
+		private StoringInputStream body;
+
+		StoringClientHttpResponse(ClientHttpResponse response, HttpResponseCache.Lookup lookup, int maxBodySize) {
+			this.response = response;
+			this.lookup = lookup;
+			this.maxBodySize = maxBodySize;
+		}
+
+		@Override
+		public HttpStatus getStatusCode() throws IOException {
+			return this.response.getStatusCode();
+		}
+
+		@Override
+		public int getRawStatusCode() throws IOException {
+			return this.response.getRawStatusCode();
+		}
+
+		@Override
+		public String getStatusText() throws IOException {
+			return this.response.getStatusText();
+		}
+
+		@Override
+		public HttpHeaders getHeaders() {
+			return this.response.getHeaders();
+		}
+
+		@Override
+		public InputStream getBody() throws IOException {
+			if (this.body == null) {
+				this.body = new StoringInputStream(this.response.getBody());
+			}
+			return this.body;
+		}
+
+		@Override
+		public void close() {
+			try {
+				StoringInputStream body = (StoringInputStream) getBody();
+				byte[] buffer = new byte[StreamUtils.BUFFER_SIZE];
+				while (!body.isDone() && body.read(buffer) != -1) {
+					// Read the rest of the body, unless too large to store
+				}
+			}
+			catch (IOException ex) {
+				// Not stored
+			}
+			finally {
+				this.response.close();
+			}
+		}
+
+
+		private final class StoringInputStream extends FilterInputStream {
+
+			private final FastByteArrayOutputStream content = new FastByteArrayOutputStream();
+
+			private boolean done;
+
+			StoringInputStream(InputStream in) {
+				super(in);
+			}
+
+			boolean isDone() {
+				return this.done;
+			}
+
+			@Override
+			public int read() throws IOException {
+				int b = super.read();
+				if (b != -1) {
+					if (reserve(1)) {
+						this.content.write(b);
+					}
+				}
+				else {
+					complete();
+				}
+				return b;
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException {
+				int count = super.read(b, off, len);
+				if (count != -1) {
+					if (reserve(count)) {
+						this.content.write(b, off, count);
+					}
+				}
+				else {
+					complete();
+				}
+				return count;
+			}
+
+			@Override
+			public long skip(long n) throws IOException {
+				// Read skipped bytes to store them
+				long skipped = 0;
+				byte[] buffer = new byte[(int) Math.min(n, StreamUtils.BUFFER_SIZE)];
+				while (skipped < n) {
+					int count = read(buffer, 0, (int) Math.min(n - skipped, buffer.length));
+					if (count == -1) {
+						break;
+					}
+					skipped += count;
+				}
+				return skipped;
+			}
+
+			@Override
+			public boolean markSupported() {
+				return false;
+			}
+
+			private boolean reserve(int count) {
+				if (this.done) {
+					return false;
+				}
+				if (this.content.size() + count > StoringClientHttpResponse.this.maxBodySize) {
+					// Too large to store: stop copying
+					this.done = true;
+					this.content.reset();
+					return false;
+				}
+				return true;
+			}
+
+			private void complete() {
+				if (!this.done) {
+					this.done = true;
+					StoringClientHttpResponse.this.lookup.store(this.content.toByteArrayUnsafe());
+				}
+			}
+		}
+	}
+
+}
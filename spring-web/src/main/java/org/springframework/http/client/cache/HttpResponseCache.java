@@ -0,0 +1,612 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.http.client.cache;
+
+import java.net.URI;
+import java.time.Clock;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+/**
+ * Client-side HTTP cache for {@code GET} responses, following the caching
+ * rules of RFC 7234 as a shared cache, and {@code stale-while-revalidate}
+ * from RFC 5861.
+ *
+ * <p>Responses are stored by URI, with one variant per URI for responses
+ * with a {@code Vary} header. Fresh responses are served from the cache,
+ * while stale responses with an {@code ETag} or a {@code Last-Modified}
+ * header are revalidated with a conditional request. Responses to other
+ * methods than {@code GET} and {@code HEAD} invalidate the stored response
+ * for their URI. Private responses, and responses to requests with an
+ * {@code Authorization} header that are not explicitly marked as shareable,
+ * are never stored.
+ *
+ * <p>This class holds the caching policy only. It is applied to
+ * {@code RestTemplate} through a
+ * {@link CachingClientHttpRequestInterceptor}, and to {@code WebClient}
+ * through {@code ExchangeFilterFunctions#cacheResponses}.
+ *
+ * @author Arjen Poutsma
+ * @since 5.3.11
+ */
+public class HttpResponseCache {
+
+	/** Status codes cacheable without explicit freshness, as per RFC 7231 and RFC 7538. */
+	private static final Set<Integer> CACHEABLE_STATUS_CODES =
+			new HashSet<>(Arrays.asList(200, 203, 204, 300, 301, 308, 404, 405, 410, 414, 501));
+
+	private static final Set<String> HOP_BY_HOP_HEADERS = headerNames(
+			HttpHeaders.CONNECTION, "Keep-Alive", HttpHeaders.PROXY_AUTHENTICATE, HttpHeaders.PROXY_AUTHORIZATION,
+			HttpHeaders.TE, HttpHeaders.TRAILER, HttpHeaders.TRANSFER_ENCODING, HttpHeaders.UPGRADE);
+
+	private static final Set<String> IGNORED_NOT_MODIFIED_HEADERS = headerNames(
+			HttpHeaders.CONTENT_LENGTH, HttpHeaders.CONTENT_ENCODING, HttpHeaders.CONTENT_RANGE);
+
+
+	private final HttpResponseCacheStore store;
+
+	private final Set<String> revalidations = ConcurrentHashMap.newKeySet();
+
+	private int maxBodySize = 1024 * 1024;
+
+	private Clock clock = Clock.systemUTC();
+
+
+	/**
+	 * Create a new cache with an {@link InMemoryHttpResponseCacheStore} of
+	 * default size.
+	 */
+	public HttpResponseCache() {
+		this(new InMemoryHttpResponseCacheStore());
+	}
+
+	/**
+	 * Create a new cache with the given store.
+	 * @param store the store to hold responses in
+	 */
+	public HttpResponseCache(HttpResponseCacheStore store) {
+		Assert.notNull(store, "HttpResponseCacheStore must not be null");
+		this.store = store;
+	}
+
+
+	/**
+	 * Return the store that responses are held in.
+	 */
+	public HttpResponseCacheStore getStore() {
+		return this.store;
+	}
+
+	/**
+	 * Configure the maximum size of a response body to cache. Larger
+	 * responses are passed through without being cached.
+	 * <p>By default this is set to 1M.
+	 * @param maxBodySize the maximum body size in bytes
+	 */
+	public void setMaxBodySize(int maxBodySize) {
+		Assert.isTrue(maxBodySize >= 0, "Max body size must not be negative");
+		this.maxBodySize = maxBodySize;
+	}
+
+	/**
+	 * Return the configured maximum size of a response body to cache.
+	 */
+	public int getMaxBodySize() {
+		return this.maxBodySize;
+	}
+
+	/**
+	 * Configure the {@link Clock} to use to determine the age of responses.
+	 * <p>By default this is {@code Clock.systemUTC()}.
+	 * @param clock the clock to use
+	 */
+	public void setClock(Clock clock) {
+		Assert.notNull(clock, "Clock is required");
+		this.clock = clock;
+	}
+
+	/**
+	 * Return the configured clock.
+	 */
+	public Clock getClock() {
+		return this.clock;
+	}
+
+
+	/**
+	 * Look up the response for a request about to be sent.
+	 * @param method the method of the request
+	 * @param uri the URI of the request
+	 * @param requestHeaders the headers of the request
+	 * @param revalidateInBackground whether the caller can revalidate a stale
+	 * response in the background, while serving it, as permitted by the
+	 * {@code stale-while-revalidate} directive of the response
+	 * @return the lookup that determines how to proceed with the request
+	 */
+	public Lookup lookup(@Nullable HttpMethod method, URI uri, HttpHeaders requestHeaders,
+			boolean revalidateInBackground) {
+
+		long now = this.clock.millis();
+		String key = uri.toString();
+		if (method != HttpMethod.GET) {
+			return new Lookup(LookupStatus.BYPASS, method, key, requestHeaders, null, now);
+		}
+		Directives requestDirectives = Directives.of(requestHeaders);
+		if (requestDirectives.has("no-store") || isConditionalOrPartial(requestHeaders)) {
+			return new Lookup(LookupStatus.BYPASS, method, key, requestHeaders, null, now);
+		}
+		CachedHttpResponse response = this.store.get(key);
+		if (response == null || !matchesVaryHeaders(response, requestHeaders)) {
+			return new Lookup(LookupStatus.MISS, method, key, requestHeaders, null, now);
+		}
+		Directives responseDirectives = Directives.of(response.getHeaders());
+		boolean noCache = (requestDirectives.has("no-cache") || responseDirectives.has("no-cache") ||
+				"no-cache".equals(requestHeaders.getPragma()));
+		if (!noCache) {
+			long age = getAge(response, now);
+			long freshnessLifetime = getFreshnessLifetime(response.getHeaders(), responseDirectives, response.getResponseTime());
+			long maxAge = requestDirectives.getMillis("max-age");
+			if (age < freshnessLifetime && (maxAge == -1 || age <= maxAge)) {
+				return new Lookup(LookupStatus.HIT, method, key, requestHeaders, response, now);
+			}
+			long staleWhileRevalidate = responseDirectives.getMillis("stale-while-revalidate");
+			if (revalidateInBackground && maxAge == -1 && age < freshnessLifetime + staleWhileRevalidate &&
+					!responseDirectives.has("must-revalidate") && !responseDirectives.has("proxy-revalidate")) {
+				// Serve stale, and revalidate unless already under way
+				LookupStatus status = (this.revalidations.add(key) ? LookupStatus.HIT_AND_REVALIDATE : LookupStatus.HIT);
+				return new Lookup(status, method, key, requestHeaders, response, now);
+			}
+		}
+		if (hasValidator(response.getHeaders())) {
+			return new Lookup(LookupStatus.REVALIDATE, method, key, requestHeaders, response, now);
+		}
+		return new Lookup(LookupStatus.MISS, method, key, requestHeaders, null, now);
+	}
+
+	private static Set<String> headerNames(String... names) {
+		Set<String> result = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+		result.addAll(Arrays.asList(names));
+		return result;
+	}
+
+	private static boolean isConditionalOrPartial(HttpHeaders headers) {
+		return (headers.containsKey(HttpHeaders.IF_NONE_MATCH) || headers.containsKey(HttpHeaders.IF_MODIFIED_SINCE) ||
+				headers.containsKey(HttpHeaders.IF_MATCH) || headers.containsKey(HttpHeaders.IF_UNMODIFIED_SINCE) ||
+				headers.containsKey(HttpHeaders.RANGE));
+	}
+
+	private static boolean matchesVaryHeaders(CachedHttpResponse response, HttpHeaders requestHeaders) {
+		for (String name : response.getHeaders().getVary()) {
+			if (!response.getVaryHeaders().getOrEmpty(name).equals(requestHeaders.getOrEmpty(name))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean hasValidator(HttpHeaders headers) {
+		return (headers.getETag() != null || headers.getLastModified() != -1);
+	}
+
+	/**
+	 * Return the current age of the response in milliseconds, as per RFC 7234, section 4.2.3.
+	 */
+	private static long getAge(CachedHttpResponse response, long now) {
+		HttpHeaders headers = response.getHeaders();
+		long date = getDate(headers, response.getResponseTime());
+		long apparentAge = Math.max(0, response.getResponseTime() - date);
+		long responseDelay = response.getResponseTime() - response.getRequestTime();
+		long correctedAgeValue = parseSeconds(headers.getFirst(HttpHeaders.AGE), 0) * 1000 + responseDelay;
+		long correctedInitialAge = Math.max(apparentAge, correctedAgeValue);
+		return correctedInitialAge + (now - response.getResponseTime());
+	}
+
+	/**
+	 * Return the freshness lifetime of the response in milliseconds, as per RFC 7234, section 4.2.1.
+	 */
+	private static long getFreshnessLifetime(HttpHeaders headers, Directives directives, long responseTime) {
+		long sharedMaxAge = directives.getMillis("s-maxage");
+		if (sharedMaxAge != -1) {
+			return sharedMaxAge;
+		}
+		long maxAge = directives.getMillis("max-age");
+		if (maxAge != -1) {
+			return maxAge;
+		}
+		if (headers.containsKey(HttpHeaders.EXPIRES)) {
+			// An invalid date, such as "0", represents a time in the past
+			long expires = headers.getExpires();
+			return (expires != -1 ? Math.max(0, expires - getDate(headers, responseTime)) : 0);
+		}
+		return 0;
+	}
+
+	private static long getDate(HttpHeaders headers, long defaultValue) {
+		try {
+			long date = headers.getDate();
+			return (date != -1 ? date : defaultValue);
+		}
+		catch (IllegalArgumentException ex) {
+			return defaultValue;
+		}
+	}
+
+	private static long parseSeconds(@Nullable String value, long defaultValue) {
+		if (!StringUtils.hasText(value)) {
+			return defaultValue;
+		}
+		try {
+			return Math.max(0, Long.parseLong(value.trim()));
+		}
+		catch (NumberFormatException ex) {
+			return defaultValue;
+		}
+	}
+
+
+	/**
+	 * How to proceed with a request, as determined by {@link #lookup}.
+	 */
+	public enum LookupStatus {
+
+		/**
+		 * The request is not served from the cache, nor is its response
+		 * stored, e.g. for methods other than {@code GET}.
+		 */
+		BYPASS,
+
+		/**
+		 * No usable response is stored: the request is to be sent, and its
+		 * response stored if {@linkplain Lookup#isStorable() storable}.
+		 */
+		MISS,
+
+		/**
+		 * The {@linkplain Lookup#getCachedResponse() cached response} is to
+		 * be used as is.
+		 */
+		HIT,
+
+		/**
+		 * The {@linkplain Lookup#getCachedResponse() cached response} is
+		 * stale, but is to be used as is while revalidating it in the
+		 * background, after which {@link Lookup#complete()} is to be called.
+		 */
+		HIT_AND_REVALIDATE,
+
+		/**
+		 * The {@linkplain Lookup#getCachedResponse() cached response} is to
+		 * be revalidated, by sending the request with the
+		 * {@linkplain Lookup#getRequestHeaders() conditional headers} of the
+		 * lookup.
+		 */
+		REVALIDATE
+	}
+
+
+	/**
+	 * The result of a {@linkplain #lookup cache lookup} for a request, through
+	 * which the response to the request is passed back to the cache.
+	 */
+	public final class Lookup {
+
+		private final LookupStatus status;
+
+		@Nullable
+		private final HttpMethod method;
+
+		private final String key;
+
+		private final HttpHeaders requestHeaders;
+
+		@Nullable
+		private volatile CachedHttpResponse cachedResponse;
+
+		private final long requestTime;
+
+		private int statusCode;
+
+		@Nullable
+		private HttpHeaders responseHeaders;
+
+		private long responseTime;
+
+		private boolean storable;
+
+		Lookup(LookupStatus status, @Nullable HttpMethod method, String key, HttpHeaders requestHeaders,
+				@Nullable CachedHttpResponse cachedResponse, long requestTime) {
+
+			this.status = status;
+			this.method = method;
+			this.key = key;
+			this.requestHeaders = requestHeaders;
+			this.cachedResponse = cachedResponse;
+			this.requestTime = requestTime;
+		}
+
+		/**
+		 * Return how to proceed with the request.
+		 */
+		public LookupStatus getStatus() {
+			return this.status;
+		}
+
+		/**
+		 * Return the cached response to use, or to revalidate.
+		 * @return the cached response, or {@code null} for a
+		 * {@link LookupStatus#MISS MISS} or {@link LookupStatus#BYPASS BYPASS}
+		 */
+		@Nullable
+		public CachedHttpResponse getCachedResponse() {
+			return this.cachedResponse;
+		}
+
+		/**
+		 * Return the headers of the {@linkplain #getCachedResponse() cached
+		 * response} to expose to the caller, including its current {@code Age}.
+		 */
+		public HttpHeaders getResponseHeaders() {
+			CachedHttpResponse response = this.cachedResponse;
+			Assert.state(response != null, "No cached response");
+			HttpHeaders headers = new HttpHeaders();
+			headers.putAll(response.getHeaders());
+			long age = getAge(response, HttpResponseCache.this.clock.millis());
+			headers.set(HttpHeaders.AGE, Long.toString(Math.max(0, age / 1000)));
+			return headers;
+		}
+
+		/**
+		 * Return the headers to send the request with, i.e. the headers of the
+		 * request along with conditional headers to revalidate the cached
+		 * response with, if any.
+		 */
+		public HttpHeaders getRequestHeaders() {
+			CachedHttpResponse response = this.cachedResponse;
+			if (response == null || (this.status != LookupStatus.REVALIDATE &&
+					this.status != LookupStatus.HIT_AND_REVALIDATE)) {
+				return this.requestHeaders;
+			}
+			HttpHeaders headers = new HttpHeaders();
+			headers.putAll(this.requestHeaders);
+			String etag = response.getHeaders().getETag();
+			if (etag != null) {
+				headers.setIfNoneMatch(etag);
+			}
+			String lastModified = response.getHeaders().getFirst(HttpHeaders.LAST_MODIFIED);
+			if (lastModified != null) {
+				headers.set(HttpHeaders.IF_MODIFIED_SINCE, lastModified);
+			}
+			return headers;
+		}
+
+		/**
+		 * Pass back the status and headers of the response received for the
+		 * request, if any was sent. A {@code 304} response to a revalidation
+		 * refreshes the cached response, and responses to unsafe methods
+		 * invalidate it.
+		 * @param statusCode the status code of the response
+		 * @param headers the headers of the response
+		 * @return the refreshed cached response, to use in place of the
+		 * {@code 304} response, or {@code null} if the response is to be used
+		 */
+		@Nullable
+		public CachedHttpResponse responseReceived(int statusCode, HttpHeaders headers) {
+			this.statusCode = statusCode;
+			this.responseHeaders = headers;
+			this.responseTime = HttpResponseCache.this.clock.millis();
+			CachedHttpResponse response = this.cachedResponse;
+			if (this.status == LookupStatus.BYPASS) {
+				if (!isSafe(this.method) && statusCode >= 200 && statusCode < 400) {
+					HttpResponseCache.this.store.remove(this.key);
+				}
+				return null;
+			}
+			if (statusCode == 304 && response != null) {
+				response = refresh(response, headers);
+				this.cachedResponse = response;
+				HttpResponseCache.this.store.put(this.key, response);
+				return response;
+			}
+			Directives directives = Directives.of(headers);
+			this.storable = isStorable(statusCode, headers, directives);
+			if (!this.storable && response != null) {
+				HttpResponseCache.this.store.remove(this.key);
+			}
+			return null;
+		}
+
+		private boolean isSafe(@Nullable HttpMethod method) {
+			return (method == HttpMethod.GET || method == HttpMethod.HEAD ||
+					method == HttpMethod.OPTIONS || method == HttpMethod.TRACE);
+		}
+
+		private CachedHttpResponse refresh(CachedHttpResponse response, HttpHeaders notModifiedHeaders) {
+			HttpHeaders headers = new HttpHeaders();
+			headers.putAll(response.getHeaders());
+			headers.remove(HttpHeaders.AGE);
+			notModifiedHeaders.forEach((name, values) -> {
+				if (!IGNORED_NOT_MODIFIED_HEADERS.contains(name) && !HOP_BY_HOP_HEADERS.contains(name)) {
+					headers.put(name, values);
+				}
+			});
+			return new CachedHttpResponse(response.getRawStatusCode(), headers, response.getBody(),
+					response.getVaryHeaders(), this.requestTime, this.responseTime);
+		}
+
+		private boolean isStorable(int statusCode, HttpHeaders headers, Directives directives) {
+			if (statusCode == 206 || statusCode == 304 || directives.has("no-store") || directives.has("private")) {
+				return false;
+			}
+			boolean shareable = (directives.has("public") || directives.has("s-maxage") ||
+					directives.has("must-revalidate"));
+			if (this.requestHeaders.containsKey(HttpHeaders.AUTHORIZATION) && !shareable) {
+				return false;
+			}
+			if (headers.getVary().contains("*") || headers.getContentLength() > HttpResponseCache.this.maxBodySize) {
+				return false;
+			}
+			if (getFreshnessLifetime(headers, directives, this.responseTime) > 0 ||
+					directives.getMillis("stale-while-revalidate") > 0) {
+				return true;
+			}
+			return (CACHEABLE_STATUS_CODES.contains(statusCode) && hasValidator(headers));
+		}
+
+		/**
+		 * Whether the response {@linkplain #responseReceived received} is to
+		 * be {@linkplain #store stored}, once its body has been read.
+		 */
+		public boolean isStorable() {
+			return this.storable;
+		}
+
+		/**
+		 * Store the response {@linkplain #responseReceived received} along
+		 * with the given body, if not larger than the
+		 * {@linkplain #setMaxBodySize maximum body size}.
+		 * @param body the complete body of the response
+		 */
+		public void store(byte[] body) {
+			HttpHeaders headers = this.responseHeaders;
+			Assert.state(this.storable && headers != null, "Response not storable");
+			if (body.length > HttpResponseCache.this.maxBodySize) {
+				return;
+			}
+			HttpHeaders storedHeaders = new HttpHeaders();
+			headers.forEach((name, values) -> {
+				if (!HOP_BY_HOP_HEADERS.contains(name)) {
+					storedHeaders.put(name, values);
+				}
+			});
+			HttpHeaders varyHeaders = new HttpHeaders();
+			for (String name : headers.getVary()) {
+				List<String> values = this.requestHeaders.get(name);
+				if (values != null) {
+					varyHeaders.put(name, values);
+				}
+			}
+			HttpResponseCache.this.store.put(this.key, new CachedHttpResponse(this.statusCode, storedHeaders, body, varyHeaders,
+					this.requestTime, this.responseTime));
+		}
+
+		/**
+		 * Complete a background revalidation, after
+		 * {@link LookupStatus#HIT_AND_REVALIDATE HIT_AND_REVALIDATE},
+		 * whether it succeeded or not.
+		 */
+		public void complete() {
+			if (this.status == LookupStatus.HIT_AND_REVALIDATE) {
+				HttpResponseCache.this.revalidations.remove(this.key);
+			}
+		}
+	}
+
+
+	/**
+	 * The directives of a {@code Cache-Control} header.
+	 */
+	private static final class Directives {
+
+		private static final Directives NONE = new Directives(Collections.emptyMap());
+
+		private final Map<String, String> directives;
+
+		private Directives(Map<String, String> directives) {
+			this.directives = directives;
+		}
+
+		static Directives of(HttpHeaders headers) {
+			List<String> values = headers.get(HttpHeaders.CACHE_CONTROL);
+			if (values == null || values.isEmpty()) {
+				return NONE;
+			}
+			Map<String, String> directives = new HashMap<>();
+			for (String value : values) {
+				parse(value, directives);
+			}
+			return new Directives(directives);
+		}
+
+		/**
+		 * Parse the comma-separated directives of a header value, where the
+		 * value of a directive may be a quoted-string as per RFC 7230.
+		 */
+		private static void parse(String value, Map<String, String> directives) {
+			int length = value.length();
+			int index = 0;
+			while (index < length) {
+				int end = index;
+				while (end < length && value.charAt(end) != ',' && value.charAt(end) != '=') {
+					end++;
+				}
+				String name = value.substring(index, end).trim().toLowerCase(Locale.ROOT);
+				StringBuilder directiveValue = new StringBuilder();
+				if (end < length && value.charAt(end) == '=') {
+					end++;
+					while (end < length && value.charAt(end) == ' ') {
+						end++;
+					}
+					if (end < length && value.charAt(end) == '"') {
+						end++;
+						while (end < length && value.charAt(end) != '"') {
+							if (value.charAt(end) == '\\' && end + 1 < length) {
+								end++;
+							}
+							directiveValue.append(value.charAt(end++));
+						}
+						end++;
+					}
+					while (end < length && value.charAt(end) != ',') {
+						directiveValue.append(value.charAt(end++));
+					}
+				}
+				if (!name.isEmpty()) {
+					directives.put(name, directiveValue.toString().trim());
+				}
+				index = end + 1;
+			}
+		}
+
+		boolean has(String name) {
+			return this.directives.containsKey(name);
+		}
+
+		/**
+		 * Return the value of the given directive, in seconds, as milliseconds,
+		 * or -1 if not present or invalid.
+		 */
+		long getMillis(String name) {
+			long seconds = parseSeconds(this.directives.get(name), -1);
+			return (seconds != -1 ? seconds * 1000 : -1);
+		}
+	}
+
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.http.client.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+
+/**
+ * {@link HttpResponseCacheStore} that keeps responses in memory, up to a
+ * maximum amount of memory, evicting the least recently used responses
+ * to make room for new ones.
+ *
+ * <p>The memory held by a response is estimated through
+ * {@link CachedHttpResponse#getSize()}.
+ *
+ * @author Arjen Poutsma
+ * @since 5.3.11
+ */
+public class InMemoryHttpResponseCacheStore implements HttpResponseCacheStore {
+
+	private final long maxMemoryUsage;
+
+	private final Map<String, CachedHttpResponse> responses = new LinkedHashMap<>(16, 0.75f, true);
+
+	private long memoryUsage;
+
+
+	/**
+	 * Create a new store that holds up to 10M of responses.
+	 */
+	public InMemoryHttpResponseCacheStore() {
+		this(10 * 1024 * 1024);
+	}
+
+	/**
+	 * Create a new store that holds up to the given amount of responses.
+	 * @param maxMemoryUsage the maximum memory held by responses, in bytes
+	 */
+	public InMemoryHttpResponseCacheStore(long maxMemoryUsage) {
+		Assert.isTrue(maxMemoryUsage > 0, "Max memory usage must be greater than 0");
+		this.maxMemoryUsage = maxMemoryUsage;
+	}
+
+
+	/**
+	 * Return the configured maximum memory held by responses, in bytes.
+	 */
+	public long getMaxMemoryUsage() {
+		return this.maxMemoryUsage;
+	}
+
+	/**
+	 * Return the estimated memory currently held by responses, in bytes.
+	 */
+	public synchronized long getMemoryUsage() {
+		return this.memoryUsage;
+	}
+
+	/**
+	 * Return the number of responses currently held.
+	 */
+	public synchronized int size() {
+		return this.responses.size();
+	}
+
+
+	@Override
+	@Nullable
+	public synchronized CachedHttpResponse get(String key) {
+		return this.responses.get(key);
+	}
+
+	@Override
+	public synchronized void put(String key, CachedHttpResponse response) {
+		remove(key);
+		long size = response.getSize();
+		if (size > this.maxMemoryUsage) {
+			return;
+		}
+		Iterator<CachedHttpResponse> iterator = this.responses.values().iterator();
+		while (this.memoryUsage + size > this.maxMemoryUsage && iterator.hasNext()) {
+			this.memoryUsage -= iterator.next().getSize();
+			iterator.remove();
+		}
+		this.responses.put(key, response);
+		this.memoryUsage += size;
+	}
+
+	@Override
+	public synchronized void remove(String key) {
+		CachedHttpResponse response = this.responses.remove(key);
+		if (response != null) {
+			this.memoryUsage -= response.getSize();
+		}
+	}
+
+}
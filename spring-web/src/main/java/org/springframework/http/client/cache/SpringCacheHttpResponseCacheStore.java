@@ -0,0 +1,69 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.http.client.cache;
+
+import org.springframework.cache.Cache;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+
+/**
+ * {@link HttpResponseCacheStore} that delegates to a Spring {@link Cache},
+ * e.g. to share responses across instances through a distributed cache.
+ * Eviction and memory bounds are left to the configuration of the cache.
+ *
+ * @author Arjen Poutsma
+ * @since 5.3.11
+ */
+public class SpringCacheHttpResponseCacheStore implements HttpResponseCacheStore {
+
+	private final Cache cache;
+
+
+	/**
+	 * Create a new store that delegates to the given cache.
+	 * @param cache the cache to hold responses in
+	 */
+	public SpringCacheHttpResponseCacheStore(Cache cache) {
+		Assert.notNull(cache, "Cache must not be null");
+		this.cache = cache;
+	}
+
+
+	/**
+	 * Return the cache that responses are held in.
+	 */
+	public Cache getCache() {
+		return this.cache;
+	}
+
+	@Override
+	@Nullable
+	public CachedHttpResponse get(String key) {
+		return this.cache.get(key, CachedHttpResponse.class);
+	}
+
+	@Override
+	public void put(String key, CachedHttpResponse response) {
+		this.cache.put(key, response);
+	}
+
+	@Override
+	public void remove(String key) {
+		this.cache.evict(key);
+	}
+
+}
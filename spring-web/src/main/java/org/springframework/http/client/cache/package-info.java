@@ -0,0 +1,11 @@
+/**
+ * Client-side HTTP response cache that honors {@code Cache-Control},
+ * for use with {@code RestTemplate} and {@code WebClient}.
+ */
+@NonNullApi
+@NonNullFields
+
+package org.springframework.http.client.cache;
+
+import org.springframework.lang.NonNullApi;
+import org.springframework.lang.NonNullFields;
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.http.client.reactive;
+
+import java.time.Duration;
+
+/**
+ * Callback for the connection-level events of a single request, as reported
+ * by a {@link ClientHttpConnector}.
+ *
+ * <p>A listener is registered for the requests of an exchange by adding it to
+ * the Reactor {@link reactor.util.context.Context Context} of the response
+ * {@code Mono} returned from {@link ClientHttpConnector#connect}, with the
+ * {@code ClientHttpConnectionListener} class as key. This is supported by
+ * {@link ReactorClientHttpConnector} and {@link JettyClientHttpConnector}.
+ *
+ * @author Brian Clozel
+ * @since 5.3.11
+ */
+@FunctionalInterface
+public interface ClientHttpConnectionListener {
+
+	/**
+	 * Invoked when a connection for the request has been obtained, either
+	 * from the connection pool or by establishing a new connection.
+	 * <p>May be invoked more than once for the same exchange, e.g. when
+	 * redirects are followed by the underlying client.
+	 * @param acquireTime the time spent waiting for the connection
+	 */
+	void connectionAcquired(Duration acquireTime);
+
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.http.client.reactive;
+
+/**
+ * Statistics of the connection pool that an HTTP client keeps for a single
+ * remote address. Values are read from the pool when requested.
+ *
+ * @author Brian Clozel
+ * @since 5.3.11
+ * @see JettyClientHttpConnector#getConnectionPoolStats()
+ * @see ReactorConnectionPoolStatsRegistrar#getConnectionPoolStats()
+ */
+public interface ConnectionPoolStats {
+
+	/**
+	 * Return a name that identifies the pool, including its remote address.
+	 */
+	String getName();
+
+	/**
+	 * Return the number of connections currently in use.
+	 */
+	int getActiveConnections();
+
+	/**
+	 * Return the number of connections currently idle in the pool.
+	 */
+	int getIdleConnections();
+
+	/**
+	 * Return the number of requests waiting for a connection.
+	 */
+	int getPendingAcquires();
+
+	/**
+	 * Return the maximum number of connections of the pool, or -1 if not known.
+	 */
+	int getMaxConnections();
+
+}
@@ -17,10 +17,17 @@
 package org.springframework.http.client.reactive;
 
 import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
+import org.eclipse.jetty.client.AbstractConnectionPool;
 import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.HttpDestination;
+import org.eclipse.jetty.client.api.Destination;
 import org.eclipse.jetty.client.api.Request;
 import org.eclipse.jetty.reactive.client.ContentChunk;
 import reactor.core.publisher.Flux;
@@ -36,6 +43,10 @@ import org.springframework.util.Assert;
 /**
  * {@link ClientHttpConnector} for the Jetty Reactive Streams HttpClient.
  *
+ * <p>Reports the time to acquire a connection to a
+ * {@link ClientHttpConnectionListener} in the Reactor context, and exposes
+ * the connection pools of the client through {@link #getConnectionPoolStats()}.
+ *
  * @author Sebastien Deleuze
  * @since 5.1
  * @see <a href="https://github.com/jetty-project/jetty-reactive-httpclient">Jetty ReactiveStreams HttpClient</a>
@@ -119,10 +130,37 @@ public class JettyClientHttpConnector implements ClientHttpConnector {
 			}
 		}
 
-		Request jettyRequest = this.httpClient.newRequest(uri).method(method.toString());
-		JettyClientHttpRequest request = new JettyClientHttpRequest(jettyRequest, this.bufferFactory);
+		return Mono.deferContextual(context -> {
+			Request jettyRequest = this.httpClient.newRequest(uri).method(method.toString());
+			ClientHttpConnectionListener listener = context.getOrDefault(ClientHttpConnectionListener.class, null);
+			if (listener != null) {
+				// Queued until a connection is available, and begins once it is acquired
+				AtomicLong queuedTime = new AtomicLong();
+				jettyRequest.onRequestQueued(r -> queuedTime.set(System.nanoTime()));
+				jettyRequest.onRequestBegin(r -> listener.connectionAcquired(
+						Duration.ofNanos(System.nanoTime() - queuedTime.get())));
+			}
+			JettyClientHttpRequest request = new JettyClientHttpRequest(jettyRequest, this.bufferFactory);
+			return requestCallback.apply(request).then(execute(request));
+		});
+	}
 
-		return requestCallback.apply(request).then(execute(request));
+	/**
+	 * Return the statistics of the connection pools of the underlying
+	 * {@link HttpClient}, one for each destination it connected to.
+	 * @since 5.3.11
+	 */
+	public List<ConnectionPoolStats> getConnectionPoolStats() {
+		List<ConnectionPoolStats> result = new ArrayList<>();
+		for (Destination destination : this.httpClient.getDestinations()) {
+			if (destination instanceof HttpDestination) {
+				HttpDestination httpDestination = (HttpDestination) destination;
+				if (httpDestination.getConnectionPool() instanceof AbstractConnectionPool) {
+					result.add(new JettyConnectionPoolStats(httpDestination));
+				}
+			}
+		}
+		return result;
 	}
 
 	private Mono<ClientHttpResponse> execute(JettyClientHttpRequest request) {
@@ -148,4 +186,48 @@ public class JettyClientHttpConnector implements ClientHttpConnector {
 		return buffer;
 	}
 
+
+	private static class JettyConnectionPoolStats implements ConnectionPoolStats {
+
+		private final HttpDestination destination;
+
+		private final AbstractConnectionPool connectionPool;
+
+		JettyConnectionPoolStats(HttpDestination destination) {
+			this.destination = destination;
+			this.connectionPool = (AbstractConnectionPool) destination.getConnectionPool();
+		}
+
+		@Override
+		public String getName() {
+			return this.destination.getScheme() + "://" + this.destination.getHost() + ":" + this.destination.getPort();
+		}
+
+		@Override
+		public int getActiveConnections() {
+			return this.connectionPool.getActiveConnectionCount();
+		}
+
+		@Override
+		public int getIdleConnections() {
+			return this.connectionPool.getIdleConnectionCount();
+		}
+
+		@Override
+		public int getPendingAcquires() {
+			return this.destination.getQueuedRequestCount();
+		}
+
+		@Override
+		public int getMaxConnections() {
+			return this.connectionPool.getMaxConnectionCount();
+		}
+
+		@Override
+		public String toString() {
+			return getName() + " [active=" + getActiveConnections() + ", idle=" + getIdleConnections() +
+					", pending=" + getPendingAcquires() + ", max=" + getMaxConnections() + "]";
+		}
+	}
+
 }
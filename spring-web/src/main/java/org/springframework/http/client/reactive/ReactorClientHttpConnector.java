@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2020 the original author or authors.
+ * Copyright 2002-2021 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,6 +17,7 @@
 package org.springframework.http.client.reactive;
 
 import java.net.URI;
+import java.time.Duration;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 
@@ -33,6 +34,10 @@ import org.springframework.util.Assert;
 /**
  * Reactor-Netty implementation of {@link ClientHttpConnector}.
  *
+ * <p>Reports the time to acquire a connection to a
+ * {@link ClientHttpConnectionListener} in the Reactor context. For statistics
+ * of the connection pool, see {@link ReactorConnectionPoolStatsRegistrar}.
+ *
  * @author Brian Clozel
  * @author Rossen Stoyanchev
  * @since 5.0
@@ -100,23 +105,34 @@ public class ReactorClientHttpConnector implements ClientHttpConnector {
 	public Mono<ClientHttpResponse> connect(HttpMethod method, URI uri,
 			Function<? super ClientHttpRequest, Mono<Void>> requestCallback) {
 
-		AtomicReference<ReactorClientHttpResponse> responseRef = new AtomicReference<>();
-
-		return this.httpClient
-				.request(io.netty.handler.codec.http.HttpMethod.valueOf(method.name()))
-				.uri(uri.toString())
-				.send((request, outbound) -> requestCallback.apply(adaptRequest(method, uri, request, outbound)))
-				.responseConnection((response, connection) -> {
-					responseRef.set(new ReactorClientHttpResponse(response, connection));
-					return Mono.just((ClientHttpResponse) responseRef.get());
-				})
-				.next()
-				.doOnCancel(() -> {
-					ReactorClientHttpResponse response = responseRef.get();
-					if (response != null) {
-						response.releaseAfterCancel(method);
-					}
-				});
+		return Mono.deferContextual(context -> {
+			ClientHttpConnectionListener listener = context.getOrDefault(ClientHttpConnectionListener.class, null);
+			long startTime = (listener != null ? System.nanoTime() : 0);
+
+			AtomicReference<ReactorClientHttpResponse> responseRef = new AtomicReference<>();
+
+			return this.httpClient
+					.request(io.netty.handler.codec.http.HttpMethod.valueOf(method.name()))
+					.uri(uri.toString())
+					.send((request, outbound) -> {
+						// The connection has been acquired by now
+						if (listener != null) {
+							listener.connectionAcquired(Duration.ofNanos(System.nanoTime() - startTime));
+						}
+						return requestCallback.apply(adaptRequest(method, uri, request, outbound));
+					})
+					.responseConnection((response, connection) -> {
+						responseRef.set(new ReactorClientHttpResponse(response, connection));
+						return Mono.just((ClientHttpResponse) responseRef.get());
+					})
+					.next()
+					.doOnCancel(() -> {
+						ReactorClientHttpResponse response = responseRef.get();
+						if (response != null) {
+							response.releaseAfterCancel(method);
+						}
+					});
+		});
 	}
 
 	private ReactorClientHttpRequest adaptRequest(HttpMethod method, URI uri, HttpClientRequest request,
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.http.client.reactive;
+
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import reactor.netty.resources.ConnectionPoolMetrics;
+import reactor.netty.resources.ConnectionProvider;
+
+/**
+ * {@link ConnectionProvider.MeterRegistrar} that collects the pools of a
+ * Reactor Netty {@link ConnectionProvider}, in order to expose them as
+ * {@link ConnectionPoolStats}, without a dependency on Micrometer.
+ *
+ * <p>To use it, enable metrics on the {@code ConnectionProvider} with this
+ * registrar, e.g. through
+ * {@link ReactorResourceFactory#setConnectionProviderSupplier}:
+ * <pre class="code">
+ * ConnectionProvider.builder("webflux")
+ *         .maxConnections(500)
+ *         .metrics(true, () -&gt; registrar)
+ *         .build();
+ * </pre>
+ *
+ * @author Brian Clozel
+ * @since 5.3.11
+ */
+public class ReactorConnectionPoolStatsRegistrar implements ConnectionProvider.MeterRegistrar {
+
+	private final Map<String, ConnectionPoolStats> pools = new ConcurrentHashMap<>();
+
+
+	@Override
+	public void registerMetrics(String poolName, String id, SocketAddress remoteAddress,
+			ConnectionPoolMetrics metrics) {
+
+		this.pools.put(id, new ReactorConnectionPoolStats(poolName + " " + remoteAddress, metrics));
+	}
+
+	/**
+	 * Return the statistics of the pools registered so far.
+	 */
+	public List<ConnectionPoolStats> getConnectionPoolStats() {
+		return new ArrayList<>(this.pools.values());
+	}
+
+
+	private static class ReactorConnectionPoolStats implements ConnectionPoolStats {
+
+		private final String name;
+
+		private final ConnectionPoolMetrics metrics;
+
+		ReactorConnectionPoolStats(String name, ConnectionPoolMetrics metrics) {
+			this.name = name;
+			this.metrics = metrics;
+		}
+
+		@Override
+		public String getName() {
+			return this.name;
+		}
+
+		@Override
+		public int getActiveConnections() {
+			return this.metrics.acquiredSize();
+		}
+
+		@Override
+		public int getIdleConnections() {
+			return this.metrics.idleSize();
+		}
+
+		@Override
+		public int getPendingAcquires() {
+			return this.metrics.pendingAcquireSize();
+		}
+
+		@Override
+		public int getMaxConnections() {
+			return -1;
+		}
+
+		@Override
+		public String toString() {
+			return this.name + " [active=" + getActiveConnections() + ", idle=" + getIdleConnections() +
+					", pending=" + getPendingAcquires() + "]";
+		}
+	}
+
+}
@@ -19,10 +19,12 @@ package org.springframework.http.codec.json;
 import java.io.IOException;
 import java.lang.annotation.Annotation;
 import java.math.BigDecimal;
+import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicReference;
 
+import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.JavaType;
@@ -65,6 +67,8 @@ public abstract class AbstractJackson2Decoder extends Jackson2CodecSupport imple
 
 	private int maxInMemorySize = 256 * 1024;
 
+	private boolean decodeFromBytes = false;
+
 
 	/**
 	 * Constructor with a Jackson {@link ObjectMapper} to use.
@@ -95,6 +99,32 @@ public abstract class AbstractJackson2Decoder extends Jackson2CodecSupport imple
 		return this.maxInMemorySize;
 	}
 
+	/**
+	 * Whether to bind each JSON object of a stream, or each element of a JSON
+	 * array, from its raw bytes rather than from the tokens buffered by the
+	 * non-blocking parser.
+	 * <p>The input is then only scanned for where each object ends, rather
+	 * than tokenized twice, and each object is held as bytes rather than as
+	 * a token buffer. The {@link #setMaxInMemorySize maxInMemorySize} limit
+	 * applies to the exact number of bytes of each object.
+	 * <p>Only applies to the JSON format, since other formats such as Smile
+	 * may not allow binding an object from a subset of the input.
+	 * <p>By default this is set to {@code false}.
+	 * @param decodeFromBytes whether to bind objects from their bytes
+	 * @since 5.3.11
+	 */
+	public void setDecodeFromBytes(boolean decodeFromBytes) {
+		this.decodeFromBytes = decodeFromBytes;
+	}
+
+	/**
+	 * Return whether to bind JSON objects from their bytes.
+	 * @since 5.3.11
+	 */
+	public boolean isDecodeFromBytes() {
+		return this.decodeFromBytes;
+	}
+
 
 	@Override
 	public boolean canDecode(ResolvableType elementType, @Nullable MimeType mimeType) {
@@ -135,6 +165,11 @@ public abstract class AbstractJackson2Decoder extends Jackson2CodecSupport imple
 		}
 
 		Flux<DataBuffer> processed = processInput(input, elementType, mimeType, hints);
+
+		if (this.decodeFromBytes && JsonFactory.FORMAT_NAME_JSON.equals(mapper.getFactory().getFormatName())) {
+			return decodeFromBytes(processed, mapper, elementType, hints, forceUseOfBigDecimal);
+		}
+
 		Flux<TokenBuffer> tokens = Jackson2Tokenizer.tokenize(processed, mapper.getFactory(), mapper,
 				true, forceUseOfBigDecimal, getMaxInMemorySize());
 
@@ -154,6 +189,30 @@ public abstract class AbstractJackson2Decoder extends Jackson2CodecSupport imple
 		});
 	}
 
+	private Flux<Object> decodeFromBytes(Flux<DataBuffer> input, ObjectMapper mapper,
+			ResolvableType elementType, @Nullable Map<String, Object> hints, boolean forceUseOfBigDecimal) {
+
+		Flux<ByteBuffer> values = Jackson2Tokenizer.splitValues(input, true, getMaxInMemorySize());
+
+		ObjectReader reader = getObjectReader(mapper, elementType, hints);
+		ObjectReader readerToUse = (forceUseOfBigDecimal ?
+				reader.with(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS) : reader);
+
+		return values.handle((buffer, sink) -> {
+			try {
+				Object value = readerToUse.readValue(
+						buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+				logValue(value, hints);
+				if (value != null) {
+					sink.next(value);
+				}
+			}
+			catch (IOException ex) {
+				sink.error(processException(ex));
+			}
+		});
+	}
+
 	/**
 	 * Process the input publisher into a flux. Default implementation returns
 	 * {@link Flux#from(Publisher)}, but subclasses can choose to customize
@@ -17,22 +17,27 @@
 package org.springframework.http.codec.json;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.lang.annotation.Annotation;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import com.fasterxml.jackson.core.PrettyPrinter;
+import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
 import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.exc.InvalidDefinitionException;
 import com.fasterxml.jackson.databind.ser.FilterProvider;
 import org.reactivestreams.Publisher;
@@ -46,6 +51,7 @@ import org.springframework.core.codec.EncodingException;
 import org.springframework.core.codec.Hints;
 import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
 import org.springframework.core.log.LogFormatUtils;
 import org.springframework.http.MediaType;
 import org.springframework.http.codec.HttpMessageEncoder;
@@ -55,6 +61,7 @@ import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.lang.Nullable;
 import org.springframework.util.Assert;
 import org.springframework.util.CollectionUtils;
+import org.springframework.util.ConcurrentReferenceHashMap;
 import org.springframework.util.MimeType;
 
 /**
@@ -83,6 +90,8 @@ public abstract class AbstractJackson2Encoder extends Jackson2CodecSupport imple
 
 	private final List<MediaType> streamingMediaTypes = new ArrayList<>(1);
 
+	private final BufferSizeEstimator bufferSizeEstimator = new BufferSizeEstimator();
+
 
 	/**
 	 * Constructor with a Jackson {@link ObjectMapper} to use.
@@ -159,17 +168,28 @@ public abstract class AbstractJackson2Encoder extends Jackson2CodecSupport imple
 						throw new IllegalStateException("No ObjectMapper for " + elementType);
 					}
 					ObjectWriter writer = createObjectWriter(mapper, elementType, mimeType, null, hints);
-					ByteArrayBuilder byteBuilder = new ByteArrayBuilder(writer.getFactory()._getBufferRecycler());
+					boolean json = JsonFactory.FORMAT_NAME_JSON.equals(mapper.getFactory().getFormatName());
+					if (json && writer.getConfig().isEnabled(SerializationFeature.INDENT_OUTPUT)) {
+						// The pretty printer writes its own root separator in between values
+						PrettyPrinter prettyPrinter = writer.getConfig().getDefaultPrettyPrinter();
+						if (prettyPrinter instanceof DefaultPrettyPrinter) {
+							writer = writer.with(((DefaultPrettyPrinter) prettyPrinter).withRootSeparator(""));
+						}
+					}
+					TargetBufferOutputStream outputStream = new TargetBufferOutputStream();
 					JsonEncoding encoding = getJsonEncoding(mimeType);
-					JsonGenerator generator = mapper.getFactory().createGenerator(byteBuilder, encoding);
+					JsonGenerator generator = mapper.getFactory().createGenerator(outputStream, encoding);
 					SequenceWriter sequenceWriter = writer.writeValues(generator);
+					if (json) {
+						// SequenceWriter would otherwise write an unnecessary space in between values
+						generator.setRootValueSeparator(null);
+					}
 
 					return Flux.from(inputStream)
-							.map(value -> encodeStreamingValue(value, bufferFactory, hints, sequenceWriter, byteBuilder,
+							.map(value -> encodeStreamingValue(value, bufferFactory, hints, sequenceWriter, outputStream,
 									separator))
 							.doAfterTerminate(() -> {
 								try {
-									byteBuilder.release();
 									generator.close();
 								}
 								catch (IOException ex) {
@@ -212,46 +232,56 @@ public abstract class AbstractJackson2Encoder extends Jackson2CodecSupport imple
 		if (filters != null) {
 			writer = writer.with(filters);
 		}
-		ByteArrayBuilder byteBuilder = new ByteArrayBuilder(writer.getFactory()._getBufferRecycler());
+		logValue(hints, value);
+
+		// Serialize straight into the target buffer, sized from the estimate for the type of value,
+		// rather than into an intermediate byte array to copy from
+		Class<?> valueClass = (value != null ? value.getClass() : Object.class);
+		DataBuffer buffer = bufferFactory.allocateBuffer(this.bufferSizeEstimator.getEstimate(valueClass));
+		boolean release = true;
 		try {
 			JsonEncoding encoding = getJsonEncoding(mimeType);
-
-			logValue(hints, value);
-
-			try (JsonGenerator generator = mapper.getFactory().createGenerator(byteBuilder, encoding)) {
+			try (JsonGenerator generator = mapper.getFactory().createGenerator(buffer.asOutputStream(), encoding)) {
 				writer.writeValue(generator, value);
 				generator.flush();
 			}
-			catch (InvalidDefinitionException ex) {
-				throw new CodecException("Type definition error: " + ex.getType(), ex);
-			}
-			catch (JsonProcessingException ex) {
-				throw new EncodingException("JSON encoding error: " + ex.getOriginalMessage(), ex);
-			}
-			catch (IOException ex) {
-				throw new IllegalStateException("Unexpected I/O error while writing to byte array builder", ex);
-			}
-
-			byte[] bytes = byteBuilder.toByteArray();
-			DataBuffer buffer = bufferFactory.allocateBuffer(bytes.length);
-			buffer.write(bytes);
-			Hints.touchDataBuffer(buffer, hints, logger);
-
-			return buffer;
+			release = false;
+		}
+		catch (InvalidDefinitionException ex) {
+			throw new CodecException("Type definition error: " + ex.getType(), ex);
+		}
+		catch (JsonProcessingException ex) {
+			throw new EncodingException("JSON encoding error: " + ex.getOriginalMessage(), ex);
+		}
+		catch (IOException ex) {
+			throw new IllegalStateException("Unexpected I/O error while writing to data buffer", ex);
 		}
 		finally {
-			byteBuilder.release();
+			if (release) {
+				DataBufferUtils.release(buffer);
+			}
 		}
+
+		this.bufferSizeEstimator.record(valueClass, buffer.readableByteCount());
+		Hints.touchDataBuffer(buffer, hints, logger);
+
+		return buffer;
 	}
 
 	private DataBuffer encodeStreamingValue(Object value, DataBufferFactory bufferFactory, @Nullable Map<String, Object> hints,
-			SequenceWriter sequenceWriter, ByteArrayBuilder byteArrayBuilder, byte[] separator) {
+			SequenceWriter sequenceWriter, TargetBufferOutputStream outputStream, byte[] separator) {
 
 		logValue(hints, value);
 
+		Class<?> valueClass = value.getClass();
+		DataBuffer buffer = bufferFactory.allocateBuffer(this.bufferSizeEstimator.getEstimate(valueClass));
+		boolean release = true;
+		outputStream.setTargetBuffer(buffer);
 		try {
 			sequenceWriter.write(value);
 			sequenceWriter.flush();
+			buffer.write(separator);
+			release = false;
 		}
 		catch (InvalidDefinitionException ex) {
 			throw new CodecException("Type definition error: " + ex.getType(), ex);
@@ -260,26 +290,16 @@ public abstract class AbstractJackson2Encoder extends Jackson2CodecSupport imple
 			throw new EncodingException("JSON encoding error: " + ex.getOriginalMessage(), ex);
 		}
 		catch (IOException ex) {
-			throw new IllegalStateException("Unexpected I/O error while writing to byte array builder", ex);
-		}
-
-		byte[] bytes = byteArrayBuilder.toByteArray();
-		byteArrayBuilder.reset();
-
-		int offset;
-		int length;
-		if (bytes.length > 0 && bytes[0] == ' ') {
-			// SequenceWriter writes an unnecessary space in between values
-			offset = 1;
-			length = bytes.length - 1;
+			throw new IllegalStateException("Unexpected I/O error while writing to data buffer", ex);
 		}
-		else {
-			offset = 0;
-			length = bytes.length;
+		finally {
+			outputStream.setTargetBuffer(null);
+			if (release) {
+				DataBufferUtils.release(buffer);
+			}
 		}
-		DataBuffer buffer = bufferFactory.allocateBuffer(length + separator.length);
-		buffer.write(bytes, offset, length);
-		buffer.write(separator);
+
+		this.bufferSizeEstimator.record(valueClass, buffer.readableByteCount());
 		Hints.touchDataBuffer(buffer, hints, logger);
 
 		return buffer;
@@ -382,4 +402,77 @@ public abstract class AbstractJackson2Encoder extends Jackson2CodecSupport imple
 		return parameter.getMethodAnnotation(annotType);
 	}
 
+
+	/**
+	 * {@code OutputStream} that writes to the buffer of the value being encoded,
+	 * so that a single generator, with its state kept across values, can write
+	 * a stream of values each straight into its own buffer.
+	 */
+	private static class TargetBufferOutputStream extends OutputStream {
+
+		@Nullable
+		private DataBuffer targetBuffer;
+
+		public void setTargetBuffer(@Nullable DataBuffer targetBuffer) {
+			this.targetBuffer = targetBuffer;
+		}
+
+		// Output without a target buffer, e.g. on close at the end of the stream, is dropped
+
+		@Override
+		public void write(int b) {
+			if (this.targetBuffer != null) {
+				this.targetBuffer.write((byte) b);
+			}
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			if (this.targetBuffer != null) {
+				this.targetBuffer.write(b, off, len);
+			}
+		}
+	}
+
+
+	/**
+	 * Adaptive estimate of the encoded size of values per type, used as the
+	 * initial capacity of the buffers to serialize into. The estimate grows
+	 * right away, with some headroom, when a value did not fit, and decays
+	 * slowly towards smaller values, within fixed bounds.
+	 */
+	private static class BufferSizeEstimator {
+
+		private static final int MIN_ESTIMATE = 64;
+
+		private static final int DEFAULT_ESTIMATE = 256;
+
+		private static final int MAX_ESTIMATE = 64 * 1024;
+
+		private final Map<Class<?>, AtomicInteger> estimates = new ConcurrentReferenceHashMap<>();
+
+		public int getEstimate(Class<?> valueClass) {
+			AtomicInteger estimate = this.estimates.get(valueClass);
+			return (estimate != null ? estimate.get() : DEFAULT_ESTIMATE);
+		}
+
+		public void record(Class<?> valueClass, int size) {
+			AtomicInteger estimate = this.estimates.get(valueClass);
+			if (estimate == null) {
+				estimate = new AtomicInteger(DEFAULT_ESTIMATE);
+				AtomicInteger existing = this.estimates.putIfAbsent(valueClass, estimate);
+				if (existing != null) {
+					estimate = existing;
+				}
+			}
+			int current = estimate.get();
+			int next = (size > current ? size + (size >> 2) : current - ((current - size) >> 3));
+			next = Math.min(Math.max(next, MIN_ESTIMATE), MAX_ESTIMATE);
+			if (next != current) {
+				// Concurrent updates may overwrite each other, which is fine for an estimate
+				estimate.lazySet(next);
+			}
+		}
+	}
+
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2020 the original author or authors.
+ * Copyright 2002-2021 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,6 +17,7 @@
 package org.springframework.http.codec.json;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.function.Function;
@@ -37,12 +38,16 @@ import org.springframework.core.codec.DecodingException;
 import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.core.io.buffer.DataBufferLimitException;
 import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.util.FastByteArrayOutputStream;
 
 /**
  * {@link Function} to transform a JSON stream of arbitrary size, byte array
  * chunks into a {@code Flux<TokenBuffer>} where each token buffer is a
  * well-formed JSON object.
  *
+ * <p>Alternatively, {@link #splitValues} splits a JSON stream into the raw
+ * bytes of each JSON object, for binding without intermediate token buffers.
+ *
  * @author Arjen Poutsma
  * @author Rossen Stoyanchev
  * @author Juergen Hoeller
@@ -219,8 +224,12 @@ final class Jackson2Tokenizer {
 	}
 
 	private void raiseLimitException() {
+		raiseLimitException(this.maxInMemorySize);
+	}
+
+	private static void raiseLimitException(int maxInMemorySize) {
 		throw new DataBufferLimitException(
-				"Exceeded limit on max bytes per JSON object: " + this.maxInMemorySize);
+				"Exceeded limit on max bytes per JSON object: " + maxInMemorySize);
 	}
 
 
@@ -255,4 +264,250 @@ final class Jackson2Tokenizer {
 		}
 	}
 
+	/**
+	 * Split the given {@code Flux<DataBuffer>} into the raw bytes of each
+	 * well-formed JSON object, without tokenizing the input.
+	 * <p>The input is scanned for the boundaries of each JSON object only,
+	 * i.e. for brackets outside of string literals, so that each object can be
+	 * bound from its bytes directly. The syntax of each object is checked when
+	 * it is bound. This is only valid for UTF-8 encoded JSON.
+	 * <p>The {@code maxInMemorySize} limit applies to the bytes of each JSON
+	 * object, regardless of how those bytes are spread across data buffers.
+	 * @param dataBuffers the source data buffers
+	 * @param tokenizeArrays if {@code true} and the "top level" JSON object is
+	 * an array, each element is returned individually immediately after it is received
+	 * @param maxInMemorySize maximum number of bytes per JSON object, or -1 for unlimited
+	 * @return the bytes of each JSON object, positioned at the start of the object
+	 * @since 5.3.11
+	 */
+	public static Flux<ByteBuffer> splitValues(Flux<DataBuffer> dataBuffers, boolean tokenizeArrays,
+			int maxInMemorySize) {
+
+		ValueSplitter splitter = new ValueSplitter(tokenizeArrays, maxInMemorySize);
+		return dataBuffers.concatMapIterable(splitter::split).concatWith(splitter.endOfInput());
+	}
+
+
+	/**
+	 * Scans UTF-8 encoded JSON for the byte range of each JSON object. The
+	 * bytes of a JSON object are sliced from the current input chunk if
+	 * possible, and are otherwise accumulated across chunks.
+	 */
+	private static final class ValueSplitter {
+
+		private static final byte[] EMPTY_INPUT = new byte[0];
+
+		private final boolean tokenizeArrayElements;
+
+		private final int maxInMemorySize;
+
+		// Nesting depth of objects and arrays
+		private int depth;
+
+		// Depth of the values to split: 1 for elements of a tokenized top-level array
+		private int valueDepth;
+
+		private boolean inString;
+
+		private boolean escaped;
+
+		private boolean inScalar;
+
+		private byte[] input = EMPTY_INPUT;
+
+		// Absolute offset of the current input chunk
+		private long inputOffset;
+
+		// Absolute offset of the current value, or -1 in between values
+		private long valueOffset = -1;
+
+		// Bytes of the current value from previous input chunks
+		private final FastByteArrayOutputStream pending = new FastByteArrayOutputStream();
+
+		private ValueSplitter(boolean tokenizeArrayElements, int maxInMemorySize) {
+			this.tokenizeArrayElements = tokenizeArrayElements;
+			this.maxInMemorySize = maxInMemorySize;
+		}
+
+		private List<ByteBuffer> split(DataBuffer dataBuffer) {
+			byte[] bytes = new byte[dataBuffer.readableByteCount()];
+			dataBuffer.read(bytes);
+			DataBufferUtils.release(dataBuffer);
+
+			this.inputOffset += this.input.length;
+			this.input = bytes;
+			try {
+				List<ByteBuffer> result = new ArrayList<>();
+				scan(bytes, result);
+				retainCurrentValue();
+				return result;
+			}
+			catch (IOException ex) {
+				throw Exceptions.propagate(ex);
+			}
+		}
+
+		private Flux<ByteBuffer> endOfInput() {
+			return Flux.defer(() -> {
+				if (this.inScalar) {
+					this.inScalar = false;
+					try {
+						return Flux.just(nextValue(this.input.length));
+					}
+					catch (IOException ex) {
+						throw Exceptions.propagate(ex);
+					}
+				}
+				if (this.inString || this.depth > 0 || this.valueOffset >= 0) {
+					throw new DecodingException("JSON decoding error: Unexpected end-of-input");
+				}
+				return Flux.empty();
+			});
+		}
+
+		private void scan(byte[] bytes, List<ByteBuffer> result) throws IOException {
+			// Scan with local state, this is the hot loop
+			int depth = this.depth;
+			int valueDepth = this.valueDepth;
+			boolean inString = this.inString;
+			boolean escaped = this.escaped;
+			boolean inScalar = this.inScalar;
+
+			for (int i = 0; i < bytes.length; i++) {
+				byte b = bytes[i];
+				if (inString) {
+					if (escaped) {
+						escaped = false;
+						continue;
+					}
+					// Skip string content up to the next quote or escape
+					while (b != '"' && b != '\\' && ++i < bytes.length) {
+						b = bytes[i];
+					}
+					if (i == bytes.length) {
+						break;
+					}
+					if (b == '\\') {
+						escaped = true;
+					}
+					else {
+						inString = false;
+						if (depth == valueDepth) {
+							result.add(nextValue(i + 1));
+						}
+					}
+					continue;
+				}
+				if (inScalar) {
+					if (!isScalarEnd(b)) {
+						continue;
+					}
+					inScalar = false;
+					result.add(nextValue(i));
+				}
+				switch (b) {
+					case ' ':
+					case '\t':
+					case '\r':
+					case '\n':
+					case ',':
+						break;
+					case '"':
+						if (depth == valueDepth) {
+							startValue(i);
+						}
+						inString = true;
+						break;
+					case '[':
+						if (depth == 0 && this.tokenizeArrayElements) {
+							// Split the elements of a top-level array
+							valueDepth = 1;
+						}
+						else if (depth == valueDepth) {
+							startValue(i);
+						}
+						depth++;
+						break;
+					case '{':
+						if (depth == valueDepth) {
+							startValue(i);
+						}
+						depth++;
+						break;
+					case ']':
+					case '}':
+						if (depth == 0) {
+							throw new DecodingException(
+									"JSON decoding error: Unexpected close marker '" + (char) b + "'");
+						}
+						depth--;
+						if (depth < valueDepth) {
+							valueDepth = 0;
+						}
+						else if (depth == valueDepth) {
+							result.add(nextValue(i + 1));
+						}
+						break;
+					default:
+						if (depth == valueDepth) {
+							startValue(i);
+							inScalar = true;
+						}
+				}
+			}
+
+			this.depth = depth;
+			this.valueDepth = valueDepth;
+			this.inString = inString;
+			this.escaped = escaped;
+			this.inScalar = inScalar;
+		}
+
+		private boolean isScalarEnd(byte b) {
+			return (b == ' ' || b == '\n' || b == '\r' || b == '\t' || b == ',' || b == ']' || b == '}');
+		}
+
+		private void startValue(int index) {
+			if (this.valueOffset < 0) {
+				this.valueOffset = this.inputOffset + index;
+			}
+		}
+
+		private ByteBuffer nextValue(int endIndex) throws IOException {
+			long endOffset = this.inputOffset + endIndex;
+			int length = (int) (endOffset - this.valueOffset);
+			if (this.maxInMemorySize >= 0 && length > this.maxInMemorySize) {
+				raiseLimitException(this.maxInMemorySize);
+			}
+			ByteBuffer value;
+			if (this.pending.size() > 0) {
+				long pendingEnd = this.valueOffset + this.pending.size();
+				if (endOffset > pendingEnd) {
+					this.pending.write(this.input, (int) (pendingEnd - this.inputOffset), (int) (endOffset - pendingEnd));
+				}
+				value = ByteBuffer.wrap(this.pending.toByteArrayUnsafe(), 0, length);
+				this.pending.reset();
+			}
+			else {
+				value = ByteBuffer.wrap(this.input, (int) (this.valueOffset - this.inputOffset), length);
+			}
+			this.valueOffset = -1;
+			return value;
+		}
+
+		private void retainCurrentValue() throws IOException {
+			if (this.valueOffset < 0) {
+				return;
+			}
+			long inputEnd = this.inputOffset + this.input.length;
+			long retainFrom = Math.max(this.valueOffset + this.pending.size(), this.inputOffset);
+			if (retainFrom < inputEnd) {
+				this.pending.write(this.input, (int) (retainFrom - this.inputOffset), (int) (inputEnd - retainFrom));
+				if (this.maxInMemorySize >= 0 && this.pending.size() > this.maxInMemorySize) {
+					raiseLimitException(this.maxInMemorySize);
+				}
+			}
+		}
+	}
+
 }
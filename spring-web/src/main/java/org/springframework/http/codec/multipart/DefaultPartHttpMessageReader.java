@@ -48,7 +48,16 @@ import org.springframework.util.Assert;
  * {@linkplain Part#content() contents} of parts smaller than
  * {@link #setMaxInMemorySize(int) maxInMemorySize} in memory, and parts larger
  * than that to a temporary file in
- * {@link #setFileStorageDirectory(Path) fileStorageDirectory}.
+ * {@link #setFileStorageDirectory(Path) fileStorageDirectory}. Such parts can
+ * also be held in a bounded amount of off-heap memory instead, see
+ * {@link #setMaxOffHeapMemoryUsage(long) maxOffHeapMemoryUsage}.
+ * <p>Temporary files are written with asynchronous file I/O, and
+ * {@link FilePart#transferTo(Path)} moves them to their destination where
+ * possible, rather than copying their content. An existing destination file
+ * is replaced, and the moved file keeps the permissions of the temporary
+ * file, which on POSIX file systems allow access by the owner only. After
+ * such a move, {@link Part#content()} reads from the destination file, and
+ * later transfers copy it.
  * <p>In {@linkplain #setStreaming(boolean) streaming} mode, the contents of the
  * part is streamed directly from the parsed input buffer stream, and not stored
  * in memory nor file.
@@ -67,6 +76,13 @@ public class DefaultPartHttpMessageReader extends LoggingCodecSupport implements
 
 	private long maxDiskUsagePerPart = -1;
 
+	private long maxOffHeapMemoryUsage = 0;
+
+	private long maxOffHeapSizePerPart = -1;
+
+	@Nullable
+	private OffHeapStorage offHeapStorage;
+
 	private int maxParts = -1;
 
 	private boolean streaming;
@@ -122,6 +138,49 @@ public class DefaultPartHttpMessageReader extends LoggingCodecSupport implements
 		this.maxDiskUsagePerPart = maxDiskUsagePerPart;
 	}
 
+	/**
+	 * Configure the maximum amount of off-heap memory that can be used, across
+	 * all requests read by this reader, to hold parts larger than
+	 * {@link #setMaxInMemorySize(int) maxInMemorySize} instead of storing them
+	 * in a temporary file. Parts that do not fit are stored in a file.
+	 * <p>Off-heap memory is allocated in segments of 64K, and is accounted
+	 * for until the part content is no longer referenced and has been
+	 * garbage collected.
+	 * <p>By default this is set to 0, meaning that parts larger than
+	 * {@code maxInMemorySize} are always stored in a file.
+	 * <p>Note that this property is ignored when
+	 * {@linkplain #setStreaming(boolean) streaming} is enabled, or when
+	 * {@link #setMaxInMemorySize(int) maxInMemorySize} is set to -1.
+	 * @param maxOffHeapMemoryUsage the off-heap memory limit in bytes
+	 * @since 5.3.11
+	 * @see #setMaxOffHeapSizePerPart(long)
+	 */
+	public void setMaxOffHeapMemoryUsage(long maxOffHeapMemoryUsage) {
+		this.maxOffHeapMemoryUsage = maxOffHeapMemoryUsage;
+		this.offHeapStorage = createOffHeapStorage();
+	}
+
+	/**
+	 * Configure the maximum size of a part held in off-heap memory, so that
+	 * larger parts are stored in a file rather than using up the
+	 * {@link #setMaxOffHeapMemoryUsage(long) off-heap memory} for medium
+	 * sized parts.
+	 * <p>By default this is set to -1, meaning that parts are only limited by
+	 * {@code maxOffHeapMemoryUsage}.
+	 * @param maxOffHeapSizePerPart the off-heap limit per part in bytes
+	 * @since 5.3.11
+	 */
+	public void setMaxOffHeapSizePerPart(long maxOffHeapSizePerPart) {
+		this.maxOffHeapSizePerPart = maxOffHeapSizePerPart;
+		this.offHeapStorage = createOffHeapStorage();
+	}
+
+	@Nullable
+	private OffHeapStorage createOffHeapStorage() {
+		return (this.maxOffHeapMemoryUsage > 0 ?
+				new OffHeapStorage(this.maxOffHeapMemoryUsage, this.maxOffHeapSizePerPart) : null);
+	}
+
 	/**
 	 * Specify the maximum number of parts allowed in a given multipart request.
 	 * <p>By default this is set to -1, meaning that there is no maximum.
@@ -148,7 +207,8 @@ public class DefaultPartHttpMessageReader extends LoggingCodecSupport implements
 
 	/**
 	 * Set the Reactor {@link Scheduler} to be used for creating files and
-	 * directories, and writing to files. By default,
+	 * directories, and for moving files in {@link FilePart#transferTo(Path)}.
+	 * By default,
 	 * {@link Schedulers#boundedElastic()} is used, but this property allows for
 	 * changing it to an externally managed scheduler.
 	 * <p>Note that this property is ignored when
@@ -227,7 +287,8 @@ public class DefaultPartHttpMessageReader extends LoggingCodecSupport implements
 					this.maxHeadersSize, this.headersCharset);
 
 			return PartGenerator.createParts(tokens, this.maxParts, this.maxInMemorySize, this.maxDiskUsagePerPart,
-					this.streaming, this.fileStorage.directory(), this.blockingOperationScheduler);
+					this.streaming, this.fileStorage.directory(), this.blockingOperationScheduler,
+					this.offHeapStorage);
 		});
 	}
 
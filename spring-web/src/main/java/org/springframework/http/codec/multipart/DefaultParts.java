@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2020 the original author or authors.
+ * Copyright 2002-2021 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,10 +16,16 @@
 
 package org.springframework.http.codec.multipart;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
 
 import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.core.io.buffer.DataBufferUtils;
@@ -61,6 +67,28 @@ abstract class DefaultParts {
 		Assert.notNull(headers, "Headers must not be null");
 		Assert.notNull(content, "Content must not be null");
 
+		return partInternal(headers, new FluxContent(content));
+	}
+
+	/**
+	 * Create a new {@link Part} or {@link FilePart} stored in the given file.
+	 * {@link FilePart#transferTo(Path)} moves the file to the destination
+	 * where possible, after which the content is read from the destination.
+	 * @param headers the part headers
+	 * @param file the file that holds the content of the part
+	 * @param scheduler the scheduler used for moving or copying the file
+	 * @return {@link Part} or {@link FilePart}, depending on {@link HttpHeaders#getContentDisposition()}
+	 * @since 5.3.11
+	 */
+	public static Part part(HttpHeaders headers, Path file, Scheduler scheduler) {
+		Assert.notNull(headers, "Headers must not be null");
+		Assert.notNull(file, "File must not be null");
+		Assert.notNull(scheduler, "Scheduler must not be null");
+
+		return partInternal(headers, new FileContent(file, scheduler));
+	}
+
+	private static Part partInternal(HttpHeaders headers, Content content) {
 		String filename = headers.getContentDisposition().getFilename();
 		if (filename != null) {
 			return new DefaultFilePart(headers, content);
@@ -142,16 +170,16 @@ abstract class DefaultParts {
 	 */
 	private static class DefaultPart extends AbstractPart {
 
-		private final Flux<DataBuffer> content;
+		protected final Content content;
 
-		public DefaultPart(HttpHeaders headers, Flux<DataBuffer> content) {
+		public DefaultPart(HttpHeaders headers, Content content) {
 			super(headers);
 			this.content = content;
 		}
 
 		@Override
 		public Flux<DataBuffer> content() {
-			return this.content;
+			return this.content.content();
 		}
 
 		@Override
@@ -173,7 +201,7 @@ abstract class DefaultParts {
 	 */
 	private static class DefaultFilePart extends DefaultPart implements FilePart {
 
-		public DefaultFilePart(HttpHeaders headers, Flux<DataBuffer> content) {
+		public DefaultFilePart(HttpHeaders headers, Content content) {
 			super(headers, content);
 		}
 
@@ -186,7 +214,7 @@ abstract class DefaultParts {
 
 		@Override
 		public Mono<Void> transferTo(Path dest) {
-			return DataBufferUtils.write(content(), dest);
+			return this.content.transferTo(dest);
 		}
 
 		@Override
@@ -204,4 +232,96 @@ abstract class DefaultParts {
 
 	}
 
+
+	/**
+	 * Part content abstraction.
+	 */
+	private interface Content {
+
+		Flux<DataBuffer> content();
+
+		Mono<Void> transferTo(Path dest);
+	}
+
+
+	/**
+	 * {@code Content} implementation based on a flux of data buffers.
+	 */
+	private static final class FluxContent implements Content {
+
+		private final Flux<DataBuffer> content;
+
+		public FluxContent(Flux<DataBuffer> content) {
+			this.content = content;
+		}
+
+		@Override
+		public Flux<DataBuffer> content() {
+			return this.content;
+		}
+
+		@Override
+		public Mono<Void> transferTo(Path dest) {
+			return DataBufferUtils.write(this.content, dest);
+		}
+	}
+
+
+	/**
+	 * {@code Content} implementation based on a file. The first transfer
+	 * moves the file to its destination, atomically if the destination is on
+	 * the same file system, so that its content is not written to disk again.
+	 * Later transfers copy the moved file.
+	 */
+	private static final class FileContent implements Content {
+
+		private final Scheduler scheduler;
+
+		private volatile Path file;
+
+		private volatile boolean moved;
+
+		public FileContent(Path file, Scheduler scheduler) {
+			this.file = file;
+			this.scheduler = scheduler;
+		}
+
+		@Override
+		public Flux<DataBuffer> content() {
+			return Flux.defer(() -> DataBufferUtils.read(
+					this.file, DefaultDataBufferFactory.sharedInstance, 8192, StandardOpenOption.READ));
+		}
+
+		@Override
+		public Mono<Void> transferTo(Path dest) {
+			return Mono.<Void>fromRunnable(() -> {
+				try {
+					transferToInternal(dest);
+				}
+				catch (IOException ex) {
+					throw new UncheckedIOException("Could not transfer " + this.file + " to " + dest, ex);
+				}
+			}).subscribeOn(this.scheduler);
+		}
+
+		private synchronized void transferToInternal(Path dest) throws IOException {
+			Path file = this.file;
+			if (file.equals(dest)) {
+				return;
+			}
+			if (!this.moved) {
+				try {
+					Files.move(file, dest, StandardCopyOption.REPLACE_EXISTING);
+					this.file = dest;
+					this.moved = true;
+					return;
+				}
+				catch (IOException ex) {
+					// Fall back to copying, which reports the problem if it persists
+				}
+			}
+			Files.copy(file, dest, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
 }
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.http.codec.multipart;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import reactor.core.publisher.Flux;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+
+/**
+ * Bounded amount of off-heap memory used to hold parts larger than
+ * {@link DefaultPartHttpMessageReader#setMaxInMemorySize(int)}, instead of
+ * storing them in a file.
+ *
+ * <p>Part content is copied into direct {@link ByteBuffer} segments. As direct
+ * memory is only freed when its buffers are garbage collected, segments count
+ * towards the limit until they are no longer reachable, which is tracked
+ * through phantom references.
+ *
+ * <p>The limit is checked before any segment is allocated, so it should be
+ * configured within the direct memory available to the JVM (see
+ * {@code -XX:MaxDirectMemorySize}).
+ *
+ * @author Arjen Poutsma
+ * @since 5.3.11
+ * @see DefaultPartHttpMessageReader#setMaxOffHeapMemoryUsage(long)
+ */
+final class OffHeapStorage {
+
+	static final int SEGMENT_SIZE = 64 * 1024;
+
+
+	private final long maxMemoryUsage;
+
+	private final long maxSizePerPart;
+
+	private final AtomicLong memoryUsage = new AtomicLong();
+
+	private final ReferenceQueue<ByteBuffer> queue = new ReferenceQueue<>();
+
+	private final Set<Segment> segments = ConcurrentHashMap.newKeySet();
+
+
+	/**
+	 * Create a new {@code OffHeapStorage}.
+	 * @param maxMemoryUsage the maximum amount of memory used by all parts
+	 * @param maxSizePerPart the maximum size of a single part, or -1 for no
+	 * limit other than {@code maxMemoryUsage}
+	 */
+	OffHeapStorage(long maxMemoryUsage, long maxSizePerPart) {
+		this.maxMemoryUsage = maxMemoryUsage;
+		this.maxSizePerPart = maxSizePerPart;
+	}
+
+
+	/**
+	 * Create a new, empty holder for the content of a single part.
+	 */
+	public Content createContent() {
+		return new Content();
+	}
+
+	/**
+	 * Return the amount of memory currently accounted for.
+	 */
+	long getMemoryUsage() {
+		purgeCollectedSegments();
+		return this.memoryUsage.get();
+	}
+
+	private boolean reserve(long byteCount) {
+		purgeCollectedSegments();
+		while (true) {
+			long usage = this.memoryUsage.get();
+			if (usage + byteCount > this.maxMemoryUsage) {
+				return false;
+			}
+			if (this.memoryUsage.compareAndSet(usage, usage + byteCount)) {
+				return true;
+			}
+		}
+	}
+
+	private void purgeCollectedSegments() {
+		Reference<? extends ByteBuffer> reference;
+		while ((reference = this.queue.poll()) != null) {
+			if (this.segments.remove(reference)) {
+				this.memoryUsage.addAndGet(-SEGMENT_SIZE);
+			}
+		}
+	}
+
+	private void release(Segment segment) {
+		if (this.segments.remove(segment)) {
+			this.memoryUsage.addAndGet(-SEGMENT_SIZE);
+		}
+		segment.clear();
+	}
+
+
+	/**
+	 * The off-heap content of a single part.
+	 */
+	final class Content {
+
+		private final List<ByteBuffer> segments = new ArrayList<>();
+
+		private final List<Segment> references = new ArrayList<>();
+
+		private long byteCount;
+
+
+		private Content() {
+		}
+
+		/**
+		 * Copy the readable bytes of the given buffer into off-heap memory.
+		 * The given buffer is left unchanged, and is not released.
+		 * @return {@code true} if the bytes were copied; {@code false} if they
+		 * would exceed the memory limits, in which case nothing is copied
+		 */
+		public boolean write(DataBuffer dataBuffer) {
+			int length = dataBuffer.readableByteCount();
+			long maxSizePerPart = OffHeapStorage.this.maxSizePerPart;
+			if (maxSizePerPart != -1 && this.byteCount + length > maxSizePerPart) {
+				return false;
+			}
+			int remaining = (this.segments.isEmpty() ? 0 : lastSegment().remaining());
+			int segmentCount = Math.max(0, (length - remaining + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+			if (segmentCount > 0 && !reserve((long) segmentCount * SEGMENT_SIZE)) {
+				return false;
+			}
+			for (int i = 0; i < segmentCount; i++) {
+				ByteBuffer segment = ByteBuffer.allocateDirect(SEGMENT_SIZE);
+				Segment reference = new Segment(segment, OffHeapStorage.this.queue);
+				OffHeapStorage.this.segments.add(reference);
+				this.segments.add(segment);
+				this.references.add(reference);
+			}
+			ByteBuffer source = dataBuffer.asByteBuffer();
+			int index = this.segments.size() - 1 - segmentCount;
+			if (remaining == 0) {
+				index++;
+			}
+			while (source.hasRemaining()) {
+				ByteBuffer segment = this.segments.get(index++);
+				int count = Math.min(segment.remaining(), source.remaining());
+				ByteBuffer chunk = source.duplicate();
+				chunk.limit(chunk.position() + count);
+				segment.put(chunk);
+				source.position(source.position() + count);
+			}
+			this.byteCount += length;
+			return true;
+		}
+
+		/**
+		 * Return the number of bytes written.
+		 */
+		public long byteCount() {
+			return this.byteCount;
+		}
+
+		/**
+		 * Return the content as a list of data buffers that share the off-heap memory.
+		 */
+		public List<DataBuffer> toDataBuffers() {
+			List<DataBuffer> result = new ArrayList<>(this.segments.size());
+			for (ByteBuffer segment : this.segments) {
+				ByteBuffer view = segment.duplicate();
+				view.flip();
+				result.add(DefaultDataBufferFactory.sharedInstance.wrap(view));
+			}
+			return result;
+		}
+
+		/**
+		 * Return the content as a {@code Flux} that can be subscribed to repeatedly.
+		 */
+		public Flux<DataBuffer> toFlux() {
+			return Flux.defer(() -> Flux.fromIterable(toDataBuffers()));
+		}
+
+		/**
+		 * Release the memory held by this content from the limit right away,
+		 * rather than once it has been garbage collected. Only to be used when
+		 * no buffers have been {@linkplain #toDataBuffers() handed out}.
+		 */
+		public void release() {
+			for (Segment reference : this.references) {
+				OffHeapStorage.this.release(reference);
+			}
+			this.references.clear();
+			this.segments.clear();
+			this.byteCount = 0;
+		}
+
+		private ByteBuffer lastSegment() {
+			return this.segments.get(this.segments.size() - 1);
+		}
+	}
+
+
+	/**
+	 * Phantom reference to a segment, through which its memory is released
+	 * from the limit once the segment has been collected.
+	 */
+	private static final class Segment extends PhantomReference<ByteBuffer> {
+
+		Segment(ByteBuffer segment, ReferenceQueue<ByteBuffer> queue) {
+			super(segment, queue);
+		}
+	}
+
+}
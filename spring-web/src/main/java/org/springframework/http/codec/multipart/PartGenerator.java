@@ -19,13 +19,14 @@ package org.springframework.http.codec.multipart;
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
-import java.nio.channels.WritableByteChannel;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
@@ -50,6 +51,7 @@ import org.springframework.core.io.buffer.DataBufferUtils;
 import org.springframework.core.io.buffer.DefaultDataBufferFactory;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.lang.Nullable;
 import org.springframework.util.FastByteArrayOutputStream;
 
 /**
@@ -63,6 +65,9 @@ final class PartGenerator extends BaseSubscriber<MultipartParser.Token> {
 
 	private static final Log logger = LogFactory.getLog(PartGenerator.class);
 
+	/** Size up to which body buffers are gathered before writing them to a file. */
+	private static final int WRITE_COALESCE_SIZE = 64 * 1024;
+
 	private final AtomicReference<State> state = new AtomicReference<>(new InitialState());
 
 	private final AtomicInteger partCount = new AtomicInteger();
@@ -83,9 +88,13 @@ final class PartGenerator extends BaseSubscriber<MultipartParser.Token> {
 
 	private final Scheduler blockingOperationScheduler;
 
+	@Nullable
+	private final OffHeapStorage offHeapStorage;
+
 
 	private PartGenerator(FluxSink<Part> sink, int maxParts, int maxInMemorySize, long maxDiskUsagePerPart,
-			boolean streaming, Mono<Path> fileStorageDirectory, Scheduler blockingOperationScheduler) {
+			boolean streaming, Mono<Path> fileStorageDirectory, Scheduler blockingOperationScheduler,
+			@Nullable OffHeapStorage offHeapStorage) {
 
 		this.sink = sink;
 		this.maxParts = maxParts;
@@ -94,6 +103,7 @@ final class PartGenerator extends BaseSubscriber<MultipartParser.Token> {
 		this.streaming = streaming;
 		this.fileStorageDirectory = fileStorageDirectory;
 		this.blockingOperationScheduler = blockingOperationScheduler;
+		this.offHeapStorage = offHeapStorage;
 	}
 
 	/**
@@ -101,11 +111,11 @@ final class PartGenerator extends BaseSubscriber<MultipartParser.Token> {
 	 */
 	public static Flux<Part> createParts(Flux<MultipartParser.Token> tokens, int maxParts, int maxInMemorySize,
 			long maxDiskUsagePerPart, boolean streaming, Mono<Path> fileStorageDirectory,
-			Scheduler blockingOperationScheduler) {
+			Scheduler blockingOperationScheduler, @Nullable OffHeapStorage offHeapStorage) {
 
 		return Flux.create(sink -> {
 			PartGenerator generator = new PartGenerator(sink, maxParts, maxInMemorySize, maxDiskUsagePerPart, streaming,
-					fileStorageDirectory, blockingOperationScheduler);
+					fileStorageDirectory, blockingOperationScheduler, offHeapStorage);
 
 			sink.onCancel(generator::onSinkCancel);
 			sink.onRequest(l -> generator.requestToken());
@@ -261,8 +271,12 @@ final class PartGenerator extends BaseSubscriber<MultipartParser.Token> {
 	 * {@link InMemoryState}, but will switch over to {@link CreateFileState}
 	 * when the part byte count exceeds {@link #maxInMemorySize},
 	 * then to {@link WritingFileState} (to write the memory contents),
-	 * and finally {@link IdleFileState}, which switches back to
-	 * {@link WritingFileState} when more body data comes in.</li>
+	 * and finally {@link IdleFileState}, which gathers body data and switches
+	 * back to {@link WritingFileState} when enough has come in.</li>
+	 * <li>If an {@link #offHeapStorage} is configured, the creator switches
+	 * from {@link InMemoryState} to {@link OffHeapState} instead, and only
+	 * to {@link CreateFileState} when the off-heap memory limits are
+	 * exceeded.</li>
 	 * </ol>
 	 */
 	private interface State {
@@ -439,8 +453,7 @@ final class PartGenerator extends BaseSubscriber<MultipartParser.Token> {
 	 * The creator state when {@link #streaming} is {@code false} (and not
 	 * handling a form field). Stores all received buffers in a queue.
 	 * If the byte count exceeds {@link #maxInMemorySize}, the creator state
-	 * is changed to {@link CreateFileState}, and eventually to
-	 * {@link CreateFileState}.
+	 * is changed to {@link OffHeapState} or {@link CreateFileState}.
 	 */
 	private final class InMemoryState implements State {
 
@@ -466,7 +479,12 @@ final class PartGenerator extends BaseSubscriber<MultipartParser.Token> {
 				storeBuffer(dataBuffer);
 			}
 			else if (prevCount <= PartGenerator.this.maxInMemorySize) {
-				switchToFile(dataBuffer, count);
+				if (PartGenerator.this.offHeapStorage != null) {
+					switchToOffHeap(PartGenerator.this.offHeapStorage, dataBuffer, count);
+				}
+				else {
+					switchToFile(dataBuffer, count);
+				}
 			}
 			else {
 				DataBufferUtils.release(dataBuffer);
@@ -479,6 +497,26 @@ final class PartGenerator extends BaseSubscriber<MultipartParser.Token> {
 			requestToken();
 		}
 
+		private void switchToOffHeap(OffHeapStorage offHeapStorage, DataBuffer current, long byteCount) {
+			List<DataBuffer> content = new ArrayList<>(this.content);
+			content.add(current);
+			OffHeapStorage.Content offHeapContent = offHeapStorage.createContent();
+			for (DataBuffer buffer : content) {
+				if (!offHeapContent.write(buffer)) {
+					offHeapContent.release();
+					switchToFile(current, byteCount);
+					return;
+				}
+			}
+			this.releaseOnDispose = false;
+			content.forEach(DataBufferUtils::release);
+
+			OffHeapState newState = new OffHeapState(this.headers, offHeapContent);
+			if (changeState(this, newState)) {
+				requestToken();
+			}
+		}
+
 		private void switchToFile(DataBuffer current, long byteCount) {
 			List<DataBuffer> content = new ArrayList<>(this.content);
 			content.add(current);
@@ -530,6 +568,64 @@ final class PartGenerator extends BaseSubscriber<MultipartParser.Token> {
 	}
 
 
+	/**
+	 * The creator state when a part that exceeded {@link #maxInMemorySize} is
+	 * held in {@link #offHeapStorage}. Switches to {@link CreateFileState}
+	 * when the off-heap memory limits are exceeded.
+	 */
+	private final class OffHeapState implements State {
+
+		private final HttpHeaders headers;
+
+		private final OffHeapStorage.Content content;
+
+
+		public OffHeapState(HttpHeaders headers, OffHeapStorage.Content content) {
+			this.headers = headers;
+			this.content = content;
+		}
+
+		@Override
+		public void body(DataBuffer dataBuffer) {
+			if (this.content.write(dataBuffer)) {
+				DataBufferUtils.release(dataBuffer);
+				requestToken();
+			}
+			else {
+				switchToFile(dataBuffer);
+			}
+		}
+
+		private void switchToFile(DataBuffer current) {
+			List<DataBuffer> content = this.content.toDataBuffers();
+			content.add(current);
+			long byteCount = this.content.byteCount() + current.readableByteCount();
+
+			CreateFileState newState = new CreateFileState(this.headers, content, byteCount);
+			if (changeState(this, newState)) {
+				newState.createFile();
+			}
+			else {
+				DataBufferUtils.release(current);
+			}
+		}
+
+		@Override
+		public void partComplete(boolean finalPart) {
+			emitPart(DefaultParts.part(this.headers, this.content.toFlux()));
+			if (finalPart) {
+				emitComplete();
+			}
+		}
+
+		@Override
+		public String toString() {
+			return "OFF-HEAP";
+		}
+
+	}
+
+
 	/**
 	 * The creator state when waiting for a temporary file to be created.
 	 * {@link InMemoryState} initially switches to this state when the byte
@@ -540,7 +636,7 @@ final class PartGenerator extends BaseSubscriber<MultipartParser.Token> {
 
 		private final HttpHeaders headers;
 
-		private final Collection<DataBuffer> content;
+		private final List<DataBuffer> content;
 
 		private final long byteCount;
 
@@ -551,7 +647,7 @@ final class PartGenerator extends BaseSubscriber<MultipartParser.Token> {
 		private volatile boolean releaseOnDispose = true;
 
 
-		public CreateFileState(HttpHeaders headers, Collection<DataBuffer> content, long byteCount) {
+		public CreateFileState(HttpHeaders headers, List<DataBuffer> content, long byteCount) {
 			this.headers = headers;
 			this.content = content;
 			this.byteCount = byteCount;
@@ -582,7 +678,7 @@ final class PartGenerator extends BaseSubscriber<MultipartParser.Token> {
 				if (logger.isTraceEnabled()) {
 					logger.trace("Storing multipart data in file " + tempFile);
 				}
-				WritableByteChannel channel = Files.newByteChannel(tempFile, StandardOpenOption.WRITE);
+				AsynchronousFileChannel channel = AsynchronousFileChannel.open(tempFile, StandardOpenOption.WRITE);
 				return new WritingFileState(this, tempFile, channel);
 			}
 			catch (IOException ex) {
@@ -622,16 +718,30 @@ final class PartGenerator extends BaseSubscriber<MultipartParser.Token> {
 
 	}
 
+	/**
+	 * The creator state when the temporary file is not being written to.
+	 * Gathers body buffers up to {@link #WRITE_COALESCE_SIZE}, and then
+	 * switches to {@link WritingFileState} to write them at once.
+	 */
 	private final class IdleFileState implements State {
 
 		private final HttpHeaders headers;
 
 		private final Path file;
 
-		private final WritableByteChannel channel;
+		private final AsynchronousFileChannel channel;
 
 		private final AtomicLong byteCount;
 
+		private final long position;
+
+		@Nullable
+		private final ByteBuffer writeBuffer;
+
+		private final List<DataBuffer> pending = new ArrayList<>();
+
+		private int pendingByteCount;
+
 		private volatile boolean closeOnDispose = true;
 
 
@@ -640,21 +750,21 @@ final class PartGenerator extends BaseSubscriber<MultipartParser.Token> {
 			this.file = state.file;
 			this.channel = state.channel;
 			this.byteCount = state.byteCount;
+			this.position = state.position;
+			this.writeBuffer = state.writeBuffer;
 		}
 
 		@Override
 		public void body(DataBuffer dataBuffer) {
 			long count = this.byteCount.addAndGet(dataBuffer.readableByteCount());
 			if (PartGenerator.this.maxDiskUsagePerPart == -1 || count <= PartGenerator.this.maxDiskUsagePerPart) {
-
-				this.closeOnDispose = false;
-				WritingFileState newState = new WritingFileState(this);
-				if (changeState(this, newState)) {
-					newState.writeBuffer(dataBuffer);
+				this.pending.add(dataBuffer);
+				this.pendingByteCount += dataBuffer.readableByteCount();
+				if (this.pendingByteCount < WRITE_COALESCE_SIZE) {
+					requestToken();
 				}
 				else {
-					MultipartUtils.closeChannel(this.channel);
-					DataBufferUtils.release(dataBuffer);
+					writePending(false, false);
 				}
 			}
 			else {
@@ -667,26 +777,37 @@ final class PartGenerator extends BaseSubscriber<MultipartParser.Token> {
 
 		@Override
 		public void partComplete(boolean finalPart) {
+			if (!this.pending.isEmpty()) {
+				writePending(true, finalPart);
+				return;
+			}
 			MultipartUtils.closeChannel(this.channel);
-			Flux<DataBuffer> content = partContent();
-			emitPart(DefaultParts.part(this.headers, content));
+			emitPart(DefaultParts.part(this.headers, this.file, PartGenerator.this.blockingOperationScheduler));
 			if (finalPart) {
 				emitComplete();
 			}
 		}
 
-		private Flux<DataBuffer> partContent() {
-			return DataBufferUtils
-					.readByteChannel(
-							() -> Files.newByteChannel(this.file, StandardOpenOption.READ),
-							DefaultDataBufferFactory.sharedInstance, 1024)
-					.subscribeOn(PartGenerator.this.blockingOperationScheduler);
+		private void writePending(boolean completed, boolean finalPart) {
+			this.closeOnDispose = false;
+			WritingFileState newState = new WritingFileState(this);
+			if (completed) {
+				newState.partComplete(finalPart);
+			}
+			if (changeState(this, newState)) {
+				newState.writeBuffers(this.pending);
+			}
+			else {
+				MultipartUtils.closeChannel(this.channel);
+				this.pending.forEach(DataBufferUtils::release);
+			}
 		}
 
 		@Override
 		public void dispose() {
 			if (this.closeOnDispose) {
 				MultipartUtils.closeChannel(this.channel);
+				this.pending.forEach(DataBufferUtils::release);
 			}
 		}
 
@@ -698,23 +819,42 @@ final class PartGenerator extends BaseSubscriber<MultipartParser.Token> {
 
 	}
 
-	private final class WritingFileState implements State {
 
+	/**
+	 * The creator state when writing buffers to the temporary file, using
+	 * asynchronous file I/O. Buffers smaller than {@link #WRITE_COALESCE_SIZE}
+	 * are copied into a direct buffer to write them together, while larger
+	 * ones are written as they are. Switches to {@link IdleFileState} when
+	 * all buffers have been written.
+	 */
+	private final class WritingFileState implements State, CompletionHandler<Integer, ByteBuffer> {
 
 		private final HttpHeaders headers;
 
 		private final Path file;
 
-		private final WritableByteChannel channel;
+		private final AsynchronousFileChannel channel;
 
 		private final AtomicLong byteCount;
 
+		private long position;
+
+		@Nullable
+		private ByteBuffer writeBuffer;
+
+		private List<DataBuffer> buffers = Collections.emptyList();
+
+		private int index;
+
+		@Nullable
+		private DataBuffer current;
+
 		private volatile boolean completed;
 
 		private volatile boolean finalPart;
 
 
-		public WritingFileState(CreateFileState state, Path file, WritableByteChannel channel) {
+		public WritingFileState(CreateFileState state, Path file, AsynchronousFileChannel channel) {
 			this.headers = state.headers;
 			this.file = file;
 			this.channel = channel;
@@ -726,6 +866,8 @@ final class PartGenerator extends BaseSubscriber<MultipartParser.Token> {
 			this.file = state.file;
 			this.channel = state.channel;
 			this.byteCount = state.byteCount;
+			this.position = state.position;
+			this.writeBuffer = state.writeBuffer;
 		}
 
 		@Override
@@ -740,23 +882,64 @@ final class PartGenerator extends BaseSubscriber<MultipartParser.Token> {
 			this.finalPart = finalPart;
 		}
 
-		public void writeBuffer(DataBuffer dataBuffer) {
-			Mono.just(dataBuffer)
-					.flatMap(this::writeInternal)
-					.subscribeOn(PartGenerator.this.blockingOperationScheduler)
-					.subscribe(null,
-					PartGenerator.this::emitError,
-					this::writeComplete);
+		public void writeBuffers(List<DataBuffer> dataBuffers) {
+			this.buffers = dataBuffers;
+			this.index = 0;
+			writeNext();
 		}
 
-		public void writeBuffers(Iterable<DataBuffer> dataBuffers) {
-			Flux.fromIterable(dataBuffers)
-					.concatMap(this::writeInternal)
-					.then()
-					.subscribeOn(PartGenerator.this.blockingOperationScheduler)
-					.subscribe(null,
-							PartGenerator.this::emitError,
-							this::writeComplete);
+		private void writeNext() {
+			if (this.index == this.buffers.size()) {
+				writeComplete();
+				return;
+			}
+			DataBuffer dataBuffer = this.buffers.get(this.index);
+			ByteBuffer byteBuffer;
+			if (this.index + 1 < this.buffers.size() && dataBuffer.readableByteCount() < WRITE_COALESCE_SIZE) {
+				byteBuffer = this.writeBuffer;
+				if (byteBuffer == null) {
+					byteBuffer = ByteBuffer.allocateDirect(WRITE_COALESCE_SIZE);
+					this.writeBuffer = byteBuffer;
+				}
+				byteBuffer.clear();
+				while (this.index < this.buffers.size() &&
+						this.buffers.get(this.index).readableByteCount() <= byteBuffer.remaining()) {
+					dataBuffer = this.buffers.get(this.index++);
+					byteBuffer.put(dataBuffer.asByteBuffer());
+					DataBufferUtils.release(dataBuffer);
+				}
+				byteBuffer.flip();
+			}
+			else {
+				this.current = dataBuffer;
+				this.index++;
+				byteBuffer = dataBuffer.asByteBuffer();
+			}
+			this.channel.write(byteBuffer, this.position, byteBuffer, this);
+		}
+
+		@Override
+		public void completed(Integer written, ByteBuffer byteBuffer) {
+			this.position += written;
+			if (byteBuffer.hasRemaining()) {
+				this.channel.write(byteBuffer, this.position, byteBuffer, this);
+			}
+			else {
+				DataBufferUtils.release(this.current);
+				this.current = null;
+				writeNext();
+			}
+		}
+
+		@Override
+		public void failed(Throwable ex, ByteBuffer byteBuffer) {
+			DataBufferUtils.release(this.current);
+			this.current = null;
+			for (int i = this.index; i < this.buffers.size(); i++) {
+				DataBufferUtils.release(this.buffers.get(i));
+			}
+			MultipartUtils.closeChannel(this.channel);
+			emitError(ex);
 		}
 
 		private void writeComplete() {
@@ -772,23 +955,6 @@ final class PartGenerator extends BaseSubscriber<MultipartParser.Token> {
 			}
 		}
 
-		@SuppressWarnings("BlockingMethodInNonBlockingContext")
-		private Mono<Void> writeInternal(DataBuffer dataBuffer) {
-			try {
-				ByteBuffer byteBuffer = dataBuffer.asByteBuffer();
-				while (byteBuffer.hasRemaining()) {
-					this.channel.write(byteBuffer);
-				}
-				return Mono.empty();
-			}
-			catch (IOException ex) {
-				return Mono.error(ex);
-			}
-			finally {
-				DataBufferUtils.release(dataBuffer);
-			}
-		}
-
 		@Override
 		public String toString() {
 			return "WRITE-FILE";
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2019 the original author or authors.
+ * Copyright 2002-2021 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -22,6 +22,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 
+import com.google.protobuf.CodedOutputStream;
 import com.google.protobuf.Message;
 import org.reactivestreams.Publisher;
 import reactor.core.publisher.Flux;
@@ -86,10 +87,25 @@ public class ProtobufEncoder extends ProtobufCodecSupport implements HttpMessage
 
 	private DataBuffer encodeValue(Message message, DataBufferFactory bufferFactory, boolean delimited) {
 
-		DataBuffer buffer = bufferFactory.allocateBuffer();
+		// The serialized size is computed once and memoized by the message,
+		// so the buffer can be allocated with the exact capacity it needs
+		int size = message.getSerializedSize();
+		int length = (delimited ? CodedOutputStream.computeUInt32SizeNoTag(size) + size : size);
+		DataBuffer buffer = bufferFactory.allocateBuffer(length);
 		boolean release = true;
 		try {
-			if (delimited) {
+			if (buffer.writableByteCount() >= length) {
+				// Write straight into the buffer, without the intermediate array of a stream
+				int writePosition = buffer.writePosition();
+				CodedOutputStream output = CodedOutputStream.newInstance(buffer.asByteBuffer(writePosition, length));
+				if (delimited) {
+					output.writeUInt32NoTag(size);
+				}
+				message.writeTo(output);
+				output.flush();
+				buffer.writePosition(writePosition + length);
+			}
+			else if (delimited) {
 				message.writeDelimitedTo(buffer.asOutputStream());
 			}
 			else {
@@ -38,6 +38,9 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.PrettyPrinter;
 import com.fasterxml.jackson.core.util.DefaultIndenter;
 import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
+import com.fasterxml.jackson.databind.DeserializationConfig;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.InjectableValues;
 import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -45,8 +48,10 @@ import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.SerializationConfig;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.SerializerProvider;
 import com.fasterxml.jackson.databind.exc.InvalidDefinitionException;
 import com.fasterxml.jackson.databind.ser.FilterProvider;
+import com.fasterxml.jackson.databind.ser.SerializerFactory;
 
 import org.springframework.core.GenericTypeResolver;
 import org.springframework.http.HttpInputMessage;
@@ -60,6 +65,8 @@ import org.springframework.http.converter.HttpMessageNotWritableException;
 import org.springframework.lang.Nullable;
 import org.springframework.util.Assert;
 import org.springframework.util.CollectionUtils;
+import org.springframework.util.ConcurrentReferenceHashMap;
+import org.springframework.util.ObjectUtils;
 import org.springframework.util.StreamUtils;
 import org.springframework.util.TypeUtils;
 
@@ -109,6 +116,12 @@ public abstract class AbstractJackson2HttpMessageConverter extends AbstractGener
 	@Nullable
 	private PrettyPrinter ssePrettyPrinter;
 
+	private int contentLengthThreshold = 0;
+
+	private final Map<ObjectMapperCacheKey, CachedObjectWriter> objectWriterCache = new ConcurrentReferenceHashMap<>();
+
+	private final Map<ObjectMapperCacheKey, CachedObjectReader> objectReaderCache = new ConcurrentReferenceHashMap<>();
+
 
 	protected AbstractJackson2HttpMessageConverter(ObjectMapper objectMapper) {
 		this.defaultObjectMapper = objectMapper;
@@ -144,6 +157,7 @@ public abstract class AbstractJackson2HttpMessageConverter extends AbstractGener
 		Assert.notNull(objectMapper, "ObjectMapper must not be null");
 		this.defaultObjectMapper = objectMapper;
 		configurePrettyPrint();
+		clearCaches();
 	}
 
 	/**
@@ -176,6 +190,7 @@ public abstract class AbstractJackson2HttpMessageConverter extends AbstractGener
 		Map<MediaType, ObjectMapper> registrations =
 				this.objectMapperRegistrations.computeIfAbsent(clazz, c -> new LinkedHashMap<>());
 		registrar.accept(registrations);
+		clearCaches();
 	}
 
 	/**
@@ -223,6 +238,7 @@ public abstract class AbstractJackson2HttpMessageConverter extends AbstractGener
 	public void setPrettyPrint(boolean prettyPrint) {
 		this.prettyPrint = prettyPrint;
 		configurePrettyPrint();
+		clearCaches();
 	}
 
 	private void configurePrettyPrint() {
@@ -231,6 +247,47 @@ public abstract class AbstractJackson2HttpMessageConverter extends AbstractGener
 		}
 	}
 
+	/**
+	 * Set the maximum size in bytes of a serialized value for which a
+	 * {@code Content-Length} header is written.
+	 * <p>Output up to this size is collected in a buffer and written to the
+	 * response in a single call once the length is known. As soon as the output
+	 * grows beyond the threshold, the buffered content is passed on and the
+	 * remainder is streamed to the response without a {@code Content-Length},
+	 * as usual.
+	 * <p>By default this is set to 0, i.e. output is always streamed.
+	 * @param contentLengthThreshold the threshold in bytes, or 0 to disable
+	 * @since 5.3.11
+	 */
+	public void setContentLengthThreshold(int contentLengthThreshold) {
+		Assert.isTrue(contentLengthThreshold >= 0, "Content-Length threshold must not be negative");
+		this.contentLengthThreshold = contentLengthThreshold;
+	}
+
+	/**
+	 * Return the configured {@link #setContentLengthThreshold threshold} for
+	 * writing a {@code Content-Length} header.
+	 * @since 5.3.11
+	 */
+	public int getContentLengthThreshold() {
+		return this.contentLengthThreshold;
+	}
+
+	/**
+	 * Clear the cached {@link ObjectWriter} and {@link ObjectReader} instances.
+	 * <p>Writers and readers are derived from the configured {@code ObjectMapper}
+	 * instances on first use and then reused for the same target type and
+	 * serialization view, for as long as the mapper's configuration, e.g. as
+	 * changed through {@code configure} or {@code registerModule}, stays the
+	 * same. This method only needs to be called for changes that Jackson applies
+	 * in place, such as mix-ins added to an already used {@code ObjectMapper}.
+	 * @since 5.3.11
+	 */
+	public void clearCaches() {
+		this.objectWriterCache.clear();
+		this.objectReaderCache.clear();
+	}
+
 
 	@Override
 	public boolean canRead(Class<?> clazz, @Nullable MediaType mediaType) {
@@ -361,25 +418,17 @@ public abstract class AbstractJackson2HttpMessageConverter extends AbstractGener
 				"UTF-16".equals(charset.name()) ||
 				"UTF-32".equals(charset.name());
 		try {
+			Class<?> deserializationView = null;
 			if (inputMessage instanceof MappingJacksonInputMessage) {
-				Class<?> deserializationView = ((MappingJacksonInputMessage) inputMessage).getDeserializationView();
-				if (deserializationView != null) {
-					ObjectReader objectReader = objectMapper.readerWithView(deserializationView).forType(javaType);
-					if (isUnicode) {
-						return objectReader.readValue(inputMessage.getBody());
-					}
-					else {
-						Reader reader = new InputStreamReader(inputMessage.getBody(), charset);
-						return objectReader.readValue(reader);
-					}
-				}
+				deserializationView = ((MappingJacksonInputMessage) inputMessage).getDeserializationView();
 			}
+			ObjectReader objectReader = getObjectReader(objectMapper, javaType, deserializationView);
 			if (isUnicode) {
-				return objectMapper.readValue(inputMessage.getBody(), javaType);
+				return objectReader.readValue(inputMessage.getBody());
 			}
 			else {
 				Reader reader = new InputStreamReader(inputMessage.getBody(), charset);
-				return objectMapper.readValue(reader, javaType);
+				return objectReader.readValue(reader);
 			}
 		}
 		catch (InvalidDefinitionException ex) {
@@ -390,6 +439,25 @@ public abstract class AbstractJackson2HttpMessageConverter extends AbstractGener
 		}
 	}
 
+	/**
+	 * Return a cached {@link ObjectReader} for the given target type and
+	 * deserialization view, creating it on first access.
+	 */
+	private ObjectReader getObjectReader(
+			ObjectMapper objectMapper, JavaType javaType, @Nullable Class<?> deserializationView) {
+
+		ObjectMapperCacheKey key = new ObjectMapperCacheKey(objectMapper, javaType, deserializationView, false);
+		CachedObjectReader cached = this.objectReaderCache.get(key);
+		if (cached == null || !cached.isCurrent(objectMapper)) {
+			ObjectReader objectReader = (deserializationView != null ?
+					objectMapper.readerWithView(deserializationView).forType(javaType) :
+					objectMapper.readerFor(javaType));
+			cached = new CachedObjectReader(objectMapper, objectReader);
+			this.objectReaderCache.put(key, cached);
+		}
+		return cached.objectReader;
+	}
+
 	/**
 	 * Determine the charset to use for JSON input.
 	 * <p>By default this is either the charset from the input {@code MediaType}
@@ -419,7 +487,16 @@ public abstract class AbstractJackson2HttpMessageConverter extends AbstractGener
 		ObjectMapper objectMapper = selectObjectMapper(clazz, contentType);
 		Assert.state(objectMapper != null, "No ObjectMapper for " + clazz.getName());
 
-		OutputStream outputStream = StreamUtils.nonClosing(outputMessage.getBody());
+		ContentLengthOutputStream contentLengthStream = null;
+		OutputStream outputStream;
+		if (this.contentLengthThreshold > 0 && outputMessage.getHeaders().getContentLength() < 0) {
+			contentLengthStream = new ContentLengthOutputStream(outputMessage, this.contentLengthThreshold);
+			outputStream = contentLengthStream;
+		}
+		else {
+			outputStream = StreamUtils.nonClosing(outputMessage.getBody());
+		}
+
 		try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream, encoding)) {
 			writePrefix(generator, object);
 
@@ -438,23 +515,33 @@ public abstract class AbstractJackson2HttpMessageConverter extends AbstractGener
 				javaType = getJavaType(type, null);
 			}
 
-			ObjectWriter objectWriter = (serializationView != null ?
-					objectMapper.writerWithView(serializationView) : objectMapper.writer());
-			if (filters != null) {
-				objectWriter = objectWriter.with(filters);
+			if (javaType != null && !javaType.isContainerType()) {
+				javaType = null;
 			}
-			if (javaType != null && javaType.isContainerType()) {
-				objectWriter = objectWriter.forType(javaType);
+			boolean eventStream = (contentType != null && contentType.isCompatibleWith(MediaType.TEXT_EVENT_STREAM));
+
+			ObjectWriter objectWriter;
+			if (filters != null) {
+				objectWriter = createObjectWriter(objectMapper, javaType, serializationView, eventStream).with(filters);
 			}
-			SerializationConfig config = objectWriter.getConfig();
-			if (contentType != null && contentType.isCompatibleWith(MediaType.TEXT_EVENT_STREAM) &&
-					config.isEnabled(SerializationFeature.INDENT_OUTPUT)) {
-				objectWriter = objectWriter.with(this.ssePrettyPrinter);
+			else {
+				ObjectMapperCacheKey key = new ObjectMapperCacheKey(objectMapper, javaType, serializationView, eventStream);
+				CachedObjectWriter cached = this.objectWriterCache.get(key);
+				if (cached == null || !cached.isCurrent(objectMapper)) {
+					cached = new CachedObjectWriter(objectMapper,
+							createObjectWriter(objectMapper, javaType, serializationView, eventStream));
+					this.objectWriterCache.put(key, cached);
+				}
+				objectWriter = cached.objectWriter;
 			}
 			objectWriter.writeValue(generator, value);
 
 			writeSuffix(generator, object);
 			generator.flush();
+
+			if (contentLengthStream != null) {
+				contentLengthStream.complete();
+			}
 		}
 		catch (InvalidDefinitionException ex) {
 			throw new HttpMessageConversionException("Type definition error: " + ex.getType(), ex);
@@ -464,6 +551,21 @@ public abstract class AbstractJackson2HttpMessageConverter extends AbstractGener
 		}
 	}
 
+	private ObjectWriter createObjectWriter(ObjectMapper objectMapper, @Nullable JavaType javaType,
+			@Nullable Class<?> serializationView, boolean eventStream) {
+
+		ObjectWriter objectWriter = (serializationView != null ?
+				objectMapper.writerWithView(serializationView) : objectMapper.writer());
+		if (javaType != null) {
+			objectWriter = objectWriter.forType(javaType);
+		}
+		SerializationConfig config = objectWriter.getConfig();
+		if (eventStream && config.isEnabled(SerializationFeature.INDENT_OUTPUT)) {
+			objectWriter = objectWriter.with(this.ssePrettyPrinter);
+		}
+		return objectWriter;
+	}
+
 	/**
 	 * Write a prefix before the main content.
 	 * @param generator the generator to use for writing content.
@@ -524,4 +626,205 @@ public abstract class AbstractJackson2HttpMessageConverter extends AbstractGener
 		return super.getContentLength(object, contentType);
 	}
 
+
+	/**
+	 * Key for cached {@link ObjectWriter} and {@link ObjectReader} instances.
+	 */
+	private static final class ObjectMapperCacheKey {
+
+		private final ObjectMapper objectMapper;
+
+		@Nullable
+		private final JavaType javaType;
+
+		@Nullable
+		private final Class<?> view;
+
+		private final boolean eventStream;
+
+		ObjectMapperCacheKey(ObjectMapper objectMapper, @Nullable JavaType javaType,
+				@Nullable Class<?> view, boolean eventStream) {
+
+			this.objectMapper = objectMapper;
+			this.javaType = javaType;
+			this.view = view;
+			this.eventStream = eventStream;
+		}
+
+		@Override
+		public boolean equals(@Nullable Object other) {
+			if (this == other) {
+				return true;
+			}
+			if (!(other instanceof ObjectMapperCacheKey)) {
+				return false;
+			}
+			ObjectMapperCacheKey otherKey = (ObjectMapperCacheKey) other;
+			return (this.objectMapper == otherKey.objectMapper &&
+					ObjectUtils.nullSafeEquals(this.javaType, otherKey.javaType) &&
+					this.view == otherKey.view && this.eventStream == otherKey.eventStream);
+		}
+
+		@Override
+		public int hashCode() {
+			int result = System.identityHashCode(this.objectMapper);
+			result = 31 * result + ObjectUtils.nullSafeHashCode(this.javaType);
+			result = 31 * result + ObjectUtils.nullSafeHashCode(this.view);
+			result = 31 * result + Boolean.hashCode(this.eventStream);
+			return result;
+		}
+	}
+
+
+	/**
+	 * Cached {@link ObjectWriter} along with the {@code ObjectMapper} state it
+	 * was created from, which is replaced by Jackson whenever the mapper is
+	 * reconfigured.
+	 */
+	private static final class CachedObjectWriter {
+
+		private final SerializationConfig config;
+
+		private final SerializerProvider serializerProvider;
+
+		private final SerializerFactory serializerFactory;
+
+		final ObjectWriter objectWriter;
+
+		CachedObjectWriter(ObjectMapper objectMapper, ObjectWriter objectWriter) {
+			this.config = objectMapper.getSerializationConfig();
+			this.serializerProvider = objectMapper.getSerializerProvider();
+			this.serializerFactory = objectMapper.getSerializerFactory();
+			this.objectWriter = objectWriter;
+		}
+
+		boolean isCurrent(ObjectMapper objectMapper) {
+			return (this.config == objectMapper.getSerializationConfig() &&
+					this.serializerProvider == objectMapper.getSerializerProvider() &&
+					this.serializerFactory == objectMapper.getSerializerFactory());
+		}
+	}
+
+
+	/**
+	 * Cached {@link ObjectReader} along with the {@code ObjectMapper} state it
+	 * was created from, which is replaced by Jackson whenever the mapper is
+	 * reconfigured.
+	 */
+	private static final class CachedObjectReader {
+
+		private final DeserializationConfig config;
+
+		private final DeserializationContext context;
+
+		@Nullable
+		private final InjectableValues injectableValues;
+
+		final ObjectReader objectReader;
+
+		CachedObjectReader(ObjectMapper objectMapper, ObjectReader objectReader) {
+			this.config = objectMapper.getDeserializationConfig();
+			this.context = objectMapper.getDeserializationContext();
+			this.injectableValues = objectMapper.getInjectableValues();
+			this.objectReader = objectReader;
+		}
+
+		boolean isCurrent(ObjectMapper objectMapper) {
+			return (this.config == objectMapper.getDeserializationConfig() &&
+					this.context == objectMapper.getDeserializationContext() &&
+					this.injectableValues == objectMapper.getInjectableValues());
+		}
+	}
+
+
+	/**
+	 * {@code OutputStream} that collects output up to a threshold in a buffer
+	 * so that a {@code Content-Length} header can be set before the body
+	 * is written, and otherwise falls back on streaming to the response body.
+	 */
+	private static final class ContentLengthOutputStream extends OutputStream {
+
+		private static final int INITIAL_BUFFER_SIZE = 256;
+
+		private final HttpOutputMessage outputMessage;
+
+		private final int threshold;
+
+		private byte[] buffer;
+
+		private int count;
+
+		@Nullable
+		private OutputStream body;
+
+		ContentLengthOutputStream(HttpOutputMessage outputMessage, int threshold) {
+			this.outputMessage = outputMessage;
+			this.threshold = threshold;
+			this.buffer = new byte[Math.min(threshold, INITIAL_BUFFER_SIZE)];
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			if (this.body == null && this.count < this.threshold) {
+				ensureCapacity(this.count + 1);
+				this.buffer[this.count++] = (byte) b;
+			}
+			else {
+				getBody().write(b);
+			}
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			if (this.body == null && this.count + len <= this.threshold) {
+				ensureCapacity(this.count + len);
+				System.arraycopy(b, off, this.buffer, this.count, len);
+				this.count += len;
+			}
+			else {
+				getBody().write(b, off, len);
+			}
+		}
+
+		@Override
+		public void flush() throws IOException {
+			if (this.body != null) {
+				this.body.flush();
+			}
+		}
+
+		@Override
+		public void close() {
+			// Never close the response body, and keep buffered content until complete()
+		}
+
+		/**
+		 * Write the buffered content along with a {@code Content-Length} header,
+		 * unless the threshold has been exceeded and the content was streamed.
+		 */
+		void complete() throws IOException {
+			if (this.body == null) {
+				this.outputMessage.getHeaders().setContentLength(this.count);
+				getBody().flush();
+			}
+		}
+
+		private void ensureCapacity(int capacity) {
+			if (capacity > this.buffer.length) {
+				int newLength = Math.min(Math.max(this.buffer.length * 2, capacity), this.threshold);
+				this.buffer = Arrays.copyOf(this.buffer, newLength);
+			}
+		}
+
+		private OutputStream getBody() throws IOException {
+			if (this.body == null) {
+				this.body = this.outputMessage.getBody();
+				if (this.count > 0) {
+					this.body.write(this.buffer, 0, this.count);
+				}
+			}
+			return this.body;
+		}
+	}
+
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2018 the original author or authors.
+ * Copyright 2002-2021 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -22,6 +22,7 @@ import java.util.List;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.InvalidMediaTypeException;
 import org.springframework.http.MediaType;
+import org.springframework.util.Assert;
 import org.springframework.util.CollectionUtils;
 import org.springframework.web.HttpMediaTypeNotAcceptableException;
 import org.springframework.web.context.request.NativeWebRequest;
@@ -35,6 +36,28 @@ import org.springframework.web.context.request.NativeWebRequest;
  */
 public class HeaderContentNegotiationStrategy implements ContentNegotiationStrategy {
 
+	private final MediaTypeNegotiationCache negotiationCache;
+
+
+	/**
+	 * Create an instance that uses the
+	 * {@link MediaTypeNegotiationCache#getSharedInstance() shared} negotiation cache.
+	 */
+	public HeaderContentNegotiationStrategy() {
+		this(MediaTypeNegotiationCache.getSharedInstance());
+	}
+
+	/**
+	 * Create an instance with the given cache for parsed {@code Accept} headers.
+	 * @param negotiationCache the cache to use
+	 * @since 5.3.11
+	 */
+	public HeaderContentNegotiationStrategy(MediaTypeNegotiationCache negotiationCache) {
+		Assert.notNull(negotiationCache, "MediaTypeNegotiationCache must not be null");
+		this.negotiationCache = negotiationCache;
+	}
+
+
 	/**
 	 * {@inheritDoc}
 	 * @throws HttpMediaTypeNotAcceptableException if the 'Accept' header cannot be parsed
@@ -50,8 +73,7 @@ public class HeaderContentNegotiationStrategy implements ContentNegotiationStrat
 
 		List<String> headerValues = Arrays.asList(headerValueArray);
 		try {
-			List<MediaType> mediaTypes = MediaType.parseMediaTypes(headerValues);
-			MediaType.sortBySpecificityAndQuality(mediaTypes);
+			List<MediaType> mediaTypes = this.negotiationCache.getSortedAcceptMediaTypes(headerValues);
 			return !CollectionUtils.isEmpty(mediaTypes) ? mediaTypes : MEDIA_TYPE_ALL_LIST;
 		}
 		catch (InvalidMediaTypeException ex) {
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.accept;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+import org.springframework.util.ConcurrentLruCache;
+
+/**
+ * Bounded cache for the results of content negotiation, shared by Spring MVC
+ * and Spring WebFlux.
+ *
+ * <p>Clients tend to send a small number of distinct {@code Accept} headers,
+ * and handlers produce a small number of distinct sets of media types, so the
+ * same parsing, sorting and matching work is repeated for most requests.
+ * This cache holds the parsed and sorted media types per raw {@code Accept}
+ * header, as well as the media type selected for a given combination of
+ * acceptable and producible media types. Both caches are bounded in size and
+ * evict the least recently used entries.
+ *
+ * @author Rossen Stoyanchev
+ * @since 5.3.11
+ * @see HeaderContentNegotiationStrategy
+ */
+public class MediaTypeNegotiationCache {
+
+	/**
+	 * The default maximum number of entries in each cache.
+	 */
+	public static final int DEFAULT_CACHE_LIMIT = 256;
+
+	private static final MediaTypeNegotiationCache sharedInstance = new MediaTypeNegotiationCache();
+
+
+	private final ConcurrentLruCache<List<String>, List<MediaType>> acceptCache;
+
+	private final ConcurrentLruCache<SelectionKey, Optional<MediaType>> selectionCache;
+
+
+	/**
+	 * Create a cache with {@link #DEFAULT_CACHE_LIMIT default} limits.
+	 */
+	public MediaTypeNegotiationCache() {
+		this(DEFAULT_CACHE_LIMIT);
+	}
+
+	/**
+	 * Create a cache with the given maximum number of entries per cache.
+	 * @param cacheLimit the maximum number of entries
+	 */
+	public MediaTypeNegotiationCache(int cacheLimit) {
+		Assert.isTrue(cacheLimit > 0, "Cache limit must be greater than 0");
+		this.acceptCache = new ConcurrentLruCache<>(cacheLimit, MediaTypeNegotiationCache::parseAcceptHeader);
+		this.selectionCache = new ConcurrentLruCache<>(cacheLimit, key ->
+				Optional.ofNullable(key.selector.selectMediaType(key.acceptableTypes, key.producibleTypes)));
+	}
+
+
+	/**
+	 * Return the media types of the given {@code Accept} header values, sorted
+	 * by {@link MediaType#sortBySpecificityAndQuality specificity and quality}.
+	 * @param headerValues the raw {@code Accept} header values
+	 * @return a new, mutable list with the sorted media types
+	 * @throws InvalidMediaTypeException if a header value cannot be parsed
+	 */
+	public List<MediaType> getSortedAcceptMediaTypes(List<String> headerValues) {
+		return new ArrayList<>(this.acceptCache.get(new ArrayList<>(headerValues)));
+	}
+
+	/**
+	 * Return the media type to use for the given acceptable and producible
+	 * media types, as determined by the given selector on a cache miss.
+	 * <p>The selector is part of the cache key, so it should be a constant
+	 * instance, typically held in a field, and must only depend on its arguments.
+	 * Since entries keep the selector, and whatever it refers to, reachable,
+	 * selection should go through a cache owned by the same component as the
+	 * selector rather than through the {@link #getSharedInstance() shared instance}.
+	 * @param acceptableTypes the media types requested by the client
+	 * @param producibleTypes the media types that can be produced
+	 * @param selector the algorithm to select a media type with
+	 * @return the selected media type, or {@code null} if none
+	 */
+	@Nullable
+	public MediaType getSelectedMediaType(List<MediaType> acceptableTypes, List<MediaType> producibleTypes,
+			MediaTypeSelector selector) {
+
+		return this.selectionCache.get(new SelectionKey(acceptableTypes, producibleTypes, selector)).orElse(null);
+	}
+
+	/**
+	 * Remove all cached entries.
+	 */
+	public void clear() {
+		this.acceptCache.clear();
+		this.selectionCache.clear();
+	}
+
+
+	/**
+	 * Return a shared default {@code MediaTypeNegotiationCache} instance, for
+	 * use with {@link #getSortedAcceptMediaTypes}, which only keeps header
+	 * values and media types.
+	 */
+	public static MediaTypeNegotiationCache getSharedInstance() {
+		return sharedInstance;
+	}
+
+	private static List<MediaType> parseAcceptHeader(List<String> headerValues) {
+		List<MediaType> mediaTypes = MediaType.parseMediaTypes(headerValues);
+		MediaType.sortBySpecificityAndQuality(mediaTypes);
+		return mediaTypes;
+	}
+
+
+	/**
+	 * Strategy to select a media type from acceptable and producible media types.
+	 */
+	@FunctionalInterface
+	public interface MediaTypeSelector {
+
+		/**
+		 * Select the media type to use.
+		 * @param acceptableTypes the media types requested by the client
+		 * @param producibleTypes the media types that can be produced
+		 * @return the selected media type, or {@code null} if none
+		 */
+		@Nullable
+		MediaType selectMediaType(List<MediaType> acceptableTypes, List<MediaType> producibleTypes);
+	}
+
+
+	private static final class SelectionKey {
+
+		private final List<MediaType> acceptableTypes;
+
+		private final List<MediaType> producibleTypes;
+
+		private final MediaTypeSelector selector;
+
+		private final int hashCode;
+
+		SelectionKey(List<MediaType> acceptableTypes, List<MediaType> producibleTypes, MediaTypeSelector selector) {
+			// Copy, since the key outlives the request that provided the lists
+			this.acceptableTypes = new ArrayList<>(acceptableTypes);
+			this.producibleTypes = new ArrayList<>(producibleTypes);
+			this.selector = selector;
+			this.hashCode = 31 * (31 * this.acceptableTypes.hashCode() + this.producibleTypes.hashCode()) +
+					System.identityHashCode(selector);
+		}
+
+		@Override
+		public boolean equals(@Nullable Object other) {
+			if (this == other) {
+				return true;
+			}
+			if (!(other instanceof SelectionKey)) {
+				return false;
+			}
+			SelectionKey otherKey = (SelectionKey) other;
+			return (this.selector == otherKey.selector &&
+					this.acceptableTypes.equals(otherKey.acceptableTypes) &&
+					this.producibleTypes.equals(otherKey.producibleTypes));
+		}
+
+		@Override
+		public int hashCode() {
+			return this.hashCode;
+		}
+	}
+
+}
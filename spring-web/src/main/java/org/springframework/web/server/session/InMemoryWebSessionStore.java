@@ -20,17 +20,21 @@ import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.ZoneId;
-import java.time.temporal.ChronoUnit;
 import java.util.Collections;
-import java.util.Iterator;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
 
 import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Schedulers;
 
+import org.springframework.lang.Nullable;
 import org.springframework.util.Assert;
 import org.springframework.util.IdGenerator;
 import org.springframework.util.JdkIdGenerator;
@@ -39,6 +43,16 @@ import org.springframework.web.server.WebSession;
 /**
  * Simple Map-based storage for {@link WebSession} instances.
  *
+ * <p>Stored sessions are indexed by the time at which they expire, across a
+ * number of independently locked shards, so that checking for expired sessions
+ * only visits sessions that are due. The index is updated lazily: a session
+ * accessed after it was indexed is moved once its original expiration time
+ * is reached, rather than on every access.
+ *
+ * <p>The memory used by stored sessions is estimated on every save and may be
+ * limited through {@link #setMaxMemoryUsage(long)}, in which case sessions
+ * closest to their expiration are evicted to make room.
+ *
  * @author Rossen Stoyanchev
  * @author Rob Winch
  * @since 5.0
@@ -47,14 +61,45 @@ public class InMemoryWebSessionStore implements WebSessionStore {
 
 	private static final IdGenerator idGenerator = new JdkIdGenerator();
 
+	/** Number of expiration index shards, a power of two. */
+	private static final int SHARD_COUNT = 16;
+
+	/** Max number of sessions visited per shard by a lazy expiration check. */
+	private static final int MAX_EXPIRATIONS_PER_CHECK = 256;
+
+	private static final long NOT_SCHEDULED = Long.MAX_VALUE;
+
+	private static final int SESSION_SIZE = 512;
+
+	private static final int ATTRIBUTE_SIZE = 48;
+
+	private static final int OBJECT_SIZE = 64;
+
 
 	private int maxSessions = 10000;
 
+	private long maxMemoryUsage = -1;
+
+	private ToLongFunction<WebSession> sessionSizeEstimator = InMemoryWebSessionStore::estimateSize;
+
 	private Clock clock = Clock.system(ZoneId.of("GMT"));
 
 	private final Map<String, InMemoryWebSession> sessions = new ConcurrentHashMap<>();
 
-	private final ExpiredSessionChecker expiredSessionChecker = new ExpiredSessionChecker();
+	private final ExpirationShard[] shards = new ExpirationShard[SHARD_COUNT];
+
+	private final AtomicLong memoryUsage = new AtomicLong();
+
+	private final AtomicLong expiredSessionCount = new AtomicLong();
+
+	private final AtomicLong evictedSessionCount = new AtomicLong();
+
+
+	public InMemoryWebSessionStore() {
+		for (int i = 0; i < SHARD_COUNT; i++) {
+			this.shards[i] = new ExpirationShard();
+		}
+	}
 
 
 	/**
@@ -77,6 +122,46 @@ public class InMemoryWebSessionStore implements WebSessionStore {
 		return this.maxSessions;
 	}
 
+	/**
+	 * Set the maximum amount of memory, in bytes, that stored sessions may use
+	 * as estimated by the {@link #setSessionSizeEstimator session size estimator}.
+	 * Once the limit is exceeded, expired sessions are removed first, followed
+	 * by the stored sessions closest to their expiration. A session that does
+	 * not fit on its own results in an {@link IllegalStateException}: a new
+	 * session is then not stored, while a session that was already stored is
+	 * kept as of its previous save, and remains to be saved.
+	 * <p>Sessions that never expire are not evicted.
+	 * <p>By default set to -1, i.e. no limit.
+	 * @param maxMemoryUsage the maximum memory usage in bytes, or -1 for no limit
+	 * @since 5.3.11
+	 */
+	public void setMaxMemoryUsage(long maxMemoryUsage) {
+		this.maxMemoryUsage = maxMemoryUsage;
+	}
+
+	/**
+	 * Return the maximum amount of memory stored sessions may use.
+	 * @since 5.3.11
+	 */
+	public long getMaxMemoryUsage() {
+		return this.maxMemoryUsage;
+	}
+
+	/**
+	 * Configure the function that estimates the memory used by a session, in
+	 * bytes, for {@link #setMaxMemoryUsage(long)}. The estimate is taken when
+	 * a session is saved, and updated each time its attributes or maximum
+	 * idle time change and it is saved again.
+	 * <p>By default a fixed size is assumed per session and per attribute,
+	 * taking the length of strings and arrays into account.
+	 * @param sessionSizeEstimator the estimator to use
+	 * @since 5.3.11
+	 */
+	public void setSessionSizeEstimator(ToLongFunction<WebSession> sessionSizeEstimator) {
+		Assert.notNull(sessionSizeEstimator, "Session size estimator is required");
+		this.sessionSizeEstimator = sessionSizeEstimator;
+	}
+
 	/**
 	 * Configure the {@link Clock} to use to set lastAccessTime on every created
 	 * session and to calculate if it is expired.
@@ -109,13 +194,39 @@ public class InMemoryWebSessionStore implements WebSessionStore {
 		return Collections.unmodifiableMap(this.sessions);
 	}
 
+	/**
+	 * Return the estimated amount of memory, in bytes, used by stored sessions.
+	 * @since 5.3.11
+	 * @see #setSessionSizeEstimator
+	 */
+	public long getMemoryUsage() {
+		return this.memoryUsage.get();
+	}
+
+	/**
+	 * Return the number of sessions removed from the store because they expired.
+	 * @since 5.3.11
+	 */
+	public long getExpiredSessionCount() {
+		return this.expiredSessionCount.get();
+	}
+
+	/**
+	 * Return the number of sessions evicted from the store to stay within
+	 * the {@link #setMaxMemoryUsage(long) maximum memory usage}.
+	 * @since 5.3.11
+	 */
+	public long getEvictedSessionCount() {
+		return this.evictedSessionCount.get();
+	}
+
 
 	@Override
 	public Mono<WebSession> createWebSession() {
 
 		// Opportunity to clean expired sessions
 		Instant now = this.clock.instant();
-		this.expiredSessionChecker.checkIfNecessary(now);
+		checkExpiredSessions(now);
 
 		return Mono.<WebSession>fromSupplier(() -> new InMemoryWebSession(now))
 				.subscribeOn(Schedulers.boundedElastic())
@@ -125,13 +236,15 @@ public class InMemoryWebSessionStore implements WebSessionStore {
 	@Override
 	public Mono<WebSession> retrieveSession(String id) {
 		Instant now = this.clock.instant();
-		this.expiredSessionChecker.checkIfNecessary(now);
+		checkExpiredSessions(now);
 		InMemoryWebSession session = this.sessions.get(id);
 		if (session == null) {
 			return Mono.empty();
 		}
 		else if (session.isExpired(now)) {
-			this.sessions.remove(id);
+			if (remove(session)) {
+				this.expiredSessionCount.incrementAndGet();
+			}
 			return Mono.empty();
 		}
 		else {
@@ -142,7 +255,10 @@ public class InMemoryWebSessionStore implements WebSessionStore {
 
 	@Override
 	public Mono<Void> removeSession(String id) {
-		this.sessions.remove(id);
+		InMemoryWebSession session = this.sessions.get(id);
+		if (session != null) {
+			remove(session);
+		}
 		return Mono.empty();
 	}
 
@@ -158,12 +274,130 @@ public class InMemoryWebSessionStore implements WebSessionStore {
 	/**
 	 * Check for expired sessions and remove them. Typically such checks are
 	 * kicked off lazily during calls to {@link #createWebSession() create} or
-	 * {@link #retrieveSession retrieve}, no less than 60 seconds apart.
+	 * {@link #retrieveSession retrieve}, once the earliest expiration time of
+	 * a stored session has passed, and remove a bounded number of sessions.
 	 * This method can be called to force a check at a specific time.
 	 * @since 5.0.8
 	 */
 	public void removeExpiredSessions() {
-		this.expiredSessionChecker.removeExpiredSessions(this.clock.instant());
+		Instant now = this.clock.instant();
+		for (ExpirationShard shard : this.shards) {
+			shard.removeExpiredSessions(now, Integer.MAX_VALUE);
+		}
+	}
+
+	private void checkExpiredSessions(Instant now) {
+		long time = now.toEpochMilli();
+		for (ExpirationShard shard : this.shards) {
+			if (shard.isDue(time)) {
+				shard.removeExpiredSessions(now, MAX_EXPIRATIONS_PER_CHECK);
+			}
+		}
+	}
+
+	/**
+	 * Store the given session, updating its estimated size.
+	 * @return the size of the session as previously stored, or 0 if new
+	 */
+	private long store(InMemoryWebSession session) {
+		long size = this.sessionSizeEstimator.applyAsLong(session);
+		synchronized (session) {
+			long previousSize = session.memorySize;
+			this.sessions.put(session.getId(), session);
+			this.memoryUsage.addAndGet(size - previousSize);
+			session.memorySize = size;
+			return previousSize;
+		}
+	}
+
+	/**
+	 * Reject the last update of a stored session, restoring the size it was
+	 * previously stored with, and requiring it to be saved again.
+	 */
+	private void rejectUpdate(InMemoryWebSession session, long previousSize) {
+		synchronized (session) {
+			if (this.sessions.get(session.getId()) == session) {
+				this.memoryUsage.addAndGet(previousSize - session.memorySize);
+				session.memorySize = previousSize;
+			}
+			session.saveRequired = true;
+		}
+	}
+
+	private boolean remove(InMemoryWebSession session) {
+		synchronized (session) {
+			if (this.sessions.remove(session.getId(), session)) {
+				this.memoryUsage.addAndGet(-session.memorySize);
+				session.memorySize = 0;
+				session.saveRequired = true;
+				return true;
+			}
+			return false;
+		}
+	}
+
+	private boolean isMemoryUsageExceeded() {
+		return (this.maxMemoryUsage >= 0 && this.memoryUsage.get() > this.maxMemoryUsage);
+	}
+
+	private void checkMaxMemoryUsage(InMemoryWebSession session, boolean stored, long previousSize) {
+		if (!isMemoryUsageExceeded()) {
+			return;
+		}
+		removeExpiredSessions();
+		// No point evicting other sessions for one that does not fit on its own
+		boolean fits = (session.memorySize <= this.maxMemoryUsage);
+		boolean[] exhausted = new boolean[SHARD_COUNT];
+		while (fits && isMemoryUsageExceeded()) {
+			// Evict from the shard with the earliest expiration time, one session at a time
+			int index = -1;
+			for (int i = 0; i < SHARD_COUNT; i++) {
+				long time = this.shards[i].nextExpirationTime;
+				if (!exhausted[i] && time != NOT_SCHEDULED &&
+						(index == -1 || time < this.shards[index].nextExpirationTime)) {
+					index = i;
+				}
+			}
+			if (index == -1) {
+				break;
+			}
+			if (!this.shards[index].evictNextSession(session)) {
+				exhausted[index] = true;
+			}
+		}
+		if (isMemoryUsageExceeded()) {
+			long usage = this.memoryUsage.get();
+			if (stored) {
+				rejectUpdate(session, previousSize);
+			}
+			else {
+				remove(session);
+			}
+			throw new IllegalStateException("Max memory usage reached: " + usage);
+		}
+	}
+
+	private static long estimateSize(WebSession session) {
+		long size = SESSION_SIZE;
+		for (Map.Entry<String, Object> entry : session.getAttributes().entrySet()) {
+			size += ATTRIBUTE_SIZE + estimateSize(entry.getKey()) + estimateSize(entry.getValue());
+		}
+		return size;
+	}
+
+	private static long estimateSize(@Nullable Object value) {
+		if (value instanceof CharSequence) {
+			return OBJECT_SIZE + 2L * ((CharSequence) value).length();
+		}
+		else if (value instanceof byte[]) {
+			return OBJECT_SIZE + ((byte[]) value).length;
+		}
+		else if (value instanceof char[]) {
+			return OBJECT_SIZE + 2L * ((char[]) value).length;
+		}
+		else {
+			return OBJECT_SIZE;
+		}
 	}
 
 
@@ -171,7 +405,7 @@ public class InMemoryWebSessionStore implements WebSessionStore {
 
 		private final AtomicReference<String> id = new AtomicReference<>(String.valueOf(idGenerator.generateId()));
 
-		private final Map<String, Object> attributes = new ConcurrentHashMap<>();
+		private final Map<String, Object> attributes = new AttributeMap();
 
 		private final Instant creationTime;
 
@@ -181,10 +415,22 @@ public class InMemoryWebSessionStore implements WebSessionStore {
 
 		private final AtomicReference<State> state = new AtomicReference<>(State.NEW);
 
+		private final int shardIndex;
+
+		/** Whether the session changed since it was last stored. */
+		private volatile boolean saveRequired = true;
+
+		/** Estimated size accounted for, guarded by the session monitor. */
+		private long memorySize;
+
+		/** Time of the current expiration index entry, guarded by the shard lock. */
+		private long scheduledExpirationTime = NOT_SCHEDULED;
+
 
 		public InMemoryWebSession(Instant creationTime) {
 			this.creationTime = creationTime;
 			this.lastAccessTime = this.creationTime;
+			this.shardIndex = System.identityHashCode(this) & (SHARD_COUNT - 1);
 		}
 
 		@Override
@@ -210,6 +456,7 @@ public class InMemoryWebSessionStore implements WebSessionStore {
 		@Override
 		public void setMaxIdleTime(Duration maxIdleTime) {
 			this.maxIdleTime = maxIdleTime;
+			this.saveRequired = true;
 		}
 
 		@Override
@@ -229,11 +476,13 @@ public class InMemoryWebSessionStore implements WebSessionStore {
 
 		@Override
 		public Mono<Void> changeSessionId() {
-			String currentId = this.id.get();
-			InMemoryWebSessionStore.this.sessions.remove(currentId);
-			String newId = String.valueOf(idGenerator.generateId());
-			this.id.set(newId);
-			InMemoryWebSessionStore.this.sessions.put(this.getId(), this);
+			synchronized (this) {
+				String currentId = this.id.get();
+				InMemoryWebSessionStore.this.sessions.remove(currentId);
+				String newId = String.valueOf(idGenerator.generateId());
+				this.id.set(newId);
+				InMemoryWebSessionStore.this.sessions.put(this.getId(), this);
+			}
 			return Mono.empty();
 		}
 
@@ -241,14 +490,21 @@ public class InMemoryWebSessionStore implements WebSessionStore {
 		public Mono<Void> invalidate() {
 			this.state.set(State.EXPIRED);
 			getAttributes().clear();
-			InMemoryWebSessionStore.this.sessions.remove(this.id.get());
+			remove(this);
 			return Mono.empty();
 		}
 
 		@Override
 		public Mono<Void> save() {
 
-			checkMaxSessionsLimit();
+			boolean stored = (sessions.get(getId()) == this);
+			if (stored && !this.saveRequired) {
+				// Neither attributes nor max idle time changed since last stored
+				return Mono.empty();
+			}
+			if (!stored) {
+				checkMaxSessionsLimit();
+			}
 
 			// Implicitly started session..
 			if (!getAttributes().isEmpty()) {
@@ -256,14 +512,20 @@ public class InMemoryWebSessionStore implements WebSessionStore {
 			}
 
 			if (isStarted()) {
+				// Reset first, so that concurrent changes require another save
+				this.saveRequired = false;
+
 				// Save
-				InMemoryWebSessionStore.this.sessions.put(this.getId(), this);
+				long previousSize = store(this);
+				shards[this.shardIndex].schedule(this);
 
 				// Unless it was invalidated
 				if (this.state.get().equals(State.EXPIRED)) {
-					InMemoryWebSessionStore.this.sessions.remove(this.getId());
+					remove(this);
 					return Mono.error(new IllegalStateException("Session was invalidated"));
 				}
+
+				checkMaxMemoryUsage(this, stored, previousSize);
 			}
 
 			return Mono.empty();
@@ -271,7 +533,7 @@ public class InMemoryWebSessionStore implements WebSessionStore {
 
 		private void checkMaxSessionsLimit() {
 			if (sessions.size() >= maxSessions) {
-				expiredSessionChecker.removeExpiredSessions(clock.instant());
+				removeExpiredSessions();
 				if (sessions.size() >= maxSessions) {
 					throw new IllegalStateException("Max sessions limit reached: " + sessions.size());
 				}
@@ -302,47 +564,265 @@ public class InMemoryWebSessionStore implements WebSessionStore {
 		private void updateLastAccessTime(Instant currentTime) {
 			this.lastAccessTime = currentTime;
 		}
-	}
 
+		/**
+		 * Return the epoch millisecond at which the session expires, or
+		 * {@link #NOT_SCHEDULED} if it never does.
+		 */
+		private long getExpirationTime() {
+			Duration maxIdleTime = this.maxIdleTime;
+			if (maxIdleTime.isNegative()) {
+				return NOT_SCHEDULED;
+			}
+			try {
+				return Math.addExact(this.lastAccessTime.toEpochMilli(), maxIdleTime.toMillis());
+			}
+			catch (ArithmeticException ex) {
+				return NOT_SCHEDULED;
+			}
+		}
+
+
+		/**
+		 * Attributes map that marks the session for saving when modified.
+		 */
+		@SuppressWarnings("serial")
+		private class AttributeMap extends ConcurrentHashMap<String, Object> {
+
+			@Override
+			public Object put(String key, Object value) {
+				return modified(super.put(key, value));
+			}
+
+			@Override
+			public void putAll(Map<? extends String, ?> map) {
+				super.putAll(map);
+				modified(null);
+			}
+
+			@Override
+			public Object putIfAbsent(String key, Object value) {
+				return modified(super.putIfAbsent(key, value));
+			}
+
+			@Override
+			public Object remove(Object key) {
+				return modified(super.remove(key));
+			}
+
+			@Override
+			public boolean remove(Object key, Object value) {
+				return modified(super.remove(key, value));
+			}
+
+			@Override
+			public boolean replace(String key, Object oldValue, Object newValue) {
+				return modified(super.replace(key, oldValue, newValue));
+			}
+
+			@Override
+			public Object replace(String key, Object value) {
+				return modified(super.replace(key, value));
+			}
 
-	private class ExpiredSessionChecker {
+			@Override
+			public void replaceAll(BiFunction<? super String, ? super Object, ?> function) {
+				super.replaceAll(function);
+				modified(null);
+			}
+
+			@Override
+			public Object computeIfAbsent(String key, Function<? super String, ?> mappingFunction) {
+				return modified(super.computeIfAbsent(key, mappingFunction));
+			}
 
-		/** Max time between expiration checks. */
-		private static final int CHECK_PERIOD = 60 * 1000;
+			@Override
+			public Object computeIfPresent(String key, BiFunction<? super String, ? super Object, ?> remappingFunction) {
+				return modified(super.computeIfPresent(key, remappingFunction));
+			}
+
+			@Override
+			public Object compute(String key, BiFunction<? super String, ? super Object, ?> remappingFunction) {
+				return modified(super.compute(key, remappingFunction));
+			}
+
+			@Override
+			public Object merge(String key, Object value, BiFunction<? super Object, ? super Object, ?> remappingFunction) {
+				return modified(super.merge(key, value, remappingFunction));
+			}
+
+			@Override
+			public void clear() {
+				super.clear();
+				modified(null);
+			}
+
+			private <T> T modified(T result) {
+				saveRequired = true;
+				return result;
+			}
+		}
+	}
 
 
+	/**
+	 * Index of stored sessions by expiration time, for a subset of the sessions.
+	 */
+	private class ExpirationShard {
+
 		private final ReentrantLock lock = new ReentrantLock();
 
-		private Instant checkTime = clock.instant().plus(CHECK_PERIOD, ChronoUnit.MILLIS);
+		private final PriorityQueue<Expiration> queue = new PriorityQueue<>();
 
+		private volatile long nextExpirationTime = NOT_SCHEDULED;
+
+
+		public boolean isDue(long time) {
+			return (this.nextExpirationTime <= time);
+		}
 
-		public void checkIfNecessary(Instant now) {
-			if (this.checkTime.isBefore(now)) {
-				removeExpiredSessions(now);
+		public void schedule(InMemoryWebSession session) {
+			long time = session.getExpirationTime();
+			if (time == NOT_SCHEDULED) {
+				return;
+			}
+			this.lock.lock();
+			try {
+				// A later expiration time is picked up when the current entry is due
+				if (time < session.scheduledExpirationTime) {
+					add(session, time);
+				}
+			}
+			finally {
+				updateNextExpirationTime();
+				this.lock.unlock();
 			}
 		}
 
-		public void removeExpiredSessions(Instant now) {
-			if (sessions.isEmpty()) {
+		public void removeExpiredSessions(Instant now, int maxCount) {
+			if (!this.lock.tryLock()) {
 				return;
 			}
-			if (this.lock.tryLock()) {
-				try {
-					Iterator<InMemoryWebSession> iterator = sessions.values().iterator();
-					while (iterator.hasNext()) {
-						InMemoryWebSession session = iterator.next();
-						if (session.isExpired(now)) {
-							iterator.remove();
-							session.invalidate();
+			try {
+				long time = now.toEpochMilli();
+				int count = 0;
+				Expiration expiration;
+				while (count++ < maxCount && (expiration = this.queue.peek()) != null && expiration.time <= time) {
+					this.queue.poll();
+					if (!isCurrent(expiration)) {
+						continue;
+					}
+					InMemoryWebSession session = expiration.session;
+					if (session.isExpired(now)) {
+						session.scheduledExpirationTime = NOT_SCHEDULED;
+						if (remove(session)) {
+							expiredSessionCount.incrementAndGet();
 						}
+						session.invalidate();
+					}
+					else {
+						reschedule(session, time);
 					}
 				}
-				finally {
-					this.checkTime = now.plus(CHECK_PERIOD, ChronoUnit.MILLIS);
-					this.lock.unlock();
+			}
+			finally {
+				updateNextExpirationTime();
+				this.lock.unlock();
+			}
+		}
+
+		/**
+		 * Evict the session closest to its expiration, other than the given one,
+		 * or move it to its current expiration time if it was accessed since.
+		 * @return {@code false} if there is no session left to evict
+		 */
+		public boolean evictNextSession(InMemoryWebSession excluded) {
+			this.lock.lock();
+			Expiration excludedExpiration = null;
+			try {
+				Expiration expiration;
+				while ((expiration = this.queue.poll()) != null) {
+					if (!isCurrent(expiration)) {
+						continue;
+					}
+					InMemoryWebSession session = expiration.session;
+					if (session == excluded) {
+						excludedExpiration = expiration;
+					}
+					else if (session.getExpirationTime() > expiration.time) {
+						reschedule(session, expiration.time);
+						return true;
+					}
+					else {
+						session.scheduledExpirationTime = NOT_SCHEDULED;
+						if (remove(session)) {
+							evictedSessionCount.incrementAndGet();
+						}
+						return true;
+					}
+				}
+				return false;
+			}
+			finally {
+				if (excludedExpiration != null) {
+					this.queue.add(excludedExpiration);
 				}
+				updateNextExpirationTime();
+				this.lock.unlock();
 			}
 		}
+
+		private boolean isCurrent(Expiration expiration) {
+			InMemoryWebSession session = expiration.session;
+			if (expiration.time != session.scheduledExpirationTime) {
+				// Superseded by an earlier entry
+				return false;
+			}
+			if (sessions.get(session.getId()) != session) {
+				// Removed from the store
+				session.scheduledExpirationTime = NOT_SCHEDULED;
+				return false;
+			}
+			return true;
+		}
+
+		private void reschedule(InMemoryWebSession session, long notBefore) {
+			long time = session.getExpirationTime();
+			if (time == NOT_SCHEDULED) {
+				session.scheduledExpirationTime = NOT_SCHEDULED;
+			}
+			else {
+				add(session, Math.max(time, notBefore + 1));
+			}
+		}
+
+		private void add(InMemoryWebSession session, long time) {
+			this.queue.add(new Expiration(session, time));
+			session.scheduledExpirationTime = time;
+		}
+
+		private void updateNextExpirationTime() {
+			Expiration expiration = this.queue.peek();
+			this.nextExpirationTime = (expiration != null ? expiration.time : NOT_SCHEDULED);
+		}
+	}
+
+
+	private static final class Expiration implements Comparable<Expiration> {
+
+		private final InMemoryWebSession session;
+
+		private final long time;
+
+		Expiration(InMemoryWebSession session, long time) {
+			this.session = session;
+			this.time = time;
+		}
+
+		@Override
+		public int compareTo(Expiration other) {
+			return Long.compare(this.time, other.time);
+		}
 	}
 
 
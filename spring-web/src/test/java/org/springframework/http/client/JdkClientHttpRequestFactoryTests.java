@@ -0,0 +1,84 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.http.client;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.Executor;
+
+import org.junit.jupiter.api.Test;
+
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.StreamUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+
+/**
+ * Tests for {@link JdkClientHttpRequestFactory} with a buffered request body.
+ *
+ * @author Arjen Poutsma
+ */
+class JdkClientHttpRequestFactoryTests extends AbstractHttpRequestFactoryTests {
+
+	@Override
+	protected ClientHttpRequestFactory createRequestFactory() {
+		return new JdkClientHttpRequestFactory();
+	}
+
+	@Override
+	@Test
+	void httpMethods() throws Exception {
+		super.httpMethods();
+		assertHttpMethod("patch", HttpMethod.PATCH);
+	}
+
+	@Test
+	void responseClosedBeforeRead() throws Exception {
+		for (int i = 0; i < 3; i++) {
+			ClientHttpRequest request = this.factory.createRequest(new URI(this.baseUrl + "/echo"), HttpMethod.PUT);
+			StreamUtils.copy("Hello World", StandardCharsets.UTF_8, request.getBody());
+			try (ClientHttpResponse response = request.execute()) {
+				assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+				assertThat(response.getStatusText()).isEqualTo("OK");
+			}
+		}
+	}
+
+	@Test
+	void httpClientSettings() {
+		Executor executor = Runnable::run;
+		JdkClientHttpRequestFactory factory = new JdkClientHttpRequestFactory();
+		factory.setConnectTimeout(5000);
+		factory.setExecutor(executor);
+		factory.setVersion(HttpClient.Version.HTTP_1_1);
+
+		HttpClient httpClient = factory.getHttpClient();
+		assertThat(httpClient.connectTimeout()).contains(Duration.ofSeconds(5));
+		assertThat(httpClient.executor()).contains(executor);
+		assertThat(httpClient.version()).isEqualTo(HttpClient.Version.HTTP_1_1);
+		assertThat(factory.getHttpClient()).isSameAs(httpClient);
+
+		assertThatIllegalStateException().isThrownBy(() -> factory.setConnectTimeout(1000));
+		assertThatIllegalStateException().isThrownBy(() ->
+				new JdkClientHttpRequestFactory(HttpClient.newHttpClient()).setVersion(HttpClient.Version.HTTP_2));
+	}
+
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.http.client;
+
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpTimeoutException;
+import java.util.Arrays;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.StreamUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+/**
+ * Tests for {@link JdkClientHttpRequestFactory} with a streamed request body.
+ *
+ * @author Arjen Poutsma
+ */
+class StreamingJdkClientHttpRequestFactoryTests extends AbstractHttpRequestFactoryTests {
+
+	@Override
+	protected ClientHttpRequestFactory createRequestFactory() {
+		JdkClientHttpRequestFactory factory = new JdkClientHttpRequestFactory();
+		factory.setBufferRequestBody(false);
+		return factory;
+	}
+
+	@Override
+	@Test
+	void httpMethods() throws Exception {
+		super.httpMethods();
+		assertHttpMethod("patch", HttpMethod.PATCH);
+	}
+
+	@Test
+	void largeBodyWithoutContentLength() throws Exception {
+		byte[] chunk = new byte[10_000];
+		Arrays.fill(chunk, (byte) 'a');
+		ClientHttpRequest request = this.factory.createRequest(new URI(this.baseUrl + "/echo"), HttpMethod.POST);
+		OutputStream body = request.getBody();
+		for (int i = 0; i < 100; i++) {
+			body.write(chunk);
+		}
+
+		try (ClientHttpResponse response = request.execute()) {
+			assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+			assertThat(StreamUtils.copyToByteArray(response.getBody())).hasSize(100 * chunk.length);
+		}
+	}
+
+	@Test
+	void bodyNeverCompletedTimesOut() throws Exception {
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(0, 10, 60, TimeUnit.SECONDS, new SynchronousQueue<>());
+		try {
+			JdkClientHttpRequestFactory factory = new JdkClientHttpRequestFactory();
+			factory.setBufferRequestBody(false);
+			factory.setReadTimeout(500);
+			factory.setExecutor(executor);
+			ClientHttpRequest request = factory.createRequest(new URI(this.baseUrl + "/echo"), HttpMethod.POST);
+			OutputStream body = request.getBody();
+			body.write(new byte[100]);
+			body.flush();
+
+			// The body is never completed: the thread reading it is released on timeout
+			Thread.sleep(1000);
+			long deadline = System.currentTimeMillis() + 5000;
+			while (executor.getActiveCount() > 0 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(50);
+			}
+			assertThat(executor.getActiveCount()).isEqualTo(0);
+			assertThatExceptionOfType(HttpTimeoutException.class).isThrownBy(request::execute);
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+}
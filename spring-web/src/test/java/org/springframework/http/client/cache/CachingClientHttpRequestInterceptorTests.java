@@ -0,0 +1,261 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.http.client.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.util.FastByteArrayOutputStream;
+import org.springframework.util.StreamUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for {@link CachingClientHttpRequestInterceptor}.
+ *
+ * @author Arjen Poutsma
+ */
+class CachingClientHttpRequestInterceptorTests {
+
+	private static final Instant NOW = Instant.parse("2021-10-01T10:00:00Z");
+
+
+	private final HttpResponseCache cache = new HttpResponseCache();
+
+	private final CachingClientHttpRequestInterceptor interceptor = new CachingClientHttpRequestInterceptor(this.cache);
+
+	private final List<HttpHeaders> requests = new ArrayList<>();
+
+	private final List<TestResponse> responses = new ArrayList<>();
+
+	private final ClientHttpRequestExecution execution = (request, body) -> {
+		this.requests.add(request.getHeaders());
+		return this.responses.remove(0);
+	};
+
+
+	CachingClientHttpRequestInterceptorTests() {
+		this.cache.setClock(Clock.fixed(NOW, ZoneOffset.UTC));
+	}
+
+
+	@Test
+	void responseStoredWhenRead() throws IOException {
+		TestResponse response = new TestResponse(200, "max-age=60", "body");
+		this.responses.add(response);
+		assertThat(body(execute())).isEqualTo("body");
+		assertThat(response.closed).isTrue();
+
+		assertThat(body(execute())).isEqualTo("body");
+		assertThat(this.requests).hasSize(1);
+	}
+
+	@Test
+	void responseStoredWhenClosed() throws IOException {
+		this.responses.add(new TestResponse(200, "max-age=60", "body"));
+		execute().close();
+
+		ClientHttpResponse response = execute();
+		assertThat(this.requests).hasSize(1);
+		assertThat(response.getRawStatusCode()).isEqualTo(200);
+		assertThat(response.getHeaders().getCacheControl()).isEqualTo("max-age=60");
+		assertThat(response.getHeaders().getFirst(HttpHeaders.AGE)).isEqualTo("0");
+		assertThat(body(response)).isEqualTo("body");
+	}
+
+	@Test
+	void responseNotStoredWhenTooLarge() throws IOException {
+		this.cache.setMaxBodySize(3);
+		this.responses.add(new TestResponse(200, "max-age=60", "body"));
+		this.responses.add(new TestResponse(200, "max-age=60", "body"));
+
+		assertThat(body(execute())).isEqualTo("body");
+		assertThat(body(execute())).isEqualTo("body");
+		assertThat(this.requests).hasSize(2);
+	}
+
+	@Test
+	void revalidate() throws IOException {
+		TestResponse response = new TestResponse(200, "max-age=60", "body");
+		response.getHeaders().setETag("\"v1\"");
+		this.responses.add(response);
+		this.responses.add(new TestResponse(304, "max-age=60", ""));
+		body(execute());
+
+		this.cache.setClock(Clock.fixed(NOW.plusSeconds(90), ZoneOffset.UTC));
+		ClientHttpResponse revalidated = execute();
+		assertThat(this.requests).hasSize(2);
+		assertThat(this.requests.get(1).getIfNoneMatch()).containsExactly("\"v1\"");
+		assertThat(revalidated.getRawStatusCode()).isEqualTo(200);
+		assertThat(body(revalidated)).isEqualTo("body");
+	}
+
+	@Test
+	void staleWhileRevalidate() throws IOException {
+		List<Runnable> tasks = new ArrayList<>();
+		List<HttpRequest> revalidations = new ArrayList<>();
+		this.interceptor.setRevalidationExecutor(tasks::add);
+		this.interceptor.setRevalidationRequestFactory((uri, method) -> {
+			TestRequest request = new TestRequest(method);
+			revalidations.add(request);
+			return request;
+		});
+		this.responses.add(new TestResponse(200, "max-age=60, stale-while-revalidate=60", "v1"));
+		this.responses.add(new TestResponse(200, "max-age=60, stale-while-revalidate=60", "v2"));
+		body(execute());
+
+		this.cache.setClock(Clock.fixed(NOW.plusSeconds(90), ZoneOffset.UTC));
+		assertThat(body(execute())).isEqualTo("v1");
+		assertThat(body(execute())).isEqualTo("v1");
+		assertThat(tasks).hasSize(1);
+
+		// Revalidated through the request factory, not the original execution
+		tasks.get(0).run();
+		assertThat(this.requests).hasSize(2);
+		assertThat(revalidations).hasSize(1);
+		assertThat(revalidations.get(0).getMethod()).isEqualTo(HttpMethod.GET);
+		assertThat(body(execute())).isEqualTo("v2");
+	}
+
+	@Test
+	void unsafeMethodNotCached() throws IOException {
+		this.responses.add(new TestResponse(200, "max-age=60", "body"));
+		this.responses.add(new TestResponse(200, "max-age=60", "body"));
+
+		body(this.interceptor.intercept(new TestRequest(HttpMethod.POST), new byte[0], this.execution));
+		body(this.interceptor.intercept(new TestRequest(HttpMethod.POST), new byte[0], this.execution));
+		assertThat(this.requests).hasSize(2);
+	}
+
+
+	private ClientHttpResponse execute() throws IOException {
+		return this.interceptor.intercept(new TestRequest(HttpMethod.GET), new byte[0], this.execution);
+	}
+
+	private static String body(ClientHttpResponse response) throws IOException {
+		try {
+			return StreamUtils.copyToString(response.getBody(), StandardCharsets.UTF_8);
+		}
+		finally {
+			response.close();
+		}
+	}
+
+
+	private class TestRequest implements ClientHttpRequest {
+
+		private final HttpMethod method;
+
+		private final HttpHeaders headers = new HttpHeaders();
+
+		TestRequest(HttpMethod method) {
+			this.method = method;
+		}
+
+		@Override
+		public String getMethodValue() {
+			return this.method.name();
+		}
+
+		@Override
+		public URI getURI() {
+			return URI.create("https://example.com/hotels/1");
+		}
+
+		@Override
+		public HttpHeaders getHeaders() {
+			return this.headers;
+		}
+
+		@Override
+		public OutputStream getBody() {
+			return new FastByteArrayOutputStream();
+		}
+
+		@Override
+		public ClientHttpResponse execute() throws IOException {
+			return CachingClientHttpRequestInterceptorTests.this.execution.execute(this, new byte[0]);
+		}
+	}
+
+
+	private static class TestResponse implements ClientHttpResponse {
+
+		private final int statusCode;
+
+		private final HttpHeaders headers = new HttpHeaders();
+
+		private final InputStream body;
+
+		private boolean closed;
+
+		TestResponse(int statusCode, String cacheControl, String body) {
+			this.statusCode = statusCode;
+			this.headers.setCacheControl(cacheControl);
+			this.body = new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+		}
+
+		@Override
+		public HttpStatus getStatusCode() {
+			return HttpStatus.valueOf(this.statusCode);
+		}
+
+		@Override
+		public int getRawStatusCode() {
+			return this.statusCode;
+		}
+
+		@Override
+		public String getStatusText() {
+			return getStatusCode().getReasonPhrase();
+		}
+
+		@Override
+		public HttpHeaders getHeaders() {
+			return this.headers;
+		}
+
+		@Override
+		public InputStream getBody() {
+			return this.body;
+		}
+
+		@Override
+		public void close() {
+			this.closed = true;
+		}
+	}
+
+}
@@ -0,0 +1,277 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.http.client.cache;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Collections;
+
+import org.junit.jupiter.api.Test;
+
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.cache.HttpResponseCache.Lookup;
+import org.springframework.http.client.cache.HttpResponseCache.LookupStatus;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for {@link HttpResponseCache}.
+ *
+ * @author Arjen Poutsma
+ */
+class HttpResponseCacheTests {
+
+	private static final URI HOTEL_URI = URI.create("https://example.com/hotels/1");
+
+	private static final Instant NOW = Instant.parse("2021-10-01T10:00:00Z");
+
+
+	private final InMemoryHttpResponseCacheStore store = new InMemoryHttpResponseCacheStore();
+
+	private final HttpResponseCache cache = new HttpResponseCache(this.store);
+
+
+	HttpResponseCacheTests() {
+		this.cache.setClock(Clock.fixed(NOW, ZoneOffset.UTC));
+	}
+
+
+	@Test
+	void freshResponse() {
+		assertThat(store(HttpMethod.GET, new HttpHeaders(), 200, headers("max-age=60"), "body")).isTrue();
+
+		advance(Duration.ofSeconds(30));
+		Lookup lookup = lookup(new HttpHeaders());
+		assertThat(lookup.getStatus()).isEqualTo(LookupStatus.HIT);
+		assertThat(lookup.getCachedResponse().getBody()).isEqualTo(bytes("body"));
+		assertThat(lookup.getResponseHeaders().getFirst(HttpHeaders.AGE)).isEqualTo("30");
+	}
+
+	@Test
+	void quotedDirectiveValues() {
+		HttpHeaders headers = headers("community=\"foo, max-age=0\", max-age=\"60\"");
+		assertThat(store(HttpMethod.GET, new HttpHeaders(), 200, headers, "body")).isTrue();
+
+		advance(Duration.ofSeconds(30));
+		assertThat(lookup(new HttpHeaders()).getStatus()).isEqualTo(LookupStatus.HIT);
+	}
+
+	@Test
+	void staleResponseRevalidated() {
+		HttpHeaders headers = headers("max-age=60");
+		headers.setETag("\"v1\"");
+		store(HttpMethod.GET, new HttpHeaders(), 200, headers, "body");
+
+		advance(Duration.ofSeconds(61));
+		Lookup lookup = lookup(new HttpHeaders());
+		assertThat(lookup.getStatus()).isEqualTo(LookupStatus.REVALIDATE);
+		assertThat(lookup.getRequestHeaders().getIfNoneMatch()).containsExactly("\"v1\"");
+
+		CachedHttpResponse response = lookup.responseReceived(304, headers("max-age=120"));
+		assertThat(response).isNotNull();
+		assertThat(response.getBody()).isEqualTo(bytes("body"));
+		assertThat(response.getHeaders().getETag()).isEqualTo("\"v1\"");
+
+		advance(Duration.ofSeconds(61 + 100));
+		assertThat(lookup(new HttpHeaders()).getStatus()).isEqualTo(LookupStatus.HIT);
+	}
+
+	@Test
+	void staleResponseReplaced() {
+		HttpHeaders headers = headers("max-age=60");
+		headers.setLastModified(NOW.minusSeconds(3600));
+		store(HttpMethod.GET, new HttpHeaders(), 200, headers, "body");
+
+		advance(Duration.ofSeconds(61));
+		Lookup lookup = lookup(new HttpHeaders());
+		assertThat(lookup.getStatus()).isEqualTo(LookupStatus.REVALIDATE);
+		assertThat(lookup.getRequestHeaders().getIfModifiedSince()).isEqualTo(NOW.minusSeconds(3600).toEpochMilli());
+
+		assertThat(lookup.responseReceived(200, headers("no-store"))).isNull();
+		assertThat(lookup.isStorable()).isFalse();
+		assertThat(this.store.get(HOTEL_URI.toString())).isNull();
+	}
+
+	@Test
+	void staleWhileRevalidate() {
+		store(HttpMethod.GET, new HttpHeaders(), 200, headers("max-age=60, stale-while-revalidate=30"), "body");
+
+		advance(Duration.ofSeconds(70));
+		Lookup lookup = lookup(new HttpHeaders());
+		assertThat(lookup.getStatus()).isEqualTo(LookupStatus.HIT_AND_REVALIDATE);
+		assertThat(lookup(new HttpHeaders()).getStatus()).isEqualTo(LookupStatus.HIT);
+		assertThat(this.cache.lookup(HttpMethod.GET, HOTEL_URI, new HttpHeaders(), false).getStatus())
+				.isEqualTo(LookupStatus.MISS);
+
+		lookup.complete();
+		assertThat(lookup(new HttpHeaders()).getStatus()).isEqualTo(LookupStatus.HIT_AND_REVALIDATE);
+
+		advance(Duration.ofSeconds(90));
+		assertThat(lookup(new HttpHeaders()).getStatus()).isEqualTo(LookupStatus.MISS);
+	}
+
+	@Test
+	void mustRevalidate() {
+		HttpHeaders headers = headers("max-age=60, must-revalidate, stale-while-revalidate=30");
+		headers.setETag("\"v1\"");
+		store(HttpMethod.GET, new HttpHeaders(), 200, headers, "body");
+
+		advance(Duration.ofSeconds(70));
+		assertThat(lookup(new HttpHeaders()).getStatus()).isEqualTo(LookupStatus.REVALIDATE);
+	}
+
+	@Test
+	void expires() {
+		HttpHeaders headers = new HttpHeaders();
+		headers.setDate(NOW.toEpochMilli());
+		headers.setExpires(NOW.plusSeconds(60).toEpochMilli());
+		store(HttpMethod.GET, new HttpHeaders(), 200, headers, "body");
+
+		advance(Duration.ofSeconds(59));
+		assertThat(lookup(new HttpHeaders()).getStatus()).isEqualTo(LookupStatus.HIT);
+		advance(Duration.ofSeconds(60));
+		assertThat(lookup(new HttpHeaders()).getStatus()).isEqualTo(LookupStatus.MISS);
+	}
+
+	@Test
+	void requestDirectives() {
+		HttpHeaders headers = headers("max-age=60");
+		headers.setETag("\"v1\"");
+		store(HttpMethod.GET, new HttpHeaders(), 200, headers, "body");
+
+		advance(Duration.ofSeconds(30));
+		assertThat(lookup(headers("no-cache")).getStatus()).isEqualTo(LookupStatus.REVALIDATE);
+		assertThat(lookup(headers("max-age=10")).getStatus()).isEqualTo(LookupStatus.REVALIDATE);
+		assertThat(lookup(headers("max-age=40")).getStatus()).isEqualTo(LookupStatus.HIT);
+		assertThat(lookup(headers("no-store")).getStatus()).isEqualTo(LookupStatus.BYPASS);
+
+		HttpHeaders conditional = new HttpHeaders();
+		conditional.setIfNoneMatch("\"v0\"");
+		assertThat(lookup(conditional).getStatus()).isEqualTo(LookupStatus.BYPASS);
+	}
+
+	@Test
+	void notStorable() {
+		assertThat(store(HttpMethod.GET, new HttpHeaders(), 200, headers("no-store, max-age=60"), "body")).isFalse();
+		assertThat(store(HttpMethod.GET, new HttpHeaders(), 200, headers("private, max-age=60"), "body")).isFalse();
+		assertThat(store(HttpMethod.GET, new HttpHeaders(), 200, new HttpHeaders(), "body")).isFalse();
+		assertThat(store(HttpMethod.GET, new HttpHeaders(), 206, headers("max-age=60"), "body")).isFalse();
+		assertThat(store(HttpMethod.POST, new HttpHeaders(), 200, headers("max-age=60"), "body")).isFalse();
+
+		HttpHeaders headers = headers("max-age=60");
+		headers.setVary(Collections.singletonList("*"));
+		assertThat(store(HttpMethod.GET, new HttpHeaders(), 200, headers, "body")).isFalse();
+
+		HttpHeaders requestHeaders = new HttpHeaders();
+		requestHeaders.setBearerAuth("token");
+		assertThat(store(HttpMethod.GET, requestHeaders, 200, headers("max-age=60"), "body")).isFalse();
+		assertThat(store(HttpMethod.GET, requestHeaders, 200, headers("public, max-age=60"), "body")).isTrue();
+	}
+
+	@Test
+	void maxBodySize() {
+		this.cache.setMaxBodySize(3);
+		store(HttpMethod.GET, new HttpHeaders(), 200, headers("max-age=60"), "body");
+		assertThat(lookup(new HttpHeaders()).getStatus()).isEqualTo(LookupStatus.MISS);
+
+		HttpHeaders headers = headers("max-age=60");
+		headers.setContentLength(4);
+		assertThat(store(HttpMethod.GET, new HttpHeaders(), 200, headers, "body")).isFalse();
+	}
+
+	@Test
+	void varyHeaders() {
+		HttpHeaders requestHeaders = new HttpHeaders();
+		requestHeaders.set(HttpHeaders.ACCEPT_LANGUAGE, "en");
+		HttpHeaders headers = headers("max-age=60");
+		headers.setVary(Collections.singletonList(HttpHeaders.ACCEPT_LANGUAGE));
+		store(HttpMethod.GET, requestHeaders, 200, headers, "body");
+
+		assertThat(lookup(requestHeaders).getStatus()).isEqualTo(LookupStatus.HIT);
+		assertThat(lookup(new HttpHeaders()).getStatus()).isEqualTo(LookupStatus.MISS);
+		requestHeaders.set(HttpHeaders.ACCEPT_LANGUAGE, "fr");
+		assertThat(lookup(requestHeaders).getStatus()).isEqualTo(LookupStatus.MISS);
+	}
+
+	@Test
+	void unsafeMethodInvalidates() {
+		store(HttpMethod.GET, new HttpHeaders(), 200, headers("max-age=60"), "body");
+
+		Lookup lookup = this.cache.lookup(HttpMethod.DELETE, HOTEL_URI, new HttpHeaders(), false);
+		assertThat(lookup.getStatus()).isEqualTo(LookupStatus.BYPASS);
+		lookup.responseReceived(500, new HttpHeaders());
+		assertThat(lookup(new HttpHeaders()).getStatus()).isEqualTo(LookupStatus.HIT);
+
+		lookup = this.cache.lookup(HttpMethod.DELETE, HOTEL_URI, new HttpHeaders(), false);
+		lookup.responseReceived(204, new HttpHeaders());
+		assertThat(lookup(new HttpHeaders()).getStatus()).isEqualTo(LookupStatus.MISS);
+	}
+
+	@Test
+	void springCacheStore() {
+		ConcurrentMapCacheManager cacheManager = new ConcurrentMapCacheManager("responses");
+		// Store by value, to serialize responses
+		cacheManager.setStoreByValue(true);
+		HttpResponseCache cache = new HttpResponseCache(
+				new SpringCacheHttpResponseCacheStore(cacheManager.getCache("responses")));
+		cache.setClock(Clock.fixed(NOW, ZoneOffset.UTC));
+
+		Lookup lookup = cache.lookup(HttpMethod.GET, HOTEL_URI, new HttpHeaders(), false);
+		lookup.responseReceived(200, headers("max-age=60"));
+		lookup.store(bytes("body"));
+
+		lookup = cache.lookup(HttpMethod.GET, HOTEL_URI, new HttpHeaders(), false);
+		assertThat(lookup.getStatus()).isEqualTo(LookupStatus.HIT);
+		assertThat(lookup.getCachedResponse().getBody()).isEqualTo(bytes("body"));
+		assertThat(lookup.getCachedResponse().getHeaders().getCacheControl()).isEqualTo("max-age=60");
+	}
+
+
+	private boolean store(HttpMethod method, HttpHeaders requestHeaders, int status, HttpHeaders headers, String body) {
+		Lookup lookup = this.cache.lookup(method, HOTEL_URI, requestHeaders, false);
+		assertThat(lookup.responseReceived(status, headers)).isNull();
+		if (lookup.isStorable()) {
+			lookup.store(bytes(body));
+		}
+		return lookup.isStorable();
+	}
+
+	private Lookup lookup(HttpHeaders requestHeaders) {
+		return this.cache.lookup(HttpMethod.GET, HOTEL_URI, requestHeaders, true);
+	}
+
+	private void advance(Duration duration) {
+		this.cache.setClock(Clock.fixed(NOW.plus(duration), ZoneOffset.UTC));
+	}
+
+	private static HttpHeaders headers(String cacheControl) {
+		HttpHeaders headers = new HttpHeaders();
+		headers.setCacheControl(cacheControl);
+		return headers;
+	}
+
+	private static byte[] bytes(String value) {
+		return value.getBytes(StandardCharsets.UTF_8);
+	}
+
+}
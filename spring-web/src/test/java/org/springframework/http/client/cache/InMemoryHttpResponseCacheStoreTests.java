@@ -0,0 +1,84 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.http.client.cache;
+
+import org.junit.jupiter.api.Test;
+
+import org.springframework.http.HttpHeaders;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for {@link InMemoryHttpResponseCacheStore}.
+ *
+ * @author Arjen Poutsma
+ */
+class InMemoryHttpResponseCacheStoreTests {
+
+	@Test
+	void evictLeastRecentlyUsed() {
+		long size = response(100).getSize();
+		InMemoryHttpResponseCacheStore store = new InMemoryHttpResponseCacheStore(3 * size);
+
+		store.put("a", response(100));
+		store.put("b", response(100));
+		store.put("c", response(100));
+		assertThat(store.getMemoryUsage()).isEqualTo(3 * size);
+
+		store.get("a");
+		store.put("d", response(100));
+		assertThat(store.get("a")).isNotNull();
+		assertThat(store.get("b")).isNull();
+		assertThat(store.get("c")).isNotNull();
+		assertThat(store.get("d")).isNotNull();
+
+		store.put("e", response(150));
+		assertThat(store.size()).isEqualTo(2);
+		assertThat(store.getMemoryUsage()).isLessThanOrEqualTo(3 * size);
+	}
+
+	@Test
+	void replaceAndRemove() {
+		InMemoryHttpResponseCacheStore store = new InMemoryHttpResponseCacheStore(10_000);
+
+		store.put("a", response(100));
+		store.put("a", response(200));
+		assertThat(store.size()).isEqualTo(1);
+		assertThat(store.getMemoryUsage()).isEqualTo(response(200).getSize());
+
+		store.remove("a");
+		assertThat(store.size()).isEqualTo(0);
+		assertThat(store.getMemoryUsage()).isEqualTo(0);
+	}
+
+	@Test
+	void responseLargerThanMaxMemoryUsage() {
+		InMemoryHttpResponseCacheStore store = new InMemoryHttpResponseCacheStore(100);
+
+		store.put("a", response(200));
+		assertThat(store.get("a")).isNull();
+		assertThat(store.getMemoryUsage()).isEqualTo(0);
+	}
+
+
+	private static CachedHttpResponse response(int bodySize) {
+		HttpHeaders headers = new HttpHeaders();
+		headers.setCacheControl("max-age=60");
+		return new CachedHttpResponse(200, headers, new byte[bodySize], new HttpHeaders(), 0, 0);
+	}
+
+}
@@ -23,6 +23,7 @@ import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 import java.net.URI;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.EnumSet;
@@ -37,12 +38,16 @@ import okhttp3.mockwebserver.RecordedRequest;
 import okio.Buffer;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
 import reactor.test.StepVerifier;
+import reactor.util.context.Context;
 
 import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.core.io.buffer.DataBufferUtils;
@@ -171,6 +176,67 @@ public class ClientHttpConnectorTests {
 				.verify();
 	}
 
+	@ParameterizedTest
+	@MethodSource("org.springframework.http.client.reactive.ClientHttpConnectorTests#connectionListenerConnectors")
+	void connectionListener(ClientHttpConnector connector) {
+		prepareResponse(response -> response.setResponseCode(200));
+		List<Duration> acquireTimes = new ArrayList<>();
+
+		Mono<ClientHttpResponse> futureResponse = connector
+				.connect(HttpMethod.GET, this.server.url("/").uri(), ReactiveHttpOutputMessage::setComplete)
+				.contextWrite(Context.of(ClientHttpConnectionListener.class,
+						(ClientHttpConnectionListener) acquireTimes::add));
+
+		StepVerifier.create(futureResponse)
+				.assertNext(response -> assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK))
+				.verifyComplete();
+		assertThat(acquireTimes).hasSize(1);
+		assertThat(acquireTimes.get(0)).isGreaterThanOrEqualTo(Duration.ZERO);
+	}
+
+	@Test
+	void jettyConnectionPoolStats() throws Exception {
+		JettyClientHttpConnector connector = new JettyClientHttpConnector();
+		prepareResponse(response -> response.setResponseCode(200));
+		URI uri = this.server.url("/").uri();
+
+		ClientHttpResponse response = connector.connect(HttpMethod.GET, uri, ReactiveHttpOutputMessage::setComplete)
+				.block();
+		assertThat(response).isNotNull();
+		response.getBody().map(DataBufferUtils::release).blockLast();
+
+		List<ConnectionPoolStats> stats = connector.getConnectionPoolStats();
+		assertThat(stats).hasSize(1);
+		assertThat(stats.get(0).getName()).isEqualTo("http://" + uri.getHost() + ":" + uri.getPort());
+		assertThat(stats.get(0).getActiveConnections() + stats.get(0).getIdleConnections()).isEqualTo(1);
+		assertThat(stats.get(0).getPendingAcquires()).isEqualTo(0);
+		assertThat(stats.get(0).getMaxConnections()).isGreaterThan(0);
+	}
+
+	@Test
+	void reactorConnectionPoolStats() {
+		ReactorConnectionPoolStatsRegistrar registrar = new ReactorConnectionPoolStatsRegistrar();
+		ConnectionProvider provider = ConnectionProvider.builder("test").metrics(true, () -> registrar).build();
+		try {
+			ReactorClientHttpConnector connector = new ReactorClientHttpConnector(HttpClient.create(provider));
+			prepareResponse(response -> response.setResponseCode(200));
+
+			ClientHttpResponse response = connector
+					.connect(HttpMethod.GET, this.server.url("/").uri(), ReactiveHttpOutputMessage::setComplete)
+					.block();
+			assertThat(response).isNotNull();
+
+			List<ConnectionPoolStats> stats = registrar.getConnectionPoolStats();
+			assertThat(stats).hasSize(1);
+			assertThat(stats.get(0).getName()).startsWith("test ");
+			assertThat(stats.get(0).getActiveConnections()).isEqualTo(1);
+			response.getBody().map(DataBufferUtils::release).blockLast();
+		}
+		finally {
+			provider.disposeLater().block();
+		}
+	}
+
 	@NonNull
 	private Buffer randomBody(int size) {
 		Buffer responseBody = new Buffer();
@@ -215,6 +281,13 @@ public class ClientHttpConnectorTests {
 		);
 	}
 
+	static List<ClientHttpConnector> connectionListenerConnectors() {
+		return Arrays.asList(
+				new ReactorClientHttpConnector(),
+				new JettyClientHttpConnector()
+		);
+	}
+
 	static List<Arguments> methodsWithConnectors() {
 		List<Arguments> result = new ArrayList<>();
 		for (ClientHttpConnector connector : connectors()) {
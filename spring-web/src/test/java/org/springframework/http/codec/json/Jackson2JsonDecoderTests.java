@@ -41,6 +41,7 @@ import org.springframework.core.ResolvableType;
 import org.springframework.core.codec.CodecException;
 import org.springframework.core.codec.DecodingException;
 import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferLimitException;
 import org.springframework.core.testfixture.codec.AbstractDecoderTests;
 import org.springframework.http.MediaType;
 import org.springframework.http.codec.json.JacksonViewBean.MyJacksonView1;
@@ -244,6 +245,43 @@ public class Jackson2JsonDecoderTests extends AbstractDecoderTests<Jackson2JsonD
 		);
 	}
 
+	@Test
+	public void decodeFromBytes() {
+		this.decoder.setDecodeFromBytes(true);
+		Flux<DataBuffer> input = Flux.concat(
+				stringBuffer("[{\"bar\":\"b1\",\"foo\":\"f1\"},{\"bar\":"),
+				stringBuffer("\"b2\",\"foo\":\"f2\"}]"));
+
+		testDecodeAll(input, Pojo.class, step -> step
+				.expectNext(pojo1)
+				.expectNext(pojo2)
+				.verifyComplete());
+	}
+
+	@Test
+	public void decodeFromBytesWithLimit() {
+		this.decoder.setDecodeFromBytes(true);
+		this.decoder.setMaxInMemorySize(30);
+		Flux<DataBuffer> input = Flux.concat(
+				stringBuffer("[{\"bar\":\"b1\",\"foo\":\"f1\"},"),
+				stringBuffer("{\"bar\":\"b2\",\"foo\":\"f2-exceeding-the-limit\"}]"));
+
+		testDecode(input, Pojo.class, step -> step
+				.expectNext(pojo1)
+				.verifyError(DataBufferLimitException.class));
+	}
+
+	@Test
+	public void bigDecimalFluxFromBytes() {
+		this.decoder.setDecodeFromBytes(true);
+		Flux<DataBuffer> input = stringBuffer("[ 1E+2 ]").flux();
+
+		testDecode(input, BigDecimal.class, step -> step
+				.expectNext(new BigDecimal("1E+2"))
+				.verifyComplete()
+		);
+	}
+
 	@Test
 	@SuppressWarnings("unchecked")
 	public void decodeNonUtf8Encoding() {
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2020 the original author or authors.
+ * Copyright 2002-2021 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -21,6 +21,7 @@ import java.time.Duration;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Map;
+import java.util.function.Consumer;
 
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
 import com.fasterxml.jackson.annotation.JsonTypeName;
@@ -32,6 +33,7 @@ import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
 import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.EncodingException;
 import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.core.io.buffer.DataBufferUtils;
 import org.springframework.core.testfixture.codec.AbstractEncoderTests;
@@ -146,6 +148,30 @@ public class Jackson2JsonEncoderTests extends AbstractEncoderTests<Jackson2JsonE
 				.verifyComplete());
 	}
 
+	@Test
+	public void encodeValueLargerThanBufferSizeEstimate() {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < 10000; i++) {
+			builder.append('a');
+		}
+		Pojo small = new Pojo("foo", "bar");
+		Pojo large = new Pojo(builder.toString(), "bar");
+		ResolvableType type = ResolvableType.forClass(Pojo.class);
+
+		for (Pojo pojo : Arrays.asList(small, large, small, large)) {
+			DataBuffer buffer = this.encoder.encodeValue(pojo, this.bufferFactory, type, APPLICATION_JSON, null);
+			expectString("{\"foo\":\"" + pojo.getFoo() + "\",\"bar\":\"bar\"}").accept(buffer);
+			DataBufferUtils.release(buffer);
+		}
+	}
+
+	@Test
+	public void encodeValueErrorReleasesBuffer() {
+		ResolvableType type = ResolvableType.forClass(Broken.class);
+		assertThatExceptionOfType(EncodingException.class).isThrownBy(() ->
+				this.encoder.encodeValue(new Broken(), this.bufferFactory, type, APPLICATION_JSON, null));
+	}
+
 	@Test
 	public void encodeWithType() {
 		Flux<ParentClass> input = Flux.just(new Foo(), new Bar());
@@ -179,6 +205,27 @@ public class Jackson2JsonEncoderTests extends AbstractEncoderTests<Jackson2JsonE
 				barMediaType, null);
 	}
 
+	@Test
+	public void encodeAsStreamWithPrettyPrint() {
+		ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+		Jackson2JsonEncoder encoder = new Jackson2JsonEncoder(mapper);
+		Flux<Pojo> input = Flux.just(new Pojo("foo", "bar"), new Pojo("foofoo", "barbar"));
+
+		StepVerifier.create(encoder.encode(input, this.bufferFactory, ResolvableType.forClass(Pojo.class),
+						APPLICATION_NDJSON, null))
+				.consumeNextWith(expectPrettyPrinted("foo"))
+				.consumeNextWith(expectPrettyPrinted("foofoo"))
+				.verifyComplete();
+	}
+
+	private static Consumer<DataBuffer> expectPrettyPrinted(String foo) {
+		return buffer -> {
+			String value = buffer.toString(StandardCharsets.UTF_8);
+			DataBufferUtils.release(buffer);
+			assertThat(value).startsWith("{").contains("\"foo\" : \"" + foo + "\"").endsWith("}\n");
+		};
+	}
+
 	@Test
 	public void fieldLevelJsonView() {
 		JacksonViewBean bean = new JacksonViewBean();
@@ -273,4 +320,11 @@ public class Jackson2JsonEncoderTests extends AbstractEncoderTests<Jackson2JsonE
 	private static class Bar extends ParentClass {
 	}
 
+	private static class Broken {
+
+		public String getName() {
+			throw new IllegalStateException("Broken");
+		}
+	}
+
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2020 the original author or authors.
+ * Copyright 2002-2021 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -18,6 +18,7 @@ package org.springframework.http.codec.json;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
 
@@ -235,7 +236,12 @@ public class Jackson2TokenizerTests extends AbstractLeakCheckingTests {
 	}
 
 	private void testTokenize(List<String> input, List<String> output, boolean tokenize) {
-		StepVerifier.FirstStep<String> builder = StepVerifier.create(decode(input, tokenize, -1));
+		testTokenize(decode(input, tokenize, -1), output);
+		testTokenize(decodeFromBytes(input, tokenize, -1), output);
+	}
+
+	private void testTokenize(Flux<String> result, List<String> output) {
+		StepVerifier.FirstStep<String> builder = StepVerifier.create(result);
 		output.forEach(expected -> builder.assertNext(actual -> {
 			try {
 				JSONAssert.assertEquals(expected, actual, true);
@@ -294,6 +300,70 @@ public class Jackson2TokenizerTests extends AbstractLeakCheckingTests {
 				.verifyError(DataBufferLimitException.class);
 	}
 
+	@Test
+	public void testLimitFromBytes() {
+		List<String> source = asList(
+				"[",
+				"{", "\"id\":1,\"name\":\"Dan\"", "},",
+				"{", "\"id\":2,\"name\":\"Ron\"", "},",
+				"{", "\"id\":3,\"name\":\"Bartholomew\"", "}",
+				"]"
+		);
+
+		String expected = "{\"id\":3,\"name\":\"Bartholomew\"}";
+		int maxInMemorySize = expected.length();
+
+		StepVerifier.create(decodeFromBytes(source, true, maxInMemorySize))
+				.expectNext("{\"id\":1,\"name\":\"Dan\"}")
+				.expectNext("{\"id\":2,\"name\":\"Ron\"}")
+				.expectNext(expected)
+				.verifyComplete();
+
+		StepVerifier.create(decodeFromBytes(source, true, maxInMemorySize - 1))
+				.expectNext("{\"id\":1,\"name\":\"Dan\"}")
+				.expectNext("{\"id\":2,\"name\":\"Ron\"}")
+				.verifyError(DataBufferLimitException.class);
+	}
+
+	@Test
+	public void testLimitFromBytesInSingleBuffer() {
+		List<String> source = singletonList("[{\"id\":1},{\"id\":2,\"name\":\"Bartholomew\"}]");
+
+		// Limit applies per JSON object, even if the input buffer is larger
+		StepVerifier.create(decodeFromBytes(source, true, 30))
+				.expectNext("{\"id\":1}")
+				.expectNext("{\"id\":2,\"name\":\"Bartholomew\"}")
+				.verifyComplete();
+
+		StepVerifier.create(decodeFromBytes(source, true, 10))
+				.verifyError(DataBufferLimitException.class);
+	}
+
+	@Test
+	public void unexpectedEndOfInputFromBytes() {
+		StepVerifier.create(decodeFromBytes(singletonList("{\"status\": \"noClosingQuote}"), false, -1))
+				.expectError(DecodingException.class)
+				.verify();
+
+		StepVerifier.create(decodeFromBytes(asList("[{\"id\":1},", "{\"id\":2}"), true, -1))
+				.expectNext("{\"id\":1}")
+				.expectNext("{\"id\":2}")
+				.expectError(DecodingException.class)
+				.verify();
+	}
+
+	@Test
+	public void bracketsInStringsFromBytes() {
+		testTokenize(
+				decodeFromBytes(asList("[{\"a\":\"x\\\"]}\"},", "\"b\\\\\",\"c]\"]"), true, -1),
+				asList("{\"a\":\"x\\\"]}\"}", "\"b\\\\\"", "\"c]\""));
+	}
+
+	@Test
+	public void nestedArraysFromBytes() {
+		testTokenize(decodeFromBytes(asList("[[1,2],", "[3],[]]"), true, -1), asList("[1,2]", "[3]", "[]"));
+	}
+
 	@Test
 	public void errorInStream() {
 		DataBuffer buffer = stringBuffer("{\"id\":1,\"name\":");
@@ -363,6 +433,24 @@ public class Jackson2TokenizerTests extends AbstractLeakCheckingTests {
 				});
 	}
 
+	private Flux<String> decodeFromBytes(List<String> source, boolean tokenize, int maxInMemorySize) {
+
+		Flux<ByteBuffer> values = Jackson2Tokenizer.splitValues(
+				Flux.fromIterable(source).map(this::stringBuffer), tokenize, maxInMemorySize);
+
+		return values
+				.map(buffer -> {
+					try {
+						TreeNode root = this.objectMapper.readTree(
+								buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+						return this.objectMapper.writeValueAsString(root);
+					}
+					catch (IOException ex) {
+						throw new UncheckedIOException(ex);
+					}
+				});
+	}
+
 	private DataBuffer stringBuffer(String value) {
 		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
 		DataBuffer buffer = this.bufferFactory.allocateBuffer(bytes.length);
@@ -24,12 +24,14 @@ import java.lang.annotation.Target;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Stream;
 
 import io.netty.buffer.PooledByteBufAllocator;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
@@ -234,6 +236,75 @@ public class DefaultPartHttpMessageReaderTests  {
 		latch.await();
 	}
 
+	@Test
+	public void offHeapPartExceedingLimitStoredInFile() throws InterruptedException {
+		DefaultPartHttpMessageReader reader = new DefaultPartHttpMessageReader();
+		reader.setMaxInMemorySize(20);
+		reader.setMaxOffHeapMemoryUsage(1024 * 1024);
+		reader.setMaxOffHeapSizePerPart(64);
+
+		testBrowser(reader, new ClassPathResource("safari.multipart", getClass()),
+				"----WebKitFormBoundaryG8fJ50opQOML0oGD");
+	}
+
+	@Test
+	public void transferToMovesFile(@TempDir Path tempDir) throws Exception {
+		DefaultPartHttpMessageReader reader = new DefaultPartHttpMessageReader();
+		reader.setMaxInMemorySize(20);
+		reader.setFileStorageDirectory(tempDir.resolve("storage"));
+
+		MockServerHttpRequest request = createRequest(
+				new ClassPathResource("safari.multipart", getClass()), "----WebKitFormBoundaryG8fJ50opQOML0oGD");
+		List<FilePart> fileParts = reader.read(forClass(Part.class), request, emptyMap())
+				.filter(FilePart.class::isInstance)
+				.cast(FilePart.class)
+				.collectList()
+				.block();
+		assertThat(fileParts).hasSize(3);
+		assertThat(storedFileCount(tempDir.resolve("storage"))).isEqualTo(3);
+
+		FilePart filePart = fileParts.get(0);
+		Path dest = tempDir.resolve("dest");
+		filePart.transferTo(dest).block();
+		verifyContents(dest, LOREM_IPSUM);
+
+		// The temporary file was moved, and the content is read from its new location
+		assertThat(storedFileCount(tempDir.resolve("storage"))).isEqualTo(2);
+		String content = DataBufferUtils.join(filePart.content())
+				.map(buffer -> {
+					String result = buffer.toString(UTF_8);
+					release(buffer);
+					return result;
+				})
+				.block();
+		assertThat(content).isEqualTo(new String(Files.readAllBytes(dest), UTF_8));
+
+		// Later transfers copy the moved file
+		Path copy = tempDir.resolve("copy");
+		filePart.transferTo(copy).block();
+		verifyContents(copy, LOREM_IPSUM);
+		verifyContents(dest, LOREM_IPSUM);
+	}
+
+	@Test
+	public void transferToReplacesExistingFile(@TempDir Path tempDir) throws Exception {
+		DefaultPartHttpMessageReader reader = new DefaultPartHttpMessageReader();
+		reader.setMaxInMemorySize(20);
+		reader.setFileStorageDirectory(tempDir.resolve("storage"));
+
+		MockServerHttpRequest request = createRequest(
+				new ClassPathResource("safari.multipart", getClass()), "----WebKitFormBoundaryG8fJ50opQOML0oGD");
+		FilePart filePart = reader.read(forClass(Part.class), request, emptyMap())
+				.filter(FilePart.class::isInstance)
+				.cast(FilePart.class)
+				.blockFirst();
+		assertThat(filePart).isNotNull();
+
+		Path dest = Files.write(tempDir.resolve("dest"), new byte[8192]);
+		filePart.transferTo(dest).block();
+		verifyContents(dest, LOREM_IPSUM);
+	}
+
 	@ParameterizedDefaultPartHttpMessageReaderTest
 	public void quotedBoundary(String displayName, DefaultPartHttpMessageReader reader) throws InterruptedException {
 		MockServerHttpRequest request = createRequest(
@@ -355,6 +426,12 @@ public class DefaultPartHttpMessageReaderTests  {
 		}
 	}
 
+	private static long storedFileCount(Path directory) throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			return files.count();
+		}
+	}
+
 	private static void verifyContents(Path tempFile, String contents) {
 		try {
 			String result = String.join("", Files.readAllLines(tempFile));
@@ -400,10 +477,16 @@ public class DefaultPartHttpMessageReaderTests  {
 		onDisk.setStreaming(false);
 		onDisk.setMaxInMemorySize(100);
 
+		DefaultPartHttpMessageReader offHeap = new DefaultPartHttpMessageReader();
+		offHeap.setStreaming(false);
+		offHeap.setMaxInMemorySize(100);
+		offHeap.setMaxOffHeapMemoryUsage(1024 * 1024);
+
 		return Stream.of(
 				arguments("streaming", streaming),
 				arguments("in-memory", inMemory),
-				arguments("on-disk", onDisk)
+				arguments("on-disk", onDisk),
+				arguments("off-heap", offHeap)
 				);
 	}
 
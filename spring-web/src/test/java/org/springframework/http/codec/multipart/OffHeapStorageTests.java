@@ -0,0 +1,122 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.http.codec.multipart;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for {@link OffHeapStorage}.
+ *
+ * @author Arjen Poutsma
+ */
+class OffHeapStorageTests {
+
+	private static final int SEGMENT_SIZE = OffHeapStorage.SEGMENT_SIZE;
+
+
+	@Test
+	void writeAcrossSegments() {
+		OffHeapStorage storage = new OffHeapStorage(4 * SEGMENT_SIZE, -1);
+		OffHeapStorage.Content content = storage.createContent();
+
+		byte[] first = bytes(SEGMENT_SIZE - 10, (byte) 'a');
+		byte[] second = bytes(SEGMENT_SIZE + 20, (byte) 'b');
+		DataBuffer firstBuffer = DefaultDataBufferFactory.sharedInstance.wrap(first);
+		assertThat(content.write(firstBuffer)).isTrue();
+		assertThat(content.write(DefaultDataBufferFactory.sharedInstance.wrap(second))).isTrue();
+		assertThat(firstBuffer.readableByteCount()).isEqualTo(first.length);
+		assertThat(content.byteCount()).isEqualTo(first.length + second.length);
+		assertThat(storage.getMemoryUsage()).isEqualTo(3 * SEGMENT_SIZE);
+
+		byte[] expected = new byte[first.length + second.length];
+		System.arraycopy(first, 0, expected, 0, first.length);
+		System.arraycopy(second, 0, expected, first.length, second.length);
+
+		// Content can be read repeatedly
+		for (int i = 0; i < 2; i++) {
+			Mono<byte[]> result = DataBufferUtils.join(content.toFlux()).map(buffer -> {
+				byte[] bytes = new byte[buffer.readableByteCount()];
+				buffer.read(bytes);
+				return bytes;
+			});
+			StepVerifier.create(result)
+					.consumeNextWith(bytes -> assertThat(bytes).isEqualTo(expected))
+					.verifyComplete();
+		}
+	}
+
+	@Test
+	void writeExceedingMemoryUsage() {
+		OffHeapStorage storage = new OffHeapStorage(SEGMENT_SIZE, -1);
+		OffHeapStorage.Content content = storage.createContent();
+
+		assertThat(content.write(DefaultDataBufferFactory.sharedInstance.wrap(bytes(SEGMENT_SIZE, (byte) 'a')))).isTrue();
+		assertThat(content.write(DefaultDataBufferFactory.sharedInstance.wrap(bytes(1, (byte) 'b')))).isFalse();
+		assertThat(storage.createContent().write(DefaultDataBufferFactory.sharedInstance.wrap(bytes(1, (byte) 'c'))))
+				.isFalse();
+		assertThat(content.byteCount()).isEqualTo(SEGMENT_SIZE);
+	}
+
+	@Test
+	void writeExceedingSizePerPart() {
+		OffHeapStorage storage = new OffHeapStorage(4 * SEGMENT_SIZE, 100);
+		OffHeapStorage.Content content = storage.createContent();
+
+		assertThat(content.write(DefaultDataBufferFactory.sharedInstance.wrap(bytes(60, (byte) 'a')))).isTrue();
+		assertThat(content.write(DefaultDataBufferFactory.sharedInstance.wrap(bytes(60, (byte) 'b')))).isFalse();
+		assertThat(content.byteCount()).isEqualTo(60);
+		assertThat(content.toDataBuffers()).hasSize(1);
+
+		// Other parts are not affected
+		assertThat(storage.createContent().write(DefaultDataBufferFactory.sharedInstance.wrap(bytes(60, (byte) 'c'))))
+				.isTrue();
+	}
+
+	@Test
+	void releaseReturnsMemoryRightAway() {
+		OffHeapStorage storage = new OffHeapStorage(2 * SEGMENT_SIZE, -1);
+		OffHeapStorage.Content content = storage.createContent();
+
+		assertThat(content.write(DefaultDataBufferFactory.sharedInstance.wrap(bytes(SEGMENT_SIZE + 1, (byte) 'a')))).isTrue();
+		assertThat(content.write(DefaultDataBufferFactory.sharedInstance.wrap(bytes(SEGMENT_SIZE, (byte) 'b')))).isFalse();
+		assertThat(storage.getMemoryUsage()).isEqualTo(2 * SEGMENT_SIZE);
+
+		content.release();
+		assertThat(storage.getMemoryUsage()).isEqualTo(0);
+		assertThat(content.byteCount()).isEqualTo(0);
+		assertThat(storage.createContent().write(DefaultDataBufferFactory.sharedInstance.wrap(bytes(2 * SEGMENT_SIZE, (byte) 'c'))))
+				.isTrue();
+	}
+
+
+	private static byte[] bytes(int length, byte value) {
+		byte[] result = new byte[length];
+		Arrays.fill(result, value);
+		return result;
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2019 the original author or authors.
+ * Copyright 2002-2021 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -21,12 +21,15 @@ import java.io.UncheckedIOException;
 import java.util.function.Consumer;
 
 import com.google.protobuf.Message;
+import io.netty.buffer.UnpooledByteBufAllocator;
 import org.junit.jupiter.api.Test;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
 
 import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
 import org.springframework.core.testfixture.codec.AbstractEncoderTests;
 import org.springframework.http.MediaType;
 import org.springframework.protobuf.Msg;
@@ -97,6 +100,25 @@ public class ProtobufEncoderTests extends AbstractEncoderTests<ProtobufEncoder>
 				.verifyComplete());
 	}
 
+	@Test
+	public void encodeIntoDirectBuffers() throws IOException {
+		NettyDataBufferFactory bufferFactory = new NettyDataBufferFactory(new UnpooledByteBufAllocator(true));
+
+		DataBuffer buffer = this.encoder.encodeValue(this.msg1, bufferFactory, forClass(Msg.class), null, null);
+		try {
+			assertThat(buffer.readableByteCount()).isEqualTo(this.msg1.getSerializedSize());
+			assertThat(Msg.parseFrom(buffer.asInputStream())).isEqualTo(this.msg1);
+		}
+		finally {
+			DataBufferUtils.release(buffer);
+		}
+
+		StepVerifier.create(this.encoder.encode(Flux.just(this.msg1, this.msg2), bufferFactory, forClass(Msg.class), null, null))
+				.consumeNextWith(expect(this.msg1))
+				.consumeNextWith(expect(this.msg2))
+				.verifyComplete();
+	}
+
 	protected final Consumer<DataBuffer> expect(Msg msg) {
 		return dataBuffer -> {
 			try {
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2020 the original author or authors.
+ * Copyright 2002-2021 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -21,14 +21,17 @@ import java.lang.reflect.Type;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import com.fasterxml.jackson.annotation.JsonFilter;
 import com.fasterxml.jackson.annotation.JsonView;
+import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.ser.FilterProvider;
 import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
 import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
@@ -529,6 +532,72 @@ public class MappingJackson2HttpMessageConverterTests {
 		assertThat(outputMessage.getHeaders().getContentType()).as("Invalid content-type").isEqualTo(contentType);
 	}
 
+	@Test
+	public void writeWithContentLengthThreshold() throws Exception {
+		MockHttpOutputMessage outputMessage = new MockHttpOutputMessage();
+		this.converter.setContentLengthThreshold(1024);
+		this.converter.write(Collections.singletonMap("foo", "bar"), MediaType.APPLICATION_JSON, outputMessage);
+
+		assertThat(outputMessage.getBodyAsString(StandardCharsets.UTF_8)).isEqualTo("{\"foo\":\"bar\"}");
+		assertThat(outputMessage.getHeaders().getContentLength()).isEqualTo(13);
+	}
+
+	@Test
+	public void writeLargeValueWithContentLengthThreshold() throws Exception {
+		MockHttpOutputMessage outputMessage = new MockHttpOutputMessage();
+		this.converter.setContentLengthThreshold(4096);
+		String value = String.join("", Collections.nCopies(1000, "a"));
+		this.converter.write(Collections.singletonMap("foo", value), MediaType.APPLICATION_JSON, outputMessage);
+
+		assertThat(outputMessage.getBodyAsString(StandardCharsets.UTF_8)).isEqualTo("{\"foo\":\"" + value + "\"}");
+		assertThat(outputMessage.getHeaders().getContentLength()).isEqualTo(1010);
+	}
+
+	@Test
+	public void writeAboveContentLengthThreshold() throws Exception {
+		MockHttpOutputMessage outputMessage = new MockHttpOutputMessage();
+		this.converter.setContentLengthThreshold(8);
+		this.converter.write(Collections.singletonMap("foo", "bar"), MediaType.APPLICATION_JSON, outputMessage);
+
+		assertThat(outputMessage.getBodyAsString(StandardCharsets.UTF_8)).isEqualTo("{\"foo\":\"bar\"}");
+		assertThat(outputMessage.getHeaders().getContentLength()).isEqualTo(-1);
+	}
+
+	@Test
+	public void prettyPrintChangedAfterWrite() throws Exception {
+		PrettyPrintBean bean = new PrettyPrintBean();
+		bean.setName("Jason");
+
+		MockHttpOutputMessage outputMessage = new MockHttpOutputMessage();
+		this.converter.writeInternal(bean, null, outputMessage);
+		assertThat(outputMessage.getBodyAsString(StandardCharsets.UTF_8)).isEqualTo("{\"name\":\"Jason\"}");
+
+		outputMessage = new MockHttpOutputMessage();
+		this.converter.setPrettyPrint(true);
+		this.converter.writeInternal(bean, null, outputMessage);
+		assertThat(outputMessage.getBodyAsString(StandardCharsets.UTF_8)).isEqualTo(("{" + NEWLINE_SYSTEM_PROPERTY +
+				"  \"name\" : \"Jason\"" + NEWLINE_SYSTEM_PROPERTY + "}"));
+	}
+
+	@Test
+	public void objectMapperReconfiguredAfterUse() throws Exception {
+		PrettyPrintBean bean = new PrettyPrintBean();
+		bean.setName("Jason");
+		this.converter.writeInternal(bean, null, new MockHttpOutputMessage());
+
+		MockHttpOutputMessage outputMessage = new MockHttpOutputMessage();
+		this.converter.getObjectMapper().configure(SerializationFeature.INDENT_OUTPUT, true);
+		this.converter.writeInternal(bean, null, outputMessage);
+		assertThat(outputMessage.getBodyAsString(StandardCharsets.UTF_8)).isEqualTo(("{" + NEWLINE_SYSTEM_PROPERTY +
+				"  \"name\" : \"Jason\"" + NEWLINE_SYSTEM_PROPERTY + "}"));
+
+		String body = "{\"string\":\"string\",\"unknownProperty\":\"value\"}";
+		this.converter.read(MyBean.class, new MockHttpInputMessage(body.getBytes(StandardCharsets.UTF_8)));
+		this.converter.getObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, true);
+		assertThatExceptionOfType(HttpMessageNotReadableException.class).isThrownBy(() ->
+				this.converter.read(MyBean.class, new MockHttpInputMessage(body.getBytes(StandardCharsets.UTF_8))));
+	}
+
 
 	interface MyInterface {
 
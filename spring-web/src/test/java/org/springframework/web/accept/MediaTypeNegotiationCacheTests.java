@@ -0,0 +1,114 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.accept;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+/**
+ * Unit tests for {@link MediaTypeNegotiationCache}.
+ *
+ * @author Rossen Stoyanchev
+ */
+class MediaTypeNegotiationCacheTests {
+
+	private final MediaTypeNegotiationCache cache = new MediaTypeNegotiationCache();
+
+
+	@Test
+	void sortedAcceptMediaTypes() {
+		List<String> header = Collections.singletonList("text/plain;q=0.5, text/html, application/json;q=0.8");
+		List<MediaType> mediaTypes = this.cache.getSortedAcceptMediaTypes(header);
+
+		assertThat(mediaTypes).containsExactly(MediaType.TEXT_HTML,
+				MediaType.parseMediaType("application/json;q=0.8"), MediaType.parseMediaType("text/plain;q=0.5"));
+	}
+
+	@Test
+	void sortedAcceptMediaTypesReturnsCopy() {
+		List<String> header = Collections.singletonList("text/html");
+		this.cache.getSortedAcceptMediaTypes(header).clear();
+
+		assertThat(this.cache.getSortedAcceptMediaTypes(header)).containsExactly(MediaType.TEXT_HTML);
+	}
+
+	@Test
+	void sortedAcceptMediaTypesWithInvalidHeader() {
+		List<String> header = Collections.singletonList("textplain; q=0.5");
+		assertThatExceptionOfType(InvalidMediaTypeException.class)
+				.isThrownBy(() -> this.cache.getSortedAcceptMediaTypes(header));
+	}
+
+	@Test
+	void selectedMediaTypeIsCached() {
+		AtomicInteger count = new AtomicInteger();
+		MediaTypeNegotiationCache.MediaTypeSelector selector = (acceptable, producible) -> {
+			count.incrementAndGet();
+			return producible.get(0);
+		};
+		List<MediaType> acceptable = Collections.singletonList(MediaType.ALL);
+		List<MediaType> producible = Arrays.asList(MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML);
+
+		assertThat(this.cache.getSelectedMediaType(acceptable, producible, selector)).isEqualTo(MediaType.APPLICATION_JSON);
+		assertThat(this.cache.getSelectedMediaType(acceptable, producible, selector)).isEqualTo(MediaType.APPLICATION_JSON);
+		assertThat(count.get()).isEqualTo(1);
+
+		this.cache.getSelectedMediaType(acceptable, Collections.singletonList(MediaType.TEXT_PLAIN), selector);
+		assertThat(count.get()).isEqualTo(2);
+
+		this.cache.clear();
+		this.cache.getSelectedMediaType(acceptable, producible, selector);
+		assertThat(count.get()).isEqualTo(3);
+	}
+
+	@Test
+	void noSelectedMediaTypeIsCached() {
+		AtomicInteger count = new AtomicInteger();
+		MediaTypeNegotiationCache.MediaTypeSelector selector = (acceptable, producible) -> {
+			count.incrementAndGet();
+			return null;
+		};
+		List<MediaType> acceptable = Collections.singletonList(MediaType.TEXT_HTML);
+		List<MediaType> producible = Collections.singletonList(MediaType.APPLICATION_JSON);
+
+		assertThat(this.cache.getSelectedMediaType(acceptable, producible, selector)).isNull();
+		assertThat(this.cache.getSelectedMediaType(acceptable, producible, selector)).isNull();
+		assertThat(count.get()).isEqualTo(1);
+	}
+
+	@Test
+	void selectorIsPartOfKey() {
+		List<MediaType> acceptable = Collections.singletonList(MediaType.ALL);
+		List<MediaType> producible = Collections.singletonList(MediaType.APPLICATION_JSON);
+
+		assertThat(this.cache.getSelectedMediaType(acceptable, producible, (a, p) -> MediaType.TEXT_PLAIN))
+				.isEqualTo(MediaType.TEXT_PLAIN);
+		assertThat(this.cache.getSelectedMediaType(acceptable, producible, (a, p) -> MediaType.TEXT_HTML))
+				.isEqualTo(MediaType.TEXT_HTML);
+	}
+
+}
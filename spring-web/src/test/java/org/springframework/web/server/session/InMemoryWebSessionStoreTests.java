@@ -158,6 +158,102 @@ public class InMemoryWebSessionStoreTests {
 			.withMessage("Max sessions limit reached: 10000");
 	}
 
+	@Test
+	public void expiredSessionsRemovedByExpirationTime() {
+		WebSession shortLived = insertSession();
+		shortLived.setMaxIdleTime(Duration.ofMinutes(5));
+		shortLived.save().block();
+		WebSession longLived = insertSession();
+		WebSession accessed = insertSession();
+
+		// Fast-forward 20 minutes and access one session
+		this.store.setClock(Clock.offset(this.store.getClock(), Duration.ofMinutes(20)));
+		assertThat(this.store.getSessions()).doesNotContainKey(shortLived.getId()).hasSize(2);
+		assertThat(this.store.getExpiredSessionCount()).isEqualTo(1);
+		assertThat(this.store.retrieveSession(accessed.getId()).block()).isSameAs(accessed);
+
+		// Fast-forward another 20 minutes
+		this.store.setClock(Clock.offset(this.store.getClock(), Duration.ofMinutes(20)));
+		assertThat(this.store.getSessions()).containsOnlyKeys(accessed.getId());
+		assertThat(longLived.isExpired()).isTrue();
+		assertThat(longLived.getAttributes()).isEmpty();
+		assertThat(this.store.getExpiredSessionCount()).isEqualTo(2);
+	}
+
+	@Test
+	public void maxMemoryUsage() {
+		this.store.setSessionSizeEstimator(session -> 100 + session.getAttributes().size() * 100);
+		this.store.setMaxMemoryUsage(300);
+
+		WebSession first = insertSession();
+		WebSession second = insertSession();
+		second.setMaxIdleTime(Duration.ofMinutes(10));
+		second.save().block();
+		WebSession third = insertSession();
+		assertThat(this.store.getMemoryUsage()).isEqualTo(300);
+		assertThat(this.store.getEvictedSessionCount()).isEqualTo(0);
+
+		// Session closest to expiration is evicted
+		first.getAttributes().put("foo", "bar");
+		first.save().block();
+		assertThat(this.store.getSessions()).containsOnlyKeys(first.getId(), third.getId());
+		assertThat(this.store.getMemoryUsage()).isEqualTo(300);
+		assertThat(this.store.getEvictedSessionCount()).isEqualTo(1);
+
+		third.invalidate().block();
+		assertThat(this.store.getMemoryUsage()).isEqualTo(200);
+
+		first.getAttributes().put("bar", "baz");
+		first.getAttributes().put("baz", "qux");
+		assertThatIllegalStateException().isThrownBy(first::save)
+				.withMessage("Max memory usage reached: 400");
+
+		// Update is rejected, previously stored session is kept
+		assertThat(this.store.getSessions()).containsOnlyKeys(first.getId());
+		assertThat(this.store.getMemoryUsage()).isEqualTo(200);
+		assertThat(isSaveRequired(first)).isTrue();
+
+		first.getAttributes().remove("baz");
+		first.save().block();
+		assertThat(this.store.getMemoryUsage()).isEqualTo(300);
+
+		// New session is not stored
+		WebSession fourth = this.store.createWebSession().block();
+		assertThat(fourth).isNotNull();
+		fourth.getAttributes().put("foo", "bar");
+		fourth.getAttributes().put("bar", "baz");
+		fourth.getAttributes().put("baz", "qux");
+		assertThatIllegalStateException().isThrownBy(fourth::save)
+				.withMessage("Max memory usage reached: 700");
+		assertThat(this.store.getSessions()).containsOnlyKeys(first.getId());
+		assertThat(this.store.getMemoryUsage()).isEqualTo(300);
+	}
+
+	@Test
+	public void saveRequired() {
+		WebSession session = this.store.createWebSession().block();
+		assertThat(session).isNotNull();
+		assertThat(isSaveRequired(session)).isTrue();
+
+		session.getAttributes().put("foo", "bar");
+		session.save().block();
+		assertThat(isSaveRequired(session)).isFalse();
+
+		this.store.retrieveSession(session.getId()).block();
+		assertThat(isSaveRequired(session)).isFalse();
+
+		session.getAttributes().computeIfAbsent("bar", key -> "baz");
+		assertThat(isSaveRequired(session)).isTrue();
+		session.save().block();
+
+		session.setMaxIdleTime(Duration.ofMinutes(1));
+		assertThat(isSaveRequired(session)).isTrue();
+		session.save().block();
+
+		this.store.removeSession(session.getId()).block();
+		assertThat(isSaveRequired(session)).isTrue();
+	}
+
 	private WebSession insertSession() {
 		WebSession session = this.store.createWebSession().block();
 		assertThat(session).isNotNull();
@@ -166,4 +262,8 @@ public class InMemoryWebSessionStoreTests {
 		return session;
 	}
 
+	private static boolean isSaveRequired(WebSession session) {
+		return (boolean) new DirectFieldAccessor(session).getPropertyValue("saveRequired");
+	}
+
 }
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.reactive.function.client;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.client.cache.CachedHttpResponse;
+import org.springframework.http.client.cache.HttpResponseCache;
+import org.springframework.util.Assert;
+
+/**
+ * {@link ExchangeFilterFunction} that serves responses from an
+ * {@link HttpResponseCache}, revalidates them as necessary, and stores the
+ * responses received once their body has been consumed.
+ *
+ * <p>Stale responses are served while being revalidated in the background,
+ * as permitted by their {@code stale-while-revalidate} directive. Responses
+ * served from the cache are decoded with the {@link ExchangeStrategies} the
+ * filter is created with, i.e. those of the client.
+ *
+ * @author Arjen Poutsma
+ * @since 5.3.11
+ * @see ExchangeFilterFunctions#cacheResponses(HttpResponseCache)
+ */
+final class CachingExchangeFilterFunction implements ExchangeFilterFunction {
+
+	private static final Log logger = LogFactory.getLog(CachingExchangeFilterFunction.class);
+
+
+	private final HttpResponseCache cache;
+
+	private final ExchangeStrategies strategies;
+
+
+	CachingExchangeFilterFunction(HttpResponseCache cache, ExchangeStrategies strategies) {
+		this.cache = cache;
+		this.strategies = strategies;
+	}
+
+
+	@Override
+	public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+		return Mono.deferContextual(context -> {
+			HttpResponseCache.Lookup lookup =
+					this.cache.lookup(request.method(), request.url(), request.headers(), true);
+			switch (lookup.getStatus()) {
+				case HIT:
+					return Mono.just(toClientResponse(lookup, request));
+				case HIT_AND_REVALIDATE:
+					ClientResponse response = toClientResponse(lookup, request);
+					exchange(request, next, lookup)
+							.flatMap(ClientResponse::releaseBody)
+							.doFinally(signal -> lookup.complete())
+							.contextWrite(context)
+							.subscribe(null, ex -> {
+								if (logger.isDebugEnabled()) {
+									logger.debug("Failed to revalidate cached response for " + request.url(), ex);
+								}
+							});
+					return Mono.just(response);
+				default:
+					return exchange(request, next, lookup);
+			}
+		});
+	}
+
+	private Mono<ClientResponse> exchange(ClientRequest request, ExchangeFunction next,
+			HttpResponseCache.Lookup lookup) {
+
+		HttpHeaders requestHeaders = lookup.getRequestHeaders();
+		ClientRequest actualRequest = (requestHeaders != request.headers() ?
+				ClientRequest.from(request).headers(headers -> headers.putAll(requestHeaders)).build() : request);
+		return next.exchange(actualRequest).flatMap(response -> {
+			if (lookup.responseReceived(response.rawStatusCode(), response.headers().asHttpHeaders()) != null) {
+				return response.releaseBody().thenReturn(toClientResponse(lookup, request));
+			}
+			if (lookup.isStorable()) {
+				return Mono.just(response.mutate().body(body -> storeBody(body, lookup)).build());
+			}
+			return Mono.just(response);
+		});
+	}
+
+	private Flux<DataBuffer> storeBody(Flux<DataBuffer> body, HttpResponseCache.Lookup lookup) {
+		int maxBodySize = this.cache.getMaxBodySize();
+		return Flux.defer(() -> {
+			ByteArrayOutputStream content = new ByteArrayOutputStream();
+			boolean[] tooLarge = new boolean[1];
+			return body
+					.doOnNext(buffer -> {
+						int count = buffer.readableByteCount();
+						if (tooLarge[0] || content.size() + count > maxBodySize) {
+							tooLarge[0] = true;
+							content.reset();
+							return;
+						}
+						ByteBuffer byteBuffer = buffer.asByteBuffer();
+						byte[] bytes = new byte[count];
+						byteBuffer.get(bytes);
+						content.write(bytes, 0, count);
+					})
+					.doOnComplete(() -> {
+						if (!tooLarge[0]) {
+							lookup.store(content.toByteArray());
+						}
+					});
+		});
+	}
+
+	private ClientResponse toClientResponse(HttpResponseCache.Lookup lookup, ClientRequest request) {
+		CachedHttpResponse response = lookup.getCachedResponse();
+		Assert.state(response != null, "No cached response");
+		byte[] body = response.getBody();
+		return ClientResponse.create(response.getRawStatusCode(), this.strategies)
+				.headers(headers -> headers.addAll(lookup.getResponseHeaders()))
+				.body(body.length > 0 ?
+						Flux.defer(() -> Flux.just(DefaultDataBufferFactory.sharedInstance.wrap(body))) : Flux.empty())
+				.request(new ClientRequestAdapter(request))
+				.build();
+	}
+
+}
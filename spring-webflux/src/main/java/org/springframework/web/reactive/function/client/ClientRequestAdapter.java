@@ -0,0 +1,57 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.reactive.function.client;
+
+import java.net.URI;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+
+/**
+ * Adapts a {@link ClientRequest} to {@link HttpRequest}, for responses that
+ * filters create without an underlying request, e.g. for error messages.
+ *
+ * @author Arjen Poutsma
+ * @since 5.3.11
+ * @see ClientResponse.Builder#request(HttpRequest)
+ */
+final class ClientRequestAdapter implements HttpRequest {
+
+	private final ClientRequest request;
+
+
+	ClientRequestAdapter(ClientRequest request) {
+		this.request = request;
+	}
+
+
+	@Override
+	public String getMethodValue() {
+		return this.request.method().name();
+	}
+
+	@Override
+	public URI getURI() {
+		return this.request.url();
+	}
+
+	@Override
+	public HttpHeaders getHeaders() {
+		return this.request.headers();
+	}
+
+}
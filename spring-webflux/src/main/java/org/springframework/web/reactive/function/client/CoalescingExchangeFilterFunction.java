@@ -0,0 +1,182 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.reactive.function.client;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseCookie;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.reactive.function.BodyExtractors;
+
+/**
+ * {@link ExchangeFilterFunction} that coalesces identical {@code GET} requests
+ * in flight, i.e. with the same URL, headers, cookies, and attributes, into a
+ * single request to the server. The response body is aggregated in memory, up
+ * to a given size, and each coalesced request receives its own copy of the
+ * response. Requests that customize the underlying
+ * {@linkplain ClientRequest#httpRequest() HTTP request} are never coalesced.
+ *
+ * @author Arjen Poutsma
+ * @since 5.3.11
+ * @see ExchangeFilterFunctions#coalesceRequests(int)
+ */
+final class CoalescingExchangeFilterFunction implements ExchangeFilterFunction {
+
+	private static final byte[] EMPTY_BODY = new byte[0];
+
+
+	private final int maxInMemorySize;
+
+	private final Map<RequestKey, Mono<ResponseSnapshot>> inFlight = new ConcurrentHashMap<>();
+
+
+	CoalescingExchangeFilterFunction(int maxInMemorySize) {
+		this.maxInMemorySize = maxInMemorySize;
+	}
+
+
+	@Override
+	public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+		if (request.method() != HttpMethod.GET || request.httpRequest() != null) {
+			return next.exchange(request);
+		}
+		return Mono.defer(() -> {
+			RequestKey key = new RequestKey(request);
+			Mono<ResponseSnapshot> snapshot = this.inFlight.computeIfAbsent(key, k -> exchange(k, request, next));
+			return snapshot.map(ResponseSnapshot::toResponse);
+		});
+	}
+
+	private Mono<ResponseSnapshot> exchange(RequestKey key, ClientRequest request, ExchangeFunction next) {
+		AtomicReference<Mono<ResponseSnapshot>> result = new AtomicReference<>();
+		result.set(next.exchange(request)
+				.flatMap(response -> DataBufferUtils
+						.join(response.body(BodyExtractors.toDataBuffers()), this.maxInMemorySize)
+						.map(buffer -> {
+							byte[] body = new byte[buffer.readableByteCount()];
+							buffer.read(body);
+							DataBufferUtils.release(buffer);
+							return body;
+						})
+						.defaultIfEmpty(EMPTY_BODY)
+						.map(body -> new ResponseSnapshot(request, response, body)))
+				.doFinally(signal -> this.inFlight.remove(key, result.get()))
+				.share());
+		return result.get();
+	}
+
+
+	/**
+	 * The parts of a request that make it identical to another.
+	 */
+	private static final class RequestKey {
+
+		private final URI url;
+
+		private final HttpHeaders headers;
+
+		private final MultiValueMap<String, String> cookies;
+
+		private final Map<String, Object> attributes;
+
+		private final int hashCode;
+
+		RequestKey(ClientRequest request) {
+			this.url = request.url();
+			this.headers = request.headers();
+			this.cookies = request.cookies();
+			this.attributes = new HashMap<>(request.attributes());
+			// Unique per request, for logging only
+			this.attributes.remove(ClientRequest.LOG_ID_ATTRIBUTE);
+			this.hashCode = ((this.url.hashCode() * 31 + this.headers.hashCode()) * 31 +
+					this.cookies.hashCode()) * 31 + this.attributes.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (this == other) {
+				return true;
+			}
+			if (!(other instanceof RequestKey)) {
+				return false;
+			}
+			RequestKey otherKey = (RequestKey) other;
+			return (this.url.equals(otherKey.url) && this.headers.equals(otherKey.headers) &&
+					this.cookies.equals(otherKey.cookies) && this.attributes.equals(otherKey.attributes));
+		}
+
+		@Override
+		public int hashCode() {
+			return this.hashCode;
+		}
+	}
+
+
+	/**
+	 * An aggregated response, from which a copy is created for each request.
+	 */
+	private static final class ResponseSnapshot {
+
+		private final ClientRequest request;
+
+		private final int statusCode;
+
+		private final HttpHeaders headers;
+
+		private final MultiValueMap<String, ResponseCookie> cookies;
+
+		private final ExchangeStrategies strategies;
+
+		private final byte[] body;
+
+		ResponseSnapshot(ClientRequest request, ClientResponse response, byte[] body) {
+			this.request = request;
+			this.statusCode = response.rawStatusCode();
+			this.headers = HttpHeaders.readOnlyHttpHeaders(response.headers().asHttpHeaders());
+			this.cookies = new LinkedMultiValueMap<>(response.cookies());
+			this.strategies = response.strategies();
+			this.body = body;
+		}
+
+		ClientResponse toResponse() {
+			return ClientResponse.create(this.statusCode, this.strategies)
+					.headers(headers -> headers.addAll(this.headers))
+					.cookies(cookies -> cookies.addAll(this.cookies))
+					.body(this.body.length > 0 ? Flux.defer(this::bodyBuffer) : Flux.empty())
+					.request(new ClientRequestAdapter(this.request))
+					.build();
+		}
+
+		private Flux<DataBuffer> bodyBuffer() {
+			return Flux.just(DefaultDataBufferFactory.sharedInstance.wrap(this.body));
+		}
+	}
+
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.reactive.function.client;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import reactor.core.publisher.Mono;
+
+import org.springframework.http.HttpStatus;
+
+/**
+ * {@link ExchangeFilterFunction} that limits the number of concurrent requests
+ * to each origin, and adapts the limit to the response times of the origin,
+ * rejecting requests over the limit rather than letting them queue up.
+ *
+ * <p>The limit is adapted with a gradient: as long as recent response times
+ * stay within twice the long-term response time, the limit grows, and as
+ * they exceed it, the limit shrinks proportionally. Connection errors as well
+ * as {@code 429} and {@code 503} responses decrease the limit multiplicatively.
+ * A request counts towards the limit until its response status and headers
+ * are received.
+ *
+ * <p>Rejected requests fail with a {@link WebClientRequestException} caused by
+ * a {@link RejectedExecutionException}.
+ *
+ * @author Arjen Poutsma
+ * @since 5.3.11
+ * @see ExchangeFilterFunctions#limitConcurrency(int, int)
+ */
+final class ConcurrencyLimitingExchangeFilterFunction implements ExchangeFilterFunction {
+
+	private static final double RTT_TOLERANCE = 2.0;
+
+	private static final double SHORT_RTT_SMOOTHING = 0.1;
+
+	private static final double LONG_RTT_SMOOTHING = 0.01;
+
+	private static final double LIMIT_SMOOTHING = 0.2;
+
+	private static final double BACKOFF_RATIO = 0.9;
+
+	private static final int MIN_LIMIT = 1;
+
+
+	private final int initialLimit;
+
+	private final int maxLimit;
+
+	private final Map<String, Limiter> limiters = new ConcurrentHashMap<>();
+
+
+	ConcurrencyLimitingExchangeFilterFunction(int initialLimit, int maxLimit) {
+		this.initialLimit = initialLimit;
+		this.maxLimit = maxLimit;
+	}
+
+
+	@Override
+	public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+		Limiter limiter = getLimiter(request.url());
+		return Mono.defer(() -> {
+			int inFlight = limiter.tryAcquire();
+			if (inFlight == -1) {
+				return Mono.error(new WebClientRequestException(
+						new RejectedExecutionException("Concurrency limit of " + limiter.getLimit() + " reached"),
+						request.method(), request.url(), request.headers()));
+			}
+			long startTime = System.nanoTime();
+			return next.exchange(request)
+					.doOnSuccess(response -> limiter.onSample(System.nanoTime() - startTime, inFlight,
+							(response != null && isOverloaded(response.rawStatusCode()))))
+					.doOnError(ex -> limiter.onSample(System.nanoTime() - startTime, inFlight, true))
+					.doFinally(signal -> limiter.release());
+		});
+	}
+
+	private Limiter getLimiter(URI url) {
+		String origin = url.getScheme() + "://" + url.getRawAuthority();
+		Limiter limiter = this.limiters.get(origin);
+		if (limiter == null) {
+			limiter = this.limiters.computeIfAbsent(origin, key -> new Limiter(this.initialLimit));
+		}
+		return limiter;
+	}
+
+	private static boolean isOverloaded(int statusCode) {
+		return (statusCode == HttpStatus.TOO_MANY_REQUESTS.value() ||
+				statusCode == HttpStatus.SERVICE_UNAVAILABLE.value());
+	}
+
+	/**
+	 * Return the current limit for the given origin, for testing purposes.
+	 */
+	int getLimit(String origin) {
+		Limiter limiter = this.limiters.get(origin);
+		return (limiter != null ? limiter.getLimit() : this.initialLimit);
+	}
+
+
+	/**
+	 * Concurrency limit for a single origin.
+	 */
+	private final class Limiter {
+
+		private final AtomicInteger inFlight = new AtomicInteger();
+
+		private volatile int currentLimit;
+
+		private double limit;
+
+		private double shortRttNanos;
+
+		private double longRttNanos;
+
+		Limiter(int initialLimit) {
+			this.limit = initialLimit;
+			this.currentLimit = initialLimit;
+		}
+
+		/**
+		 * Acquire a permit, returning the number of requests in flight
+		 * including this one, or -1 if the limit is reached.
+		 */
+		int tryAcquire() {
+			int count = this.inFlight.get();
+			while (count < this.currentLimit) {
+				if (this.inFlight.compareAndSet(count, count + 1)) {
+					return count + 1;
+				}
+				count = this.inFlight.get();
+			}
+			return -1;
+		}
+
+		void release() {
+			this.inFlight.decrementAndGet();
+		}
+
+		int getLimit() {
+			return this.currentLimit;
+		}
+
+		synchronized void onSample(long rttNanos, int inFlight, boolean dropped) {
+			if (this.longRttNanos == 0) {
+				this.shortRttNanos = rttNanos;
+				this.longRttNanos = rttNanos;
+			}
+			else {
+				this.shortRttNanos += (rttNanos - this.shortRttNanos) * SHORT_RTT_SMOOTHING;
+				this.longRttNanos += (rttNanos - this.longRttNanos) * LONG_RTT_SMOOTHING;
+			}
+			double newLimit;
+			if (dropped) {
+				newLimit = this.limit * BACKOFF_RATIO;
+			}
+			else if (inFlight * 2 < this.limit) {
+				// Not using the limit, so no indication whether it can grow
+				return;
+			}
+			else {
+				if (this.longRttNanos > this.shortRttNanos * RTT_TOLERANCE) {
+					// Recovered from a period of high response times: let the baseline catch up
+					this.longRttNanos *= 0.95;
+				}
+				double gradient = Math.max(0.5, Math.min(1.0, RTT_TOLERANCE * this.longRttNanos / this.shortRttNanos));
+				double queueSize = Math.sqrt(this.limit);
+				newLimit = this.limit * (1 - LIMIT_SMOOTHING) + (this.limit * gradient + queueSize) * LIMIT_SMOOTHING;
+			}
+			this.limit = Math.max(MIN_LIMIT, Math.min(maxLimit, newLimit));
+			this.currentLimit = (int) this.limit;
+		}
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2020 the original author or authors.
+ * Copyright 2002-2021 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,7 +17,9 @@
 package org.springframework.web.reactive.function.client;
 
 import java.nio.charset.Charset;
+import java.time.Duration;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
@@ -27,12 +29,15 @@ import reactor.core.publisher.Mono;
 import org.springframework.core.io.buffer.DataBufferUtils;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.client.cache.HttpResponseCache;
+import org.springframework.http.client.reactive.ClientHttpConnectionListener;
 import org.springframework.lang.Nullable;
 import org.springframework.util.Assert;
 
 /**
  * Static factory methods providing access to built-in implementations of
- * {@link ExchangeFilterFunction} for basic authentication, error handling, etc.
+ * {@link ExchangeFilterFunction} for basic authentication, error handling,
+ * metrics, resilience to slow or overloaded servers, etc.
  *
  * @author Rob Winch
  * @author Arjen Poutsma
@@ -85,6 +90,151 @@ public abstract class ExchangeFilterFunctions {
 						Mono.error(exceptionFunction.apply(response)) : Mono.just(response)));
 	}
 
+	/**
+	 * Return a filter that times each exchange until the response status and
+	 * headers are received, or until it fails or is cancelled, and passes the
+	 * resulting {@link ExchangeMetrics} to the given recorder.
+	 * <p>The time spent waiting for a connection is included for connectors
+	 * that report it to a {@link ClientHttpConnectionListener}. The timing
+	 * covers the filters registered after this one, so it should be registered
+	 * last to time the exchange with the underlying connector only.
+	 * @param recorder the recorder to pass the metrics of each exchange to
+	 * @return the filter to record exchange metrics with
+	 * @since 5.3.11
+	 */
+	public static ExchangeFilterFunction metrics(ExchangeMetricsRecorder recorder) {
+		Assert.notNull(recorder, "ExchangeMetricsRecorder must not be null");
+		return (request, next) -> Mono.defer(() -> {
+			ExchangeTimer timer = new ExchangeTimer(request, recorder);
+			return next.exchange(request)
+					.doOnSuccess(timer::onResponse)
+					.doOnError(timer::onError)
+					.doOnCancel(timer::onCancel)
+					.contextWrite(context -> context.put(ClientHttpConnectionListener.class, timer));
+		});
+	}
+
+	/**
+	 * Return a filter that sends a second, hedged request for {@code GET} and
+	 * {@code HEAD} requests that have not received a response within the 95th
+	 * percentile of recent response times, and continues with whichever
+	 * response arrives first, cancelling the other request.
+	 * <p>Response times are tracked by HTTP method and URI template, or by
+	 * origin for requests without a URI template. At most one in ten requests
+	 * is hedged over time, to bound the additional load on the server.
+	 * @return the filter to hedge requests with
+	 * @since 5.3.11
+	 * @see #hedgeRequests(double, Duration)
+	 */
+	public static ExchangeFilterFunction hedgeRequests() {
+		return hedgeRequests(95, Duration.ofMillis(10));
+	}
+
+	/**
+	 * Variant of {@link #hedgeRequests()} with the percentile of recent
+	 * response times after which to send a hedged request, and a minimum
+	 * delay before sending it.
+	 * @param percentile the percentile of response times, between 0 and 100
+	 * @param minDelay the minimum delay before sending a hedged request
+	 * @return the filter to hedge requests with
+	 * @since 5.3.11
+	 */
+	public static ExchangeFilterFunction hedgeRequests(double percentile, Duration minDelay) {
+		Assert.isTrue(percentile > 0 && percentile <= 100, "Percentile must be greater than 0 and at most 100");
+		Assert.notNull(minDelay, "Duration must not be null");
+		return new HedgingExchangeFilterFunction(percentile, minDelay);
+	}
+
+	/**
+	 * Return a filter that coalesces identical {@code GET} requests in flight,
+	 * i.e. requests with the same URL, headers, cookies, and attributes, into
+	 * a single request to the server, so that each request receives a copy of
+	 * the same response. The response body is aggregated in memory, up to 256K.
+	 * <p>Requests that customize the underlying HTTP request through
+	 * {@link ClientRequest.Builder#httpRequest} are not coalesced.
+	 * @return the filter to coalesce requests with
+	 * @since 5.3.11
+	 * @see #coalesceRequests(int)
+	 */
+	public static ExchangeFilterFunction coalesceRequests() {
+		return coalesceRequests(256 * 1024);
+	}
+
+	/**
+	 * Variant of {@link #coalesceRequests()} with the maximum size of the
+	 * response body to aggregate. A larger body results in a
+	 * {@link org.springframework.core.io.buffer.DataBufferLimitException}
+	 * for all coalesced requests.
+	 * @param maxInMemorySize the maximum size of the response body in bytes
+	 * @return the filter to coalesce requests with
+	 * @since 5.3.11
+	 */
+	public static ExchangeFilterFunction coalesceRequests(int maxInMemorySize) {
+		Assert.isTrue(maxInMemorySize > 0, "Max in-memory size must be greater than 0");
+		return new CoalescingExchangeFilterFunction(maxInMemorySize);
+	}
+
+	/**
+	 * Return a filter that limits the number of concurrent requests to each
+	 * origin, starting at 20, and adapts the limit up to 1000 to the response
+	 * times and overload responses of the origin. Requests over the limit
+	 * are rejected right away with a {@link WebClientRequestException}
+	 * caused by a {@link java.util.concurrent.RejectedExecutionException}.
+	 * @return the filter to limit concurrency with
+	 * @since 5.3.11
+	 * @see #limitConcurrency(int, int)
+	 */
+	public static ExchangeFilterFunction limitConcurrency() {
+		return limitConcurrency(20, 1000);
+	}
+
+	/**
+	 * Variant of {@link #limitConcurrency()} with the initial and maximum
+	 * number of concurrent requests to each origin.
+	 * @param initialLimit the initial limit
+	 * @param maxLimit the maximum limit
+	 * @return the filter to limit concurrency with
+	 * @since 5.3.11
+	 */
+	public static ExchangeFilterFunction limitConcurrency(int initialLimit, int maxLimit) {
+		Assert.isTrue(initialLimit > 0, "Initial limit must be greater than 0");
+		Assert.isTrue(maxLimit >= initialLimit, "Max limit must not be less than the initial limit");
+		return new ConcurrencyLimitingExchangeFilterFunction(initialLimit, maxLimit);
+	}
+
+	/**
+	 * Return a filter that serves responses to {@code GET} requests from the
+	 * given cache, as permitted by their {@code Cache-Control} headers, and
+	 * revalidates them with conditional requests when stale. Stale responses
+	 * are served while being revalidated in the background, as permitted by
+	 * their {@code stale-while-revalidate} directive.
+	 * <p>Responses received are stored once their body has been consumed.
+	 * Responses served from the cache are decoded with the default
+	 * {@link ExchangeStrategies}.
+	 * @param cache the cache to use
+	 * @return the filter to cache responses with
+	 * @since 5.3.11
+	 * @see #cacheResponses(HttpResponseCache, ExchangeStrategies)
+	 */
+	public static ExchangeFilterFunction cacheResponses(HttpResponseCache cache) {
+		return cacheResponses(cache, ExchangeStrategies.withDefaults());
+	}
+
+	/**
+	 * Variant of {@link #cacheResponses(HttpResponseCache)} with the
+	 * {@link ExchangeStrategies} to decode responses served from the cache
+	 * with, i.e. those of the {@code WebClient} the filter is applied to.
+	 * @param cache the cache to use
+	 * @param strategies the strategies of the client
+	 * @return the filter to cache responses with
+	 * @since 5.3.11
+	 */
+	public static ExchangeFilterFunction cacheResponses(HttpResponseCache cache, ExchangeStrategies strategies) {
+		Assert.notNull(cache, "HttpResponseCache must not be null");
+		Assert.notNull(strategies, "ExchangeStrategies must not be null");
+		return new CachingExchangeFilterFunction(cache, strategies);
+	}
+
 	/**
 	 * Return a filter that applies HTTP Basic Authentication to the request
 	 * headers via {@link HttpHeaders#setBasicAuth(String)} and
@@ -129,6 +279,58 @@ public abstract class ExchangeFilterFunctions {
 	}
 
 
+	/**
+	 * Times a single exchange for {@link #metrics(ExchangeMetricsRecorder)}.
+	 */
+	private static final class ExchangeTimer implements ClientHttpConnectionListener {
+
+		private final ClientRequest request;
+
+		private final ExchangeMetricsRecorder recorder;
+
+		private final long startTime = System.nanoTime();
+
+		@Nullable
+		private volatile Duration connectionAcquireTime;
+
+		private final AtomicBoolean recorded = new AtomicBoolean();
+
+		ExchangeTimer(ClientRequest request, ExchangeMetricsRecorder recorder) {
+			this.request = request;
+			this.recorder = recorder;
+		}
+
+		@Override
+		public void connectionAcquired(Duration acquireTime) {
+			if (this.connectionAcquireTime == null) {
+				this.connectionAcquireTime = acquireTime;
+			}
+		}
+
+		void onResponse(@Nullable ClientResponse response) {
+			record((response != null ? response.rawStatusCode() : -1), null, false);
+		}
+
+		void onError(Throwable ex) {
+			record(-1, ex, false);
+		}
+
+		void onCancel() {
+			record(-1, null, true);
+		}
+
+		private void record(int statusCode, @Nullable Throwable error, boolean cancelled) {
+			if (this.recorded.compareAndSet(false, true)) {
+				Duration duration = Duration.ofNanos(System.nanoTime() - this.startTime);
+				Object uriTemplate = this.request.attributes().get(DefaultWebClient.URI_TEMPLATE_ATTRIBUTE);
+				this.recorder.record(new ExchangeMetrics(this.request.method(), this.request.url(),
+						(uriTemplate instanceof String ? (String) uriTemplate : null),
+						statusCode, error, cancelled, duration, this.connectionAcquireTime));
+			}
+		}
+	}
+
+
 	/**
 	 * Stores username and password for HTTP basic authentication.
 	 * @deprecated as of Spring 5.1 in favor of using
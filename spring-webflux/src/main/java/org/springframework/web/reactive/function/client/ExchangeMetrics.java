@@ -0,0 +1,144 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.reactive.function.client;
+
+import java.net.URI;
+import java.time.Duration;
+
+import org.springframework.http.HttpMethod;
+import org.springframework.lang.Nullable;
+
+/**
+ * Metrics of a single exchange, as observed by
+ * {@link ExchangeFilterFunctions#metrics(ExchangeMetricsRecorder)}.
+ *
+ * @author Brian Clozel
+ * @since 5.3.11
+ * @see ExchangeMetricsRecorder
+ */
+public final class ExchangeMetrics {
+
+	private final HttpMethod method;
+
+	private final URI uri;
+
+	@Nullable
+	private final String uriTemplate;
+
+	private final int statusCode;
+
+	@Nullable
+	private final Throwable error;
+
+	private final boolean cancelled;
+
+	private final Duration duration;
+
+	@Nullable
+	private final Duration connectionAcquireTime;
+
+
+	ExchangeMetrics(HttpMethod method, URI uri, @Nullable String uriTemplate, int statusCode,
+			@Nullable Throwable error, boolean cancelled, Duration duration,
+			@Nullable Duration connectionAcquireTime) {
+
+		this.method = method;
+		this.uri = uri;
+		this.uriTemplate = uriTemplate;
+		this.statusCode = statusCode;
+		this.error = error;
+		this.cancelled = cancelled;
+		this.duration = duration;
+		this.connectionAcquireTime = connectionAcquireTime;
+	}
+
+
+	/**
+	 * Return the HTTP method of the request.
+	 */
+	public HttpMethod getMethod() {
+		return this.method;
+	}
+
+	/**
+	 * Return the expanded URI of the request.
+	 */
+	public URI getUri() {
+		return this.uri;
+	}
+
+	/**
+	 * Return the URI template the request URI was expanded from, if the
+	 * request was prepared with one through the {@link WebClient}.
+	 */
+	@Nullable
+	public String getUriTemplate() {
+		return this.uriTemplate;
+	}
+
+	/**
+	 * Return the raw status code of the response, or -1 if no response was
+	 * received.
+	 */
+	public int getStatusCode() {
+		return this.statusCode;
+	}
+
+	/**
+	 * Return the error the exchange failed with, if any.
+	 */
+	@Nullable
+	public Throwable getError() {
+		return this.error;
+	}
+
+	/**
+	 * Whether the exchange was cancelled before a response was received.
+	 */
+	public boolean isCancelled() {
+		return this.cancelled;
+	}
+
+	/**
+	 * Return the time from the start of the exchange until the response
+	 * status and headers were received, or until it failed or was cancelled.
+	 */
+	public Duration getDuration() {
+		return this.duration;
+	}
+
+	/**
+	 * Return the part of the {@link #getDuration() duration} spent waiting for
+	 * a connection, if reported by the
+	 * {@link org.springframework.http.client.reactive.ClientHttpConnector}.
+	 * @see org.springframework.http.client.reactive.ClientHttpConnectionListener
+	 */
+	@Nullable
+	public Duration getConnectionAcquireTime() {
+		return this.connectionAcquireTime;
+	}
+
+
+	@Override
+	public String toString() {
+		return this.method + " " + this.uri + " [status=" + this.statusCode + ", duration=" + this.duration +
+				(this.connectionAcquireTime != null ? ", connectionAcquireTime=" + this.connectionAcquireTime : "") +
+				(this.error != null ? ", error=" + this.error : "") +
+				(this.cancelled ? ", cancelled" : "") + "]";
+	}
+
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.reactive.function.client;
+
+/**
+ * Strategy to record the {@link ExchangeMetrics} of client exchanges, for
+ * use with {@link ExchangeFilterFunctions#metrics(ExchangeMetricsRecorder)}.
+ *
+ * <p>Implementations are invoked on the thread that completes the exchange,
+ * typically an event loop thread, and must not block.
+ *
+ * @author Brian Clozel
+ * @since 5.3.11
+ * @see HistogramExchangeMetricsRecorder
+ * @see org.springframework.web.reactive.function.client.jfr.FlightRecorderExchangeMetricsRecorder
+ */
+@FunctionalInterface
+public interface ExchangeMetricsRecorder {
+
+	/**
+	 * Record the metrics of a completed, failed, or cancelled exchange.
+	 * @param metrics the metrics of the exchange
+	 */
+	void record(ExchangeMetrics metrics);
+
+}
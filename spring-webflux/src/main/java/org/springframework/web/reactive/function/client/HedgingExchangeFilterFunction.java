@@ -0,0 +1,222 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.reactive.function.client;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import org.springframework.http.HttpMethod;
+import org.springframework.web.reactive.function.client.HistogramExchangeMetricsRecorder.Histogram;
+
+/**
+ * {@link ExchangeFilterFunction} that sends a second, hedged request for a
+ * {@code GET} or {@code HEAD} request that has not received a response
+ * within a percentile of recent response times, and continues with whichever
+ * response arrives first, cancelling the other request.
+ *
+ * <p>Response times are tracked by HTTP method and URI template, or by origin
+ * for requests without a URI template, in windows of {@value #WINDOW_SIZE}
+ * responses. No request is hedged until a first window is complete. To limit
+ * the additional load, at most one in ten requests is hedged over time.
+ *
+ * @author Arjen Poutsma
+ * @since 5.3.11
+ * @see ExchangeFilterFunctions#hedgeRequests(double, Duration)
+ */
+final class HedgingExchangeFilterFunction implements ExchangeFilterFunction {
+
+	/** Number of response times from which the hedging delay is derived. */
+	static final int WINDOW_SIZE = 200;
+
+	/** Tokens earned by each request, and spent by a hedged request. */
+	private static final int HEDGE_COST = 10;
+
+	private static final int MAX_TOKENS = 10 * HEDGE_COST;
+
+
+	private final double percentile;
+
+	private final long minDelayNanos;
+
+	private final Map<String, ResponseTimes> responseTimes = new ConcurrentHashMap<>();
+
+	private final AtomicInteger tokens = new AtomicInteger();
+
+
+	HedgingExchangeFilterFunction(double percentile, Duration minDelay) {
+		this.percentile = percentile;
+		this.minDelayNanos = minDelay.toNanos();
+	}
+
+
+	@Override
+	public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+		if (request.method() != HttpMethod.GET && request.method() != HttpMethod.HEAD) {
+			return next.exchange(request);
+		}
+		ResponseTimes times = getResponseTimes(request);
+		return Mono.defer(() -> {
+			this.tokens.getAndUpdate(count -> Math.min(MAX_TOKENS, count + 1));
+			long delay = times.getPercentileNanos();
+			Mono<ClientResponse> attempt = attempt(request, next, times);
+			if (delay < 0) {
+				return attempt;
+			}
+			Duration hedgeDelay = Duration.ofNanos(Math.max(delay, this.minDelayNanos));
+			return Mono.create(sink -> new HedgedExchange(sink, attempt, hedgeDelay).start());
+		});
+	}
+
+	private ResponseTimes getResponseTimes(ClientRequest request) {
+		Object uriTemplate = request.attributes().get(DefaultWebClient.URI_TEMPLATE_ATTRIBUTE);
+		URI url = request.url();
+		String key = request.method() + " " + (uriTemplate instanceof String ? (String) uriTemplate :
+				url.getScheme() + "://" + url.getRawAuthority());
+		ResponseTimes times = this.responseTimes.get(key);
+		if (times == null) {
+			times = this.responseTimes.computeIfAbsent(key, k -> new ResponseTimes());
+		}
+		return times;
+	}
+
+	private static Mono<ClientResponse> attempt(ClientRequest request, ExchangeFunction next, ResponseTimes times) {
+		return Mono.defer(() -> {
+			long startTime = System.nanoTime();
+			return next.exchange(request).doOnNext(response -> times.record(System.nanoTime() - startTime));
+		});
+	}
+
+	private boolean tryAcquireHedge() {
+		int count = this.tokens.get();
+		while (count >= HEDGE_COST) {
+			if (this.tokens.compareAndSet(count, count - HEDGE_COST)) {
+				return true;
+			}
+			count = this.tokens.get();
+		}
+		return false;
+	}
+
+
+	/**
+	 * Recent response times for requests with the same key.
+	 */
+	private final class ResponseTimes {
+
+		private final AtomicReference<Histogram> window = new AtomicReference<>(new Histogram());
+
+		private volatile long percentileNanos = -1;
+
+		void record(long nanos) {
+			Histogram histogram = this.window.get();
+			histogram.record(Duration.ofNanos(nanos));
+			if (histogram.getCount() >= WINDOW_SIZE && this.window.compareAndSet(histogram, new Histogram())) {
+				this.percentileNanos = histogram.getValueAtPercentile(percentile).toNanos();
+			}
+		}
+
+		/**
+		 * Return the percentile of the last complete window, or -1 if none.
+		 */
+		long getPercentileNanos() {
+			return this.percentileNanos;
+		}
+	}
+
+
+	/**
+	 * A request with a hedged request sent after a delay, unless the first
+	 * request completed or failed by then.
+	 */
+	private final class HedgedExchange {
+
+		private final MonoSink<ClientResponse> sink;
+
+		private final Mono<ClientResponse> attempt;
+
+		private final Duration delay;
+
+		private final Disposable.Composite disposables = Disposables.composite();
+
+		private final AtomicInteger pendingAttempts = new AtomicInteger(1);
+
+		private final AtomicBoolean done = new AtomicBoolean();
+
+		HedgedExchange(MonoSink<ClientResponse> sink, Mono<ClientResponse> attempt, Duration delay) {
+			this.sink = sink;
+			this.attempt = attempt;
+			this.delay = delay;
+		}
+
+		void start() {
+			this.sink.onCancel(this.disposables);
+			subscribe(this.attempt);
+			this.disposables.add(Mono.delay(this.delay).subscribe(tick -> {
+				// Count the hedged attempt first, so that the first one failing meanwhile waits for it
+				this.pendingAttempts.incrementAndGet();
+				if (!this.done.get() && tryAcquireHedge()) {
+					subscribe(this.attempt);
+				}
+				else {
+					this.pendingAttempts.decrementAndGet();
+				}
+			}));
+		}
+
+		private void subscribe(Mono<ClientResponse> attempt) {
+			this.disposables.add(attempt
+					.contextWrite(this.sink.currentContext())
+					.subscribe(this::onResponse, this::onError, this::onComplete));
+		}
+
+		private void onResponse(ClientResponse response) {
+			if (this.done.compareAndSet(false, true)) {
+				this.sink.success(response);
+				this.disposables.dispose();
+			}
+			else {
+				response.releaseBody().subscribe();
+			}
+		}
+
+		private void onError(Throwable ex) {
+			if (this.pendingAttempts.decrementAndGet() == 0 && this.done.compareAndSet(false, true)) {
+				this.disposables.dispose();
+				this.sink.error(ex);
+			}
+		}
+
+		private void onComplete() {
+			if (!this.done.get() && this.pendingAttempts.decrementAndGet() == 0 &&
+					this.done.compareAndSet(false, true)) {
+				this.disposables.dispose();
+				this.sink.success();
+			}
+		}
+	}
+
+}
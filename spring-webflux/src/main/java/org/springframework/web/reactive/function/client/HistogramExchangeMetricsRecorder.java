@@ -0,0 +1,203 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.reactive.function.client;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.util.Assert;
+
+/**
+ * {@link ExchangeMetricsRecorder} that keeps latency histograms in memory,
+ * for the duration of exchanges and for the time spent waiting for a
+ * connection, in order to tell apart latency of the remote service from
+ * waiting on the local connection pool.
+ *
+ * <p>Histograms are keyed by HTTP method and URI template, e.g.
+ * {@code "GET /hotels/{hotel}"}. Exchanges prepared without a URI template
+ * are keyed by the scheme, host, and port of their URI instead, so that the
+ * number of histograms remains bounded.
+ *
+ * @author Brian Clozel
+ * @since 5.3.11
+ */
+public class HistogramExchangeMetricsRecorder implements ExchangeMetricsRecorder {
+
+	private final Map<String, Histogram> durations = new ConcurrentHashMap<>();
+
+	private final Map<String, Histogram> connectionAcquireTimes = new ConcurrentHashMap<>();
+
+
+	@Override
+	public void record(ExchangeMetrics metrics) {
+		String key = getKey(metrics);
+		getHistogram(this.durations, key).record(metrics.getDuration());
+		Duration connectionAcquireTime = metrics.getConnectionAcquireTime();
+		if (connectionAcquireTime != null) {
+			getHistogram(this.connectionAcquireTimes, key).record(connectionAcquireTime);
+		}
+	}
+
+	/**
+	 * Return the key of the histograms to record the given exchange in.
+	 * @param metrics the metrics of the exchange
+	 * @return the key to use
+	 */
+	protected String getKey(ExchangeMetrics metrics) {
+		String uriTemplate = metrics.getUriTemplate();
+		if (uriTemplate != null) {
+			return metrics.getMethod() + " " + uriTemplate;
+		}
+		URI uri = metrics.getUri();
+		return metrics.getMethod() + " " + uri.getScheme() + "://" + uri.getRawAuthority();
+	}
+
+	private static Histogram getHistogram(Map<String, Histogram> histograms, String key) {
+		Histogram histogram = histograms.get(key);
+		if (histogram == null) {
+			histogram = histograms.computeIfAbsent(key, k -> new Histogram());
+		}
+		return histogram;
+	}
+
+	/**
+	 * Return the histograms of exchange durations, by key.
+	 * @see ExchangeMetrics#getDuration()
+	 */
+	public Map<String, Histogram> getDurations() {
+		return Collections.unmodifiableMap(this.durations);
+	}
+
+	/**
+	 * Return the histograms of connection acquisition times, by key.
+	 * @see ExchangeMetrics#getConnectionAcquireTime()
+	 */
+	public Map<String, Histogram> getConnectionAcquireTimes() {
+		return Collections.unmodifiableMap(this.connectionAcquireTimes);
+	}
+
+
+	/**
+	 * Histogram of durations, with buckets that grow exponentially, each
+	 * power of two being split into 8 linear sub-buckets, for a relative
+	 * error of at most 12.5%.
+	 */
+	public static final class Histogram {
+
+		private static final int SUB_BUCKET_BITS = 3;
+
+		private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+
+		private final AtomicLongArray buckets = new AtomicLongArray((64 - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT);
+
+		private final LongAdder count = new LongAdder();
+
+		private final LongAdder totalNanos = new LongAdder();
+
+		private final AtomicLong maxNanos = new AtomicLong();
+
+
+		Histogram() {
+		}
+
+		void record(Duration duration) {
+			long nanos = Math.max(0, duration.toNanos());
+			this.buckets.incrementAndGet(bucketIndex(nanos));
+			this.count.increment();
+			this.totalNanos.add(nanos);
+			long max = this.maxNanos.get();
+			while (nanos > max && !this.maxNanos.compareAndSet(max, nanos)) {
+				max = this.maxNanos.get();
+			}
+		}
+
+		/**
+		 * Return the number of recorded durations.
+		 */
+		public long getCount() {
+			return this.count.sum();
+		}
+
+		/**
+		 * Return the sum of the recorded durations.
+		 */
+		public Duration getTotalTime() {
+			return Duration.ofNanos(this.totalNanos.sum());
+		}
+
+		/**
+		 * Return the largest recorded duration.
+		 */
+		public Duration getMax() {
+			return Duration.ofNanos(this.maxNanos.get());
+		}
+
+		/**
+		 * Return the duration below or at which the given percentage of recorded
+		 * durations fall, as the upper bound of the bucket it falls into.
+		 * @param percentile the percentile, between 0 and 100
+		 */
+		public Duration getValueAtPercentile(double percentile) {
+			Assert.isTrue(percentile >= 0 && percentile <= 100, "Percentile must be between 0 and 100");
+			long count = getCount();
+			if (count == 0) {
+				return Duration.ZERO;
+			}
+			long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+			long seen = 0;
+			for (int i = 0; i < this.buckets.length(); i++) {
+				seen += this.buckets.get(i);
+				if (seen >= rank) {
+					return Duration.ofNanos(Math.min(bucketUpperBound(i), this.maxNanos.get()));
+				}
+			}
+			return getMax();
+		}
+
+		static int bucketIndex(long nanos) {
+			if (nanos < SUB_BUCKET_COUNT) {
+				return (int) nanos;
+			}
+			int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+			int shift = exponent - SUB_BUCKET_BITS;
+			return ((shift + 1) << SUB_BUCKET_BITS) + (int) ((nanos >>> shift) & (SUB_BUCKET_COUNT - 1));
+		}
+
+		static long bucketUpperBound(int index) {
+			if (index < SUB_BUCKET_COUNT) {
+				return index;
+			}
+			int shift = (index >>> SUB_BUCKET_BITS) - 1;
+			long lowerBound = (long) (SUB_BUCKET_COUNT + (index & (SUB_BUCKET_COUNT - 1))) << shift;
+			return lowerBound + (1L << shift) - 1;
+		}
+
+		@Override
+		public String toString() {
+			return "count=" + getCount() + ", p50=" + getValueAtPercentile(50) +
+					", p99=" + getValueAtPercentile(99) + ", max=" + getMax();
+		}
+	}
+
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.reactive.function.client.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+import org.springframework.lang.Nullable;
+
+/**
+ * {@link Event} extension for recording the
+ * {@link org.springframework.web.reactive.function.client.ExchangeMetrics}
+ * of a client exchange in Java Flight Recorder.
+ *
+ * <p>The event is committed once the exchange has completed, with its timings
+ * recorded as {@link Timespan} fields rather than as the event duration.
+ *
+ * @author Brian Clozel
+ * @since 5.3.11
+ */
+@Category({"Spring", "WebClient"})
+@Label("HTTP Exchange")
+@Description("WebClient HTTP Exchange")
+@StackTrace(false)
+class FlightRecorderExchangeEvent extends Event {
+
+	@Label("Method")
+	String method;
+
+	@Label("URI")
+	String uri;
+
+	@Label("URI Template")
+	@Nullable
+	String uriTemplate;
+
+	@Label("Status")
+	int status;
+
+	@Label("Error")
+	@Nullable
+	String error;
+
+	@Label("Cancelled")
+	boolean cancelled;
+
+	@Label("Exchange Duration")
+	@Timespan(Timespan.NANOSECONDS)
+	long exchangeDuration;
+
+	@Label("Connection Acquire Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long connectionAcquireTime = -1;
+
+}
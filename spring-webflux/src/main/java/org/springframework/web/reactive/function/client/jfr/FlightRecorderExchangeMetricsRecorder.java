@@ -0,0 +1,58 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.reactive.function.client.jfr;
+
+import java.time.Duration;
+
+import org.springframework.web.reactive.function.client.ExchangeMetrics;
+import org.springframework.web.reactive.function.client.ExchangeMetricsRecorder;
+
+/**
+ * {@link ExchangeMetricsRecorder} implementation for the Java Flight Recorder.
+ * <p>This variant records {@link ExchangeMetrics} as Flight Recorder events,
+ * when such events are enabled in the current recording. Once it is configured
+ * through {@link org.springframework.web.reactive.function.client.ExchangeFilterFunctions#metrics},
+ * you can record data by launching the application with recording enabled:
+ * {@code java -XX:StartFlightRecording:filename=recording.jfr,duration=10s -jar app.jar}.
+ *
+ * @author Brian Clozel
+ * @since 5.3.11
+ */
+public class FlightRecorderExchangeMetricsRecorder implements ExchangeMetricsRecorder {
+
+	@Override
+	public void record(ExchangeMetrics metrics) {
+		FlightRecorderExchangeEvent event = new FlightRecorderExchangeEvent();
+		if (!event.isEnabled()) {
+			return;
+		}
+		event.method = metrics.getMethod().name();
+		event.uri = metrics.getUri().toString();
+		event.uriTemplate = metrics.getUriTemplate();
+		event.status = metrics.getStatusCode();
+		Throwable error = metrics.getError();
+		event.error = (error != null ? error.getClass().getName() : null);
+		event.cancelled = metrics.isCancelled();
+		event.exchangeDuration = metrics.getDuration().toNanos();
+		Duration connectionAcquireTime = metrics.getConnectionAcquireTime();
+		if (connectionAcquireTime != null) {
+			event.connectionAcquireTime = connectionAcquireTime.toNanos();
+		}
+		event.commit();
+	}
+
+}
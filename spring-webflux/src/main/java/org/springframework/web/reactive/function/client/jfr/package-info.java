@@ -0,0 +1,11 @@
+/**
+ * Support package for recording {@code WebClient} exchange metrics using
+ * Java Flight Recorder.
+ */
+@NonNullApi
+@NonNullFields
+
+package org.springframework.web.reactive.function.client.jfr;
+
+import org.springframework.lang.NonNullApi;
+import org.springframework.lang.NonNullFields;
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2019 the original author or authors.
+ * Copyright 2002-2021 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -33,6 +33,7 @@ import org.springframework.core.ReactiveAdapterRegistry;
 import org.springframework.http.MediaType;
 import org.springframework.lang.Nullable;
 import org.springframework.util.Assert;
+import org.springframework.web.accept.MediaTypeNegotiationCache;
 import org.springframework.web.reactive.HandlerMapping;
 import org.springframework.web.reactive.HandlerResult;
 import org.springframework.web.reactive.accept.RequestedContentTypeResolver;
@@ -60,6 +61,11 @@ public abstract class HandlerResultHandlerSupport implements Ordered {
 
 	private int order = LOWEST_PRECEDENCE;
 
+	@Nullable
+	private MediaTypeNegotiationCache negotiationCache = new MediaTypeNegotiationCache();
+
+	private final MediaTypeNegotiationCache.MediaTypeSelector mediaTypeSelector = this::negotiateMediaType;
+
 
 	protected HandlerResultHandlerSupport(RequestedContentTypeResolver contentTypeResolver,
 			ReactiveAdapterRegistry adapterRegistry) {
@@ -100,6 +106,19 @@ public abstract class HandlerResultHandlerSupport implements Ordered {
 		return this.order;
 	}
 
+	/**
+	 * Set the cache for the media type selected per combination of acceptable
+	 * and producible media types.
+	 * <p>By default, each instance uses its own {@link MediaTypeNegotiationCache}.
+	 * A cache may be shared between several result handlers, in which case each
+	 * of them holds its own entries. Set to {@code null} to disable caching.
+	 * @param negotiationCache the cache to use, or {@code null} for none
+	 * @since 5.3.11
+	 */
+	public void setMediaTypeNegotiationCache(@Nullable MediaTypeNegotiationCache negotiationCache) {
+		this.negotiationCache = negotiationCache;
+	}
+
 
 	/**
 	 * Get a {@code ReactiveAdapter} for the top-level return value type.
@@ -131,6 +150,31 @@ public abstract class HandlerResultHandlerSupport implements Ordered {
 		List<MediaType> acceptableTypes = getAcceptableTypes(exchange);
 		List<MediaType> producibleTypes = getProducibleTypes(exchange, producibleTypesSupplier);
 
+		MediaType selected;
+		if (this.negotiationCache != null) {
+			selected = this.negotiationCache.getSelectedMediaType(
+					acceptableTypes, producibleTypes, this.mediaTypeSelector);
+		}
+		else {
+			selected = negotiateMediaType(acceptableTypes, producibleTypes);
+		}
+
+		if (selected != null) {
+			if (logger.isDebugEnabled()) {
+				logger.debug(exchange.getLogPrefix() + "Using '" + selected + "' given " + acceptableTypes +
+						" and supported " + producibleTypes);
+			}
+		}
+		else if (logger.isDebugEnabled()) {
+			logger.debug(exchange.getLogPrefix() +
+					"No match for " + acceptableTypes + ", supported: " + producibleTypes);
+		}
+
+		return selected;
+	}
+
+	@Nullable
+	private MediaType negotiateMediaType(List<MediaType> acceptableTypes, List<MediaType> producibleTypes) {
 		Set<MediaType> compatibleMediaTypes = new LinkedHashSet<>();
 		for (MediaType acceptable : acceptableTypes) {
 			for (MediaType producible : producibleTypes) {
@@ -143,31 +187,15 @@ public abstract class HandlerResultHandlerSupport implements Ordered {
 		List<MediaType> result = new ArrayList<>(compatibleMediaTypes);
 		MediaType.sortBySpecificityAndQuality(result);
 
-		MediaType selected = null;
 		for (MediaType mediaType : result) {
 			if (mediaType.isConcrete()) {
-				selected = mediaType;
-				break;
+				return mediaType.removeQualityValue();
 			}
 			else if (mediaType.isPresentIn(ALL_APPLICATION_MEDIA_TYPES)) {
-				selected = MediaType.APPLICATION_OCTET_STREAM;
-				break;
+				return MediaType.APPLICATION_OCTET_STREAM;
 			}
 		}
-
-		if (selected != null) {
-			selected = selected.removeQualityValue();
-			if (logger.isDebugEnabled()) {
-				logger.debug(exchange.getLogPrefix() + "Using '" + selected + "' given " + acceptableTypes +
-						" and supported " + producibleTypes);
-			}
-		}
-		else if (logger.isDebugEnabled()) {
-			logger.debug(exchange.getLogPrefix() +
-					"No match for " + acceptableTypes + ", supported: " + producibleTypes);
-		}
-
-		return selected;
+		return null;
 	}
 
 	private List<MediaType> getAcceptableTypes(ServerWebExchange exchange) {
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2020 the original author or authors.
+ * Copyright 2002-2021 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -145,7 +145,7 @@ public abstract class AbstractListenerWebSocketSession<T> extends AbstractWebSoc
 			WebSocketSendProcessor sendProcessor = new WebSocketSendProcessor();
 			this.sendProcessor = sendProcessor;
 			return Mono.from(subscriber -> {
-					messages.subscribe(sendProcessor);
+					applySendBufferStrategy(messages).subscribe(sendProcessor);
 					sendProcessor.subscribe(subscriber);
 			});
 		}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2018 the original author or authors.
+ * Copyright 2002-2021 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -29,6 +29,7 @@ import reactor.core.publisher.Mono;
 
 import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.lang.Nullable;
 import org.springframework.util.Assert;
 import org.springframework.web.reactive.socket.HandshakeInfo;
 import org.springframework.web.reactive.socket.WebSocketMessage;
@@ -59,6 +60,12 @@ public abstract class AbstractWebSocketSession<T> implements WebSocketSession {
 
 	private final String logPrefix;
 
+	@Nullable
+	private volatile SendBufferStrategy sendBufferStrategy;
+
+	@Nullable
+	private volatile SendBuffer sendBuffer;
+
 
 	/**
 	 * Create a new WebSocket session.
@@ -114,6 +121,54 @@ public abstract class AbstractWebSocketSession<T> implements WebSocketSession {
 		return this.logPrefix;
 	}
 
+	/**
+	 * Configure a strategy to buffer outbound messages with while the client
+	 * is not reading them as fast as they are sent. This must be set before
+	 * {@link #send(Publisher)} is called, typically at the start of
+	 * {@link org.springframework.web.reactive.socket.WebSocketHandler#handle}.
+	 * <p>By default this is not set, and messages are sent with the flow
+	 * control of the underlying WebSocket API only.
+	 * @param sendBufferStrategy the strategy to use
+	 * @since 5.3.11
+	 */
+	public void setSendBufferStrategy(@Nullable SendBufferStrategy sendBufferStrategy) {
+		this.sendBufferStrategy = sendBufferStrategy;
+	}
+
+	/**
+	 * Return the configured {@link SendBufferStrategy}, if any.
+	 * @since 5.3.11
+	 */
+	@Nullable
+	public SendBufferStrategy getSendBufferStrategy() {
+		return this.sendBufferStrategy;
+	}
+
+	/**
+	 * Return metrics for outbound messages, if a {@link SendBufferStrategy}
+	 * is configured and {@link #send(Publisher)} has been called.
+	 * @since 5.3.11
+	 */
+	@Nullable
+	public SendBufferMetrics getSendBufferMetrics() {
+		return this.sendBuffer;
+	}
+
+	/**
+	 * Apply the configured {@link SendBufferStrategy}, if any, to the
+	 * messages passed to {@link #send(Publisher)}.
+	 * @since 5.3.11
+	 */
+	protected Publisher<WebSocketMessage> applySendBufferStrategy(Publisher<WebSocketMessage> messages) {
+		SendBufferStrategy strategy = this.sendBufferStrategy;
+		if (strategy == null) {
+			return messages;
+		}
+		SendBuffer sendBuffer = new SendBuffer(strategy, this);
+		this.sendBuffer = sendBuffer;
+		return sendBuffer.apply(messages);
+	}
+
 
 	@Override
 	public abstract Flux<WebSocketMessage> receive();
@@ -98,7 +98,7 @@ public class ReactorNettyWebSocketSession
 
 	@Override
 	public Mono<Void> send(Publisher<WebSocketMessage> messages) {
-		Flux<WebSocketFrame> frames = Flux.from(messages)
+		Flux<WebSocketFrame> frames = Flux.from(applySendBufferStrategy(messages))
 				.doOnNext(message -> {
 					if (logger.isTraceEnabled()) {
 						logger.trace(getLogPrefix() + "Sending " + message);
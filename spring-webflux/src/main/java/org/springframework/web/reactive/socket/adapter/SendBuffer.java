@@ -0,0 +1,317 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.reactive.socket.adapter;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.reactivestreams.Publisher;
+import reactor.core.Exceptions;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+import org.springframework.lang.Nullable;
+import org.springframework.web.reactive.socket.CloseStatus;
+import org.springframework.web.reactive.socket.WebSocketMessage;
+import org.springframework.web.reactive.socket.WebSocketSession;
+
+/**
+ * Buffer between the messages passed to {@link WebSocketSession#send} and
+ * the underlying WebSocket API, which consumes messages with unbounded demand
+ * and applies a {@link SendBufferStrategy} while the API is not ready for more.
+ *
+ * @author Rossen Stoyanchev
+ * @since 5.3.11
+ */
+final class SendBuffer implements SendBufferMetrics {
+
+	private final SendBufferStrategy strategy;
+
+	private final WebSocketSession session;
+
+	/** Buffered messages by conflation key, in the order to send them. */
+	private final Map<Object, WebSocketMessage> messages = new LinkedHashMap<>();
+
+	private final AtomicInteger wip = new AtomicInteger();
+
+	@Nullable
+	private FluxSink<WebSocketMessage> sink;
+
+	@Nullable
+	private UpstreamSubscriber upstream;
+
+	private boolean done;
+
+	@Nullable
+	private Throwable error;
+
+	private volatile long bufferedByteCount;
+
+	private volatile long maxBufferedByteCount;
+
+	private volatile long sentMessageCount;
+
+	private volatile long droppedMessageCount;
+
+	private volatile long conflatedMessageCount;
+
+
+	SendBuffer(SendBufferStrategy strategy, WebSocketSession session) {
+		this.strategy = strategy;
+		this.session = session;
+	}
+
+
+	/**
+	 * Apply the buffer to the given messages. The returned {@code Flux} can be
+	 * subscribed to once.
+	 */
+	Flux<WebSocketMessage> apply(Publisher<WebSocketMessage> messages) {
+		return Flux.create(sink -> {
+			this.sink = sink;
+			sink.onRequest(n -> drain());
+			sink.onDispose(this::dispose);
+			UpstreamSubscriber upstream = new UpstreamSubscriber(sink.currentContext());
+			this.upstream = upstream;
+			messages.subscribe(upstream);
+		});
+	}
+
+	private void offer(WebSocketMessage message) {
+		boolean overflow = false;
+		synchronized (this) {
+			if (this.done) {
+				message.release();
+				return;
+			}
+			Object key = getKey(message);
+			WebSocketMessage previous = this.messages.get(key);
+			long byteCount = message.getPayload().readableByteCount();
+			long bufferedByteCount = this.bufferedByteCount -
+					(previous != null ? previous.getPayload().readableByteCount() : 0);
+			Iterator<Map.Entry<Object, WebSocketMessage>> iterator = this.messages.entrySet().iterator();
+			while (bufferedByteCount + byteCount > this.strategy.getMaxBytes() && iterator.hasNext()) {
+				Map.Entry<Object, WebSocketMessage> entry = iterator.next();
+				if (entry.getKey().equals(key)) {
+					continue;
+				}
+				if (this.strategy.getOverflowAction() != SendBufferStrategy.OverflowAction.DROP_OLDEST) {
+					overflow = true;
+					break;
+				}
+				iterator.remove();
+				bufferedByteCount -= entry.getValue().getPayload().readableByteCount();
+				this.droppedMessageCount++;
+				entry.getValue().release();
+			}
+			if (overflow) {
+				message.release();
+				this.done = true;
+				if (this.strategy.getOverflowAction() == SendBufferStrategy.OverflowAction.ERROR) {
+					this.error = Exceptions.failWithOverflow(
+							"Send buffer limit of " + this.strategy.getMaxBytes() + " bytes exceeded");
+				}
+				clear();
+			}
+			else {
+				if (previous != null) {
+					// Replace in place, keeping the position of the previous message
+					this.conflatedMessageCount++;
+					previous.release();
+				}
+				this.messages.put(key, message);
+				this.bufferedByteCount = bufferedByteCount + byteCount;
+				this.maxBufferedByteCount = Math.max(this.maxBufferedByteCount, this.bufferedByteCount);
+			}
+		}
+		if (overflow) {
+			cancelUpstream();
+			CloseStatus closeStatus = this.strategy.getCloseStatus();
+			if (closeStatus != null) {
+				this.session.close(closeStatus).subscribe();
+			}
+		}
+		drain();
+	}
+
+	private Object getKey(WebSocketMessage message) {
+		Function<WebSocketMessage, Object> keyExtractor = this.strategy.getKeyExtractor();
+		Object key = (keyExtractor != null ? keyExtractor.apply(message) : null);
+		return (key != null ? key : new Object());
+	}
+
+	private void handleError(Throwable ex) {
+		synchronized (this) {
+			if (this.done) {
+				return;
+			}
+			this.done = true;
+			this.error = ex;
+		}
+		drain();
+	}
+
+	private void handleComplete() {
+		synchronized (this) {
+			this.done = true;
+		}
+		drain();
+	}
+
+	private void drain() {
+		FluxSink<WebSocketMessage> sink = this.sink;
+		if (sink == null || this.wip.getAndIncrement() != 0) {
+			return;
+		}
+		do {
+			while (true) {
+				WebSocketMessage message = null;
+				boolean terminate = false;
+				synchronized (this) {
+					if (this.messages.isEmpty()) {
+						terminate = this.done;
+					}
+					else if (sink.requestedFromDownstream() > 0) {
+						Iterator<WebSocketMessage> iterator = this.messages.values().iterator();
+						message = iterator.next();
+						iterator.remove();
+						this.bufferedByteCount -= message.getPayload().readableByteCount();
+						this.sentMessageCount++;
+					}
+				}
+				if (message != null) {
+					sink.next(message);
+					continue;
+				}
+				if (terminate) {
+					Throwable ex = this.error;
+					if (ex != null) {
+						sink.error(ex);
+					}
+					else {
+						sink.complete();
+					}
+				}
+				break;
+			}
+		}
+		while (this.wip.decrementAndGet() != 0);
+	}
+
+	private void dispose() {
+		cancelUpstream();
+		synchronized (this) {
+			this.done = true;
+			clear();
+		}
+	}
+
+	private void cancelUpstream() {
+		UpstreamSubscriber upstream = this.upstream;
+		if (upstream != null) {
+			upstream.dispose();
+		}
+	}
+
+	private void clear() {
+		for (WebSocketMessage message : this.messages.values()) {
+			message.release();
+		}
+		this.messages.clear();
+		this.bufferedByteCount = 0;
+	}
+
+
+	// SendBufferMetrics
+
+	@Override
+	public synchronized int getBufferedMessageCount() {
+		return this.messages.size();
+	}
+
+	@Override
+	public long getBufferedByteCount() {
+		return this.bufferedByteCount;
+	}
+
+	@Override
+	public long getMaxBufferedByteCount() {
+		return this.maxBufferedByteCount;
+	}
+
+	@Override
+	public long getSentMessageCount() {
+		return this.sentMessageCount;
+	}
+
+	@Override
+	public long getDroppedMessageCount() {
+		return this.droppedMessageCount;
+	}
+
+	@Override
+	public long getConflatedMessageCount() {
+		return this.conflatedMessageCount;
+	}
+
+	@Override
+	public String toString() {
+		return "SendBuffer[buffered=" + getBufferedMessageCount() + " messages/" + this.bufferedByteCount +
+				" bytes, max=" + this.maxBufferedByteCount + " bytes, sent=" + this.sentMessageCount +
+				", dropped=" + this.droppedMessageCount + ", conflated=" + this.conflatedMessageCount + "]";
+	}
+
+
+	/**
+	 * Subscriber to the messages to send, with unbounded demand.
+	 */
+	private class UpstreamSubscriber extends BaseSubscriber<WebSocketMessage> {
+
+		private final Context context;
+
+		UpstreamSubscriber(ContextView context) {
+			this.context = Context.of(context);
+		}
+
+		@Override
+		public Context currentContext() {
+			return this.context;
+		}
+
+		@Override
+		protected void hookOnNext(WebSocketMessage message) {
+			offer(message);
+		}
+
+		@Override
+		protected void hookOnError(Throwable ex) {
+			handleError(ex);
+		}
+
+		@Override
+		protected void hookOnComplete() {
+			handleComplete();
+		}
+	}
+
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.reactive.socket.adapter;
+
+/**
+ * Metrics for the outbound messages of a session that uses a
+ * {@link SendBufferStrategy}.
+ *
+ * @author Rossen Stoyanchev
+ * @since 5.3.11
+ * @see AbstractWebSocketSession#getSendBufferMetrics()
+ */
+public interface SendBufferMetrics {
+
+	/**
+	 * Return the number of messages currently buffered.
+	 */
+	int getBufferedMessageCount();
+
+	/**
+	 * Return the number of payload bytes currently buffered.
+	 */
+	long getBufferedByteCount();
+
+	/**
+	 * Return the highest number of payload bytes buffered at any one time.
+	 */
+	long getMaxBufferedByteCount();
+
+	/**
+	 * Return the number of messages passed on to the underlying WebSocket API.
+	 */
+	long getSentMessageCount();
+
+	/**
+	 * Return the number of messages discarded to stay within the limit.
+	 */
+	long getDroppedMessageCount();
+
+	/**
+	 * Return the number of messages replaced by a newer message with the same key.
+	 */
+	long getConflatedMessageCount();
+
+}
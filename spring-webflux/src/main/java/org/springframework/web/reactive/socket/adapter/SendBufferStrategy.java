@@ -0,0 +1,144 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.reactive.socket.adapter;
+
+import java.util.function.Function;
+
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+import org.springframework.web.reactive.socket.CloseStatus;
+import org.springframework.web.reactive.socket.WebSocketMessage;
+
+/**
+ * Strategy for messages sent through a {@link AbstractWebSocketSession session}
+ * faster than the client reads them. Messages are buffered in front of the
+ * underlying WebSocket API up to a maximum number of payload bytes, and the
+ * strategy decides what happens once that limit would be exceeded:
+ * <ul>
+ * <li>{@link #buffer(int)} fails the send with an overflow error.
+ * <li>{@link #dropOldest(int)} discards the oldest buffered messages.
+ * <li>{@link #conflate(int, Function)} replaces a buffered message with a newer
+ * one for the same key, in place, and otherwise discards the oldest messages.
+ * <li>{@link #close(int, CloseStatus)} closes the session.
+ * </ul>
+ * <p>The buffer always accepts at least one message, even if larger than the
+ * limit. Discarded messages are {@link WebSocketMessage#release() released}.
+ *
+ * @author Rossen Stoyanchev
+ * @since 5.3.11
+ * @see AbstractWebSocketSession#setSendBufferStrategy(SendBufferStrategy)
+ * @see SendBufferMetrics
+ */
+public final class SendBufferStrategy {
+
+	private final int maxBytes;
+
+	private final OverflowAction overflowAction;
+
+	@Nullable
+	private final Function<WebSocketMessage, Object> keyExtractor;
+
+	@Nullable
+	private final CloseStatus closeStatus;
+
+
+	private SendBufferStrategy(int maxBytes, OverflowAction overflowAction,
+			@Nullable Function<WebSocketMessage, Object> keyExtractor, @Nullable CloseStatus closeStatus) {
+
+		Assert.isTrue(maxBytes > 0, "maxBytes must be greater than 0");
+		this.maxBytes = maxBytes;
+		this.overflowAction = overflowAction;
+		this.keyExtractor = keyExtractor;
+		this.closeStatus = closeStatus;
+	}
+
+
+	/**
+	 * Return the maximum number of payload bytes to buffer.
+	 */
+	public int getMaxBytes() {
+		return this.maxBytes;
+	}
+
+	OverflowAction getOverflowAction() {
+		return this.overflowAction;
+	}
+
+	@Nullable
+	Function<WebSocketMessage, Object> getKeyExtractor() {
+		return this.keyExtractor;
+	}
+
+	@Nullable
+	CloseStatus getCloseStatus() {
+		return this.closeStatus;
+	}
+
+
+	/**
+	 * Buffer up to the given number of bytes, and fail the send with an
+	 * overflow error if the limit would be exceeded.
+	 * @param maxBytes the maximum number of payload bytes to buffer
+	 */
+	public static SendBufferStrategy buffer(int maxBytes) {
+		return new SendBufferStrategy(maxBytes, OverflowAction.ERROR, null, null);
+	}
+
+	/**
+	 * Buffer up to the given number of bytes, and discard the oldest buffered
+	 * messages to make room for new ones if the limit would be exceeded.
+	 * @param maxBytes the maximum number of payload bytes to buffer
+	 */
+	public static SendBufferStrategy dropOldest(int maxBytes) {
+		return new SendBufferStrategy(maxBytes, OverflowAction.DROP_OLDEST, null, null);
+	}
+
+	/**
+	 * Buffer up to the given number of bytes, keeping only the latest message
+	 * for each key. A new message replaces a buffered message with the same
+	 * key at its position in the buffer; messages with a {@code null} key are
+	 * never conflated. The oldest messages are discarded if the limit would
+	 * still be exceeded.
+	 * @param maxBytes the maximum number of payload bytes to buffer
+	 * @param keyExtractor function to obtain the conflation key of a message
+	 */
+	public static SendBufferStrategy conflate(int maxBytes, Function<WebSocketMessage, Object> keyExtractor) {
+		Assert.notNull(keyExtractor, "keyExtractor is required");
+		return new SendBufferStrategy(maxBytes, OverflowAction.DROP_OLDEST, keyExtractor, null);
+	}
+
+	/**
+	 * Buffer up to the given number of bytes, and close the session with the
+	 * given status if the limit would be exceeded.
+	 * @param maxBytes the maximum number of payload bytes to buffer
+	 * @param closeStatus the status to close the session with
+	 */
+	public static SendBufferStrategy close(int maxBytes, CloseStatus closeStatus) {
+		Assert.notNull(closeStatus, "CloseStatus is required");
+		return new SendBufferStrategy(maxBytes, OverflowAction.CLOSE, null, closeStatus);
+	}
+
+
+	/**
+	 * What to do when the buffer limit would be exceeded.
+	 */
+	enum OverflowAction {
+
+		ERROR, DROP_OLDEST, CLOSE
+	}
+
+}
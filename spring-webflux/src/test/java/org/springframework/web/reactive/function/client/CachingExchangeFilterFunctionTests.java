@@ -0,0 +1,160 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.reactive.function.client;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.cache.HttpResponseCache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for {@link CachingExchangeFilterFunction}.
+ *
+ * @author Arjen Poutsma
+ */
+class CachingExchangeFilterFunctionTests {
+
+	private static final URI URL = URI.create("https://example.com/hotels/1");
+
+	private static final Instant NOW = Instant.parse("2021-10-01T10:00:00Z");
+
+
+	private final HttpResponseCache cache = new HttpResponseCache();
+
+	private final ExchangeFilterFunction filter = ExchangeFilterFunctions.cacheResponses(this.cache);
+
+	private final List<ClientRequest> requests = new ArrayList<>();
+
+	private final List<ClientResponse> responses = new ArrayList<>();
+
+	private final ExchangeFunction exchange = request -> {
+		this.requests.add(request);
+		return Mono.just(this.responses.remove(0));
+	};
+
+
+	CachingExchangeFilterFunctionTests() {
+		this.cache.setClock(Clock.fixed(NOW, ZoneOffset.UTC));
+	}
+
+
+	@Test
+	void responseStoredWhenConsumed() {
+		this.responses.add(response(HttpStatus.OK, "max-age=60", "body"));
+
+		StepVerifier.create(exchange(HttpMethod.GET)).expectNext("body").verifyComplete();
+		StepVerifier.create(exchange(HttpMethod.GET)).expectNext("body").verifyComplete();
+		assertThat(this.requests).hasSize(1);
+
+		StepVerifier.create(this.filter.filter(request(HttpMethod.GET), this.exchange))
+				.consumeNextWith(response -> {
+					assertThat(response.statusCode()).isEqualTo(HttpStatus.OK);
+					assertThat(response.headers().asHttpHeaders().getCacheControl()).isEqualTo("max-age=60");
+					assertThat(response.headers().asHttpHeaders().getFirst(HttpHeaders.AGE)).isEqualTo("0");
+				})
+				.verifyComplete();
+	}
+
+	@Test
+	void cachedResponseDecodedWithGivenStrategies() {
+		ExchangeStrategies strategies = ExchangeStrategies.builder().build();
+		ExchangeFilterFunction filter = ExchangeFilterFunctions.cacheResponses(this.cache, strategies);
+		this.responses.add(response(HttpStatus.OK, "max-age=60", "body"));
+		StepVerifier.create(filter.filter(request(HttpMethod.GET), this.exchange)
+				.flatMap(response -> response.bodyToMono(String.class)))
+				.expectNext("body")
+				.verifyComplete();
+
+		StepVerifier.create(filter.filter(request(HttpMethod.GET), this.exchange))
+				.consumeNextWith(response -> assertThat(response.strategies()).isSameAs(strategies))
+				.verifyComplete();
+		assertThat(this.requests).hasSize(1);
+	}
+
+	@Test
+	void revalidate() {
+		ClientResponse response = response(HttpStatus.OK, "max-age=60", "body").mutate()
+				.header(HttpHeaders.ETAG, "\"v1\"")
+				.build();
+		this.responses.add(response);
+		this.responses.add(response(HttpStatus.NOT_MODIFIED, "max-age=60", ""));
+		StepVerifier.create(exchange(HttpMethod.GET)).expectNext("body").verifyComplete();
+
+		this.cache.setClock(Clock.fixed(NOW.plusSeconds(90), ZoneOffset.UTC));
+		StepVerifier.create(exchange(HttpMethod.GET)).expectNext("body").verifyComplete();
+		assertThat(this.requests).hasSize(2);
+		assertThat(this.requests.get(1).headers().getIfNoneMatch()).containsExactly("\"v1\"");
+	}
+
+	@Test
+	void staleWhileRevalidate() {
+		this.responses.add(response(HttpStatus.OK, "max-age=60, stale-while-revalidate=60", "v1"));
+		this.responses.add(response(HttpStatus.OK, "max-age=60, stale-while-revalidate=60", "v2"));
+		StepVerifier.create(exchange(HttpMethod.GET)).expectNext("v1").verifyComplete();
+
+		this.cache.setClock(Clock.fixed(NOW.plusSeconds(90), ZoneOffset.UTC));
+		StepVerifier.create(exchange(HttpMethod.GET)).expectNext("v1").verifyComplete();
+		assertThat(this.requests).hasSize(2);
+		StepVerifier.create(exchange(HttpMethod.GET)).expectNext("v2").verifyComplete();
+	}
+
+	@Test
+	void unsafeMethodNotCached() {
+		this.responses.add(response(HttpStatus.OK, "max-age=60", "body"));
+		this.responses.add(response(HttpStatus.OK, "max-age=60", "body"));
+
+		StepVerifier.create(exchange(HttpMethod.POST)).expectNext("body").verifyComplete();
+		StepVerifier.create(exchange(HttpMethod.POST)).expectNext("body").verifyComplete();
+		assertThat(this.requests).hasSize(2);
+	}
+
+
+	private Mono<String> exchange(HttpMethod method) {
+		return this.filter.filter(request(method), this.exchange)
+				.flatMap(response -> response.bodyToMono(String.class));
+	}
+
+	private static ClientRequest request(HttpMethod method) {
+		return ClientRequest.create(method, URL).build();
+	}
+
+	private static ClientResponse response(HttpStatus status, String cacheControl, String body) {
+		DataBuffer buffer = DefaultDataBufferFactory.sharedInstance.wrap(body.getBytes(StandardCharsets.UTF_8));
+		return ClientResponse.create(status)
+				.header(HttpHeaders.CACHE_CONTROL, cacheControl)
+				.body(Flux.just(buffer))
+				.build();
+	}
+
+}
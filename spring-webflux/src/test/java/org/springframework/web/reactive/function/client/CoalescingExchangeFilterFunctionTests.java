@@ -0,0 +1,171 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.reactive.function.client;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferLimitException;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for {@link CoalescingExchangeFilterFunction}.
+ *
+ * @author Arjen Poutsma
+ */
+class CoalescingExchangeFilterFunctionTests {
+
+	private static final URI URL = URI.create("https://example.com/hotels/1");
+
+
+	private final ExchangeFilterFunction filter = ExchangeFilterFunctions.coalesceRequests(16);
+
+	private final AtomicInteger count = new AtomicInteger();
+
+	private final Sinks.One<ClientResponse> sink = Sinks.one();
+
+	private final ExchangeFunction exchange = r -> {
+		this.count.incrementAndGet();
+		return this.sink.asMono();
+	};
+
+
+	@Test
+	void coalesceIdenticalRequests() {
+		Mono<String> first = this.filter.filter(request(HttpMethod.GET, "bar"), this.exchange)
+				.flatMap(response -> response.bodyToMono(String.class));
+		Mono<String> second = this.filter.filter(request(HttpMethod.GET, "bar"), this.exchange)
+				.flatMap(response -> response.bodyToMono(String.class));
+
+		StepVerifier.create(Flux.merge(first, second))
+				.then(() -> this.sink.tryEmitValue(response("foo")))
+				.expectNext("foo", "foo")
+				.verifyComplete();
+		assertThat(this.count.get()).isEqualTo(1);
+
+		// No longer in flight
+		StepVerifier.create(this.filter.filter(request(HttpMethod.GET, "bar"), r -> {
+			this.count.incrementAndGet();
+			return Mono.just(response("baz"));
+		}).flatMap(response -> response.bodyToMono(String.class)))
+				.expectNext("baz")
+				.verifyComplete();
+		assertThat(this.count.get()).isEqualTo(2);
+	}
+
+	@Test
+	void notCoalescedWithDifferentHeaders() {
+		Mono<ClientResponse> first = this.filter.filter(request(HttpMethod.GET, "bar"), this.exchange);
+		Mono<ClientResponse> second = this.filter.filter(request(HttpMethod.GET, "baz"), this.exchange);
+
+		StepVerifier.create(Flux.merge(first, second))
+				.then(() -> this.sink.tryEmitValue(response("foo")))
+				.expectNextCount(2)
+				.verifyComplete();
+		assertThat(this.count.get()).isEqualTo(2);
+	}
+
+	@Test
+	void notCoalescedWithDifferentAttributes() {
+		ClientRequest request = request(HttpMethod.GET, "bar");
+		Mono<ClientResponse> first = this.filter.filter(
+				ClientRequest.from(request).attribute("foo", "bar").build(), this.exchange);
+		Mono<ClientResponse> second = this.filter.filter(
+				ClientRequest.from(request).attribute("foo", "baz").build(), this.exchange);
+
+		StepVerifier.create(Flux.merge(first, second))
+				.then(() -> this.sink.tryEmitValue(response("foo")))
+				.expectNextCount(2)
+				.verifyComplete();
+		assertThat(this.count.get()).isEqualTo(2);
+	}
+
+	@Test
+	void notCoalescedWithHttpRequestCustomizer() {
+		ClientRequest request = ClientRequest.from(request(HttpMethod.GET, "bar"))
+				.httpRequest(httpRequest -> {})
+				.build();
+		Mono<ClientResponse> first = this.filter.filter(request, this.exchange);
+		Mono<ClientResponse> second = this.filter.filter(request, this.exchange);
+
+		StepVerifier.create(Flux.merge(first, second))
+				.then(() -> this.sink.tryEmitValue(response("foo")))
+				.expectNextCount(2)
+				.verifyComplete();
+		assertThat(this.count.get()).isEqualTo(2);
+	}
+
+	@Test
+	void notCoalescedForPost() {
+		Mono<ClientResponse> first = this.filter.filter(request(HttpMethod.POST, "bar"), this.exchange);
+		Mono<ClientResponse> second = this.filter.filter(request(HttpMethod.POST, "bar"), this.exchange);
+
+		StepVerifier.create(Flux.merge(first, second))
+				.then(() -> this.sink.tryEmitValue(response("foo")))
+				.expectNextCount(2)
+				.verifyComplete();
+		assertThat(this.count.get()).isEqualTo(2);
+	}
+
+	@Test
+	void cancelWhenAllCancelled() {
+		AtomicInteger cancelCount = new AtomicInteger();
+		ExchangeFunction exchange = r -> Mono.<ClientResponse>never().doOnCancel(cancelCount::incrementAndGet);
+
+		Disposable first = this.filter.filter(request(HttpMethod.GET, "bar"), exchange).subscribe();
+		Disposable second = this.filter.filter(request(HttpMethod.GET, "bar"), exchange).subscribe();
+
+		first.dispose();
+		assertThat(cancelCount.get()).isEqualTo(0);
+		second.dispose();
+		assertThat(cancelCount.get()).isEqualTo(1);
+	}
+
+	@Test
+	void bodyExceedingMaxInMemorySize() {
+		Mono<ClientResponse> result = this.filter.filter(request(HttpMethod.GET, "bar"),
+				r -> Mono.just(response("0123456789abcdefg")));
+
+		StepVerifier.create(result)
+				.expectError(DataBufferLimitException.class)
+				.verify();
+	}
+
+
+	private static ClientRequest request(HttpMethod method, String header) {
+		return ClientRequest.create(method, URL).header("Foo", header).build();
+	}
+
+	private static ClientResponse response(String body) {
+		DataBuffer buffer = DefaultDataBufferFactory.sharedInstance.wrap(body.getBytes(StandardCharsets.UTF_8));
+		return ClientResponse.create(HttpStatus.OK).body(Flux.just(buffer)).build();
+	}
+
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.reactive.function.client;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for {@link ConcurrencyLimitingExchangeFilterFunction}.
+ *
+ * @author Arjen Poutsma
+ */
+class ConcurrencyLimitingExchangeFilterFunctionTests {
+
+	private static final String ORIGIN = "https://example.com";
+
+
+	private final ConcurrencyLimitingExchangeFilterFunction filter =
+			new ConcurrencyLimitingExchangeFilterFunction(2, 10);
+
+
+	@Test
+	void rejectOverLimit() {
+		ExchangeFunction never = r -> Mono.never();
+		Disposable first = this.filter.filter(request(ORIGIN), never).subscribe();
+		Disposable second = this.filter.filter(request(ORIGIN), never).subscribe();
+
+		StepVerifier.create(this.filter.filter(request(ORIGIN), never))
+				.expectErrorSatisfies(ex -> assertThat(ex)
+						.isInstanceOf(WebClientRequestException.class)
+						.hasCauseInstanceOf(RejectedExecutionException.class))
+				.verify();
+
+		// Other origins are not affected
+		ClientResponse response = ClientResponse.create(HttpStatus.OK).build();
+		StepVerifier.create(this.filter.filter(request("https://example.org"), r -> Mono.just(response)))
+				.expectNext(response)
+				.verifyComplete();
+
+		// Cancelled requests free up the limit
+		first.dispose();
+		StepVerifier.create(this.filter.filter(request(ORIGIN), r -> Mono.just(response)))
+				.expectNext(response)
+				.verifyComplete();
+		second.dispose();
+	}
+
+	@Test
+	void decreaseLimitWhenOverloaded() {
+		ExchangeFunction unavailable = r -> Mono.just(ClientResponse.create(HttpStatus.SERVICE_UNAVAILABLE).build());
+		for (int i = 0; i < 5; i++) {
+			this.filter.filter(request(ORIGIN), unavailable).block();
+		}
+		assertThat(this.filter.getLimit(ORIGIN)).isEqualTo(1);
+
+		ExchangeFunction failing = r -> Mono.error(new IllegalStateException());
+		StepVerifier.create(this.filter.filter(request(ORIGIN), failing))
+				.expectError(IllegalStateException.class)
+				.verify();
+		assertThat(this.filter.getLimit(ORIGIN)).isEqualTo(1);
+	}
+
+	@Test
+	void increaseLimitWhenUsed() {
+		ExchangeFunction ok = r -> Mono.delay(Duration.ofMillis(1)).map(tick -> ClientResponse.create(HttpStatus.OK).build());
+		for (int i = 0; i < 20; i++) {
+			Mono.zip(this.filter.filter(request(ORIGIN), ok), this.filter.filter(request(ORIGIN), ok)).block();
+		}
+		assertThat(this.filter.getLimit(ORIGIN)).isGreaterThan(2);
+	}
+
+	@Test
+	void limitNotIncreasedWhenNotUsed() {
+		ConcurrencyLimitingExchangeFilterFunction filter = new ConcurrencyLimitingExchangeFilterFunction(4, 10);
+		ExchangeFunction ok = r -> Mono.just(ClientResponse.create(HttpStatus.OK).build());
+		for (int i = 0; i < 20; i++) {
+			filter.filter(request(ORIGIN), ok).block();
+		}
+		assertThat(filter.getLimit(ORIGIN)).isEqualTo(4);
+	}
+
+
+	private static ClientRequest request(String origin) {
+		return ClientRequest.create(HttpMethod.GET, URI.create(origin + "/hotels/1")).build();
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2020 the original author or authors.
+ * Copyright 2002-2021 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -18,6 +18,9 @@ package org.springframework.web.reactive.function.client;
 
 import java.net.URI;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.junit.jupiter.api.Test;
 import reactor.core.publisher.Flux;
@@ -30,6 +33,7 @@ import org.springframework.core.io.buffer.DefaultDataBufferFactory;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.client.reactive.ClientHttpConnectionListener;
 import org.springframework.web.reactive.function.BodyExtractors;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
@@ -215,6 +219,62 @@ public class ExchangeFilterFunctionsTests {
 
 	}
 
+	@Test
+	public void metrics() {
+		ClientRequest request = ClientRequest.create(HttpMethod.GET, URI.create("https://example.com/hotels/42"))
+				.attribute(DefaultWebClient.URI_TEMPLATE_ATTRIBUTE, "/hotels/{hotel}")
+				.build();
+		ClientResponse response = ClientResponse.create(HttpStatus.NOT_FOUND).build();
+		List<ExchangeMetrics> recorded = new ArrayList<>();
+
+		Mono<ClientResponse> result = ExchangeFilterFunctions.metrics(recorded::add)
+				.filter(request, req -> Mono.deferContextual(context -> {
+					context.get(ClientHttpConnectionListener.class).connectionAcquired(Duration.ofMillis(5));
+					return Mono.just(response);
+				}));
+
+		StepVerifier.create(result).expectNext(response).verifyComplete();
+		assertThat(recorded).hasSize(1);
+		ExchangeMetrics metrics = recorded.get(0);
+		assertThat(metrics.getMethod()).isEqualTo(HttpMethod.GET);
+		assertThat(metrics.getUri()).isEqualTo(request.url());
+		assertThat(metrics.getUriTemplate()).isEqualTo("/hotels/{hotel}");
+		assertThat(metrics.getStatusCode()).isEqualTo(404);
+		assertThat(metrics.getError()).isNull();
+		assertThat(metrics.getConnectionAcquireTime()).isEqualTo(Duration.ofMillis(5));
+		assertThat(metrics.getDuration()).isGreaterThan(Duration.ZERO);
+	}
+
+	@Test
+	public void metricsWithError() {
+		ClientRequest request = ClientRequest.create(HttpMethod.GET, DEFAULT_URL).build();
+		IllegalStateException error = new IllegalStateException();
+		List<ExchangeMetrics> recorded = new ArrayList<>();
+
+		Mono<ClientResponse> result = ExchangeFilterFunctions.metrics(recorded::add)
+				.filter(request, req -> Mono.error(error));
+
+		StepVerifier.create(result).expectErrorSatisfies(ex -> assertThat(ex).isSameAs(error)).verify();
+		assertThat(recorded).hasSize(1);
+		assertThat(recorded.get(0).getStatusCode()).isEqualTo(-1);
+		assertThat(recorded.get(0).getError()).isSameAs(error);
+		assertThat(recorded.get(0).getUriTemplate()).isNull();
+		assertThat(recorded.get(0).getConnectionAcquireTime()).isNull();
+	}
+
+	@Test
+	public void metricsWithCancel() {
+		ClientRequest request = ClientRequest.create(HttpMethod.GET, DEFAULT_URL).build();
+		List<ExchangeMetrics> recorded = new ArrayList<>();
+
+		Mono<ClientResponse> result = ExchangeFilterFunctions.metrics(recorded::add)
+				.filter(request, req -> Mono.never());
+
+		StepVerifier.create(result).thenCancel().verify();
+		assertThat(recorded).hasSize(1);
+		assertThat(recorded.get(0).isCancelled()).isTrue();
+	}
+
 	private String string(DataBuffer buffer) {
 		String value = buffer.toString(UTF_8);
 		DataBufferUtils.release(buffer);
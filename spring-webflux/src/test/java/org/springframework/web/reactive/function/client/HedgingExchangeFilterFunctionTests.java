@@ -0,0 +1,141 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.reactive.function.client;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for {@link HedgingExchangeFilterFunction}.
+ *
+ * @author Arjen Poutsma
+ */
+class HedgingExchangeFilterFunctionTests {
+
+	private static final URI URL = URI.create("https://example.com/hotels/1");
+
+
+	private final ExchangeFilterFunction filter = ExchangeFilterFunctions.hedgeRequests(95, Duration.ofMillis(50));
+
+
+	@Test
+	void notHedgedWithoutResponseTimes() {
+		AtomicInteger count = new AtomicInteger();
+		ExchangeFunction exchange = r -> {
+			count.incrementAndGet();
+			return Mono.delay(Duration.ofMillis(200)).map(tick -> ClientResponse.create(HttpStatus.OK).build());
+		};
+
+		StepVerifier.create(this.filter.filter(request(HttpMethod.GET), exchange))
+				.expectNextCount(1)
+				.verifyComplete();
+		assertThat(count.get()).isEqualTo(1);
+	}
+
+	@Test
+	void hedgeSlowRequest() {
+		warmUp();
+
+		AtomicInteger count = new AtomicInteger();
+		AtomicBoolean cancelled = new AtomicBoolean();
+		ClientResponse response = ClientResponse.create(HttpStatus.OK).build();
+		ExchangeFunction exchange = r -> (count.incrementAndGet() == 1 ?
+				Mono.<ClientResponse>never().doOnCancel(() -> cancelled.set(true)) : Mono.just(response));
+
+		StepVerifier.create(this.filter.filter(request(HttpMethod.GET), exchange))
+				.expectNext(response)
+				.expectComplete()
+				.verify(Duration.ofSeconds(5));
+		assertThat(count.get()).isEqualTo(2);
+		assertThat(cancelled.get()).isTrue();
+	}
+
+	@Test
+	void hedgeFailedRequest() {
+		warmUp();
+
+		AtomicInteger count = new AtomicInteger();
+		ClientResponse response = ClientResponse.create(HttpStatus.OK).build();
+		ExchangeFunction exchange = r -> (count.incrementAndGet() == 1 ?
+				Mono.delay(Duration.ofMillis(100)).then(Mono.error(new IllegalStateException("boo"))) :
+				Mono.delay(Duration.ofMillis(200)).thenReturn(response));
+
+		// The failure of the first request waits for the hedged request
+		StepVerifier.create(this.filter.filter(request(HttpMethod.GET), exchange))
+				.expectNext(response)
+				.expectComplete()
+				.verify(Duration.ofSeconds(5));
+		assertThat(count.get()).isEqualTo(2);
+	}
+
+	@Test
+	void notHedgedWithoutBudget() {
+		warmUp();
+
+		AtomicInteger count = new AtomicInteger();
+		ExchangeFunction exchange = r -> {
+			count.incrementAndGet();
+			return Mono.delay(Duration.ofMillis(100)).map(tick -> ClientResponse.create(HttpStatus.OK).build());
+		};
+
+		for (int i = 0; i < 20; i++) {
+			this.filter.filter(request(HttpMethod.GET), exchange).block(Duration.ofSeconds(5));
+		}
+		// 100 tokens from warming up, plus 1 per request, at a cost of 10 per hedged request
+		assertThat(count.get()).isEqualTo(20 + 11);
+	}
+
+	@Test
+	void notHedgedForPost() {
+		warmUp();
+
+		AtomicInteger count = new AtomicInteger();
+		ExchangeFunction exchange = r -> {
+			count.incrementAndGet();
+			return Mono.delay(Duration.ofMillis(200)).map(tick -> ClientResponse.create(HttpStatus.OK).build());
+		};
+
+		StepVerifier.create(this.filter.filter(request(HttpMethod.POST), exchange))
+				.expectNextCount(1)
+				.verifyComplete();
+		assertThat(count.get()).isEqualTo(1);
+	}
+
+
+	private void warmUp() {
+		ExchangeFunction exchange = r -> Mono.just(ClientResponse.create(HttpStatus.OK).build());
+		for (int i = 0; i < HedgingExchangeFilterFunction.WINDOW_SIZE; i++) {
+			this.filter.filter(request(HttpMethod.GET), exchange).block();
+		}
+	}
+
+	private static ClientRequest request(HttpMethod method) {
+		return ClientRequest.create(method, URL).build();
+	}
+
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.reactive.function.client;
+
+import java.net.URI;
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+import org.springframework.http.HttpMethod;
+import org.springframework.web.reactive.function.client.HistogramExchangeMetricsRecorder.Histogram;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for {@link HistogramExchangeMetricsRecorder}.
+ *
+ * @author Brian Clozel
+ */
+class HistogramExchangeMetricsRecorderTests {
+
+	private final HistogramExchangeMetricsRecorder recorder = new HistogramExchangeMetricsRecorder();
+
+
+	@Test
+	void recordByUriTemplate() {
+		for (int i = 1; i <= 100; i++) {
+			this.recorder.record(metrics("https://example.com/hotels/" + i, "/hotels/{hotel}",
+					Duration.ofMillis(i), Duration.ofMillis(1)));
+		}
+		this.recorder.record(metrics("https://example.com:8080/hotels/1", null, Duration.ofMillis(1), null));
+
+		assertThat(this.recorder.getDurations())
+				.containsOnlyKeys("GET /hotels/{hotel}", "GET https://example.com:8080");
+		assertThat(this.recorder.getConnectionAcquireTimes()).containsOnlyKeys("GET /hotels/{hotel}");
+
+		Histogram histogram = this.recorder.getDurations().get("GET /hotels/{hotel}");
+		assertThat(histogram.getCount()).isEqualTo(100);
+		assertThat(histogram.getMax()).isEqualTo(Duration.ofMillis(100));
+		assertThat(histogram.getTotalTime()).isEqualTo(Duration.ofMillis(5050));
+		assertThat(histogram.getValueAtPercentile(100)).isEqualTo(Duration.ofMillis(100));
+		assertThat(histogram.getValueAtPercentile(50).toNanos())
+				.isBetween(Duration.ofMillis(50).toNanos(), Duration.ofMillis(50).toNanos() * 9 / 8);
+		assertThat(histogram.getValueAtPercentile(99).toNanos())
+				.isBetween(Duration.ofMillis(99).toNanos(), Duration.ofMillis(100).toNanos());
+	}
+
+	@Test
+	void buckets() {
+		long previousUpperBound = -1;
+		for (long nanos : new long[] {0, 1, 7, 8, 15, 16, 17, 1000, 123_456_789, Long.MAX_VALUE}) {
+			int index = Histogram.bucketIndex(nanos);
+			long upperBound = Histogram.bucketUpperBound(index);
+			assertThat(upperBound).isGreaterThanOrEqualTo(nanos);
+			assertThat(upperBound - nanos).isLessThanOrEqualTo(nanos / 8);
+			assertThat(upperBound).isGreaterThanOrEqualTo(previousUpperBound);
+			previousUpperBound = upperBound;
+		}
+	}
+
+
+	private static ExchangeMetrics metrics(String uri, String uriTemplate, Duration duration,
+			Duration connectionAcquireTime) {
+
+		return new ExchangeMetrics(HttpMethod.GET, URI.create(uri), uriTemplate, 200, null, false,
+				duration, connectionAcquireTime);
+	}
+
+}
@@ -82,6 +82,18 @@ public class HandlerResultHandlerTests {
 		assertThat(actual).isEqualTo(APPLICATION_JSON);
 	}
 
+	@Test
+	void sortsByQualityWithoutNegotiationCache() {
+		this.resultHandler.setMediaTypeNegotiationCache(null);
+		MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/path")
+				.header("Accept", "text/plain; q=0.5, application/json"));
+
+		List<MediaType> mediaTypes = Arrays.asList(TEXT_PLAIN, APPLICATION_JSON);
+		MediaType actual = this.resultHandler.selectMediaType(exchange, () -> mediaTypes);
+
+		assertThat(actual).isEqualTo(APPLICATION_JSON);
+	}
+
 	@Test
 	void charsetFromAcceptHeader() {
 		MediaType text8859 = MediaType.parseMediaType("text/plain;charset=ISO-8859-1");
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.reactive.socket.adapter;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.web.reactive.socket.CloseStatus;
+import org.springframework.web.reactive.socket.WebSocketMessage;
+import org.springframework.web.reactive.socket.WebSocketSession;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+/**
+ * Unit tests for {@link SendBuffer}.
+ *
+ * @author Rossen Stoyanchev
+ */
+class SendBufferTests {
+
+	private final WebSocketSession session = mock(WebSocketSession.class);
+
+
+	@Test
+	void passThroughWithDemand() {
+		SendBuffer buffer = new SendBuffer(SendBufferStrategy.buffer(4), this.session);
+
+		StepVerifier.create(buffer.apply(Flux.just(message("aaa"), message("bbb"))).map(this::text))
+				.expectNext("aaa", "bbb")
+				.verifyComplete();
+
+		assertThat(buffer.getSentMessageCount()).isEqualTo(2);
+		assertThat(buffer.getBufferedMessageCount()).isEqualTo(0);
+		assertThat(buffer.getMaxBufferedByteCount()).isEqualTo(3);
+	}
+
+	@Test
+	void bufferOverflow() {
+		SendBuffer buffer = new SendBuffer(SendBufferStrategy.buffer(4), this.session);
+
+		StepVerifier.create(buffer.apply(Flux.just(message("aaa"), message("bbb"))), 0)
+				.expectErrorMatches(Exceptions::isOverflow)
+				.verify();
+
+		assertThat(buffer.getBufferedByteCount()).isEqualTo(0);
+		verifyNoInteractions(this.session);
+	}
+
+	@Test
+	void largeMessageAccepted() {
+		SendBuffer buffer = new SendBuffer(SendBufferStrategy.buffer(2), this.session);
+
+		StepVerifier.create(buffer.apply(Flux.just(message("aaa"))).map(this::text), 0)
+				.thenRequest(1)
+				.expectNext("aaa")
+				.verifyComplete();
+	}
+
+	@Test
+	void dropOldest() {
+		SendBuffer buffer = new SendBuffer(SendBufferStrategy.dropOldest(6), this.session);
+		Flux<WebSocketMessage> messages = Flux.just(message("aaa"), message("bbb"), message("ccc"));
+
+		StepVerifier.create(buffer.apply(messages).map(this::text), 0)
+				.then(() -> {
+					assertThat(buffer.getBufferedMessageCount()).isEqualTo(2);
+					assertThat(buffer.getBufferedByteCount()).isEqualTo(6);
+					assertThat(buffer.getDroppedMessageCount()).isEqualTo(1);
+				})
+				.thenRequest(2)
+				.expectNext("bbb", "ccc")
+				.verifyComplete();
+	}
+
+	@Test
+	void conflate() {
+		SendBufferStrategy strategy = SendBufferStrategy.conflate(100, message -> message.getPayloadAsText().charAt(0));
+		SendBuffer buffer = new SendBuffer(strategy, this.session);
+		Flux<WebSocketMessage> messages = Flux.just(message("a1"), message("b1"), message("a2"), message("a3"));
+
+		StepVerifier.create(buffer.apply(messages).map(this::text), 0)
+				.then(() -> assertThat(buffer.getConflatedMessageCount()).isEqualTo(2))
+				.thenRequest(2)
+				.expectNext("a3", "b1")
+				.verifyComplete();
+
+		assertThat(buffer.getDroppedMessageCount()).isEqualTo(0);
+		assertThat(buffer.getSentMessageCount()).isEqualTo(2);
+	}
+
+	@Test
+	void closeOnOverflow() {
+		given(this.session.close(CloseStatus.POLICY_VIOLATION)).willReturn(Mono.empty());
+		SendBufferStrategy strategy = SendBufferStrategy.close(4, CloseStatus.POLICY_VIOLATION);
+		SendBuffer buffer = new SendBuffer(strategy, this.session);
+
+		StepVerifier.create(buffer.apply(Flux.just(message("aaa"), message("bbb"))), 0)
+				.verifyComplete();
+
+		verify(this.session).close(CloseStatus.POLICY_VIOLATION);
+	}
+
+	@Test
+	void cancel() {
+		SendBuffer buffer = new SendBuffer(SendBufferStrategy.buffer(100), this.session);
+
+		StepVerifier.create(buffer.apply(Flux.just(message("aaa")).concatWith(Flux.never())), 0)
+				.then(() -> assertThat(buffer.getBufferedMessageCount()).isEqualTo(1))
+				.thenCancel()
+				.verify();
+
+		assertThat(buffer.getBufferedMessageCount()).isEqualTo(0);
+	}
+
+
+	private WebSocketMessage message(String text) {
+		byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+		return new WebSocketMessage(WebSocketMessage.Type.TEXT, DefaultDataBufferFactory.sharedInstance.wrap(bytes));
+	}
+
+	private String text(WebSocketMessage message) {
+		return message.getPayloadAsText();
+	}
+
+}
@@ -36,6 +36,7 @@ import org.springframework.util.CollectionUtils;
 import org.springframework.util.StringUtils;
 import org.springframework.web.HttpMediaTypeNotAcceptableException;
 import org.springframework.web.accept.ContentNegotiationManager;
+import org.springframework.web.accept.MediaTypeNegotiationCache;
 import org.springframework.web.context.request.NativeWebRequest;
 import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.method.support.HandlerMethodReturnValueHandler;
@@ -79,6 +80,11 @@ public abstract class AbstractMessageConverterMethodProcessor extends AbstractMe
 
     private final Set<String> safeExtensions = new HashSet<>();
 
+    @Nullable
+    private MediaTypeNegotiationCache negotiationCache = new MediaTypeNegotiationCache();
+
+    private final MediaTypeNegotiationCache.MediaTypeSelector mediaTypeSelector = this::negotiateMediaType;
+
 
     /**
      * Constructor with list of converters only.
@@ -112,6 +118,20 @@ public abstract class AbstractMessageConverterMethodProcessor extends AbstractMe
     }
 
 
+    /**
+     * Set the cache for the media type selected per combination of acceptable
+     * and producible media types.
+     * <p>By default, each instance uses its own {@link MediaTypeNegotiationCache}.
+     * A cache may be shared between several instances, in which case each of
+     * them holds its own entries. Set to {@code null} to disable caching.
+     * @param negotiationCache the cache to use, or {@code null} for none
+     * @since 5.3.11
+     */
+    public void setMediaTypeNegotiationCache(@Nullable MediaTypeNegotiationCache negotiationCache) {
+        this.negotiationCache = negotiationCache;
+    }
+
+
     /**
      * Creates a new {@link HttpOutputMessage} from the given {@link NativeWebRequest}.
      *
@@ -232,15 +252,13 @@ public abstract class AbstractMessageConverterMethodProcessor extends AbstractMe
             if (body != null && producibleTypes.isEmpty()) {
                 throw new HttpMessageNotWritableException("No converter found for return value of type: " + valueType);
             }
-            List<MediaType> mediaTypesToUse = new ArrayList<>();
-            for (MediaType requestedType : acceptableTypes) {
-                for (MediaType producibleType : producibleTypes) {
-                    if (requestedType.isCompatibleWith(producibleType)) {
-                        mediaTypesToUse.add(getMostSpecificMediaType(requestedType, producibleType));
-                    }
-                }
+            if (this.negotiationCache != null) {
+                selectedMediaType = this.negotiationCache.getSelectedMediaType(
+                        acceptableTypes, producibleTypes, this.mediaTypeSelector);
+            } else {
+                selectedMediaType = negotiateMediaType(acceptableTypes, producibleTypes);
             }
-            if (mediaTypesToUse.isEmpty()) {
+            if (selectedMediaType == null && !hasCompatibleMediaType(acceptableTypes, producibleTypes)) {
                 if (body != null) {
                     throw new HttpMediaTypeNotAcceptableException(producibleTypes);
                 }
@@ -250,18 +268,6 @@ public abstract class AbstractMessageConverterMethodProcessor extends AbstractMe
                 return;
             }
 
-            MediaType.sortBySpecificityAndQuality(mediaTypesToUse);
-
-            for (MediaType mediaType : mediaTypesToUse) {
-                if (mediaType.isConcrete()) {
-                    selectedMediaType = mediaType;
-                    break;
-                } else if (mediaType.isPresentIn(ALL_APPLICATION_MEDIA_TYPES)) {
-                    selectedMediaType = MediaType.APPLICATION_OCTET_STREAM;
-                    break;
-                }
-            }
-
             if (logger.isDebugEnabled()) {
                 logger.debug(
                         "Using '" + selectedMediaType + "', given " + acceptableTypes + " and supported " + producibleTypes);
@@ -400,6 +406,43 @@ public abstract class AbstractMessageConverterMethodProcessor extends AbstractMe
         return this.contentNegotiationManager.resolveMediaTypes(new ServletWebRequest(request));
     }
 
+    /**
+     * Select the media type to write with from the acceptable and producible
+     * media types, or {@code null} if none is suitable. The result depends on
+     * the given media types only and may be cached per combination of them.
+     */
+    @Nullable
+    private MediaType negotiateMediaType(List<MediaType> acceptableTypes, List<MediaType> producibleTypes) {
+        List<MediaType> mediaTypesToUse = new ArrayList<>();
+        for (MediaType requestedType : acceptableTypes) {
+            for (MediaType producibleType : producibleTypes) {
+                if (requestedType.isCompatibleWith(producibleType)) {
+                    mediaTypesToUse.add(getMostSpecificMediaType(requestedType, producibleType));
+                }
+            }
+        }
+        MediaType.sortBySpecificityAndQuality(mediaTypesToUse);
+        for (MediaType mediaType : mediaTypesToUse) {
+            if (mediaType.isConcrete()) {
+                return mediaType;
+            } else if (mediaType.isPresentIn(ALL_APPLICATION_MEDIA_TYPES)) {
+                return MediaType.APPLICATION_OCTET_STREAM;
+            }
+        }
+        return null;
+    }
+
+    private boolean hasCompatibleMediaType(List<MediaType> acceptableTypes, List<MediaType> producibleTypes) {
+        for (MediaType requestedType : acceptableTypes) {
+            for (MediaType producibleType : producibleTypes) {
+                if (requestedType.isCompatibleWith(producibleType)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     /**
      * Return the more specific of the acceptable and the producible media types
      * with the q-value of the former.
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2020 the original author or authors.
+ * Copyright 2002-2021 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -66,6 +66,10 @@ public class ResponseBodyEmitter {
 	@Nullable
 	private final Long timeout;
 
+	private boolean nonBlocking;
+
+	private int nonBlockingBufferLimit = 1024 * 1024;
+
 	@Nullable
 	private Handler handler;
 
@@ -123,6 +127,56 @@ public class ResponseBodyEmitter {
 		return this.timeout;
 	}
 
+	/**
+	 * Whether to write sent data with Servlet 3.1 non-blocking I/O.
+	 * <p>When enabled, each object passed to {@link #send(Object)} is serialized
+	 * on the calling thread and queued, and queued content is written whenever
+	 * the Servlet container signals through a {@link javax.servlet.WriteListener}
+	 * that the response can accept more data. A slow client therefore does not
+	 * hold up the sending thread, or any other thread, for the duration of a write.
+	 * <p>If the Servlet container does not support non-blocking writes for the
+	 * response, data is written with blocking I/O as usual.
+	 * <p>By default this is set to {@code false}.
+	 * @param nonBlocking whether to use non-blocking writes
+	 * @since 5.3.11
+	 * @see #setNonBlockingBufferLimit(int)
+	 */
+	public void setNonBlocking(boolean nonBlocking) {
+		this.nonBlocking = nonBlocking;
+	}
+
+	/**
+	 * Whether non-blocking writes are enabled.
+	 * @since 5.3.11
+	 */
+	public boolean isNonBlocking() {
+		return this.nonBlocking;
+	}
+
+	/**
+	 * Set the maximum number of bytes to queue while waiting for the client
+	 * to read, when {@link #setNonBlocking(boolean) non-blocking} writes are
+	 * enabled. If a send would grow an existing backlog beyond the limit, it
+	 * fails with an {@link IOException} and request processing completes with
+	 * that error. A single event is always accepted when nothing is queued,
+	 * regardless of its size.
+	 * <p>By default this is set to 1MB.
+	 * @param bufferLimit the limit in bytes
+	 * @since 5.3.11
+	 */
+	public void setNonBlockingBufferLimit(int bufferLimit) {
+		Assert.isTrue(bufferLimit > 0, "Buffer limit must be greater than 0");
+		this.nonBlockingBufferLimit = bufferLimit;
+	}
+
+	/**
+	 * Return the configured limit for queued bytes in non-blocking mode.
+	 * @since 5.3.11
+	 */
+	public int getNonBlockingBufferLimit() {
+		return this.nonBlockingBufferLimit;
+	}
+
 
 	synchronized void initialize(Handler handler) throws IOException {
 		this.handler = handler;
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2020 the original author or authors.
+ * Copyright 2002-2021 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,13 +16,19 @@
 
 package org.springframework.web.servlet.mvc.method.annotation;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
 import java.util.function.Consumer;
 
+import javax.servlet.ServletOutputStream;
 import javax.servlet.ServletRequest;
+import javax.servlet.WriteListener;
 import javax.servlet.http.HttpServletResponse;
 
 import org.springframework.core.MethodParameter;
@@ -30,6 +36,7 @@ import org.springframework.core.ReactiveAdapterRegistry;
 import org.springframework.core.ResolvableType;
 import org.springframework.core.task.TaskExecutor;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpOutputMessage;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.converter.HttpMessageConverter;
@@ -55,6 +62,10 @@ import org.springframework.web.method.support.ModelAndViewContainer;
  * <p>As of 5.0 also supports reactive return value types for any reactive
  * library with registered adapters in {@link ReactiveAdapterRegistry}.
  *
+ * <p>As of 5.3.11, emitters with {@link ResponseBodyEmitter#setNonBlocking
+ * non-blocking} writes enabled are written through a Servlet 3.1
+ * {@link WriteListener}, if supported by the Servlet container.
+ *
  * @author Rossen Stoyanchev
  * @since 4.2
  */
@@ -175,7 +186,14 @@ public class ResponseBodyEmitterReturnValueHandler implements HandlerMethodRetur
 		try {
 			DeferredResult<?> deferredResult = new DeferredResult<>(emitter.getTimeout());
 			WebAsyncUtils.getAsyncManager(webRequest).startDeferredResultProcessing(deferredResult, mavContainer);
-			handler = new HttpMessageConvertingHandler(outputMessage, deferredResult);
+			handler = null;
+			if (emitter.isNonBlocking()) {
+				handler = initNonBlockingHandler(
+						outputMessage, response, deferredResult, emitter.getNonBlockingBufferLimit());
+			}
+			if (handler == null) {
+				handler = new HttpMessageConvertingHandler(outputMessage, deferredResult);
+			}
 		}
 		catch (Throwable ex) {
 			emitter.initializeWithError(ex);
@@ -186,6 +204,30 @@ public class ResponseBodyEmitterReturnValueHandler implements HandlerMethodRetur
 	}
 
 
+	/**
+	 * Create a handler that writes through a {@link WriteListener}, or return
+	 * {@code null} if the response does not support non-blocking writes.
+	 */
+	@Nullable
+	private HttpMessageConvertingHandler initNonBlockingHandler(ServerHttpResponse outputMessage,
+			HttpServletResponse response, DeferredResult<?> deferredResult, int bufferLimit) throws IOException {
+
+		ServletOutputStream outputStream = response.getOutputStream();
+		NonBlockingHttpMessageConvertingHandler handler = new NonBlockingHttpMessageConvertingHandler(
+				outputMessage, outputStream, deferredResult, bufferLimit);
+		try {
+			outputStream.setWriteListener(handler);
+		}
+		catch (UnsupportedOperationException | IllegalStateException ex) {
+			// Fall back on blocking writes, with headers still to be written
+			return null;
+		}
+		// Write headers to the Servlet response
+		outputMessage.getBody();
+		return handler;
+	}
+
+
 	/**
 	 * ResponseBodyEmitter.Handler that writes with HttpMessageConverter's.
 	 */
@@ -202,21 +244,27 @@ public class ResponseBodyEmitterReturnValueHandler implements HandlerMethodRetur
 
 		@Override
 		public void send(Object data, @Nullable MediaType mediaType) throws IOException {
-			sendInternal(data, mediaType);
+			sendInternal(data, mediaType, this.outputMessage);
+			this.outputMessage.flush();
 		}
 
 		@SuppressWarnings("unchecked")
-		private <T> void sendInternal(T data, @Nullable MediaType mediaType) throws IOException {
+		protected <T> void sendInternal(T data, @Nullable MediaType mediaType, HttpOutputMessage outputMessage)
+				throws IOException {
+
 			for (HttpMessageConverter<?> converter : ResponseBodyEmitterReturnValueHandler.this.sseMessageConverters) {
 				if (converter.canWrite(data.getClass(), mediaType)) {
-					((HttpMessageConverter<T>) converter).write(data, mediaType, this.outputMessage);
-					this.outputMessage.flush();
+					((HttpMessageConverter<T>) converter).write(data, mediaType, outputMessage);
 					return;
 				}
 			}
 			throw new IllegalArgumentException("No suitable converter for " + data.getClass());
 		}
 
+		protected DeferredResult<?> getDeferredResult() {
+			return this.deferredResult;
+		}
+
 		@Override
 		public void complete() {
 			try {
@@ -250,6 +298,151 @@ public class ResponseBodyEmitterReturnValueHandler implements HandlerMethodRetur
 	}
 
 
+	/**
+	 * HttpMessageConvertingHandler that serializes data into a queue on the
+	 * sending thread, and writes queued content with non-blocking I/O whenever
+	 * the Servlet container indicates the response is ready.
+	 */
+	private class NonBlockingHttpMessageConvertingHandler extends HttpMessageConvertingHandler
+			implements WriteListener {
+
+		private final ServletOutputStream outputStream;
+
+		private final int bufferLimit;
+
+		private final BufferingOutputMessage bufferingMessage;
+
+		private final Deque<byte[]> queue = new ArrayDeque<>();
+
+		private int queuedBytes;
+
+		private boolean flushPending;
+
+		private boolean completed;
+
+		@Nullable
+		private Throwable failure;
+
+		public NonBlockingHttpMessageConvertingHandler(ServerHttpResponse outputMessage,
+				ServletOutputStream outputStream, DeferredResult<?> deferredResult, int bufferLimit) {
+
+			super(outputMessage, deferredResult);
+			this.outputStream = outputStream;
+			this.bufferLimit = bufferLimit;
+			this.bufferingMessage = new BufferingOutputMessage(outputMessage.getHeaders());
+		}
+
+		@Override
+		public synchronized void send(Object data, @Nullable MediaType mediaType) throws IOException {
+			if (this.failure != null) {
+				throw new IOException("Response write failed", this.failure);
+			}
+			this.bufferingMessage.reset();
+			sendInternal(data, mediaType, this.bufferingMessage);
+			byte[] content = this.bufferingMessage.toByteArray();
+			if (this.queue.isEmpty() && this.outputStream.isReady()) {
+				try {
+					this.outputStream.write(content);
+				}
+				catch (IOException ex) {
+					onError(ex);
+					throw ex;
+				}
+				this.flushPending = true;
+				writeIfPossible();
+				return;
+			}
+			if (!this.queue.isEmpty() && this.queuedBytes + content.length > this.bufferLimit) {
+				IOException ex = new IOException("Exceeded limit of " + this.bufferLimit +
+						" bytes queued for writing; client may not be reading fast enough");
+				this.failure = ex;
+				this.queue.clear();
+				this.queuedBytes = 0;
+				getDeferredResult().setErrorResult(ex);
+				throw ex;
+			}
+			this.queue.add(content);
+			this.queuedBytes += content.length;
+			this.flushPending = true;
+			writeIfPossible();
+		}
+
+		@Override
+		public synchronized void complete() {
+			this.completed = true;
+			writeIfPossible();
+		}
+
+		@Override
+		public synchronized void onWritePossible() {
+			writeIfPossible();
+		}
+
+		@Override
+		public synchronized void onError(Throwable ex) {
+			this.failure = ex;
+			this.queue.clear();
+			this.queuedBytes = 0;
+			getDeferredResult().setErrorResult(ex);
+		}
+
+		private void writeIfPossible() {
+			if (this.failure != null) {
+				return;
+			}
+			try {
+				while (!this.queue.isEmpty()) {
+					if (!this.outputStream.isReady()) {
+						// Resume in onWritePossible
+						return;
+					}
+					byte[] content = this.queue.poll();
+					this.queuedBytes -= content.length;
+					this.outputStream.write(content);
+				}
+				if (this.flushPending) {
+					if (!this.outputStream.isReady()) {
+						return;
+					}
+					this.flushPending = false;
+					this.outputStream.flush();
+				}
+				if (this.completed) {
+					getDeferredResult().setResult(null);
+				}
+			}
+			catch (IOException ex) {
+				onError(ex);
+			}
+		}
+	}
+
+
+	/**
+	 * HttpOutputMessage that collects the content written by a converter, and
+	 * shares the headers of the streaming response.
+	 */
+	private static class BufferingOutputMessage extends ByteArrayOutputStream implements HttpOutputMessage {
+
+		private final HttpHeaders headers;
+
+		public BufferingOutputMessage(HttpHeaders headers) {
+			super(256);
+			this.headers = headers;
+		}
+
+		@Override
+		public HttpHeaders getHeaders() {
+			return this.headers;
+		}
+
+		@Override
+		public OutputStream getBody() {
+			return this;
+		}
+	}
+
+
 	/**
 	 * Wrap to silently ignore header changes HttpMessageConverter's that would
 	 * otherwise cause HttpHeaders to raise exceptions.
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2019 the original author or authors.
+ * Copyright 2002-2021 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -24,10 +24,13 @@ import org.springframework.web.servlet.ViewResolver;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.util.LinkedHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Convenient base class for {@link org.springframework.web.servlet.ViewResolver}
@@ -35,6 +38,10 @@ import java.util.concurrent.ConcurrentHashMap;
  * once resolved: This means that view resolution won't be a performance problem,
  * no matter how costly initial view retrieval is.
  *
+ * <p>Cached views are served without locking. The creation of a view is
+ * guarded per cache key only, so that a slow view creation does not block
+ * the resolution of other views.
+ *
  * <p>Subclasses need to implement the {@link #loadView} template method,
  * building the View object for a specific view name and locale.
  *
@@ -91,21 +98,15 @@ public abstract class AbstractCachingViewResolver extends WebApplicationObjectSu
     private final Map<Object, View> viewAccessCache = new ConcurrentHashMap<>(DEFAULT_CACHE_LIMIT);
 
     /**
-     * Map from view key to View instance, synchronized for View creation.
+     * Keys of cached Views in the order of their creation, for eviction.
+     * Synchronized for any modification of the cache.
      */
-    @SuppressWarnings("serial")
-    private final Map<Object, View> viewCreationCache = new LinkedHashMap<Object, View>(
-            DEFAULT_CACHE_LIMIT, 0.75f, true) {
-        @Override
-        protected boolean removeEldestEntry(Map.Entry<Object, View> eldest) {
-            if (size() > getCacheLimit()) {
-                viewAccessCache.remove(eldest.getKey());
-                return true;
-            } else {
-                return false;
-            }
-        }
-    };
+    private final Set<Object> viewCreationOrder = new LinkedHashSet<>(DEFAULT_CACHE_LIMIT);
+
+    /**
+     * Locks for Views currently being created, per view key.
+     */
+    private final ConcurrentMap<Object, Object> viewCreationLocks = new ConcurrentHashMap<>();
 
 
     /**
@@ -193,21 +194,25 @@ public abstract class AbstractCachingViewResolver extends WebApplicationObjectSu
             Object cacheKey = getCacheKey(viewName, locale);
             View view = this.viewAccessCache.get(cacheKey);
             if (view == null) {
-                synchronized (this.viewCreationCache) {
-                    view = this.viewCreationCache.get(cacheKey);
-                    if (view == null) {
-                        // Ask the subclass to create the View object.
-                        view = createView(viewName, locale);
-                        if (view == null && this.cacheUnresolved) {
-                            view = UNRESOLVED_VIEW;
-                        }
-                        // filter默认啥都没干直接返回true
-                        if (view != null && this.cacheFilter.filter(view, viewName, locale)) {
-                            // 记录到缓存中
-                            this.viewAccessCache.put(cacheKey, view);
-                            this.viewCreationCache.put(cacheKey, view);
+                Object lock = this.viewCreationLocks.computeIfAbsent(cacheKey, key -> new Object());
+                try {
+                    synchronized (lock) {
+                        view = this.viewAccessCache.get(cacheKey);
+                        if (view == null) {
+                            // Ask the subclass to create the View object.
+                            view = createView(viewName, locale);
+                            if (view == null && this.cacheUnresolved) {
+                                view = UNRESOLVED_VIEW;
+                            }
+                            // filter默认啥都没干直接返回true
+                            if (view != null && this.cacheFilter.filter(view, viewName, locale)) {
+                                // 记录到缓存中
+                                putInCache(cacheKey, view);
+                            }
                         }
                     }
+                } finally {
+                    this.viewCreationLocks.remove(cacheKey, lock);
                 }
             } else {
                 if (logger.isTraceEnabled()) {
@@ -219,6 +224,19 @@ public abstract class AbstractCachingViewResolver extends WebApplicationObjectSu
         }
     }
 
+    private void putInCache(Object cacheKey, View view) {
+        synchronized (this.viewCreationOrder) {
+            this.viewAccessCache.put(cacheKey, view);
+            this.viewCreationOrder.add(cacheKey);
+            // Evict the eldest views beyond the limit
+            Iterator<Object> iterator = this.viewCreationOrder.iterator();
+            while (this.viewCreationOrder.size() > getCacheLimit() && iterator.hasNext()) {
+                this.viewAccessCache.remove(iterator.next());
+                iterator.remove();
+            }
+        }
+    }
+
     private static String formatKey(Object cacheKey) {
         return "View with key [" + cacheKey + "] ";
     }
@@ -250,9 +268,9 @@ public abstract class AbstractCachingViewResolver extends WebApplicationObjectSu
         } else {
             Object cacheKey = getCacheKey(viewName, locale);
             Object cachedView;
-            synchronized (this.viewCreationCache) {
-                this.viewAccessCache.remove(cacheKey);
-                cachedView = this.viewCreationCache.remove(cacheKey);
+            synchronized (this.viewCreationOrder) {
+                cachedView = this.viewAccessCache.remove(cacheKey);
+                this.viewCreationOrder.remove(cacheKey);
             }
             if (logger.isDebugEnabled()) {
                 // Some debug output might be useful...
@@ -268,9 +286,9 @@ public abstract class AbstractCachingViewResolver extends WebApplicationObjectSu
      */
     public void clearCache() {
         logger.debug("Clearing all views from the cache");
-        synchronized (this.viewCreationCache) {
+        synchronized (this.viewCreationOrder) {
             this.viewAccessCache.clear();
-            this.viewCreationCache.clear();
+            this.viewCreationOrder.clear();
         }
     }
 
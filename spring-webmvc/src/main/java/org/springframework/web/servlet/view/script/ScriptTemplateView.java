@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2019 the original author or authors.
+ * Copyright 2002-2021 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -27,6 +27,9 @@ import java.util.Map;
 import java.util.function.Function;
 import java.util.function.Supplier;
 
+import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
 import javax.script.Invocable;
 import javax.script.ScriptEngine;
 import javax.script.ScriptEngineManager;
@@ -47,6 +50,7 @@ import org.springframework.lang.Nullable;
 import org.springframework.scripting.support.StandardScriptEvalException;
 import org.springframework.scripting.support.StandardScriptUtils;
 import org.springframework.util.Assert;
+import org.springframework.util.ConcurrentReferenceHashMap;
 import org.springframework.util.FileCopyUtils;
 import org.springframework.util.ObjectUtils;
 import org.springframework.util.StringUtils;
@@ -117,6 +121,8 @@ public class ScriptTemplateView extends AbstractUrlBasedView {
 	@Nullable
 	private volatile ScriptEngineManager scriptEngineManager;
 
+	private final Map<CompiledScriptKey, CompiledScript> compiledScripts = new ConcurrentReferenceHashMap<>();
+
 
 	/**
 	 * Constructor for use as a bean.
@@ -419,10 +425,10 @@ public class ScriptTemplateView extends AbstractUrlBasedView {
 				SimpleBindings bindings = new SimpleBindings();
 				bindings.putAll(model);
 				model.put("renderingContext", context);
-				html = engine.eval(template, bindings);
+				html = evalScript(engine, template, bindings);
 			}
 			else if (this.renderObject != null) {
-				Object thiz = engine.eval(this.renderObject);
+				Object thiz = evalScript(engine, this.renderObject, null);
 				html = ((Invocable) engine).invokeMethod(thiz, this.renderFunction, template, model, context);
 			}
 			else {
@@ -436,6 +442,28 @@ public class ScriptTemplateView extends AbstractUrlBasedView {
 		}
 	}
 
+	/**
+	 * Evaluate the given script with the given engine. If the engine implements
+	 * {@link Compilable}, the script is compiled once per engine and source,
+	 * and the compiled script is reused for subsequent evaluations.
+	 * @since 5.3.11
+	 */
+	@Nullable
+	protected Object evalScript(ScriptEngine engine, String script, @Nullable Bindings bindings)
+			throws ScriptException {
+
+		if (!(engine instanceof Compilable)) {
+			return (bindings != null ? engine.eval(script, bindings) : engine.eval(script));
+		}
+		CompiledScriptKey key = new CompiledScriptKey(engine, script);
+		CompiledScript compiledScript = this.compiledScripts.get(key);
+		if (compiledScript == null) {
+			compiledScript = ((Compilable) engine).compile(script);
+			this.compiledScripts.put(key, compiledScript);
+		}
+		return (bindings != null ? compiledScript.eval(bindings) : compiledScript.eval());
+	}
+
 	protected String getTemplate(String path) throws IOException {
 		Resource resource = getResource(path);
 		if (resource == null) {
@@ -482,4 +510,38 @@ public class ScriptTemplateView extends AbstractUrlBasedView {
 		}
 	}
 
+
+	/**
+	 * Key class for compiled scripts, which are bound to the engine that
+	 * compiled them.
+	 */
+	private static class CompiledScriptKey {
+
+		private final ScriptEngine engine;
+
+		private final String script;
+
+		public CompiledScriptKey(ScriptEngine engine, String script) {
+			this.engine = engine;
+			this.script = script;
+		}
+
+		@Override
+		public boolean equals(@Nullable Object other) {
+			if (this == other) {
+				return true;
+			}
+			if (!(other instanceof CompiledScriptKey)) {
+				return false;
+			}
+			CompiledScriptKey otherKey = (CompiledScriptKey) other;
+			return (this.engine == otherKey.engine && this.script.equals(otherKey.script));
+		}
+
+		@Override
+		public int hashCode() {
+			return (System.identityHashCode(this.engine) * 29 + this.script.hashCode());
+		}
+	}
+
 }
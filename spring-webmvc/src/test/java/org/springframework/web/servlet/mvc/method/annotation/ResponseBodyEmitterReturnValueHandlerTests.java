@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2020 the original author or authors.
+ * Copyright 2002-2021 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,11 +16,17 @@
 
 package org.springframework.web.servlet.mvc.method.annotation;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import reactor.core.publisher.Flux;
@@ -43,6 +49,7 @@ import org.springframework.web.testfixture.servlet.MockHttpServletRequest;
 import org.springframework.web.testfixture.servlet.MockHttpServletResponse;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIOException;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
@@ -221,6 +228,96 @@ public class ResponseBodyEmitterReturnValueHandlerTests {
 						"\n"));
 	}
 
+	@Test
+	public void sseEmitterNonBlocking() throws Exception {
+		NonBlockingServletOutputStream outputStream = new NonBlockingServletOutputStream();
+		initResponse(outputStream);
+
+		MethodParameter type = on(TestController.class).resolveReturnType(SseEmitter.class);
+		SseEmitter emitter = new SseEmitter();
+		emitter.setNonBlocking(true);
+		this.handler.handleReturnValue(emitter, type, this.mavContainer, this.webRequest);
+
+		assertThat(this.request.isAsyncStarted()).isTrue();
+		assertThat(outputStream.listener).isNotNull();
+
+		outputStream.ready = false;
+		emitter.send(SseEmitter.event().id("1").data("foo"));
+		emitter.send(SseEmitter.event().id("2").data("bar"));
+		emitter.complete();
+
+		assertThat(outputStream.getContent()).isEqualTo("");
+		MockAsyncContext asyncContext = (MockAsyncContext) this.request.getAsyncContext();
+		assertThat(asyncContext.getDispatchedPath()).isNull();
+
+		outputStream.setReady();
+
+		assertThat(this.response.getContentType()).isEqualTo("text/event-stream");
+		assertThat(outputStream.getContent()).isEqualTo("id:1\ndata:foo\n\nid:2\ndata:bar\n\n");
+		assertThat(asyncContext.getDispatchedPath()).isNotNull();
+	}
+
+	@Test
+	public void responseBodyEmitterNonBlockingBufferLimit() throws Exception {
+		NonBlockingServletOutputStream outputStream = new NonBlockingServletOutputStream();
+		initResponse(outputStream);
+
+		MethodParameter type = on(TestController.class).resolveReturnType(ResponseBodyEmitter.class);
+		ResponseBodyEmitter emitter = new ResponseBodyEmitter();
+		emitter.setNonBlocking(true);
+		emitter.setNonBlockingBufferLimit(5);
+		this.handler.handleReturnValue(emitter, type, this.mavContainer, this.webRequest);
+
+		outputStream.ready = false;
+		emitter.send("foo");
+		assertThatIOException().isThrownBy(() -> emitter.send("bar"));
+
+		WebAsyncManager asyncManager = WebAsyncUtils.getAsyncManager(this.webRequest);
+		assertThat(asyncManager.getConcurrentResult()).isInstanceOf(IOException.class);
+	}
+
+	@Test
+	public void responseBodyEmitterNonBlockingEventLargerThanBufferLimit() throws Exception {
+		NonBlockingServletOutputStream outputStream = new NonBlockingServletOutputStream();
+		initResponse(outputStream);
+
+		MethodParameter type = on(TestController.class).resolveReturnType(ResponseBodyEmitter.class);
+		ResponseBodyEmitter emitter = new ResponseBodyEmitter();
+		emitter.setNonBlocking(true);
+		emitter.setNonBlockingBufferLimit(5);
+		this.handler.handleReturnValue(emitter, type, this.mavContainer, this.webRequest);
+
+		emitter.send("foo bar baz");
+		assertThat(outputStream.getContent()).isEqualTo("foo bar baz");
+
+		outputStream.ready = false;
+		emitter.send("qux quux");
+		assertThatIOException().isThrownBy(() -> emitter.send("corge"));
+	}
+
+	@Test
+	public void responseBodyEmitterNonBlockingNotSupported() throws Exception {
+		MethodParameter type = on(TestController.class).resolveReturnType(ResponseBodyEmitter.class);
+		ResponseBodyEmitter emitter = new ResponseBodyEmitter();
+		emitter.setNonBlocking(true);
+		this.handler.handleReturnValue(emitter, type, this.mavContainer, this.webRequest);
+
+		emitter.send("foo");
+		assertThat(this.response.getContentAsString()).isEqualTo("foo");
+	}
+
+	private void initResponse(ServletOutputStream outputStream) {
+		this.response = new MockHttpServletResponse() {
+			@Override
+			public ServletOutputStream getOutputStream() {
+				return outputStream;
+			}
+		};
+		this.webRequest = new ServletWebRequest(this.request, this.response);
+		AsyncWebRequest asyncWebRequest = new StandardServletAsyncWebRequest(this.request, this.response);
+		WebAsyncUtils.getAsyncManager(this.webRequest).setAsyncWebRequest(asyncWebRequest);
+	}
+
 	@Test
 	public void responseBodyFlux() throws Exception {
 
@@ -349,6 +446,40 @@ public class ResponseBodyEmitterReturnValueHandlerTests {
 	}
 
 
+	private static class NonBlockingServletOutputStream extends ServletOutputStream {
+
+		private final ByteArrayOutputStream content = new ByteArrayOutputStream();
+
+		private WriteListener listener;
+
+		private boolean ready = true;
+
+		@Override
+		public boolean isReady() {
+			return this.ready;
+		}
+
+		@Override
+		public void setWriteListener(WriteListener listener) {
+			this.listener = listener;
+		}
+
+		@Override
+		public void write(int b) {
+			this.content.write(b);
+		}
+
+		void setReady() throws IOException {
+			this.ready = true;
+			this.listener.onWritePossible();
+		}
+
+		String getContent() {
+			return this.content.toString(StandardCharsets.UTF_8);
+		}
+	}
+
+
 	@SuppressWarnings("unused")
 	private static class SimpleBean {
 
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2020 the original author or authors.
+ * Copyright 2002-2021 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,10 +16,15 @@
 
 package org.springframework.web.servlet.view;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.servlet.RequestDispatcher;
@@ -541,6 +546,58 @@ public class ViewResolverTests {
 		assertThat(count.intValue()).isEqualTo(1);
 	}
 
+	@Test
+	public void cacheLimit() throws Exception {
+		AtomicInteger count = new AtomicInteger();
+		AbstractCachingViewResolver viewResolver = new AbstractCachingViewResolver() {
+			@Override
+			protected View loadView(String viewName, Locale locale) {
+				count.incrementAndGet();
+				return new TestView();
+			}
+		};
+		viewResolver.setCacheLimit(2);
+
+		View view1 = viewResolver.resolveViewName("view1", Locale.getDefault());
+		viewResolver.resolveViewName("view2", Locale.getDefault());
+		assertThat(viewResolver.resolveViewName("view1", Locale.getDefault())).isSameAs(view1);
+		assertThat(count.intValue()).isEqualTo(2);
+
+		// view1 is the eldest entry and gets evicted
+		viewResolver.resolveViewName("view3", Locale.getDefault());
+		assertThat(viewResolver.resolveViewName("view1", Locale.getDefault())).isNotSameAs(view1);
+		assertThat(count.intValue()).isEqualTo(4);
+	}
+
+	@Test
+	public void cacheConcurrentCreation() throws Exception {
+		AtomicInteger count = new AtomicInteger();
+		AbstractCachingViewResolver viewResolver = new AbstractCachingViewResolver() {
+			@Override
+			protected View loadView(String viewName, Locale locale) throws Exception {
+				count.incrementAndGet();
+				Thread.sleep(50);
+				return new TestView();
+			}
+		};
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<View>> futures = new ArrayList<>();
+			for (int i = 0; i < 8; i++) {
+				futures.add(executor.submit(() -> viewResolver.resolveViewName("view", Locale.getDefault())));
+			}
+			View view = futures.get(0).get();
+			for (Future<View> future : futures) {
+				assertThat(future.get()).isSameAs(view);
+			}
+		}
+		finally {
+			executor.shutdownNow();
+		}
+		assertThat(count.intValue()).isEqualTo(1);
+	}
+
 	@Test
 	public void cacheFilterDisabled() throws Exception {
 		AtomicInteger count = new AtomicInteger();
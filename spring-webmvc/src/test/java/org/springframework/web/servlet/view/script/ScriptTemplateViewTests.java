@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2020 the original author or authors.
+ * Copyright 2002-2021 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -26,6 +26,8 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 
+import javax.script.Compilable;
+import javax.script.CompiledScript;
 import javax.script.Invocable;
 import javax.script.ScriptEngine;
 
@@ -49,8 +51,11 @@ import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
 import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
 import static org.junit.jupiter.api.condition.JRE.JAVA_15;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 /**
  * Unit tests for {@link ScriptTemplateView}.
@@ -286,6 +291,37 @@ public class ScriptTemplateViewTests {
 
 	}
 
+	@Test
+	public void compiledRenderObject() throws Exception {
+		MockServletContext servletContext = new MockServletContext();
+		this.wac.setServletContext(servletContext);
+		this.wac.refresh();
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.setAttribute(DispatcherServlet.WEB_APPLICATION_CONTEXT_ATTRIBUTE, this.wac);
+		Map<String, Object> model = new HashMap<>();
+		CompilableScriptEngine engine = mock(CompilableScriptEngine.class);
+		CompiledScript compiledScript = mock(CompiledScript.class);
+		Object template = new Object();
+		given(engine.compile("Template")).willReturn(compiledScript);
+		given(compiledScript.eval()).willReturn(template);
+		given(engine.invokeMethod(any(), any(), any(), any(), any())).willReturn("foo");
+		this.view.setEngine(engine);
+		this.view.setRenderObject("Template");
+		this.view.setRenderFunction("render");
+		this.view.setResourceLoaderPath("classpath:org/springframework/web/servlet/view/script/");
+		this.view.setUrl("empty.txt");
+		this.view.setApplicationContext(this.wac);
+
+		for (int i = 0; i < 3; i++) {
+			MockHttpServletResponse response = new MockHttpServletResponse();
+			this.view.render(model, request, response);
+			assertThat(response.getContentAsString()).isEqualTo("foo");
+		}
+		verify(engine, times(1)).compile("Template");
+		verify(compiledScript, times(3)).eval();
+		verify(engine, times(3)).invokeMethod(eq(template), eq("render"), any(), any(), any());
+	}
+
 	@Test  // gh-23258
 	public void engineSupplierWithSharedEngine() {
 		this.configurer.setEngineSupplier(() -> mock(InvocableScriptEngine.class));
@@ -325,4 +361,7 @@ public class ScriptTemplateViewTests {
 	private interface InvocableScriptEngine extends ScriptEngine, Invocable {
 	}
 
+	private interface CompilableScriptEngine extends InvocableScriptEngine, Compilable {
+	}
+
 }
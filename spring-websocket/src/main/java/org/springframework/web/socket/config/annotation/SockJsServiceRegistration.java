@@ -50,6 +50,9 @@ public class SockJsServiceRegistration {
 	@Nullable
 	private Integer streamBytesLimit;
 
+	@Nullable
+	private Long streamFlushDelay;
+
 	@Nullable
 	private Boolean sessionCookieNeeded;
 
@@ -131,6 +134,19 @@ public class SockJsServiceRegistration {
 		return this;
 	}
 
+	/**
+	 * The amount of time in milliseconds that streaming transports may hold
+	 * back messages in order to write them to the response together, in a
+	 * single message frame, rather than one frame and flush per message.
+	 * <p>The default value is 0, i.e. messages are written as they are sent,
+	 * one frame per message.
+	 * @since 5.3.11
+	 */
+	public SockJsServiceRegistration setStreamFlushDelay(long streamFlushDelay) {
+		this.streamFlushDelay = streamFlushDelay;
+		return this;
+	}
+
 	/**
 	 * The SockJS protocol requires a server to respond to the initial "/info" request
 	 * from clients with a "cookie_needed" boolean property that indicates whether the use
@@ -279,6 +295,9 @@ public class SockJsServiceRegistration {
 		if (this.streamBytesLimit != null) {
 			service.setStreamBytesLimit(this.streamBytesLimit);
 		}
+		if (this.streamFlushDelay != null) {
+			service.setStreamFlushDelay(this.streamFlushDelay);
+		}
 		if (this.sessionCookieNeeded != null) {
 			service.setSessionCookieNeeded(this.sessionCookieNeeded);
 		}
@@ -0,0 +1,453 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.socket.handler;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator.OverflowStrategy;
+
+/**
+ * Wrap a {@link org.springframework.web.socket.WebSocketSession WebSocketSession}
+ * to send messages from an {@link Executor}, so that threads sending messages
+ * only add them to a buffer and never block on I/O.
+ *
+ * <p>Messages are added to a lock-free queue, and a single task at a time per
+ * session sends them in order. The task returns the thread to the executor
+ * after a limited number of sends, so a slow session cannot hold on to a
+ * thread shared with other sessions.
+ *
+ * <p>The buffer-size and send-time limits are checked every time a message
+ * is added, before it is buffered, and the session is closed if the limits
+ * are exceeded, or the oldest messages are dropped, depending on the
+ * {@link OverflowStrategy}.
+ *
+ * <p>Optionally, whole text messages buffered while a send is in progress can
+ * be sent as a single text message, which is only correct for sub-protocols
+ * where a message may contain several frames, such as STOMP.
+ *
+ * @author Rossen Stoyanchev
+ * @since 5.3.11
+ * @see #setBatchSizeLimit(int)
+ */
+public class ExecutorWebSocketSessionDecorator extends WebSocketSessionDecorator {
+
+	/** Number of sends after which the send task yields its thread. */
+	private static final int MAX_SENDS_PER_TASK = 64;
+
+	private static final Log logger = LogFactory.getLog(ExecutorWebSocketSessionDecorator.class);
+
+
+	private final Executor executor;
+
+	private final int sendTimeLimit;
+
+	private final int bufferSizeLimit;
+
+	private final OverflowStrategy overflowStrategy;
+
+	private int batchSizeLimit;
+
+	@Nullable
+	private Consumer<WebSocketMessage<?>> preSendCallback;
+
+
+	private final Queue<WebSocketMessage<?>> buffer = new ConcurrentLinkedQueue<>();
+
+	private final AtomicInteger bufferSize = new AtomicInteger();
+
+	private final AtomicInteger bufferedMessageCount = new AtomicInteger();
+
+	private final AtomicBoolean sendScheduled = new AtomicBoolean();
+
+	// Only accessed from the send task
+	@Nullable
+	private WebSocketMessage<?> nextMessage;
+
+	// Only accessed from the send task
+	private int polledMessageCount;
+
+	private final AtomicLong sentMessageCount = new AtomicLong();
+
+	private final AtomicLong sendCount = new AtomicLong();
+
+	private final AtomicLong droppedMessageCount = new AtomicLong();
+
+	private volatile long sendStartTime;
+
+	private volatile boolean limitExceeded;
+
+	private volatile boolean closeInProgress;
+
+	private final Lock closeLock = new ReentrantLock();
+
+
+	/**
+	 * Basic constructor.
+	 * @param delegate the {@code WebSocketSession} to delegate to
+	 * @param executor the executor to send messages from
+	 * @param sendTimeLimit the send-time limit (milliseconds)
+	 * @param bufferSizeLimit the buffer-size limit (number of bytes)
+	 */
+	public ExecutorWebSocketSessionDecorator(
+			WebSocketSession delegate, Executor executor, int sendTimeLimit, int bufferSizeLimit) {
+
+		this(delegate, executor, sendTimeLimit, bufferSizeLimit, OverflowStrategy.TERMINATE);
+	}
+
+	/**
+	 * Constructor that also specifies the overflow strategy to use.
+	 * @param delegate the {@code WebSocketSession} to delegate to
+	 * @param executor the executor to send messages from
+	 * @param sendTimeLimit the send-time limit (milliseconds)
+	 * @param bufferSizeLimit the buffer-size limit (number of bytes)
+	 * @param overflowStrategy the overflow strategy to use; by default the
+	 * session is terminated.
+	 */
+	public ExecutorWebSocketSessionDecorator(WebSocketSession delegate, Executor executor,
+			int sendTimeLimit, int bufferSizeLimit, OverflowStrategy overflowStrategy) {
+
+		super(delegate);
+		Assert.notNull(executor, "Executor must not be null");
+		Assert.notNull(overflowStrategy, "OverflowStrategy must not be null");
+		this.executor = executor;
+		this.sendTimeLimit = sendTimeLimit;
+		this.bufferSizeLimit = bufferSizeLimit;
+		this.overflowStrategy = overflowStrategy;
+	}
+
+
+	/**
+	 * Return the configured send-time limit (milliseconds).
+	 */
+	public int getSendTimeLimit() {
+		return this.sendTimeLimit;
+	}
+
+	/**
+	 * Return the configured buffer-size limit (number of bytes).
+	 */
+	public int getBufferSizeLimit() {
+		return this.bufferSizeLimit;
+	}
+
+	/**
+	 * Set the maximum number of bytes of buffered text messages to send as
+	 * a single text message. Only whole text messages are combined, and only
+	 * when they are buffered while a send is in progress.
+	 * <p>This must only be enabled for sub-protocols that allow several
+	 * frames in one WebSocket message, such as STOMP.
+	 * <p>By default this is set to 0, in which case messages are never combined.
+	 * @param batchSizeLimit the maximum size of a combined message (number of bytes)
+	 */
+	public void setBatchSizeLimit(int batchSizeLimit) {
+		this.batchSizeLimit = batchSizeLimit;
+	}
+
+	/**
+	 * Return the configured maximum size of combined text messages.
+	 */
+	public int getBatchSizeLimit() {
+		return this.batchSizeLimit;
+	}
+
+	/**
+	 * Set a callback invoked after a message is added to the send buffer.
+	 * @param callback the callback to invoke
+	 */
+	public void setMessageCallback(Consumer<WebSocketMessage<?>> callback) {
+		this.preSendCallback = callback;
+	}
+
+	/**
+	 * Return the current buffer size (number of bytes).
+	 */
+	public int getBufferSize() {
+		return this.bufferSize.get();
+	}
+
+	/**
+	 * Return the number of messages in the buffer.
+	 */
+	public int getBufferedMessageCount() {
+		return this.bufferedMessageCount.get();
+	}
+
+	/**
+	 * Return the time (milliseconds) since the current send started,
+	 * or 0 if no send is currently in progress.
+	 */
+	public long getTimeSinceSendStarted() {
+		long start = this.sendStartTime;
+		return (start > 0 ? (System.currentTimeMillis() - start) : 0);
+	}
+
+	/**
+	 * Return the number of messages sent so far.
+	 */
+	public long getSentMessageCount() {
+		return this.sentMessageCount.get();
+	}
+
+	/**
+	 * Return the number of sends to the underlying session so far, which is
+	 * less than the {@link #getSentMessageCount() number of messages sent}
+	 * when text messages are combined.
+	 */
+	public long getSendCount() {
+		return this.sendCount.get();
+	}
+
+	/**
+	 * Return the number of messages dropped with {@link OverflowStrategy#DROP}.
+	 */
+	public long getDroppedMessageCount() {
+		return this.droppedMessageCount.get();
+	}
+
+
+	@Override
+	public void sendMessage(WebSocketMessage<?> message) throws IOException {
+		if (shouldNotSend()) {
+			return;
+		}
+
+		int size = message.getPayloadLength();
+		checkSessionLimits(size);
+
+		this.buffer.add(message);
+		this.bufferedMessageCount.incrementAndGet();
+		this.bufferSize.addAndGet(size);
+
+		if (this.preSendCallback != null) {
+			this.preSendCallback.accept(message);
+		}
+
+		scheduleSend();
+	}
+
+	private boolean shouldNotSend() {
+		return (this.limitExceeded || this.closeInProgress);
+	}
+
+	private void checkSessionLimits(int messageSize) {
+		if (!shouldNotSend() && this.closeLock.tryLock()) {
+			try {
+				if (getTimeSinceSendStarted() > getSendTimeLimit()) {
+					String format = "Send time %d (ms) for session '%s' exceeded the allowed limit %d";
+					String reason = String.format(format, getTimeSinceSendStarted(), getId(), getSendTimeLimit());
+					limitExceeded(reason);
+				}
+				else if (getBufferSize() + messageSize > getBufferSizeLimit()) {
+					switch (this.overflowStrategy) {
+						case TERMINATE:
+							String format = "Buffer size %d bytes for session '%s' exceeds the allowed limit %d";
+							String reason = String.format(format,
+									getBufferSize() + messageSize, getId(), getBufferSizeLimit());
+							limitExceeded(reason);
+							break;
+						case DROP:
+							int i = 0;
+							while (getBufferSize() + messageSize > getBufferSizeLimit()) {
+								WebSocketMessage<?> message = this.buffer.poll();
+								if (message == null) {
+									break;
+								}
+								removedFromBuffer(message);
+								i++;
+							}
+							this.droppedMessageCount.addAndGet(i);
+							if (logger.isDebugEnabled()) {
+								logger.debug("Dropped " + i + " messages, buffer size: " + getBufferSize());
+							}
+							break;
+						default:
+							// Should never happen..
+							throw new IllegalStateException("Unexpected OverflowStrategy: " + this.overflowStrategy);
+					}
+				}
+			}
+			finally {
+				this.closeLock.unlock();
+			}
+		}
+	}
+
+	private void limitExceeded(String reason) {
+		this.limitExceeded = true;
+		throw new SessionLimitExceededException(reason, CloseStatus.SESSION_NOT_RELIABLE);
+	}
+
+	private void removedFromBuffer(WebSocketMessage<?> message) {
+		this.bufferSize.addAndGet(-message.getPayloadLength());
+		this.bufferedMessageCount.decrementAndGet();
+	}
+
+	private void scheduleSend() {
+		if (this.sendScheduled.compareAndSet(false, true)) {
+			try {
+				this.executor.execute(this::sendBufferedMessages);
+			}
+			catch (RuntimeException ex) {
+				this.sendScheduled.set(false);
+				throw ex;
+			}
+		}
+	}
+
+	private void sendBufferedMessages() {
+		try {
+			for (int i = 0; i < MAX_SENDS_PER_TASK && !shouldNotSend(); i++) {
+				WebSocketMessage<?> message = pollMessage();
+				if (message == null) {
+					break;
+				}
+				this.sendStartTime = System.currentTimeMillis();
+				getDelegate().sendMessage(message);
+				this.sendStartTime = 0;
+				this.sendCount.incrementAndGet();
+				this.sentMessageCount.addAndGet(this.polledMessageCount);
+			}
+		}
+		catch (Throwable ex) {
+			this.sendStartTime = 0;
+			ExceptionWebSocketHandlerDecorator.tryCloseWithError(this, ex, logger);
+		}
+		boolean hasNextMessage = (this.nextMessage != null);
+		this.sendScheduled.set(false);
+		// Check after the flag is reset: messages added before that did not schedule a send
+		if ((hasNextMessage || !this.buffer.isEmpty()) && !shouldNotSend()) {
+			try {
+				scheduleSend();
+			}
+			catch (Throwable ex) {
+				ExceptionWebSocketHandlerDecorator.tryCloseWithError(this, ex, logger);
+			}
+		}
+	}
+
+	@Nullable
+	private WebSocketMessage<?> pollMessage() {
+		WebSocketMessage<?> message = this.nextMessage;
+		this.nextMessage = null;
+		if (message == null) {
+			message = this.buffer.poll();
+			if (message == null) {
+				return null;
+			}
+		}
+		removedFromBuffer(message);
+		this.polledMessageCount = 1;
+		if (!canCombine(message)) {
+			return message;
+		}
+
+		List<TextMessage> messages = null;
+		int length = message.getPayloadLength();
+		while (true) {
+			WebSocketMessage<?> next = this.buffer.poll();
+			if (next == null) {
+				break;
+			}
+			if (!canCombine(next) || length + next.getPayloadLength() > this.batchSizeLimit) {
+				// Polled rather than peeked, since messages may be dropped concurrently
+				this.nextMessage = next;
+				break;
+			}
+			if (messages == null) {
+				messages = new ArrayList<>();
+				messages.add((TextMessage) message);
+			}
+			messages.add((TextMessage) next);
+			length += next.getPayloadLength();
+			removedFromBuffer(next);
+			this.polledMessageCount++;
+		}
+		return (messages != null ? combine(messages, length) : message);
+	}
+
+	private boolean canCombine(WebSocketMessage<?> message) {
+		return (message instanceof TextMessage && message.isLast() &&
+				message.getPayloadLength() < this.batchSizeLimit);
+	}
+
+	private static TextMessage combine(List<TextMessage> messages, int length) {
+		byte[] bytes = new byte[length];
+		int offset = 0;
+		for (TextMessage message : messages) {
+			byte[] messageBytes = message.asBytes();
+			System.arraycopy(messageBytes, 0, bytes, offset, messageBytes.length);
+			offset += messageBytes.length;
+		}
+		return new TextMessage(bytes);
+	}
+
+	@Override
+	public void close(CloseStatus status) throws IOException {
+		this.closeLock.lock();
+		try {
+			if (this.closeInProgress) {
+				return;
+			}
+			if (!CloseStatus.SESSION_NOT_RELIABLE.equals(status)) {
+				try {
+					checkSessionLimits(0);
+				}
+				catch (SessionLimitExceededException ex) {
+					// Ignore
+				}
+				if (this.limitExceeded) {
+					if (logger.isDebugEnabled()) {
+						logger.debug("Changing close status " + status + " to SESSION_NOT_RELIABLE.");
+					}
+					status = CloseStatus.SESSION_NOT_RELIABLE;
+				}
+			}
+			this.closeInProgress = true;
+			super.close(status);
+		}
+		finally {
+			this.closeLock.unlock();
+		}
+	}
+
+
+	@Override
+	public String toString() {
+		return getDelegate().toString();
+	}
+
+}
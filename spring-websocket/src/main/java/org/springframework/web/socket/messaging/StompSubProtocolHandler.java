@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2020 the original author or authors.
+ * Copyright 2002-2021 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -39,6 +39,7 @@ import org.springframework.messaging.simp.SimpAttributes;
 import org.springframework.messaging.simp.SimpAttributesContextHolder;
 import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
 import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.broker.BroadcastContent;
 import org.springframework.messaging.simp.broker.OrderedMessageChannelDecorator;
 import org.springframework.messaging.simp.stomp.BufferingStompDecoder;
 import org.springframework.messaging.simp.stomp.StompCommand;
@@ -59,6 +60,7 @@ import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketMessage;
 import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.ExecutorWebSocketSessionDecorator;
 import org.springframework.web.socket.handler.SessionLimitExceededException;
 import org.springframework.web.socket.handler.WebSocketSessionDecorator;
 import org.springframework.web.socket.sockjs.transport.SockJsSession;
@@ -93,6 +95,9 @@ public class StompSubProtocolHandler implements SubProtocolHandler, ApplicationE
 
 	private static final byte[] EMPTY_PAYLOAD = new byte[0];
 
+	private static final List<String> BROADCAST_VARIABLE_HEADERS = Arrays.asList(
+			StompHeaderAccessor.STOMP_SUBSCRIPTION_HEADER, StompHeaderAccessor.STOMP_MESSAGE_ID_HEADER);
+
 
 	@Nullable
 	private StompSubProtocolErrorHandler errorHandler;
@@ -361,7 +366,7 @@ public class StompSubProtocolHandler implements SubProtocolHandler, ApplicationE
 		}
 		StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
 		Assert.state(accessor != null, "No StompHeaderAccessor");
-		sendToClient(session, accessor, message.getPayload());
+		sendToClient(session, accessor, message.getPayload(), null);
 	}
 
 	/**
@@ -474,17 +479,26 @@ public class StompSubProtocolHandler implements SubProtocolHandler, ApplicationE
 
 		Runnable task = OrderedMessageChannelDecorator.getNextMessageTask(message);
 		if (task != null) {
-			Assert.isInstanceOf(ConcurrentWebSocketSessionDecorator.class, session);
-			((ConcurrentWebSocketSessionDecorator) session).setMessageCallback(m -> task.run());
+			if (session instanceof ExecutorWebSocketSessionDecorator) {
+				((ExecutorWebSocketSessionDecorator) session).setMessageCallback(m -> task.run());
+			}
+			else {
+				Assert.isInstanceOf(ConcurrentWebSocketSessionDecorator.class, session);
+				((ConcurrentWebSocketSessionDecorator) session).setMessageCallback(m -> task.run());
+			}
 		}
 
-		sendToClient(session, accessor, payload);
+		BroadcastContent broadcastContent = (StompCommand.MESSAGE.equals(accessor.getCommand()) ?
+				BroadcastContent.getBroadcastContent(message) : null);
+		sendToClient(session, accessor, payload, broadcastContent);
 	}
 
-	private void sendToClient(WebSocketSession session, StompHeaderAccessor stompAccessor, byte[] payload) {
+	private void sendToClient(WebSocketSession session, StompHeaderAccessor stompAccessor, byte[] payload,
+			@Nullable BroadcastContent broadcastContent) {
+
 		StompCommand command = stompAccessor.getCommand();
 		try {
-			byte[] bytes = this.stompEncoder.encode(stompAccessor.getMessageHeaders(), payload);
+			byte[] bytes = encode(stompAccessor, payload, broadcastContent);
 			boolean useBinary = (payload.length > 0 && !(session instanceof SockJsSession) &&
 					MimeTypeUtils.APPLICATION_OCTET_STREAM.isCompatibleWith(stompAccessor.getContentType()));
 			if (useBinary) {
@@ -517,6 +531,24 @@ public class StompSubProtocolHandler implements SubProtocolHandler, ApplicationE
 		}
 	}
 
+	/**
+	 * Encode a frame, using a template shared by all subscribers in case of a
+	 * message broadcast to the subscribers of a destination, so that only the
+	 * per-subscriber headers are encoded for each subscriber.
+	 */
+	private byte[] encode(StompHeaderAccessor accessor, byte[] payload, @Nullable BroadcastContent broadcastContent) {
+		Map<String, Object> headers = accessor.getMessageHeaders();
+		if (broadcastContent != null) {
+			StompEncoder.FrameTemplate template = broadcastContent.getEncodedContent(this.stompEncoder,
+					() -> this.stompEncoder.createTemplate(headers, payload, BROADCAST_VARIABLE_HEADERS));
+			byte[] bytes = template.encode(headers, payload);
+			if (bytes != null) {
+				return bytes;
+			}
+		}
+		return this.stompEncoder.encode(headers, payload);
+	}
+
 	private StompHeaderAccessor getStompHeaderAccessor(Message<?> message) {
 		MessageHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, MessageHeaderAccessor.class);
 		if (accessor instanceof StompHeaderAccessor) {
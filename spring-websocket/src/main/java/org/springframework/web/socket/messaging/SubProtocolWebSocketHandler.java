@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2020 the original author or authors.
+ * Copyright 2002-2021 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -24,6 +24,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -46,6 +47,7 @@ import org.springframework.web.socket.WebSocketHandler;
 import org.springframework.web.socket.WebSocketMessage;
 import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.ExecutorWebSocketSessionDecorator;
 import org.springframework.web.socket.handler.SessionLimitExceededException;
 import org.springframework.web.socket.sockjs.transport.session.PollingSockJsSession;
 import org.springframework.web.socket.sockjs.transport.session.StreamingSockJsSession;
@@ -93,6 +95,11 @@ public class SubProtocolWebSocketHandler
 
 	private int sendBufferSizeLimit = 512 * 1024;
 
+	@Nullable
+	private Executor sendExecutor;
+
+	private int sendBatchSizeLimit;
+
 	private int timeToFirstMessage = DEFAULT_TIME_TO_FIRST_MESSAGE;
 
 	private volatile long lastSessionCheckTime = System.currentTimeMillis();
@@ -222,6 +229,51 @@ public class SubProtocolWebSocketHandler
 		return this.sendBufferSizeLimit;
 	}
 
+	/**
+	 * Configure an executor to send messages to each session from, so that
+	 * threads handling outbound messages only buffer them and never block
+	 * on a slow session.
+	 * <p>By default this is not set, and messages are sent from the thread
+	 * handling the outbound message, or buffered if another thread is sending
+	 * to the same session.
+	 * @param sendExecutor the executor to use
+	 * @since 5.3.11
+	 * @see ExecutorWebSocketSessionDecorator
+	 */
+	public void setSendExecutor(@Nullable Executor sendExecutor) {
+		this.sendExecutor = sendExecutor;
+	}
+
+	/**
+	 * Return the configured executor to send messages from, if any.
+	 * @since 5.3.11
+	 */
+	@Nullable
+	public Executor getSendExecutor() {
+		return this.sendExecutor;
+	}
+
+	/**
+	 * Specify the maximum number of bytes of buffered text messages to send
+	 * as a single text message, when a {@link #setSendExecutor send executor}
+	 * is configured. This must only be enabled with sub-protocols that allow
+	 * several frames in one WebSocket message, such as STOMP.
+	 * <p>By default this is set to 0, in which case messages are never combined.
+	 * @since 5.3.11
+	 * @see ExecutorWebSocketSessionDecorator#setBatchSizeLimit(int)
+	 */
+	public void setSendBatchSizeLimit(int sendBatchSizeLimit) {
+		this.sendBatchSizeLimit = sendBatchSizeLimit;
+	}
+
+	/**
+	 * Return the maximum size of combined text messages (number of bytes).
+	 * @since 5.3.11
+	 */
+	public int getSendBatchSizeLimit() {
+		return this.sendBatchSizeLimit;
+	}
+
 	/**
 	 * Set the maximum time allowed in milliseconds after the WebSocket connection
 	 * is established and before the first sub-protocol message is received.
@@ -409,12 +461,20 @@ public class SubProtocolWebSocketHandler
 	 * Decorate the given {@link WebSocketSession}, if desired.
 	 * <p>The default implementation builds a {@link ConcurrentWebSocketSessionDecorator}
 	 * with the configured {@link #getSendTimeLimit() send-time limit} and
-	 * {@link #getSendBufferSizeLimit() buffer-size limit}.
+	 * {@link #getSendBufferSizeLimit() buffer-size limit}, or an
+	 * {@link ExecutorWebSocketSessionDecorator} if a
+	 * {@link #setSendExecutor send executor} is configured.
 	 * @param session the original {@code WebSocketSession}
 	 * @return the decorated {@code WebSocketSession}, or potentially the given session as-is
 	 * @since 4.3.13
 	 */
 	protected WebSocketSession decorateSession(WebSocketSession session) {
+		if (this.sendExecutor != null) {
+			ExecutorWebSocketSessionDecorator decorator = new ExecutorWebSocketSessionDecorator(
+					session, this.sendExecutor, getSendTimeLimit(), getSendBufferSizeLimit());
+			decorator.setBatchSizeLimit(getSendBatchSizeLimit());
+			return decorator;
+		}
 		return new ConcurrentWebSocketSessionDecorator(session, getSendTimeLimit(), getSendBufferSizeLimit());
 	}
 
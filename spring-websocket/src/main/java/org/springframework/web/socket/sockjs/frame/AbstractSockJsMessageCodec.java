@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2018 the original author or authors.
+ * Copyright 2002-2021 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -30,12 +30,17 @@ public abstract class AbstractSockJsMessageCodec implements SockJsMessageCodec {
 	@Override
 	public String encode(String... messages) {
 		Assert.notNull(messages, "messages must not be null");
-		StringBuilder sb = new StringBuilder();
+		int length = 3;
+		for (String message : messages) {
+			length += message.length() + 3;
+		}
+		StringBuilder sb = new StringBuilder(length + (length >> 4));
 		sb.append("a[");
 		for (int i = 0; i < messages.length; i++) {
 			sb.append('"');
-			char[] quotedChars = applyJsonQuoting(messages[i]);
-			sb.append(escapeSockJsSpecialChars(quotedChars));
+			int start = sb.length();
+			applyJsonQuoting(messages[i], sb);
+			escapeSockJsSpecialChars(sb, start);
 			sb.append('"');
 			if (i < messages.length - 1) {
 				sb.append(',');
@@ -51,24 +56,47 @@ public abstract class AbstractSockJsMessageCodec implements SockJsMessageCodec {
 	protected abstract char[] applyJsonQuoting(String content);
 
 	/**
-	 * See "JSON Unicode Encoding" section of SockJS protocol.
+	 * Apply standard JSON string quoting, appending the result to the given
+	 * builder. By default this delegates to {@link #applyJsonQuoting(String)}.
+	 * Subclasses can override this to quote without an intermediate array.
+	 * @param content the content to quote
+	 * @param output the builder to append the quoted content to
+	 * @since 5.3.11
+	 */
+	protected void applyJsonQuoting(String content, StringBuilder output) {
+		output.append(applyJsonQuoting(content));
+	}
+
+	/**
+	 * See "JSON Unicode Encoding" section of SockJS protocol. Escapes the
+	 * characters appended to the builder from the given index on, in place.
 	 */
-	private String escapeSockJsSpecialChars(char[] characters) {
-		StringBuilder result = new StringBuilder();
-		for (char c : characters) {
+	private void escapeSockJsSpecialChars(StringBuilder sb, int start) {
+		int index = start;
+		while (index < sb.length() && !isSockJsSpecialChar(sb.charAt(index))) {
+			index++;
+		}
+		if (index == sb.length()) {
+			return;
+		}
+		char[] characters = new char[sb.length() - index];
+		sb.getChars(index, sb.length(), characters, 0);
+		sb.setLength(index);
+		int run = 0;
+		for (int i = 0; i < characters.length; i++) {
+			char c = characters[i];
 			if (isSockJsSpecialChar(c)) {
-				result.append('\\').append('u');
-				String hex = Integer.toHexString(c).toLowerCase();
-				for (int i = 0; i < (4 - hex.length()); i++) {
-					result.append('0');
+				sb.append(characters, run, i - run);
+				sb.append('\\').append('u');
+				String hex = Integer.toHexString(c);
+				for (int j = 0; j < (4 - hex.length()); j++) {
+					sb.append('0');
 				}
-				result.append(hex);
-			}
-			else {
-				result.append(c);
+				sb.append(hex);
+				run = i + 1;
 			}
 		}
-		return result.toString();
+		sb.append(characters, run, characters.length - run);
 	}
 
 	/**
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2013 the original author or authors.
+ * Copyright 2002-2021 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,12 +16,14 @@
 
 package org.springframework.web.socket.sockjs.frame;
 
+import org.springframework.lang.Nullable;
 import org.springframework.util.Assert;
 
 /**
  * A default implementation of
  * {@link org.springframework.web.socket.sockjs.frame.SockJsFrameFormat} that relies
- * on {@link java.lang.String#format(String, Object...)}..
+ * on {@link java.lang.String#format(String, Object...)}. Formats with a single
+ * {@code %s} placeholder and no other conversions are applied by concatenation.
  *
  * @author Rossen Stoyanchev
  * @since 4.0
@@ -30,16 +32,37 @@ public class DefaultSockJsFrameFormat implements SockJsFrameFormat {
 
 	private final String format;
 
+	// Format split around a single "%s", if it has no other conversions
+
+	@Nullable
+	private final String prefix;
+
+	@Nullable
+	private final String suffix;
+
 
 	public DefaultSockJsFrameFormat(String format) {
 		Assert.notNull(format, "format must not be null");
 		this.format = format;
+		int index = format.indexOf("%s");
+		if (index != -1 && format.indexOf('%') == index && format.indexOf('%', index + 2) == -1) {
+			this.prefix = format.substring(0, index);
+			this.suffix = format.substring(index + 2);
+		}
+		else {
+			this.prefix = null;
+			this.suffix = null;
+		}
 	}
 
 
 	@Override
 	public String format(SockJsFrame frame) {
-		return String.format(this.format, preProcessContent(frame.getContent()));
+		String content = preProcessContent(frame.getContent());
+		if (this.prefix != null && this.suffix != null) {
+			return this.prefix.concat(content).concat(this.suffix);
+		}
+		return String.format(this.format, content);
 	}
 
 	protected String preProcessContent(String content) {
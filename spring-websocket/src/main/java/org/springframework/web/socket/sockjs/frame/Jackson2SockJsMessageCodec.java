@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2019 the original author or authors.
+ * Copyright 2002-2021 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -75,4 +75,9 @@ public class Jackson2SockJsMessageCodec extends AbstractSockJsMessageCodec {
 		return JsonStringEncoder.getInstance().quoteAsString(content);
 	}
 
+	@Override
+	protected void applyJsonQuoting(String content, StringBuilder output) {
+		JsonStringEncoder.getInstance().quoteAsString(content, output);
+	}
+
 }
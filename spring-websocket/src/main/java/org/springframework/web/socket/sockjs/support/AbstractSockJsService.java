@@ -84,6 +84,8 @@ public abstract class AbstractSockJsService implements SockJsService, CorsConfig
 
 	private int streamBytesLimit = 128 * 1024;
 
+	private long streamFlushDelay = 0;
+
 	private boolean sessionCookieNeeded = true;
 
 	private long heartbeatTime = TimeUnit.SECONDS.toMillis(25);
@@ -191,6 +193,29 @@ public abstract class AbstractSockJsService implements SockJsService, CorsConfig
 		return this.streamBytesLimit;
 	}
 
+	/**
+	 * The amount of time in milliseconds that streaming transports may hold
+	 * back messages in order to write them to the response together, in a
+	 * single message frame, rather than one frame and flush per message.
+	 * This trades a small amount of latency for fewer writes under load.
+	 * <p>The default value is 0, i.e. messages are written as they are sent,
+	 * one frame per message.
+	 * @since 5.3.11
+	 */
+	public void setStreamFlushDelay(long streamFlushDelay) {
+		Assert.isTrue(streamFlushDelay >= 0, "Stream flush delay must not be negative");
+		this.streamFlushDelay = streamFlushDelay;
+	}
+
+	/**
+	 * Return the amount of time in milliseconds that streaming transports may
+	 * hold back messages before writing them to the response.
+	 * @since 5.3.11
+	 */
+	public long getStreamFlushDelay() {
+		return this.streamFlushDelay;
+	}
+
 	/**
 	 * The SockJS protocol requires a server to respond to an initial "/info" request from
 	 * clients with a "cookie_needed" boolean property that indicates whether the use of a
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2018 the original author or authors.
+ * Copyright 2002-2021 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -46,6 +46,19 @@ public interface SockJsServiceConfig {
 	 */
 	int getStreamBytesLimit();
 
+	/**
+	 * The amount of time in milliseconds that streaming transports may hold
+	 * back messages in order to write them to the response together, in a
+	 * single message frame, rather than one frame and flush per message.
+	 * Messages are written immediately once enough of them are pending.
+	 * <p>The default value is 0, i.e. messages are written as they are sent,
+	 * one frame per message.
+	 * @since 5.3.11
+	 */
+	default long getStreamFlushDelay() {
+		return 0;
+	}
+
 	/**
 	 * The amount of time in milliseconds when the server has not sent any
 	 * messages and after which the server should send a heartbeat frame to the
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2018 the original author or authors.
+ * Copyright 2002-2021 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -21,10 +21,12 @@ import java.net.InetSocketAddress;
 import java.net.URI;
 import java.security.Principal;
 import java.util.Collections;
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
 
 import javax.servlet.ServletRequest;
 
@@ -53,6 +55,13 @@ import org.springframework.web.socket.sockjs.transport.SockJsServiceConfig;
  */
 public abstract class AbstractHttpSockJsSession extends AbstractSockJsSession {
 
+	/**
+	 * The number of pending message characters above which messages are
+	 * flushed right away, even if a {@link #getFlushDelay() flush delay} applies.
+	 */
+	private static final int FLUSH_THRESHOLD = 8 * 1024;
+
+
 	private final Queue<String> messageCache;
 
 	@Nullable
@@ -84,6 +93,11 @@ public abstract class AbstractHttpSockJsSession extends AbstractSockJsSession {
 
 	private boolean readyToSend;
 
+	private int pendingLength;
+
+	@Nullable
+	private ScheduledFuture<?> flushFuture;
+
 
 	public AbstractHttpSockJsSession(String id, SockJsServiceConfig config,
 			WebSocketHandler wsHandler, Map<String, Object> attributes) {
@@ -154,6 +168,17 @@ public abstract class AbstractHttpSockJsSession extends AbstractSockJsSession {
 		return this.messageCache;
 	}
 
+	/**
+	 * Return the amount of time in milliseconds to hold back sent messages in
+	 * order to flush them together. By default this is 0, i.e. every message
+	 * is flushed as soon as it is sent.
+	 * @since 5.3.11
+	 * @see SockJsServiceConfig#getStreamFlushDelay()
+	 */
+	protected long getFlushDelay() {
+		return 0;
+	}
+
 
 	@Override
 	public boolean isActive() {
@@ -300,9 +325,22 @@ public abstract class AbstractHttpSockJsSession extends AbstractSockJsSession {
 				logger.trace(this.messageCache.size() + " message(s) to flush in session " + getId());
 			}
 			if (isActive() && this.readyToSend) {
+				long flushDelay = getFlushDelay();
+				this.pendingLength += message.length();
+				if (flushDelay > 0 && this.pendingLength < FLUSH_THRESHOLD) {
+					if (this.flushFuture == null) {
+						if (logger.isTraceEnabled()) {
+							logger.trace("Session is active, flushing in " + flushDelay + " ms.");
+						}
+						this.flushFuture = getSockJsServiceConfig().getTaskScheduler().schedule(
+								this::flushDelayed, new Date(System.currentTimeMillis() + flushDelay));
+					}
+					return;
+				}
 				if (logger.isTraceEnabled()) {
 					logger.trace("Session is active, ready to flush.");
 				}
+				cancelFlush();
 				cancelHeartbeat();
 				flushCache();
 			}
@@ -321,6 +359,31 @@ public abstract class AbstractHttpSockJsSession extends AbstractSockJsSession {
 	 */
 	protected abstract void flushCache() throws SockJsTransportFailureException;
 
+	private void flushDelayed() {
+		synchronized (this.responseLock) {
+			this.flushFuture = null;
+			this.pendingLength = 0;
+			if (isActive() && this.readyToSend && !this.messageCache.isEmpty()) {
+				try {
+					cancelHeartbeat();
+					flushCache();
+				}
+				catch (Throwable ex) {
+					tryCloseWithSockJsTransportError(ex, CloseStatus.SERVER_ERROR);
+				}
+			}
+		}
+	}
+
+	private void cancelFlush() {
+		this.pendingLength = 0;
+		ScheduledFuture<?> future = this.flushFuture;
+		if (future != null) {
+			this.flushFuture = null;
+			future.cancel(false);
+		}
+	}
+
 
 	@Override
 	protected void disconnect(CloseStatus status) {
@@ -333,6 +396,7 @@ public abstract class AbstractHttpSockJsSession extends AbstractSockJsSession {
 			this.asyncRequestControl = null;
 			this.readyToSend = false;
 			this.response = null;
+			cancelFlush();
 			updateLastActiveTime();
 			if (control != null && !control.isCompleted() && control.isStarted()) {
 				try {
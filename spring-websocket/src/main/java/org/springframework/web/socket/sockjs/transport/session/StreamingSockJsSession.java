@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2021 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,6 +17,8 @@
 package org.springframework.web.socket.sockjs.transport.session;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 import org.springframework.http.server.ServerHttpRequest;
@@ -66,12 +68,31 @@ public abstract class StreamingSockJsSession extends AbstractHttpSockJsSession {
 		flushCache();
 	}
 
+	@Override
+	protected long getFlushDelay() {
+		return getSockJsServiceConfig().getStreamFlushDelay();
+	}
+
 	@Override
 	protected void flushCache() throws SockJsTransportFailureException {
+		// With a flush delay, coalesce pending messages into one frame within
+		// the bytes limit of the request, or else write one frame per message
+		boolean coalesce = (getFlushDelay() > 0);
+		List<String> messages = new ArrayList<>();
 		while (!getMessageCache().isEmpty()) {
-			String message = getMessageCache().poll();
+			int available = getSockJsServiceConfig().getStreamBytesLimit() - this.byteCount;
+			int length = 0;
+			String message;
+			while ((message = getMessageCache().peek()) != null) {
+				length += message.length() + 3;
+				if (!messages.isEmpty() && (!coalesce || length > available)) {
+					break;
+				}
+				messages.add(getMessageCache().poll());
+			}
 			SockJsMessageCodec messageCodec = getSockJsServiceConfig().getMessageCodec();
-			SockJsFrame frame = SockJsFrame.messageFrame(messageCodec, message);
+			SockJsFrame frame = SockJsFrame.messageFrame(messageCodec, messages.toArray(new String[0]));
+			messages.clear();
 			writeFrame(frame);
 
 			this.byteCount += (frame.getContentBytes().length + 1);
@@ -0,0 +1,253 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.socket.handler;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator.OverflowStrategy;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+/**
+ * Unit tests for {@link ExecutorWebSocketSessionDecorator}.
+ *
+ * @author Rossen Stoyanchev
+ */
+@SuppressWarnings("resource")
+public class ExecutorWebSocketSessionDecoratorTests {
+
+	private final Queue<Runnable> tasks = new ArrayDeque<>();
+
+	private final TestWebSocketSession session = new TestWebSocketSession("123");
+
+
+	ExecutorWebSocketSessionDecoratorTests() {
+		this.session.setOpen(true);
+	}
+
+
+	@Test
+	public void send() throws IOException {
+		ExecutorWebSocketSessionDecorator decorator =
+				new ExecutorWebSocketSessionDecorator(this.session, this.tasks::add, 1000, 1024);
+
+		TextMessage message = new TextMessage("payload");
+		decorator.sendMessage(message);
+
+		assertThat(this.session.getSentMessages()).isEmpty();
+		assertThat(decorator.getBufferSize()).isEqualTo(message.getPayloadLength());
+		assertThat(decorator.getBufferedMessageCount()).isEqualTo(1);
+
+		runTasks();
+
+		assertThat(this.session.getSentMessages()).containsExactly(message);
+		assertThat(decorator.getBufferSize()).isEqualTo(0);
+		assertThat(decorator.getBufferedMessageCount()).isEqualTo(0);
+		assertThat(decorator.getSentMessageCount()).isEqualTo(1);
+		assertThat(decorator.getSendCount()).isEqualTo(1);
+		assertThat(decorator.getTimeSinceSendStarted()).isEqualTo(0);
+		assertThat(this.session.isOpen()).isTrue();
+	}
+
+	@Test
+	public void sendScheduledOnceWhilePending() throws IOException {
+		ExecutorWebSocketSessionDecorator decorator =
+				new ExecutorWebSocketSessionDecorator(this.session, this.tasks::add, 1000, 1024);
+
+		TextMessage first = new TextMessage("first");
+		TextMessage second = new TextMessage("second");
+		decorator.sendMessage(first);
+		decorator.sendMessage(second);
+
+		assertThat(this.tasks).hasSize(1);
+
+		runTasks();
+
+		assertThat(this.session.getSentMessages()).containsExactly(first, second);
+		assertThat(decorator.getSendCount()).isEqualTo(2);
+
+		decorator.sendMessage(first);
+		assertThat(this.tasks).hasSize(1);
+	}
+
+	@Test
+	public void sendTaskYieldsThread() throws IOException {
+		ExecutorWebSocketSessionDecorator decorator =
+				new ExecutorWebSocketSessionDecorator(this.session, this.tasks::add, 1000, 100 * 1024);
+
+		for (int i = 0; i < 100; i++) {
+			decorator.sendMessage(new TextMessage("payload"));
+		}
+
+		this.tasks.poll().run();
+		assertThat(this.session.getSentMessages()).hasSizeLessThan(100);
+		assertThat(this.tasks).hasSize(1);
+
+		runTasks();
+		assertThat(this.session.getSentMessages()).hasSize(100);
+	}
+
+	@Test
+	public void combineTextMessages() throws IOException {
+		ExecutorWebSocketSessionDecorator decorator =
+				new ExecutorWebSocketSessionDecorator(this.session, this.tasks::add, 1000, 1024);
+		decorator.setBatchSizeLimit(10);
+
+		decorator.sendMessage(new TextMessage("abc"));
+		decorator.sendMessage(new TextMessage("def"));
+		decorator.sendMessage(new TextMessage("ghi"));
+		decorator.sendMessage(new TextMessage("jkl"));
+		decorator.sendMessage(new BinaryMessage(new byte[] {1}));
+		decorator.sendMessage(new TextMessage("mno"));
+
+		runTasks();
+
+		assertThat(this.session.getSentMessages()).extracting(message -> message.getPayload().toString())
+				.hasSize(4)
+				.startsWith("abcdefghi", "jkl")
+				.endsWith("mno");
+		assertThat(decorator.getSentMessageCount()).isEqualTo(6);
+		assertThat(decorator.getSendCount()).isEqualTo(4);
+		assertThat(decorator.getBufferSize()).isEqualTo(0);
+		assertThat(decorator.getBufferedMessageCount()).isEqualTo(0);
+	}
+
+	@Test
+	public void sendBufferSizeExceeded() throws IOException {
+		ExecutorWebSocketSessionDecorator decorator =
+				new ExecutorWebSocketSessionDecorator(this.session, this.tasks::add, 10 * 1000, 1024);
+
+		decorator.sendMessage(new TextMessage(String.format("%1023s", "a")));
+
+		assertThatExceptionOfType(SessionLimitExceededException.class).isThrownBy(() ->
+				decorator.sendMessage(new TextMessage("ab")))
+			.withMessageMatching("Buffer size 1025 bytes for session '123' exceeds the allowed limit 1024")
+			.satisfies(ex -> assertThat(ex.getStatus()).isEqualTo(CloseStatus.SESSION_NOT_RELIABLE));
+
+		// Checked before the message is buffered
+		assertThat(decorator.getBufferSize()).isEqualTo(1023);
+		assertThat(decorator.getBufferedMessageCount()).isEqualTo(1);
+	}
+
+	@Test
+	public void overflowStrategyDrop() throws IOException {
+		ExecutorWebSocketSessionDecorator decorator = new ExecutorWebSocketSessionDecorator(
+				this.session, this.tasks::add, 10 * 1000, 1024, OverflowStrategy.DROP);
+
+		String payload = String.format("%1023s", "a");
+		for (int i = 0; i < 5; i++) {
+			decorator.sendMessage(new TextMessage(payload + i));
+		}
+
+		assertThat(decorator.getBufferSize()).isEqualTo(1024);
+		assertThat(decorator.getDroppedMessageCount()).isEqualTo(4);
+
+		runTasks();
+
+		assertThat(this.session.getSentMessages()).extracting(message -> message.getPayload().toString())
+				.containsExactly(payload + 4);
+		assertThat(this.session.isOpen()).isTrue();
+	}
+
+	@Test
+	public void sendTimeLimitExceeded() throws Exception {
+		BlockingWebSocketSession session = new BlockingWebSocketSession();
+		session.setId("123");
+		session.setOpen(true);
+		CountDownLatch latch = session.initSendLatch();
+
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			ExecutorWebSocketSessionDecorator decorator =
+					new ExecutorWebSocketSessionDecorator(session, executor, 100, 1024);
+
+			decorator.sendMessage(new TextMessage("slow message"));
+			assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+
+			// Exceed send time..
+			Thread.sleep(200);
+
+			assertThatExceptionOfType(SessionLimitExceededException.class).isThrownBy(() ->
+					decorator.sendMessage(new TextMessage("payload")))
+				.withMessageMatching("Send time [\\d]+ \\(ms\\) for session '123' exceeded the allowed limit 100");
+
+			decorator.close(CloseStatus.NORMAL);
+			assertThat(session.getCloseStatus()).isEqualTo(CloseStatus.SESSION_NOT_RELIABLE);
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void sendFailureClosesSession() throws IOException {
+		TestWebSocketSession session = new TestWebSocketSession() {
+			@Override
+			public void sendMessage(WebSocketMessage<?> message) throws IOException {
+				throw new IOException("Connection reset");
+			}
+		};
+		session.setOpen(true);
+
+		ExecutorWebSocketSessionDecorator decorator =
+				new ExecutorWebSocketSessionDecorator(session, this.tasks::add, 1000, 1024);
+
+		decorator.sendMessage(new TextMessage("payload"));
+		decorator.sendMessage(new TextMessage("payload"));
+		runTasks();
+
+		assertThat(session.getCloseStatus()).isEqualTo(CloseStatus.SERVER_ERROR);
+		assertThat(decorator.getSentMessageCount()).isEqualTo(0);
+
+		decorator.sendMessage(new TextMessage("payload"));
+		assertThat(this.tasks).isEmpty();
+	}
+
+	@Test
+	public void closeStatusNormal() throws Exception {
+		ExecutorWebSocketSessionDecorator decorator =
+				new ExecutorWebSocketSessionDecorator(this.session, this.tasks::add, 1000, 1024);
+
+		decorator.close(CloseStatus.PROTOCOL_ERROR);
+		assertThat(this.session.getCloseStatus()).isEqualTo(CloseStatus.PROTOCOL_ERROR);
+
+		decorator.close(CloseStatus.SERVER_ERROR);
+		assertThat(this.session.getCloseStatus()).as("Should have been ignored").isEqualTo(CloseStatus.PROTOCOL_ERROR);
+	}
+
+
+	private void runTasks() {
+		Runnable task;
+		while ((task = this.tasks.poll()) != null) {
+			task.run();
+		}
+	}
+
+}
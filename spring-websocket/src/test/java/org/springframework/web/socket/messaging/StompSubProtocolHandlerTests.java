@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2019 the original author or authors.
+ * Copyright 2002-2021 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -42,6 +42,7 @@ import org.springframework.messaging.simp.SimpAttributes;
 import org.springframework.messaging.simp.SimpAttributesContextHolder;
 import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
 import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.broker.BroadcastContent;
 import org.springframework.messaging.simp.stomp.StompCommand;
 import org.springframework.messaging.simp.stomp.StompEncoder;
 import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
@@ -259,6 +260,37 @@ public class StompSubProtocolHandlerTests {
 		assertThat(((String) textMessage.getPayload()).contains(SimpMessageHeaderAccessor.ORIGINAL_DESTINATION)).isFalse();
 	}
 
+	@Test
+	public void handleMessageToClientWithBroadcastContent() {
+		StompEncoder encoder = new StompEncoder();
+		this.protocolHandler.setEncoder(encoder);
+
+		byte[] payload = "price".getBytes();
+		StompHeaderAccessor headers = StompHeaderAccessor.create(StompCommand.SEND);
+		headers.setDestination("/topic/price");
+		BroadcastContent content = new BroadcastContent(MessageBuilder.createMessage(payload, headers.getMessageHeaders()));
+
+		for (String subscriptionId : Arrays.asList("sub0", "sub1")) {
+			SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+			accessor.setSessionId("s1");
+			accessor.setSubscriptionId(subscriptionId);
+			accessor.copyHeadersIfAbsent(content.getMessage().getHeaders());
+			content.addHeader(accessor);
+			this.protocolHandler.handleMessageToClient(this.session,
+					MessageBuilder.createMessage(payload, accessor.getMessageHeaders()));
+		}
+
+		assertThat(this.session.getSentMessages().size()).isEqualTo(2);
+		for (int i = 0; i < 2; i++) {
+			String frame = (String) this.session.getSentMessages().get(i).getPayload();
+			assertThat(frame).startsWith("MESSAGE\n").endsWith("\n\nprice\0");
+			assertThat(frame).contains("destination:/topic/price\n", "subscription:sub" + i + "\n", "message-id:s1-");
+		}
+		assertThat(this.session.getSentMessages().get(0).getPayload())
+				.isNotEqualTo(this.session.getSentMessages().get(1).getPayload());
+		assertThat(content.<Object>getEncodedContent(encoder, () -> null)).isInstanceOf(StompEncoder.FrameTemplate.class);
+	}
+
 	// SPR-12475
 
 	@Test
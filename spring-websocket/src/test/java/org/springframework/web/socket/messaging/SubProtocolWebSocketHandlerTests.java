@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2019 the original author or authors.
+ * Copyright 2002-2021 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -21,6 +21,7 @@ import java.util.Map;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
@@ -30,7 +31,9 @@ import org.springframework.messaging.MessageChannel;
 import org.springframework.messaging.SubscribableChannel;
 import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.ExecutorWebSocketSessionDecorator;
 import org.springframework.web.socket.handler.TestWebSocketSession;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -98,6 +101,23 @@ public class SubProtocolWebSocketHandlerTests {
 				isA(ConcurrentWebSocketSessionDecorator.class), eq(this.inClientChannel));
 	}
 
+	@Test
+	public void sendExecutor() throws Exception {
+		this.webSocketHandler.setDefaultProtocolHandler(stompHandler);
+		this.webSocketHandler.setSendExecutor(Runnable::run);
+		this.webSocketHandler.setSendBatchSizeLimit(8 * 1024);
+		this.session.setAcceptedProtocol("v12.sToMp");
+		this.webSocketHandler.afterConnectionEstablished(session);
+
+		ArgumentCaptor<WebSocketSession> captor = ArgumentCaptor.forClass(WebSocketSession.class);
+		verify(this.stompHandler).afterSessionStarted(captor.capture(), eq(this.inClientChannel));
+		assertThat(captor.getValue()).isInstanceOfSatisfying(ExecutorWebSocketSessionDecorator.class, decorator -> {
+			assertThat(decorator.getSendTimeLimit()).isEqualTo(this.webSocketHandler.getSendTimeLimit());
+			assertThat(decorator.getBufferSizeLimit()).isEqualTo(this.webSocketHandler.getSendBufferSizeLimit());
+			assertThat(decorator.getBatchSizeLimit()).isEqualTo(8 * 1024);
+		});
+	}
+
 	@Test
 	public void subProtocolNoMatch() throws Exception {
 		this.webSocketHandler.setDefaultProtocolHandler(defaultHandler);
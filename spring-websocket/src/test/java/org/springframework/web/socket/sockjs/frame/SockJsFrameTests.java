@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2019 the original author or authors.
+ * Copyright 2002-2021 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -56,6 +56,24 @@ public class SockJsFrameTests {
 		assertThat(frame.getFrameData()).isEqualTo("[\"m1\",\"m2\"]");
 	}
 
+	@Test
+	public void messageArrayFrameWithSockJsSpecialChars() {
+		String message = "x\u2028y\"z\u0001\uFFF0";
+		SockJsFrame frame = SockJsFrame.messageFrame(new Jackson2SockJsMessageCodec(), "m1", message);
+
+		assertThat(frame.getContent()).isEqualTo("a[\"m1\",\"x\\u2028y\\\"z\\u0001\\ufff0\"]");
+	}
+
+	@Test
+	public void messageArrayFrameFormat() {
+		SockJsFrame frame = SockJsFrame.messageFrame(new Jackson2SockJsMessageCodec(), "m1");
+
+		assertThat(new DefaultSockJsFrameFormat("data: %s\r\n\r\n").format(frame))
+				.isEqualTo("data: a[\"m1\"]\r\n\r\n");
+		assertThat(new DefaultSockJsFrameFormat("%s%n").format(frame))
+				.isEqualTo("a[\"m1\"]" + System.lineSeparator());
+	}
+
 	@Test
 	public void messageArrayFrameEmpty() {
 		SockJsFrame frame = new SockJsFrame("a");
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2019 the original author or authors.
+ * Copyright 2002-2021 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,15 +17,19 @@
 package org.springframework.web.socket.sockjs.transport.session;
 
 import java.io.IOException;
+import java.util.Date;
 import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 
 import org.springframework.http.server.ServerHttpRequest;
 import org.springframework.http.server.ServerHttpResponse;
 import org.springframework.http.server.ServletServerHttpRequest;
 import org.springframework.http.server.ServletServerHttpResponse;
+import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketHandler;
 import org.springframework.web.socket.sockjs.frame.DefaultSockJsFrameFormat;
 import org.springframework.web.socket.sockjs.frame.SockJsFrame;
@@ -36,6 +40,10 @@ import org.springframework.web.testfixture.servlet.MockHttpServletRequest;
 import org.springframework.web.testfixture.servlet.MockHttpServletResponse;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.willReturn;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 
@@ -102,6 +110,97 @@ public class HttpSockJsSessionTests extends AbstractSockJsSessionTests<TestAbstr
 		verifyNoMoreInteractions(this.webSocketHandler);
 	}
 
+	@Test
+	public void flushCacheWithoutFlushDelay() throws Exception {
+		TestStreamingSockJsSession session = new TestStreamingSockJsSession(this.sockJsConfig, this.webSocketHandler);
+		session.getMessageCache().add("x");
+		session.getMessageCache().add("y");
+		session.handleSuccessiveRequest(this.request, this.response, this.frameFormat);
+
+		assertThat(this.servletResponse.getContentAsString()).isEqualTo("hhh\na[\"x\"]a[\"y\"]");
+		assertThat(session.getMessageCache()).isEmpty();
+	}
+
+	@Test
+	public void flushCacheCoalescesMessages() throws Exception {
+		this.sockJsConfig.setStreamFlushDelay(50);
+		TestStreamingSockJsSession session = new TestStreamingSockJsSession(this.sockJsConfig, this.webSocketHandler);
+		session.getMessageCache().add("x");
+		session.getMessageCache().add("y");
+		session.handleSuccessiveRequest(this.request, this.response, this.frameFormat);
+
+		assertThat(this.servletResponse.getContentAsString()).isEqualTo("hhh\na[\"x\",\"y\"]");
+		assertThat(session.getMessageCache()).isEmpty();
+	}
+
+	@Test
+	public void flushCacheWithinStreamBytesLimit() throws Exception {
+		this.sockJsConfig.setStreamBytesLimit(10);
+		this.sockJsConfig.setStreamFlushDelay(50);
+		TestStreamingSockJsSession session = new TestStreamingSockJsSession(this.sockJsConfig, this.webSocketHandler);
+		session.getMessageCache().add("x");
+		session.getMessageCache().add("y");
+		session.getMessageCache().add("z");
+		session.handleSuccessiveRequest(this.request, this.response, this.frameFormat);
+
+		assertThat(this.servletResponse.getContentAsString()).isEqualTo("hhh\na[\"x\",\"y\"]");
+		assertThat(session.getMessageCache()).containsExactly("z");
+		assertThat(session.isActive()).isFalse();
+	}
+
+	@Test
+	public void sendMessageWithoutFlushDelay() throws Exception {
+		TestStreamingSockJsSession session = new TestStreamingSockJsSession(this.sockJsConfig, this.webSocketHandler);
+		session.handleInitialRequest(this.request, this.response, this.frameFormat);
+		session.sendMessage(new TextMessage("x"));
+
+		assertThat(this.servletResponse.getContentAsString()).isEqualTo("hhh\noa[\"x\"]");
+	}
+
+	@Test
+	public void sendMessageWithFlushDelay() throws Exception {
+		this.sockJsConfig.setStreamFlushDelay(50);
+		TestStreamingSockJsSession session = new TestStreamingSockJsSession(this.sockJsConfig, this.webSocketHandler);
+		session.handleInitialRequest(this.request, this.response, this.frameFormat);
+		clearInvocations(this.taskScheduler);
+		willReturn(mock(ScheduledFuture.class)).given(this.taskScheduler).schedule(any(Runnable.class), any(Date.class));
+		session.sendMessage(new TextMessage("x"));
+		session.sendMessage(new TextMessage("y"));
+
+		assertThat(this.servletResponse.getContentAsString()).isEqualTo("hhh\no");
+
+		ArgumentCaptor<Runnable> captor = ArgumentCaptor.forClass(Runnable.class);
+		verify(this.taskScheduler).schedule(captor.capture(), any(Date.class));
+		captor.getValue().run();
+
+		assertThat(this.servletResponse.getContentAsString()).isEqualTo("hhh\noa[\"x\",\"y\"]");
+		assertThat(session.getMessageCache()).isEmpty();
+	}
+
+	@Test
+	public void sendMessageWithFlushDelayAboveThreshold() throws Exception {
+		this.sockJsConfig.setStreamFlushDelay(50);
+		TestStreamingSockJsSession session = new TestStreamingSockJsSession(this.sockJsConfig, this.webSocketHandler);
+		session.handleInitialRequest(this.request, this.response, this.frameFormat);
+		String payload = new String(new char[10 * 1024]).replace('\0', 'a');
+		session.sendMessage(new TextMessage(payload));
+
+		assertThat(this.servletResponse.getContentAsString()).isEqualTo("hhh\noa[\"" + payload + "\"]");
+	}
+
+
+	static class TestStreamingSockJsSession extends StreamingSockJsSession {
+
+		public TestStreamingSockJsSession(SockJsServiceConfig config, WebSocketHandler handler) {
+			super("1", config, handler, null);
+		}
+
+		@Override
+		protected byte[] getPrelude(ServerHttpRequest request) {
+			return "hhh\n".getBytes();
+		}
+	}
+
 
 	static class TestAbstractHttpSockJsSession extends StreamingSockJsSession {
 
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2013 the original author or authors.
+ * Copyright 2002-2021 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -29,6 +29,8 @@ public class StubSockJsServiceConfig implements SockJsServiceConfig {
 
 	private int streamBytesLimit = 128 * 1024;
 
+	private long streamFlushDelay;
+
 	private long heartbeatTime = 25 * 1000;
 
 	private TaskScheduler taskScheduler = new ThreadPoolTaskScheduler();
@@ -47,6 +49,15 @@ public class StubSockJsServiceConfig implements SockJsServiceConfig {
 		this.streamBytesLimit = streamBytesLimit;
 	}
 
+	@Override
+	public long getStreamFlushDelay() {
+		return this.streamFlushDelay;
+	}
+
+	public void setStreamFlushDelay(long streamFlushDelay) {
+		this.streamFlushDelay = streamFlushDelay;
+	}
+
 	@Override
 	public long getHeartbeatTime() {
 		return this.heartbeatTime;